@@ -0,0 +1,25 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.benchmark;
+
+import uk.q3c.krail.i18n.I18NKey;
+
+/**
+ * Keys for benchmark options
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public enum BenchmarkLabelKey implements I18NKey {
+    Small, Medium, Large, Colour, Items
+}
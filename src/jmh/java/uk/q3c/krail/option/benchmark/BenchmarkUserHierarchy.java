@@ -0,0 +1,68 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import uk.q3c.krail.option.UserHierarchy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link UserHierarchy} with a configurable number of ranks, named "rank-0" (highest) to "rank-n" (lowest)
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class BenchmarkUserHierarchy implements UserHierarchy {
+
+    private final ImmutableList<String> ranks;
+
+    public BenchmarkUserHierarchy(int depth) {
+        checkArgument(depth > 0, "depth must be at least 1");
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        for (int i = 0; i < depth; i++) {
+            builder.add("rank-" + i);
+        }
+        ranks = builder.build();
+    }
+
+    @Override
+    public String displayName() {
+        return "Benchmark";
+    }
+
+    @Override
+    public String rankName(int hierarchyRank) {
+        return ranks.get(hierarchyRank);
+    }
+
+    @Override
+    public ImmutableList<String> ranksForCurrentUser() {
+        return ranks;
+    }
+
+    @Override
+    public String highestRankName() {
+        return ranks.get(0);
+    }
+
+    @Override
+    public String lowestRankName() {
+        return ranks.get(ranks.size() - 1);
+    }
+
+    @Override
+    public int lowestRank() {
+        return ranks.size() - 1;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.benchmark;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.cache.CaffeineOptionCacheEngine;
+import uk.q3c.krail.option.persist.cache.GuavaOptionCacheEngine;
+import uk.q3c.krail.option.persist.cache.OptionCacheEngine;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link OptionCacheEngine}s side by side, reading through {@link OptionStack#cache} with keys drawn from a Zipfian distribution, so that
+ * a few options are read very often and most rarely, as in a typical application.  The cache holds a twentieth of the keys, so the engine's
+ * eviction policy decides the hit ratio, which is printed after each iteration; throughput includes the loads from the store on a miss.  Run with
+ * different thread counts (see the jmhThreads tasks in the build) to compare how each engine scales
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheEngineBenchmark {
+
+    private static final int KEY_COUNT = 100_000;
+    private static final int CACHE_SIZE = KEY_COUNT / 20;
+    private static final int SAMPLE_COUNT = 1 << 20;
+    private static final Optional<Integer> DEFAULT_VALUE = Optional.of(0);
+
+    @Param({"guava", "caffeine"})
+    public String engine;
+
+    /**
+     * The exponent of the Zipfian distribution - the higher, the more reads go to the most popular keys
+     */
+    @Param({"0.8", "1.0", "1.2"})
+    public double skew;
+
+    private OptionStack stack;
+    private OptionCacheKey<Integer>[] samples;
+    private CacheStats statsBefore;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setup() {
+        stack = new OptionStack(2, KEY_COUNT, engine());
+        OptionCacheKey<Integer>[] cacheKeys = new OptionCacheKey[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            cacheKeys[i] = stack.cacheKey(i, RankOption.SPECIFIC_RANK);
+        }
+        int[] ranks = zipfian(KEY_COUNT, skew, SAMPLE_COUNT, new Random(42));
+        samples = new OptionCacheKey[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            samples[i] = cacheKeys[ranks[i]];
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        statsBefore = stack.cache.stats();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportHitRatio() {
+        CacheStats stats = stack.cache.stats()
+                .minus(statsBefore);
+        System.out.printf("%n%s, skew %s: hit ratio %.4f over %d reads%n", engine, skew, stats.hitRate(), stats.requestCount());
+    }
+
+    @Benchmark
+    public Optional<Integer> zipfianGet(ReaderPosition position) {
+        return stack.cache.get(DEFAULT_VALUE, samples[position.next()]);
+    }
+
+    private OptionCacheEngine engine() {
+        switch (engine) {
+            case "guava":
+                return new GuavaOptionCacheEngine(new GuavaCacheConfiguration().maximumSize(CACHE_SIZE)
+                        .recordStats());
+            case "caffeine":
+                return new CaffeineOptionCacheEngine("maximumSize=" + CACHE_SIZE + ",recordStats", MoreExecutors.directExecutor());
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+    }
+
+    /**
+     * Draws {@code count} ranks in [0, {@code n}) from a Zipfian distribution with exponent {@code skew}, by binary search of its cumulative
+     * distribution.  Rank 0 is the most popular, and the ranks are scattered over the keys so that popular keys are not neighbours
+     */
+    static int[] zipfian(int n, double skew, int count, Random random) {
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+        }
+        int[] scatter = new int[n];
+        for (int i = 0; i < n; i++) {
+            scatter[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = scatter[i];
+            scatter[i] = scatter[j];
+            scatter[j] = swap;
+        }
+        int[] ranks = new int[count];
+        for (int i = 0; i < count; i++) {
+            double target = random.nextDouble() * total;
+            int low = 0;
+            int high = n - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            ranks[i] = scatter[low];
+        }
+        return ranks;
+    }
+
+    /**
+     * Each thread walks the shared samples from its own random starting point
+     */
+    @State(Scope.Thread)
+    public static class ReaderPosition {
+        private int index = ThreadLocalRandom.current()
+                .nextInt(SAMPLE_COUNT);
+
+        int next() {
+            return index++ & (SAMPLE_COUNT - 1);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.persist.codec.DefaultOptionCodecRegistry;
+import uk.q3c.krail.option.persist.codec.OptionCodecRegistry;
+import uk.q3c.util.clazz.DefaultClassNameUtils;
+import uk.q3c.util.data.DataConverter;
+import uk.q3c.util.data.DefaultDataConverter;
+import uk.q3c.util.data.collection.DataList;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a persisted value through {@link OptionCodecRegistry} with converting it directly through {@link DataConverter}, as
+ * DefaultOptionDao did previously
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"INTEGER", "ENUM", "DATA_LIST"})
+    public ValueType valueType;
+
+    private OptionKey<Object> optionKey;
+    private String persistedValue;
+    private DataConverter dataConverter;
+    private OptionCodecRegistry codecRegistry;
+
+    @Setup
+    public void setup() {
+        dataConverter = new DefaultDataConverter(new HashMap<>(), new DefaultClassNameUtils());
+        codecRegistry = new DefaultOptionCodecRegistry(dataConverter);
+        optionKey = new OptionKey<>(valueType.defaultValue(), BenchmarkContext.class, BenchmarkLabelKey.Items);
+        persistedValue = dataConverter.convertValueToString(valueType.defaultValue());
+        codecRegistry.codecFor(optionKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Benchmark
+    public Object dataConverter() {
+        Object defaultValue = optionKey.getDefaultValue();
+        if (defaultValue instanceof DataList) {
+            return dataConverter.convertStringToCollection(DataList.class, ((DataList<?>) defaultValue).getEntryClass(), persistedValue, ",");
+        }
+        return dataConverter.convertStringToValue((Class<Object>) defaultValue.getClass(), persistedValue);
+    }
+
+    @Benchmark
+    public Object codecRegistry() {
+        return codecRegistry.codecFor(optionKey)
+                .decode(persistedValue);
+    }
+
+    public enum ValueType {
+        INTEGER {
+            @Override
+            Object defaultValue() {
+                return 125;
+            }
+        },
+        ENUM {
+            @Override
+            Object defaultValue() {
+                return BenchmarkLabelKey.Colour;
+            }
+        },
+        DATA_LIST {
+            @Override
+            Object defaultValue() {
+                DataList<Integer> list = new DataList<>(Integer.class);
+                for (int i = 0; i < 100; i++) {
+                    list.add(i);
+                }
+                return list;
+            }
+        };
+
+        abstract Object defaultValue();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reflections.ReflectionUtils;
+import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.OptionContext;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.option.OptionKeyLocator;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link OptionKeyLocator#contextKeyMap(OptionContext)}, as an admin page calls it for each context it shows, against reading the fields
+ * with reflection on every call, as it used to.  Run with {@code -prof gc} to see the allocation per call.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextKeyMapBenchmark {
+
+    private final OptionKeyLocator locator = new OptionKeyLocator();
+    private final StaticKeyContext staticKeyContext = new StaticKeyContext();
+    private final InstanceKeyContext instanceKeyContext = new InstanceKeyContext();
+
+    @Benchmark
+    public Map<OptionKey, Class<?>> staticKeysReflective() {
+        return reflectiveKeyMap(staticKeyContext);
+    }
+
+    @Benchmark
+    public Map<OptionKey, Class<?>> staticKeys() {
+        return locator.contextKeyMap(staticKeyContext);
+    }
+
+    @Benchmark
+    public Map<OptionKey, Class<?>> instanceKeysReflective() {
+        return reflectiveKeyMap(instanceKeyContext);
+    }
+
+    @Benchmark
+    public Map<OptionKey, Class<?>> instanceKeys() {
+        return locator.contextKeyMap(instanceKeyContext);
+    }
+
+    private Map<OptionKey, Class<?>> reflectiveKeyMap(OptionContext context) {
+        Map<OptionKey, Class<?>> keys = new HashMap<>();
+        for (Field field : ReflectionUtils.getAllFields(context.getClass(), field -> field.getType()
+                .equals(OptionKey.class))) {
+            try {
+                field.setAccessible(true);
+                OptionKey key = (OptionKey) field.get(context);
+                if (key != null) {
+                    keys.put(key, field.getType());
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return keys;
+    }
+
+    public static class StaticKeyContext implements OptionContext {
+        public static final OptionKey<Integer> small = new OptionKey<>(1, StaticKeyContext.class, BenchmarkLabelKey.Small);
+        public static final OptionKey<Integer> medium = new OptionKey<>(2, StaticKeyContext.class, BenchmarkLabelKey.Medium);
+        public static final OptionKey<Integer> large = new OptionKey<>(3, StaticKeyContext.class, BenchmarkLabelKey.Large);
+        public static final OptionKey<String> colour = new OptionKey<>("blue", StaticKeyContext.class, BenchmarkLabelKey.Colour);
+
+        @Override
+        public Option optionInstance() {
+            return null;
+        }
+    }
+
+    public static class InstanceKeyContext extends StaticKeyContext {
+        private final OptionKey<Integer> items = new OptionKey<>(10, this, BenchmarkLabelKey.Items);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.persist.inmemory.OptionEntity;
+import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link DefaultInMemoryOptionStore} on its own, for a mix of point reads and writes, and for taking a snapshot of the whole store while
+ * other threads read and write
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InMemoryStoreBenchmark {
+
+    private static final int KEY_COUNT = 1000;
+    private static final int DEPTH = 4;
+
+    @Param({"100", "90", "50"})
+    public int readPercent;
+
+    private DefaultInMemoryOptionStore store;
+    private OptionId[] optionIds;
+
+    @Setup
+    public void setup() {
+        OptionStack stack = new OptionStack(DEPTH, KEY_COUNT);
+        store = stack.store;
+        optionIds = new OptionId[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            optionIds[i] = new OptionId(stack.cacheKey(i, RankOption.SPECIFIC_RANK));
+        }
+    }
+
+    @Benchmark
+    public Optional<String> readWrite() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        OptionId optionId = optionIds[random.nextInt(KEY_COUNT)];
+        if (random.nextInt(100) < readPercent) {
+            return store.getValue(optionId);
+        }
+        store.add(optionId, Integer.toString(random.nextInt()));
+        return Optional.empty();
+    }
+
+    @Benchmark
+    public List<OptionEntity> asEntities() {
+        return store.asEntities();
+    }
+}
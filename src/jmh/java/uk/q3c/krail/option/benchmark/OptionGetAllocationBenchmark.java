@@ -0,0 +1,98 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.benchmark;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.q3c.krail.option.option.DefaultOption;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.cache.CaffeineOptionCacheEngine;
+import uk.q3c.krail.option.persist.cache.GuavaOptionCacheEngine;
+import uk.q3c.krail.option.persist.cache.OptionCacheEngine;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The allocation of a {@link DefaultOption#get} which hits the cache, for each kind of cache.  Run with {@code -prof gc}.  The hit path of {@link
+ * DefaultOption} and the option cache allocates nothing itself, so gc.alloc.rate.norm for an unbounded Guava cache, or for Caffeine, is only what
+ * {@link OptionCacheKey#hashCode()} allocates, twice per read (once for the absent tier and once for the cache) - zero bytes for a key which computes
+ * its hash without boxing or varargs.  A Guava cache bounded by size also queues a node for each read, which "guava-bounded" adds.
+ * <p>
+ * Keys are read in turn from a small set, all with a value, so that every read is a hit and no random number is drawn.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionGetAllocationBenchmark {
+
+    private static final int KEY_COUNT = 64;
+
+    @Param({"guava-bounded", "guava-unbounded", "caffeine"})
+    public String cache;
+
+    private OptionStack stack;
+    private int next;
+
+    @Setup
+    public void setup() {
+        stack = new OptionStack(4, KEY_COUNT, engine());
+        for (int i = 0; i < KEY_COUNT; i++) {
+            stack.option.get(stack.keys[i]);
+            stack.option.getLowestRanked(stack.keys[i]);
+        }
+    }
+
+    @Benchmark
+    public Integer getHit() {
+        return stack.option.get(stack.keys[nextKey()]);
+    }
+
+    @Benchmark
+    public Integer getLowestRankedHit() {
+        return stack.option.getLowestRanked(stack.keys[nextKey()]);
+    }
+
+    private int nextKey() {
+        next = (next + 1) & (KEY_COUNT - 1);
+        return next;
+    }
+
+    private OptionCacheEngine engine() {
+        switch (cache) {
+            case "guava-bounded":
+                return new GuavaOptionCacheEngine(new GuavaCacheConfiguration().maximumSize(KEY_COUNT * 4));
+            case "guava-unbounded":
+                return new GuavaOptionCacheEngine(new GuavaCacheConfiguration());
+            case "caffeine":
+                return new CaffeineOptionCacheEngine("maximumSize=" + KEY_COUNT * 4, MoreExecutors.directExecutor());
+            default:
+                throw new IllegalArgumentException("Unknown cache " + cache);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.option.OptionKeyIndex;
+import uk.q3c.krail.option.option.OptionKeyLocator;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of finding the option keys in the application at startup: scanning the classpath with Reflections, as {@link OptionKeyLocator}
+ * did on every call, against reading the index written by the annotation processor.  Each is measured cold, once per fork, as an application
+ * sees it on starting.  {@link #indexedKeyTypes()} measures the calls answered from the index once it is built.
+ * <p>
+ * The index is only present when the benchmarks are compiled with the processor on the classpath, as Gradle does.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@State(Scope.Benchmark)
+public class OptionKeyIndexBenchmark {
+
+    private final OptionKeyLocator locator = new OptionKeyLocator();
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public Set<Class<?>> startupScan() {
+        return OptionKeyIndex.fromScan(getClass().getClassLoader())
+                .keyTypes();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public Set<Class<?>> startupIndex() {
+        return OptionKeyIndex.fromIndex(getClass().getClassLoader())
+                .orElseThrow(() -> new IllegalStateException("No option context index, compile with the annotation processor"))
+                .keyTypes();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public Set<Class<?>> indexedKeyTypes() {
+        return locator.contextKeyTypes();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public Map<String, OptionKey<?>> indexedContextKeys() {
+        return locator.staticContextKeys(BenchmarkContext.class);
+    }
+}
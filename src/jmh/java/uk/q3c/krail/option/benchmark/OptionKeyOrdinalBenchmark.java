@@ -0,0 +1,87 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.option.OptionKeyOrdinals;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.persist.inmemory.store.CompactInMemoryOptionStore;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point reads from {@link CompactInMemoryOptionStore} by {@link OptionCacheKey}, which find the option from its {@link OptionKeyOrdinals ordinal},
+ * against reads by an {@link OptionId} built for each read, as the DAO delegate made them before.  {@link #ordinal()} is the cost of finding the
+ * ordinal alone.  Run with {@code -prof gc} to see the allocation per read.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionKeyOrdinalBenchmark {
+
+    private static final int KEY_COUNT = 1000;
+    private static final int DEPTH = 4;
+
+    private CompactInMemoryOptionStore store;
+    private OptionCacheKey<?>[] cacheKeys;
+
+    @Setup
+    public void setup() {
+        OptionStack stack = new OptionStack(DEPTH, KEY_COUNT);
+        store = new CompactInMemoryOptionStore();
+        cacheKeys = new OptionCacheKey<?>[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            cacheKeys[i] = stack.cacheKey(i, RankOption.SPECIFIC_RANK);
+            store.add(cacheKeys[i], Integer.toString(i));
+        }
+    }
+
+    @Benchmark
+    public Optional<String> readByCacheKey() {
+        return store.getValue(cacheKeys[ThreadLocalRandom.current()
+                .nextInt(KEY_COUNT)]);
+    }
+
+    @Benchmark
+    public Optional<String> readByOptionId() {
+        return store.getValue(new OptionId(cacheKeys[ThreadLocalRandom.current()
+                .nextInt(KEY_COUNT)]));
+    }
+
+    @Benchmark
+    public int ordinal() {
+        OptionKey<?> optionKey = cacheKeys[ThreadLocalRandom.current()
+                .nextInt(KEY_COUNT)].getOptionKey();
+        return OptionKeyOrdinals.instance()
+                .ordinal(optionKey);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.option.DefaultOption;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read throughput for each layer of the option stack, for cache hits and misses, highest and specific rank lookups and hierarchies of different depths.
+ * Values are held at the lowest rank, so a highest rank miss has to search every rank.  Run with different thread counts (see the jmhThreads tasks in
+ * the build) to see how each layer scales
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionReadBenchmark {
+
+    private static final int KEY_COUNT = 1000;
+    private static final int HOT_KEY_COUNT = 32;
+    private static final Optional<Integer> DEFAULT_VALUE = Optional.of(0);
+
+    @Param({"2", "4", "6", "8", "10"})
+    public int depth;
+
+    @Param({"HIGHEST_RANK", "SPECIFIC_RANK"})
+    public RankOption rankOption;
+
+    private OptionStack stack;
+    private OptionCacheKey<Integer>[] cacheKeys;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setup() {
+        stack = new OptionStack(depth, KEY_COUNT);
+        cacheKeys = new OptionCacheKey[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            cacheKeys[i] = stack.cacheKey(i, rankOption);
+            stack.cache.get(DEFAULT_VALUE, cacheKeys[i]);
+        }
+    }
+
+    @Benchmark
+    public Integer optionGetHit() {
+        OptionKey<Integer> optionKey = stack.keys[nextKey()];
+        return (rankOption == RankOption.SPECIFIC_RANK) ? stack.option.getSpecificRanked(stack.hierarchy.lowestRank(), optionKey) : stack.option.get
+                (optionKey);
+    }
+
+    /**
+     * Reads from a small set of hot keys, such as a session reads repeatedly, through {@link OptionStack#option}, to compare with {@link
+     * #sessionOptionGetHot()}
+     */
+    @Benchmark
+    public Integer optionGetHot() {
+        return read(stack.option, stack.keys[nextHotKey()]);
+    }
+
+    @Benchmark
+    public Integer sessionOptionGetHot() {
+        return read(stack.sessionOption, stack.keys[nextHotKey()]);
+    }
+
+    @Benchmark
+    public Optional<Integer> cacheGetHit() {
+        return stack.cache.get(DEFAULT_VALUE, cacheKeys[nextKey()]);
+    }
+
+    /**
+     * Removes the entry before each read, so includes the cost of the removal as well as the load through the DAO
+     */
+    @Benchmark
+    public Optional<Integer> cacheGetMiss() {
+        OptionCacheKey<Integer> cacheKey = cacheKeys[nextKey()];
+        stack.cache.asMap()
+                .remove(cacheKey);
+        return stack.cache.get(DEFAULT_VALUE, cacheKey);
+    }
+
+    @Benchmark
+    public Optional<Integer> daoGetValue() {
+        return stack.dao.getValue(cacheKeys[nextKey()]);
+    }
+
+    private Integer read(DefaultOption option, OptionKey<Integer> optionKey) {
+        return (rankOption == RankOption.SPECIFIC_RANK) ? option.getSpecificRanked(stack.hierarchy.lowestRank(), optionKey) : option.get(optionKey);
+    }
+
+    private int nextHotKey() {
+        return ThreadLocalRandom.current()
+                .nextInt(HOT_KEY_COUNT);
+    }
+
+    private int nextKey() {
+        return ThreadLocalRandom.current()
+                .nextInt(KEY_COUNT);
+    }
+}
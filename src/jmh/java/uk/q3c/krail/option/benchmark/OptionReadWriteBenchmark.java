@@ -0,0 +1,70 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.q3c.krail.option.OptionKey;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link uk.q3c.krail.option.option.DefaultOption} with a mix of reads (get) and writes (set), where {@code readPercent} of operations
+ * are reads
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionReadWriteBenchmark {
+
+    private static final int KEY_COUNT = 1000;
+    private static final int DEPTH = 4;
+
+    @Param({"100", "95", "80", "50"})
+    public int readPercent;
+
+    private OptionStack stack;
+
+    @Setup
+    public void setup() {
+        stack = new OptionStack(DEPTH, KEY_COUNT);
+    }
+
+    @Benchmark
+    public Integer readWrite() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        OptionKey<Integer> optionKey = stack.keys[random.nextInt(KEY_COUNT)];
+        if (random.nextInt(100) < readPercent) {
+            return stack.option.get(optionKey);
+        }
+        Integer value = random.nextInt();
+        stack.option.set(optionKey, value);
+        return value;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.benchmark;
+
+import uk.q3c.krail.eventbus.MessageBus;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultOptionPermissionVerifier;
+import uk.q3c.krail.option.option.DefaultOption;
+import uk.q3c.krail.option.option.SessionCachedOption;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionSource;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCache;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCacheLoader;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCacheProvider;
+import uk.q3c.krail.option.persist.cache.DefaultOptionValueWeigher;
+import uk.q3c.krail.option.persist.cache.GuavaOptionCacheEngine;
+import uk.q3c.krail.option.persist.cache.OptionCacheEngine;
+import uk.q3c.krail.option.persist.codec.DefaultOptionCodecRegistry;
+import uk.q3c.krail.option.persist.dao.DefaultOptionDao;
+import uk.q3c.krail.persist.inmemory.dao.InMemoryOptionDaoDelegate;
+import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
+import uk.q3c.util.clazz.DefaultClassNameUtils;
+import uk.q3c.util.data.DefaultDataConverter;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+import uk.q3c.util.guice.SerializationSupport;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Optional;
+
+/**
+ * Assembles the option stack used by an application with the in-memory store - {@link DefaultOption} (and {@link SessionCachedOption}), {@link
+ * DefaultOptionCache}, {@link DefaultOptionDao} and {@link DefaultInMemoryOptionStore} - without Guice, so that benchmarks can exercise each layer directly.
+ * <p>
+ * Each of {@code keyCount} option keys has a value at the lowest rank of a {@link BenchmarkUserHierarchy}, so that a highest rank lookup has to
+ * search every rank before finding it.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OptionStack {
+
+    public final BenchmarkUserHierarchy hierarchy;
+    public final DefaultInMemoryOptionStore store;
+    public final DefaultOptionDao dao;
+    public final DefaultOptionCache cache;
+    public final DefaultOption option;
+    public final SessionCachedOption sessionOption;
+    public final OptionKey<Integer>[] keys;
+
+    public OptionStack(int depth, int keyCount) {
+        this(depth, keyCount, new GuavaOptionCacheEngine(new GuavaCacheConfiguration().maximumSize(keyCount * 4L + 1000)));
+    }
+
+    @SuppressWarnings("unchecked")
+    public OptionStack(int depth, int keyCount, OptionCacheEngine cacheEngine) {
+        hierarchy = new BenchmarkUserHierarchy(depth);
+        store = new DefaultInMemoryOptionStore();
+        InMemoryOptionDaoDelegate delegate = new InMemoryOptionDaoDelegate(store);
+        OptionSource optionSource = noOp(OptionSource.class, delegate);
+        dao = new DefaultOptionDao(new DefaultOptionCodecRegistry(new DefaultDataConverter(new HashMap<>(), new DefaultClassNameUtils())),
+                optionSource);
+        cache = new DefaultOptionCache(dao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(dao),
+                cacheEngine, new DefaultOptionValueWeigher()) {
+        });
+        option = new DefaultOption(cache, hierarchy, new DefaultOptionPermissionVerifier(), noOp(MessageBus.class, null), noOp(SerializationSupport
+                .class, null)) {
+        };
+        sessionOption = new SessionCachedOption(cache, hierarchy, new DefaultOptionPermissionVerifier(), noOp(MessageBus.class, null), noOp
+                (SerializationSupport.class, null)) {
+        };
+
+        keys = new OptionKey[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = new OptionKey<>(i, BenchmarkContext.class, BenchmarkLabelKey.Items, "key-" + i);
+            dao.write(specificKey(i, hierarchy.lowestRank()), Optional.of(i + 1));
+        }
+    }
+
+    public OptionCacheKey<Integer> cacheKey(int keyIndex, RankOption rankOption) {
+        return (rankOption == RankOption.SPECIFIC_RANK) ? specificKey(keyIndex, hierarchy.lowestRank()) : new OptionCacheKey<>(hierarchy, rankOption,
+                keys[keyIndex]);
+    }
+
+    private OptionCacheKey<Integer> specificKey(int keyIndex, int rank) {
+        return new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, rank, keys[keyIndex]);
+    }
+
+    /**
+     * A proxy which does nothing, except to return {@code result} from any method returning a compatible type - used in place of
+     * implementations which are not relevant to the benchmarks
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T noOp(Class<T> type, Object result) {
+        return (T) Proxy.newProxyInstance(OptionStack.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "no-op " + type.getSimpleName();
+                default:
+                    if (result != null && method.getReturnType()
+                            .isInstance(result)) {
+                        return result;
+                    }
+                    return (method.getReturnType() == boolean.class) ? Boolean.FALSE : null;
+            }
+        });
+    }
+}
@@ -23,6 +23,9 @@ import uk.q3c.krail.option.UserHierarchyDefault;
 import uk.q3c.krail.option.hierarchy.DefaultOptionPermissionVerifier;
 import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
 import uk.q3c.krail.option.option.DefaultOption;
+import uk.q3c.krail.option.option.ExtendedOption;
+import uk.q3c.krail.option.option.SessionCacheMaxAge;
+import uk.q3c.krail.option.option.SessionCachedOption;
 import uk.q3c.krail.option.persist.ActiveOptionSourceDefault;
 import uk.q3c.krail.option.persist.OptionCache;
 import uk.q3c.krail.option.persist.OptionCacheConfig;
@@ -30,8 +33,28 @@ import uk.q3c.krail.option.persist.OptionCacheProvider;
 import uk.q3c.krail.option.persist.OptionDao;
 import uk.q3c.krail.option.persist.OptionPersistenceHelper;
 import uk.q3c.krail.option.persist.OptionSource;
+import uk.q3c.krail.option.persist.cache.AbsentOptionCacheConfig;
+import uk.q3c.krail.option.persist.cache.CaffeineCacheSpec;
+import uk.q3c.krail.option.persist.cache.CaffeineOptionCacheEngine;
 import uk.q3c.krail.option.persist.cache.DefaultOptionCache;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCacheInvalidationBus;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCacheLoader;
 import uk.q3c.krail.option.persist.cache.DefaultOptionCacheProvider;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCacheSnapshot;
+import uk.q3c.krail.option.persist.cache.DefaultOptionValueWeigher;
+import uk.q3c.krail.option.persist.cache.GuavaOptionCacheEngine;
+import uk.q3c.krail.option.persist.cache.LocalOptionCacheInvalidationBus;
+import uk.q3c.krail.option.persist.cache.OptionCacheEngine;
+import uk.q3c.krail.option.persist.cache.OptionCacheMaximumWeight;
+import uk.q3c.krail.option.persist.cache.OptionCacheInvalidationBus;
+import uk.q3c.krail.option.persist.cache.OptionCacheInvalidationConfiguration;
+import uk.q3c.krail.option.persist.cache.OptionCacheInvalidationTransport;
+import uk.q3c.krail.option.persist.cache.OptionCacheSnapshot;
+import uk.q3c.krail.option.persist.cache.OptionCacheSnapshotConfiguration;
+import uk.q3c.krail.option.persist.cache.OptionCacheReloadExecutor;
+import uk.q3c.krail.option.persist.cache.OptionValueWeigher;
+import uk.q3c.krail.option.persist.codec.DefaultOptionCodecRegistry;
+import uk.q3c.krail.option.persist.codec.OptionCodecRegistry;
 import uk.q3c.krail.option.persist.dao.DefaultOptionDao;
 import uk.q3c.krail.option.persist.source.DefaultOptionSource;
 import uk.q3c.util.data.DataConverter;
@@ -39,6 +62,7 @@ import uk.q3c.util.data.DefaultDataConverter;
 import uk.q3c.util.guava.GuavaCacheConfiguration;
 
 import java.lang.annotation.Annotation;
+import java.util.concurrent.Executor;
 
 /**
  * Configures the use of {@link Option}
@@ -47,8 +71,21 @@ import java.lang.annotation.Annotation;
  */
 public class OptionModule extends AbstractModule {
 
+    /**
+     * The default number of entries held by the option cache
+     */
+    public static final long DEFAULT_CACHE_SIZE = 5000;
+
+    /**
+     * A suggested bound for the option cache when it is bounded by weight (see {@link #configureCacheWeight()}), in estimated bytes of retained
+     * values
+     */
+    public static final long DEFAULT_CACHE_WEIGHT = 16L * 1024 * 1024;
 
     private Class<? extends Annotation> activeSource;
+    private Class<? extends OptionCacheEngine> cacheEngine = GuavaOptionCacheEngine.class;
+    private boolean sessionCache;
+    private Class<? extends OptionCacheInvalidationTransport> invalidationTransport;
 
     /**
      * Configures a {@link Binder} via the exposed methods.
@@ -58,11 +95,18 @@ public class OptionModule extends AbstractModule {
         bindOption();
         bindOptionDaoWrapper();
         bindOptionCacheConfiguration();
+        bindAbsentOptionCacheConfiguration();
+        bindOptionCacheReloadExecutor();
         bindOptionCache();
         bindOptionCacheProvider();
+        bindOptionCacheEngine();
+        bindOptionValueWeigher();
+        bindOptionCacheSnapshot();
+        bindOptionCacheInvalidation();
         bindDefaultActiveSource();
         bindCurrentOptionSource();
         bindOptionElementConverter();
+        bindOptionCodecRegistry();
         bindPermissionVerifier();
         bindUserHierarchies();
     }
@@ -90,6 +134,14 @@ public class OptionModule extends AbstractModule {
         bind(DataConverter.class).to(DefaultDataConverter.class);
     }
 
+    /**
+     * Override this method to provide your own {@link OptionCodecRegistry} implementation.
+     */
+    protected void bindOptionCodecRegistry() {
+        bind(OptionCodecRegistry.class).to(DefaultOptionCodecRegistry.class)
+                .in(Singleton.class);
+    }
+
     protected void bindDefaultActiveSource() {
         bind(OptionPersistenceHelper.annotationClassLiteral()).annotatedWith(ActiveOptionSourceDefault.class)
                 .toInstance(activeSource);
@@ -112,6 +164,80 @@ public class OptionModule extends AbstractModule {
     }
 
 
+    /**
+     * Binds the {@link OptionCacheEngine} selected by {@link #cacheEngine(Class)}, and the specification used by {@link CaffeineOptionCacheEngine},
+     * taken from {@link #configureCaffeineCache()}
+     */
+    protected void bindOptionCacheEngine() {
+        bind(OptionCacheEngine.class).to(cacheEngine);
+        bind(String.class).annotatedWith(CaffeineCacheSpec.class)
+                .toInstance(configureCaffeineCache());
+    }
+
+    /**
+     * Override this to configure the option cache when {@link CaffeineOptionCacheEngine} is selected, using a Caffeine specification.  This takes the
+     * place of {@link #configureCache()}, and by default is bounded in the same way
+     *
+     * @return a Caffeine specification
+     */
+    protected String configureCaffeineCache() {
+        return "maximumSize=" + DEFAULT_CACHE_SIZE + ",recordStats";
+    }
+
+    /**
+     * Override this method to provide your own {@link OptionValueWeigher} implementation, used when {@link #configureCacheWeight()} bounds the cache by weight
+     */
+    protected void bindOptionValueWeigher() {
+        bind(OptionValueWeigher.class).to(DefaultOptionValueWeigher.class);
+    }
+
+    /**
+     * Override this method to provide your own {@link OptionCacheSnapshot} implementation.  The configuration is taken from {@link
+     * #configureCacheSnapshot()}
+     */
+    protected void bindOptionCacheSnapshot() {
+        bind(OptionCacheSnapshotConfiguration.class).toInstance(configureCacheSnapshot());
+        bind(OptionCacheSnapshot.class).to(DefaultOptionCacheSnapshot.class)
+                .in(Singleton.class);
+    }
+
+    /**
+     * Override this to change where the option cache snapshot is saved, and how old it may be when restored
+     *
+     * @return an OptionCacheSnapshotConfiguration instance
+     */
+    protected OptionCacheSnapshotConfiguration configureCacheSnapshot() {
+        return new OptionCacheSnapshotConfiguration();
+    }
+
+    /**
+     * Binds the {@link OptionCacheInvalidationBus}: a {@link DefaultOptionCacheInvalidationBus} using the transport selected by {@link
+     * #invalidationTransport(Class)}, or if none is selected, a {@link LocalOptionCacheInvalidationBus}.  The configuration is taken from {@link
+     * #configureCacheInvalidation()}
+     */
+    protected void bindOptionCacheInvalidation() {
+        bind(OptionCacheInvalidationConfiguration.class).toInstance(configureCacheInvalidation());
+        if (invalidationTransport == null) {
+            bind(OptionCacheInvalidationBus.class).to(LocalOptionCacheInvalidationBus.class)
+                    .in(Singleton.class);
+        } else {
+            bind(OptionCacheInvalidationTransport.class).to(invalidationTransport)
+                    .in(Singleton.class);
+            bind(OptionCacheInvalidationBus.class).to(DefaultOptionCacheInvalidationBus.class)
+                    .in(Singleton.class);
+        }
+    }
+
+    /**
+     * Override this to change how invalidations are gathered and sent to other application instances, when {@link #invalidationTransport(Class)}
+     * is used
+     *
+     * @return an OptionCacheInvalidationConfiguration instance
+     */
+    protected OptionCacheInvalidationConfiguration configureCacheInvalidation() {
+        return new OptionCacheInvalidationConfiguration();
+    }
+
     /**
      * Override this method to provide your own {@link OptionCache} implementation or change the scope.  It is difficult to predict which
      * scope would be most effective for any given application, but given that everything except the user level values of options
@@ -124,25 +250,89 @@ public class OptionModule extends AbstractModule {
     protected void bindOptionCacheConfiguration() {
         bind(GuavaCacheConfiguration.class).annotatedWith(OptionCacheConfig.class)
                 .toInstance(configureCache());
+        bind(Long.class).annotatedWith(OptionCacheMaximumWeight.class)
+                .toInstance(configureCacheWeight());
+    }
+
+    protected void bindAbsentOptionCacheConfiguration() {
+        bind(GuavaCacheConfiguration.class).annotatedWith(AbsentOptionCacheConfig.class)
+                .toInstance(configureAbsentCache());
+    }
+
+    protected void bindOptionCacheReloadExecutor() {
+        bind(Executor.class).annotatedWith(OptionCacheReloadExecutor.class)
+                .toInstance(configureReloadExecutor());
+    }
+
+    /**
+     * Override this to change the executor used by {@link DefaultOptionCacheLoader} to reload values in the background, when {@link #configureCache()}
+     * sets refreshAfterWrite.  The default is a small pool of daemon threads, from {@link DefaultOptionCacheLoader#newReloadExecutor()}
+     *
+     * @return the executor to use for reloading cache values
+     */
+    protected Executor configureReloadExecutor() {
+        return DefaultOptionCacheLoader.newReloadExecutor();
     }
 
     /**
-     * Override this to configure the option cache
+     * Override this to configure the option cache.  If refreshAfterWrite is set, stale values are refreshed in the background by the executor
+     * provided by {@link #configureReloadExecutor()}
+     * <p>
+     * By default the cache holds up to {@link #DEFAULT_CACHE_SIZE} entries.  To bound it by weight instead, set no maximum size here, and override
+     * {@link #configureCacheWeight()}
      *
      * @return a GuavaCacheConfiguration instance
      */
     protected GuavaCacheConfiguration configureCache() {
         GuavaCacheConfiguration config = new GuavaCacheConfiguration();
-        config.maximumSize(5000)
+        config.maximumSize(DEFAULT_CACHE_SIZE)
                 .recordStats();
         return config;
     }
 
     /**
-     * Override this method to provide your own {@link Option} implementation.
+     * Override this to bound the option cache by weight, the estimated bytes retained by its values (see {@link #bindOptionValueWeigher()}), for
+     * example to {@link #DEFAULT_CACHE_WEIGHT}.  {@link #configureCache()} must then be overridden too, as a cache cannot be bounded by both size
+     * and weight.  The bound is shared between the segments of the cache, so a single value larger than a segment's share is not held at all
+     *
+     * @return the maximum weight, or zero (the default) if the cache is not bounded by weight
+     */
+    protected long configureCacheWeight() {
+        return 0;
+    }
+
+    /**
+     * Override this to configure the tier in which {@link DefaultOptionCache} records options which have no value, kept apart from {@link
+     * #configureCache()} so that unset options do not push out real values.  Expiry should be set, as a value written by another application
+     * instance is not seen until the entry expires, unless {@link #invalidationTransport(Class)} is used
+     *
+     * @return a GuavaCacheConfiguration instance
+     */
+    protected GuavaCacheConfiguration configureAbsentCache() {
+        return DefaultOptionCache.defaultAbsentConfiguration();
+    }
+
+    /**
+     * Override this method to provide your own {@link Option} implementation.  The {@link ExtendedOption} binding should be overridden to match
      */
     protected void bindOption() {
-        bind(Option.class).to(DefaultOption.class);
+        Class<? extends DefaultOption> optionClass = sessionCache ? SessionCachedOption.class : DefaultOption.class;
+        bind(Option.class).to(optionClass);
+        bind(ExtendedOption.class).to(optionClass);
+        bind(Long.class).annotatedWith(SessionCacheMaxAge.class)
+                .toInstance(configureSessionCacheMaxAge());
+    }
+
+    /**
+     * Override this to change how long, in milliseconds, {@link SessionCachedOption} holds a value before reading it from the shared option cache
+     * again, when {@link #sessionCache()} is used.  Changes made through any {@link Option} are seen at once regardless, but the expiry and refresh
+     * of the shared cache - which is how changes made by other application instances are seen, if no invalidation messages arrive - are seen only
+     * after this age.  The default is {@link SessionCachedOption#DEFAULT_MAX_AGE_MILLIS}
+     *
+     * @return the maximum age of a session cache entry, in milliseconds
+     */
+    protected long configureSessionCacheMaxAge() {
+        return SessionCachedOption.DEFAULT_MAX_AGE_MILLIS;
     }
 
     /**
@@ -164,4 +354,38 @@ public class OptionModule extends AbstractModule {
         return this;
     }
 
+    /**
+     * Defines which {@link OptionCacheEngine} builds the option cache.  The default is {@link GuavaOptionCacheEngine}
+     *
+     * @param engineClass the engine to use, for example {@link CaffeineOptionCacheEngine}
+     * @return this for fluency
+     */
+    public OptionModule cacheEngine(Class<? extends OptionCacheEngine> engineClass) {
+        cacheEngine = engineClass;
+        return this;
+    }
+
+    /**
+     * Sends the changes made by this application instance to the others which share its option store, and removes the values they change from
+     * its cache, using {@code transportClass} to carry the messages
+     *
+     * @param transportClass the transport to use
+     * @return this for fluency
+     */
+    public OptionModule invalidationTransport(Class<? extends OptionCacheInvalidationTransport> transportClass) {
+        invalidationTransport = transportClass;
+        return this;
+    }
+
+    /**
+     * Binds {@link SessionCachedOption} in place of {@link DefaultOption}, so that each {@link Option} instance holds the values it reads most
+     * often in a small cache of its own
+     *
+     * @return this for fluency
+     */
+    public OptionModule sessionCache() {
+        sessionCache = true;
+        return this;
+    }
+
 }
@@ -0,0 +1,151 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.hierarchy;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import uk.q3c.krail.option.UserHierarchy;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * A base for {@link UserHierarchy} implementations whose ranks are expensive to find, typically from a directory service.  The ranks for each user
+ * are resolved once, by {@link #resolveRanks(String)}, and held until {@link #invalidate(String)} is called for that user - when their group
+ * membership changes, for example - or until they expire.  Reads of held ranks take no lock, and every method uses the same list, so a call to
+ * {@link #rankName(int)} costs no more than a map lookup.
+ * <p>
+ * The held ranks are not serialized, and a deserialized instance holds them with {@link #defaultConfiguration()}.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@ThreadSafe
+public abstract class CachingUserHierarchy implements UserHierarchy {
+
+    private transient LoadingCache<String, ImmutableList<String>> ranks;
+
+    protected CachingUserHierarchy() {
+        this(defaultConfiguration());
+    }
+
+    /**
+     * @param configuration configures the cache of ranks, keyed by user
+     */
+    protected CachingUserHierarchy(GuavaCacheConfiguration configuration) {
+        ranks = build(configuration);
+    }
+
+    /**
+     * The configuration used unless another is given to the constructor: up to 10,000 users, each held for an hour so that a missed invalidation
+     * does not last indefinitely
+     *
+     * @return a new GuavaCacheConfiguration instance
+     */
+    public static GuavaCacheConfiguration defaultConfiguration() {
+        return new GuavaCacheConfiguration().maximumSize(10_000)
+                .expireAfterWrite(1, TimeUnit.HOURS)
+                .recordStats();
+    }
+
+    /**
+     * @return the identifier of the current user, or of their session if ranks may differ between sessions.  Called on every read, so must be
+     * cheap
+     */
+    protected abstract String currentUserId();
+
+    /**
+     * Finds the ranks for {@code userId}, highest first.  Called once for each user until they are invalidated, and may be slow
+     *
+     * @param userId the user identifier returned by {@link #currentUserId()}
+     * @return the ranks, which must include at least one
+     */
+    protected abstract ImmutableList<String> resolveRanks(String userId);
+
+    /**
+     * Discards the ranks held for {@code userId}, so that they are resolved again when next used
+     *
+     * @param userId the user whose ranks have changed
+     */
+    public void invalidate(String userId) {
+        ranks.invalidate(checkNotNull(userId));
+    }
+
+    /**
+     * Discards the ranks held for all users
+     */
+    public void invalidateAll() {
+        ranks.invalidateAll();
+    }
+
+    /**
+     * @return statistics for the ranks held, if the configuration records them
+     */
+    public CacheStats stats() {
+        return ranks.stats();
+    }
+
+    @Override
+    public ImmutableList<String> ranksForCurrentUser() {
+        return ranks.getUnchecked(currentUserId());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if {@code hierarchyRank} is out of bounds
+     */
+    @Override
+    public String rankName(int hierarchyRank) {
+        checkArgument(hierarchyRank >= 0, "hierarchyRank must be 0 or greater");
+        ImmutableList<String> userRanks = ranksForCurrentUser();
+        checkArgument(hierarchyRank < userRanks.size(), "Hierarchy level of %s is too high", hierarchyRank);
+        return userRanks.get(hierarchyRank);
+    }
+
+    @Override
+    public String highestRankName() {
+        return ranksForCurrentUser().get(0);
+    }
+
+    @Override
+    public String lowestRankName() {
+        ImmutableList<String> userRanks = ranksForCurrentUser();
+        return userRanks.get(userRanks.size() - 1);
+    }
+
+    @Override
+    public int lowestRank() {
+        return ranksForCurrentUser().size() - 1;
+    }
+
+    private LoadingCache<String, ImmutableList<String>> build(GuavaCacheConfiguration configuration) {
+        return configuration.builder()
+                .build(CacheLoader.from(userId -> {
+                    ImmutableList<String> userRanks = resolveRanks(userId);
+                    checkState(userRanks != null && !userRanks.isEmpty(), "No ranks resolved for %s", userId);
+                    return userRanks;
+                }));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ranks = build(defaultConfiguration());
+    }
+}
@@ -23,7 +23,8 @@ import javax.annotation.concurrent.ThreadSafe;
 import static com.google.common.base.Preconditions.*;
 
 /**
- * To do anything useful with {@link Option}, this class will need to be replaced by something meaningful.  Its only purpose is to enable code to run
+ * To do anything useful with {@link Option}, this class will need to be replaced by something meaningful.  Its only purpose is to enable code to run.
+ * A hierarchy whose ranks are found from a directory service can extend {@link CachingUserHierarchy}
  * <p>
  * Created by David Sowerby on 18/02/15.
  */
@@ -32,6 +33,7 @@ public class DefaultUserHierarchy implements UserHierarchy {
 
 
     public static final String SYSTEM = "system";
+    private static final ImmutableList<String> RANKS = ImmutableList.of("me", SYSTEM);
 
     @Inject
     public DefaultUserHierarchy() {
@@ -44,7 +46,7 @@ public class DefaultUserHierarchy implements UserHierarchy {
      */
     @Override
 
-    public synchronized String displayName() {
+    public String displayName() {
         return this.getClass().getSimpleName();
     }
 
@@ -58,7 +60,7 @@ public class DefaultUserHierarchy implements UserHierarchy {
      * @throws IllegalArgumentException if {@code hierarchyRank} is out of bounds
      */
     @Override
-    public synchronized String rankName(int hierarchyRank) {
+    public String rankName(int hierarchyRank) {
         checkArgument(hierarchyRank >= 0, "hierarchyRank must be 0 or greater");
         ImmutableList<String> ranks = ranksForCurrentUser();
         try {
@@ -70,26 +72,26 @@ public class DefaultUserHierarchy implements UserHierarchy {
 
     @Override
 
-    public synchronized ImmutableList<String> ranksForCurrentUser() {
+    public ImmutableList<String> ranksForCurrentUser() {
 
-        return ImmutableList.of("me", SYSTEM);
+        return RANKS;
 
     }
 
     @Override
-    public synchronized String highestRankName() {
+    public String highestRankName() {
         ImmutableList<String> ranks = ranksForCurrentUser();
         return ranks.get(0);
     }
 
     @Override
-    public synchronized String lowestRankName() {
+    public String lowestRankName() {
         ImmutableList<String> ranks = ranksForCurrentUser();
         return ranks.get(ranks.size() - 1);
     }
 
     @Override
-    public synchronized int lowestRank() {
+    public int lowestRank() {
         ImmutableList<String> ranks = ranksForCurrentUser();
         return ranks.size() - 1;
     }
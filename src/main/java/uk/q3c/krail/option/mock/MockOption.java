@@ -14,9 +14,10 @@
 package uk.q3c.krail.option.mock;
 
 import com.google.inject.Inject;
-import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.OptionContext;
 import uk.q3c.krail.option.OptionKey;
 import uk.q3c.krail.option.UserHierarchy;
+import uk.q3c.krail.option.option.ExtendedOption;
 import uk.q3c.krail.option.persist.OptionCache;
 
 import java.io.IOException;
@@ -35,7 +36,7 @@ import static org.mockito.Mockito.when;
  * <p>
  * Created by David Sowerby on 27/02/15.
  */
-public class MockOption implements Option {
+public class MockOption implements ExtendedOption {
 
     private transient UserHierarchy hierarchy;
     private Map<OptionKey, Optional<Object>> optionMap;
@@ -113,6 +114,14 @@ public class MockOption implements Option {
         throw new UnsupportedOperationException("Method 'getValueFromCache' is not supported by MockOption");
     }
 
+    /**
+     * Nothing to load, values are held in memory
+     */
+    @Override
+    public void preload(OptionContext context) {
+        checkNotNull(context);
+    }
+
     private void readObject(ObjectInputStream inputStream) throws ClassNotFoundException, IOException {
         inputStream.defaultReadObject();
         setup();
@@ -2,6 +2,7 @@ package uk.q3c.krail.option.mock;
 
 import uk.q3c.krail.option.Option;
 import uk.q3c.krail.option.bind.OptionModule;
+import uk.q3c.krail.option.option.ExtendedOption;
 import uk.q3c.krail.option.persist.OptionCache;
 import uk.q3c.krail.option.persist.cache.DefaultOptionCache;
 import uk.q3c.krail.persist.InMemory;
@@ -15,6 +16,7 @@ public class TestOptionModule extends OptionModule {
     @Override
     protected void bindOption() {
         bind(Option.class).to(MockOption.class);
+        bind(ExtendedOption.class).to(MockOption.class);
     }
 
     @Override
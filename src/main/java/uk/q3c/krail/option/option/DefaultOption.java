@@ -13,10 +13,12 @@
 
 package uk.q3c.krail.option.option;
 
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import uk.q3c.krail.eventbus.MessageBus;
 import uk.q3c.krail.option.Option;
 import uk.q3c.krail.option.OptionChangeMessage;
+import uk.q3c.krail.option.OptionContext;
 import uk.q3c.krail.option.OptionEditAction;
 import uk.q3c.krail.option.OptionKey;
 import uk.q3c.krail.option.OptionPermissionFailedException;
@@ -27,13 +29,18 @@ import uk.q3c.krail.option.UserHierarchyDefault;
 import uk.q3c.krail.option.persist.OptionCache;
 import uk.q3c.krail.option.persist.OptionCacheKey;
 import uk.q3c.krail.option.persist.OptionDaoDelegate;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCache;
 import uk.q3c.krail.option.persist.cache.DefaultOptionCacheLoader;
+import uk.q3c.krail.option.persist.cache.ExtendedOptionCache;
 import uk.q3c.util.guice.SerializationSupport;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.locks.Lock;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -52,6 +59,15 @@ import static uk.q3c.krail.option.RankOption.SPECIFIC_RANK;
  * <br>
  * Permission is required to execute {@link #set(OptionKey, int, Object)}, {@link #set(OptionKey, Object)} or {@link #delete(OptionKey, int)}.  Permission is
  * verified by {@link OptionPermissionVerifier}
+ * <br>
+ * Reads take no lock.  Changes are sequenced per {@link OptionKey}, across all instances of this class, so that the {@link OptionChangeMessage}s
+ * published for an option arrive in the same order as the values were written, with each message's old value being the previous message's new value
+ * <br>
+ * The cache keys and wrapped default value for highest and lowest ranked reads are the same every time, so are created once for each option key
+ * instance this option reads, and held in a small table found by identity.  A read which hits the cache then allocates nothing here, though the
+ * cache itself may (see {@link DefaultOptionCache}).  The table holds at most {@link #MAX_HELD_READS} keys, beyond which keys are created for each
+ * read, so that option keys created afresh for every read do not fill it.  Specific rank reads create a key each time, as the rank name depends on
+ * the current user
  * <p>
  * <b>NOTE:</b> All values to and from {@link Option} are natively typed.  All values to and from {@link OptionCache}, {@link DefaultOptionCacheLoader} and
  * {@link OptionDaoDelegate} are wrapped in Optional.
@@ -59,13 +75,18 @@ import static uk.q3c.krail.option.RankOption.SPECIFIC_RANK;
  * Created by David Sowerby on 03/12/14.
  */
 
-public class DefaultOption implements Option, Serializable {
+public class DefaultOption implements ExtendedOption, Serializable {
 
+    private static final int CHANGE_LOCK_STRIPES = 64;
+    static final int MAX_HELD_READS = 1024;
+    private static final Striped<Lock> changeLocks = Striped.lock(CHANGE_LOCK_STRIPES);
     private UserHierarchy hierarchy;
     private transient OptionCache optionCache;
     private OptionPermissionVerifier permissionVerifier;
     private transient MessageBus messageBus;
     private SerializationSupport serializationSupport;
+    private final OptionKeyLocator keyLocator = new OptionKeyLocator();
+    private transient IdentityTable<RankedReads<?>> rankedReads = new IdentityTable<>(16);
 
     @Inject
     protected DefaultOption(OptionCache optionCache, @UserHierarchyDefault UserHierarchy hierarchy, OptionPermissionVerifier permissionVerifier, MessageBus messageBus, SerializationSupport serializationSupport) {
@@ -95,14 +116,20 @@ public class DefaultOption implements Option, Serializable {
     }
 
     @Override
-    public synchronized <T> void set(OptionKey<T> optionKey, int hierarchyRank, T value) {
+    public <T> void set(OptionKey<T> optionKey, int hierarchyRank, T value) {
         checkArgument(hierarchyRank >= 0);
         checkNotNull(optionKey);
         if (permissionVerifier.userHasPermission(OptionEditAction.EDIT, hierarchy, hierarchyRank, optionKey)) {
-            T oldValue = getSpecificRanked(hierarchyRank, optionKey);
-            optionCache.write(new OptionCacheKey<>(hierarchy, SPECIFIC_RANK, hierarchyRank, optionKey), Optional.of(value));
-            OptionChangeMessage<T> event = new OptionChangeMessage<>(optionKey, hierarchy, hierarchyRank, oldValue, value);
-            messageBus.publishASync(event);
+            Lock lock = changeLocks.get(optionKey);
+            lock.lock();
+            try {
+                T oldValue = getSpecificRanked(hierarchyRank, optionKey);
+                optionCache.write(new OptionCacheKey<>(hierarchy, SPECIFIC_RANK, hierarchyRank, optionKey), Optional.of(value));
+                OptionChangeMessage<T> event = new OptionChangeMessage<>(optionKey, hierarchy, hierarchyRank, oldValue, value);
+                messageBus.publishASync(event);
+            } finally {
+                lock.unlock();
+            }
         } else {
             throw new OptionPermissionFailedException("Permission to edit option refused");
         }
@@ -111,30 +138,55 @@ public class DefaultOption implements Option, Serializable {
 
     @Override
 
-    public synchronized <T> T get(OptionKey<T> optionKey) {
+    public <T> T get(OptionKey<T> optionKey) {
         checkNotNull(optionKey);
         return getRankedValue(optionKey, HIGHEST_RANK);
     }
 
     private <T> T getRankedValue(OptionKey<T> optionKey, RankOption rank) {
+        RankedReads<T> reads = rankedReads(optionKey);
         T defaultValue = optionKey.getDefaultValue();
-        Optional<T> optionalValue = optionCache.get(Optional.of(defaultValue), new OptionCacheKey<>(hierarchy, rank, 0, optionKey));
+        Optional<T> optionalValue = optionCache.get(reads.defaultValue, rank == LOWEST_RANK ? reads.lowest : reads.highest);
         if (optionalValue == null) {
             return defaultValue;
         }
         return optionalValue.orElse(defaultValue);
     }
 
+    /**
+     * The held {@link RankedReads} for {@code optionKey}, created if there are none yet.  Held by key instance, as an equal instance might have a
+     * different default value
+     */
+    @SuppressWarnings("unchecked")
+    private <T> RankedReads<T> rankedReads(OptionKey<T> optionKey) {
+        RankedReads<T> reads = (RankedReads<T>) rankedReads.get(optionKey);
+        if (reads != null) {
+            return reads;
+        }
+        reads = new RankedReads<>(hierarchy, optionKey);
+        if (rankedReads.size() >= MAX_HELD_READS) {
+            return reads;
+        }
+        return (RankedReads<T>) rankedReads.putIfAbsent(optionKey, reads);
+    }
+
+    /**
+     * @return the number of option keys for which ranked reads are held
+     */
+    int heldReads() {
+        return rankedReads.size();
+    }
+
 
     @Override
-    public synchronized <T> T getLowestRanked(OptionKey<T> optionKey) {
+    public <T> T getLowestRanked(OptionKey<T> optionKey) {
         checkNotNull(optionKey);
         return getRankedValue(optionKey, LOWEST_RANK);
     }
 
 
     @Override
-    public synchronized <T> T getSpecificRanked(int hierarchyRank, OptionKey<T> optionKey) {
+    public <T> T getSpecificRanked(int hierarchyRank, OptionKey<T> optionKey) {
         checkNotNull(optionKey);
         T defaultValue = optionKey.getDefaultValue();
         //noinspection unchecked
@@ -161,20 +213,62 @@ public class DefaultOption implements Option, Serializable {
         checkArgument(hierarchyRank >= 0);
         checkNotNull(optionKey);
         if (permissionVerifier.userHasPermission(OptionEditAction.EDIT, hierarchy, hierarchyRank, optionKey)) {
-            //noinspection unchecked
-            Optional<T> oldValueOpt = (Optional<T>) optionCache.delete(new OptionCacheKey(hierarchy, SPECIFIC_RANK, hierarchyRank, optionKey));
-            T oldValue = oldValueOpt.orElse(null);
-            OptionChangeMessage<T> event = new OptionChangeMessage<>(optionKey, hierarchy, hierarchyRank, oldValue, true);
-            messageBus.publishASync(event);
-            return oldValue;
+            Lock lock = changeLocks.get(optionKey);
+            lock.lock();
+            try {
+                //noinspection unchecked
+                Optional<T> oldValueOpt = (Optional<T>) optionCache.delete(new OptionCacheKey(hierarchy, SPECIFIC_RANK, hierarchyRank, optionKey));
+                T oldValue = oldValueOpt.orElse(null);
+                OptionChangeMessage<T> event = new OptionChangeMessage<>(optionKey, hierarchy, hierarchyRank, oldValue, true);
+                messageBus.publishASync(event);
+                return oldValue;
+            } finally {
+                lock.unlock();
+            }
         } else {
             throw new OptionPermissionFailedException("Permission to edit option refused");
         }
     }
 
+    /**
+     * Loads the highest ranked values for all the keys of {@code context} in one batch, if the cache is an {@link ExtendedOptionCache}, or one at a time
+     * if not
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void preload(OptionContext context) {
+        checkNotNull(context);
+        List<OptionCacheKey<?>> cacheKeys = new ArrayList<>();
+        for (OptionKey optionKey : keyLocator.contextKeyMap(context)
+                .keySet()) {
+            cacheKeys.add(new OptionCacheKey<>(hierarchy, HIGHEST_RANK, 0, optionKey));
+        }
+        if (optionCache instanceof ExtendedOptionCache) {
+            ((ExtendedOptionCache) optionCache).preload(cacheKeys);
+        } else {
+            for (OptionCacheKey cacheKey : cacheKeys) {
+                optionCache.get(Optional.of(cacheKey.getOptionKey()
+                        .getDefaultValue()), cacheKey);
+            }
+        }
+    }
+
     private void readObject(ObjectInputStream inputStream) throws ClassNotFoundException, IOException {
         inputStream.defaultReadObject();
+        rankedReads = new IdentityTable<>(16);
         serializationSupport.deserialize(this);
     }
 
+    private static final class RankedReads<T> {
+        private final OptionCacheKey<T> highest;
+        private final OptionCacheKey<T> lowest;
+        private final Optional<T> defaultValue;
+
+        private RankedReads(UserHierarchy hierarchy, OptionKey<T> optionKey) {
+            highest = new OptionCacheKey<>(hierarchy, HIGHEST_RANK, 0, optionKey);
+            lowest = new OptionCacheKey<>(highest, LOWEST_RANK);
+            defaultValue = Optional.of(optionKey.getDefaultValue());
+        }
+    }
+
 }
@@ -0,0 +1,33 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.option;
+
+import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.OptionContext;
+
+/**
+ * Extends {@link Option} with operations not yet part of the core API
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public interface ExtendedOption extends Option {
+
+    /**
+     * Loads the values of all the {@link uk.q3c.krail.option.OptionKey}s declared by {@code context} into the cache, so that a view reading
+     * many of them does not cause a separate cache miss for each.  Only the highest ranked values, as returned by {@link #get}, are loaded.
+     *
+     * @param context the context whose options should be loaded
+     */
+    void preload(OptionContext context);
+}
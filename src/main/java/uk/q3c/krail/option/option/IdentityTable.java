@@ -0,0 +1,129 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.option;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A table from key instance to value, compared by identity, so that a lookup does not call {@link Object#hashCode()} or {@link Object#equals(Object)}.
+ * Reads take no lock.  Keys are added in place, holding the table's own lock, and are never removed.
+ * <p>
+ * Open-addressed, with linear probing, and never more than half full, so a probe always ends at an empty slot.  The value is written before the key is
+ * published, so a reader which finds the key also sees its value.  A full table is replaced by one of twice the capacity, so adding a key takes
+ * amortised constant time
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@ThreadSafe
+final class IdentityTable<V> {
+
+    private volatile Slots slots;
+
+    IdentityTable(int initialCapacity) {
+        slots = new Slots(Integer.highestOneBit(Math.max(initialCapacity, 2) * 2 - 1));
+    }
+
+    /**
+     * @param key the key instance
+     * @return the value added for {@code key}, or null if none has been
+     */
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        Slots current = slots;
+        int mask = current.values.length - 1;
+        for (int slot = firstSlot(key, mask); ; slot = (slot + 1) & mask) {
+            Object candidate = current.keys.get(slot);
+            if (candidate == key) {
+                return (V) current.values[slot];
+            }
+            if (candidate == null) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Adds {@code value} for {@code key}, unless {@code key} already has a value
+     *
+     * @param key   the key instance
+     * @param value the value
+     * @return the value now held for {@code key}, which is {@code value} unless another was added first
+     */
+    synchronized V putIfAbsent(Object key, V value) {
+        checkNotNull(key);
+        checkNotNull(value);
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        Slots current = slots;
+        if ((current.count + 1) * 2 > current.values.length) {
+            current = current.grown();
+            slots = current;
+        }
+        current.put(key, value);
+        return value;
+    }
+
+    /**
+     * @return the number of keys added
+     */
+    int size() {
+        return slots.count;
+    }
+
+    private static int firstSlot(Object key, int mask) {
+        int hash = System.identityHashCode(key);
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Changed only while holding the lock of the table
+     */
+    private static final class Slots {
+
+        private final AtomicReferenceArray<Object> keys;
+        private final Object[] values;
+        private volatile int count;
+
+        private Slots(int capacity) {
+            keys = new AtomicReferenceArray<>(capacity);
+            values = new Object[capacity];
+        }
+
+        private Slots grown() {
+            Slots larger = new Slots(values.length * 2);
+            for (int slot = 0; slot < values.length; slot++) {
+                Object key = keys.get(slot);
+                if (key != null) {
+                    larger.put(key, values[slot]);
+                }
+            }
+            return larger;
+        }
+
+        private void put(Object key, Object value) {
+            int mask = values.length - 1;
+            int slot = firstSlot(key, mask);
+            while (keys.get(slot) != null) {
+                slot = (slot + 1) & mask;
+            }
+            values[slot] = value;
+            keys.set(slot, key);
+            count++;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.option;
+
+import uk.q3c.krail.option.OptionContext;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Lists the {@link OptionContext} implementations being compiled in the {@link OptionKeyIndex#RESOURCE} file of the class output, so that {@link
+ * OptionKeyIndex} does not have to scan the classpath for them.  It is registered as a service, so javac runs it automatically when this library is
+ * on the compile classpath.  Names already in the file from an earlier, incremental, compilation are kept if their classes still exist.
+ * <p>
+ * It processes every class but claims no annotations, so does not interfere with other processors.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@SupportedAnnotationTypes("*")
+public class OptionContextIndexProcessor extends AbstractProcessor {
+
+    private final Set<String> contexts = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement contextElement = processingEnv.getElementUtils()
+                .getTypeElement(OptionContext.class.getName());
+        if (contextElement == null) {
+            return false;
+        }
+        if (roundEnv.processingOver()) {
+            write();
+            return false;
+        }
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror contextType = types.erasure(contextElement.asType());
+        for (Element element : roundEnv.getRootElements()) {
+            collect(element, contextType, types);
+        }
+        return false;
+    }
+
+    private void collect(Element element, TypeMirror contextType, Types types) {
+        if (!(element.getKind()
+                .isClass() || element.getKind()
+                .isInterface())) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        if (types.isAssignable(types.erasure(type.asType()), contextType) && !types.isSameType(types.erasure(type.asType()), contextType)) {
+            contexts.add(processingEnv.getElementUtils()
+                    .getBinaryName(type)
+                    .toString());
+        }
+        for (Element enclosed : type.getEnclosedElements()) {
+            collect(enclosed, contextType, types);
+        }
+    }
+
+    private void write() {
+        Set<String> names = new TreeSet<>(contexts);
+        names.addAll(existing());
+        if (names.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject resource = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", OptionKeyIndex.RESOURCE);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), UTF_8)) {
+                for (String name : names) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager()
+                    .printMessage(Diagnostic.Kind.WARNING, "Unable to write option context index: " + e);
+        }
+    }
+
+    /**
+     * The names in the index written by an earlier compilation to the same output, whose classes still exist
+     */
+    private Set<String> existing() {
+        Set<String> names = new TreeSet<>();
+        try {
+            FileObject resource = processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", OptionKeyIndex.RESOURCE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.openInputStream(), UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && processingEnv.getElementUtils()
+                            .getTypeElement(line.replace('$', '.')) != null) {
+                        names.add(line);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // no earlier index
+        }
+        return names;
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.option;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.reflections.ReflectionUtils;
+import org.reflections.Reflections;
+import org.reflections.scanners.SubTypesScanner;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.ConfigurationBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.q3c.krail.i18n.I18NKey;
+import uk.q3c.krail.option.OptionContext;
+import uk.q3c.krail.option.OptionKey;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An index of the {@link OptionContext} implementations in the application, and of the {@link OptionKey}s they declare, used by {@link
+ * OptionKeyLocator}.
+ * <p>
+ * The contexts are listed at build time by {@link OptionContextIndexProcessor}, which javac runs automatically when this library is on the compile
+ * classpath, in a {@link #RESOURCE} file in each jar or class directory.  The index is read from those files the first time it is used, and held
+ * for the life of the application.  If there are none - or the system property {@link #SCAN_PROPERTY} is true - the classpath is scanned with
+ * Reflections instead, which is much slower.  A context compiled without the processor is missing from the index; when {@link OptionKeyLocator} is
+ * first asked for the keys of such a context, a warning is logged and the index is replaced, once, by a scan of the classpath.
+ * <p>
+ * The keys of each context class are read from its fields once, when first asked for, and held for as long as the class is loaded.  Instance fields
+ * are read through {@link MethodHandle}s prepared at the same time.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@ThreadSafe
+public class OptionKeyIndex {
+
+    /**
+     * The resource listing the binary names of the {@link OptionContext} implementations in a jar or class directory, one per line
+     */
+    public static final String RESOURCE = "META-INF/krail-option/option-contexts";
+    /**
+     * Set this system property to true to scan the classpath even where {@link #RESOURCE} files are present
+     */
+    public static final String SCAN_PROPERTY = "krail.option.scanClasspath";
+
+    private static Logger log = LoggerFactory.getLogger(OptionKeyIndex.class);
+    private static final ClassValue<ContextKeys> contextKeys = new ClassValue<ContextKeys>() {
+        @Override
+        protected ContextKeys computeValue(Class<?> type) {
+            return new ContextKeys(type);
+        }
+    };
+
+    private final ImmutableSet<Class<? extends OptionContext>> contexts;
+    private final boolean scanned;
+    private volatile ImmutableSet<Class<?>> keyTypes;
+
+    private OptionKeyIndex(Set<Class<? extends OptionContext>> contexts, boolean scanned) {
+        this.contexts = ImmutableSet.copyOf(contexts);
+        this.scanned = scanned;
+    }
+
+    /**
+     * @return the index for the application, built when first called
+     */
+    public static OptionKeyIndex instance() {
+        return Holder.instance;
+    }
+
+    /**
+     * Makes sure that {@code contextClass} is in the index for the application, replacing the index by a scan of the classpath if it was read from
+     * {@link #RESOURCE} files which do not list {@code contextClass}.  The check is made once for each class
+     *
+     * @param contextClass the context class about to be used
+     */
+    public static void checkIndexed(Class<? extends OptionContext> contextClass) {
+        ContextKeys keys = contextKeys.get(contextClass);
+        if (!keys.indexChecked) {
+            Holder.include(contextClass);
+            keys.indexChecked = true;
+        }
+    }
+
+    /**
+     * Builds an index from the {@link #RESOURCE} files visible to {@code classLoader}.  Listed classes which cannot be loaded are skipped
+     *
+     * @param classLoader the class loader to read resources and load classes from
+     * @return the index, or empty if there are no {@link #RESOURCE} files
+     */
+    public static Optional<OptionKeyIndex> fromIndex(ClassLoader classLoader) {
+        ImmutableSet.Builder<Class<? extends OptionContext>> contexts = ImmutableSet.builder();
+        boolean found = false;
+        try {
+            Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+            while (resources.hasMoreElements()) {
+                found = true;
+                URL resource = resources.nextElement();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.openStream(), UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (!line.isEmpty() && !line.startsWith("#")) {
+                            loadContext(classLoader, line).ifPresent(contexts::add);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read option context index. Exception was: {}", e);
+            return Optional.empty();
+        }
+        return found ? Optional.of(new OptionKeyIndex(contexts.build(), false)) : Optional.empty();
+    }
+
+    /**
+     * Builds an index by scanning the classpath of {@code classLoader} with Reflections
+     *
+     * @param classLoader the class loader whose classpath is scanned
+     * @return the index
+     */
+    public static OptionKeyIndex fromScan(ClassLoader classLoader) {
+        Set<URL> urls = new LinkedHashSet<>(ClasspathHelper.forClassLoader(classLoader));
+        urls.addAll(ClasspathHelper.forJavaClassPath());
+        Reflections reflections = new Reflections(new ConfigurationBuilder().setUrls(urls)
+                .addClassLoader(classLoader)
+                .setScanners(new SubTypesScanner()));
+        return new OptionKeyIndex(reflections.getSubTypesOf(OptionContext.class), true);
+    }
+
+    /**
+     * Returns this index if it lists {@code contextClass} or was built by a scan, otherwise logs a warning and returns an index built by scanning the
+     * classpath of {@code classLoader}
+     *
+     * @param contextClass the context class which should be in the index
+     * @param classLoader  the class loader whose classpath is scanned, if needed
+     * @return an index which is as complete as a scan would make it
+     */
+    public OptionKeyIndex completeFor(Class<? extends OptionContext> contextClass, ClassLoader classLoader) {
+        if (scanned || contexts.contains(contextClass)) {
+            return this;
+        }
+        log.warn("{} is not in the option context index, so other contexts may be missing too; scanning the classpath instead.  Compile it with {} " +
+                "on the classpath to avoid this", contextClass.getName(), OptionContextIndexProcessor.class.getName());
+        return fromScan(classLoader);
+    }
+
+    /**
+     * @return the {@link OptionContext} implementations in the application
+     */
+    public ImmutableSet<Class<? extends OptionContext>> contexts() {
+        return contexts;
+    }
+
+    /**
+     * The data types used by the {@link OptionKey}s declared in static fields of the indexed contexts.  Keys with an {@link I18NKey} or enum default are
+     * reported as I18NKey or Enum respectively
+     *
+     * @return the data types used by {@link OptionKey}s
+     */
+    public ImmutableSet<Class<?>> keyTypes() {
+        ImmutableSet<Class<?>> types = keyTypes;
+        if (types == null) {
+            ImmutableSet.Builder<Class<?>> builder = ImmutableSet.builder();
+            for (Class<? extends OptionContext> context : contexts) {
+                for (OptionKey<?> key : staticKeys(context).values()) {
+                    Object defaultValue = key.getDefaultValue();
+                    if (defaultValue instanceof I18NKey) {
+                        builder.add(I18NKey.class);
+                    } else if (defaultValue.getClass()
+                            .isEnum()) {
+                        builder.add(Enum.class);
+                    } else {
+                        builder.add(defaultValue.getClass());
+                    }
+                }
+            }
+            types = builder.build();
+            keyTypes = types;
+        }
+        return types;
+    }
+
+    /**
+     * @param contextClass the context class
+     * @return the non-null {@link OptionKey}s held in static fields of {@code contextClass} or its superclasses, mapped by {@link
+     * OptionKey#compositeKey()}
+     */
+    public static ImmutableMap<String, OptionKey<?>> staticKeys(Class<?> contextClass) {
+        return contextKeys.get(contextClass).staticKeys;
+    }
+
+    /**
+     * The {@link OptionKey}s held in the fields of {@code context} or its superclasses, static or not.  Static keys are read once per class; instance
+     * fields are read through {@link MethodHandle}s prepared when the class is first seen.  Where the class has no instance key fields, the same map is
+     * returned on every call
+     *
+     * @param context the context to read keys from
+     * @return the non-null keys of {@code context}, each mapped to the declared type of its field
+     */
+    public static ImmutableMap<OptionKey, Class<?>> contextKeyMap(OptionContext context) {
+        ContextKeys keys = contextKeys.get(context.getClass());
+        if (keys.instanceGetters.isEmpty()) {
+            return keys.staticKeyMap;
+        }
+        ImmutableMap.Builder<OptionKey, Class<?>> builder = ImmutableMap.<OptionKey, Class<?>>builder()
+                .putAll(keys.staticKeyMap);
+        OptionKey[] instanceKeys = new OptionKey[keys.instanceGetters.size()];
+        int count = 0;
+        for (MethodHandle getter : keys.instanceGetters) {
+            OptionKey key;
+            try {
+                key = (OptionKey) (Object) getter.invokeExact((Object) context);
+            } catch (Throwable e) {
+                Throwables.throwIfUnchecked(e);
+                throw new IllegalStateException("Unable to read option key field of " + context.getClass(), e);
+            }
+            if (key != null && !keys.staticKeyMap.containsKey(key) && !contains(instanceKeys, count, key)) {
+                instanceKeys[count++] = key;
+                builder.put(key, OptionKey.class);
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean contains(OptionKey[] keys, int count, OptionKey key) {
+        for (int i = 0; i < count; i++) {
+            if (keys[i].equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Optional<Class<? extends OptionContext>> loadContext(ClassLoader classLoader, String className) {
+        try {
+            Class<?> type = Class.forName(className, false, classLoader);
+            if (OptionContext.class.isAssignableFrom(type)) {
+                return Optional.of(type.asSubclass(OptionContext.class));
+            }
+            log.warn("{} is listed in the option context index, but is not an OptionContext", className);
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.debug("Option context {} in the index cannot be loaded", className);
+        }
+        return Optional.empty();
+    }
+
+    private static ClassLoader defaultClassLoader() {
+        ClassLoader classLoader = Thread.currentThread()
+                .getContextClassLoader();
+        return classLoader == null ? OptionKeyIndex.class.getClassLoader() : classLoader;
+    }
+
+    private static class Holder {
+        private static volatile OptionKeyIndex instance = load();
+
+        private static synchronized void include(Class<? extends OptionContext> contextClass) {
+            instance = instance.completeFor(contextClass, defaultClassLoader());
+        }
+
+        private static OptionKeyIndex load() {
+            long start = System.nanoTime();
+            Optional<OptionKeyIndex> index = Boolean.getBoolean(SCAN_PROPERTY) ? Optional.empty() : fromIndex(defaultClassLoader());
+            OptionKeyIndex result = index.orElseGet(() -> {
+                log.info("No option context index found, scanning the classpath.  Compile with {} on the classpath to avoid this",
+                        OptionContextIndexProcessor.class.getName());
+                return fromScan(defaultClassLoader());
+            });
+            log.info("Indexed {} option contexts in {}ms, {}", result.contexts.size(), (System.nanoTime() - start) / 1_000_000, result.scanned ?
+                    "by scanning the classpath" : "from " + RESOURCE);
+            return result;
+        }
+    }
+
+    /**
+     * The {@link OptionKey} fields of one context class.  Static keys are read once; instance fields are held as getters typed {@code (Object)Object},
+     * so that they can be called with {@link MethodHandle#invokeExact}
+     */
+    private static class ContextKeys {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+        private final ImmutableMap<String, OptionKey<?>> staticKeys;
+        private final ImmutableMap<OptionKey, Class<?>> staticKeyMap;
+        private final ImmutableList<MethodHandle> instanceGetters;
+        // set once the class has been checked against the index for the application
+        private volatile boolean indexChecked;
+
+        private ContextKeys(Class<?> type) {
+            Set<Field> fields = ReflectionUtils.getAllFields(type, field -> field.getType()
+                    .equals(OptionKey.class));
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Map<String, OptionKey<?>> keys = new LinkedHashMap<>();
+            ImmutableList.Builder<MethodHandle> instance = ImmutableList.builder();
+            for (Field field : fields) {
+                try {
+                    field.setAccessible(true);
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        OptionKey<?> key = (OptionKey<?>) field.get(null);
+                        if (key != null) {
+                            keys.putIfAbsent(key.compositeKey(), key);
+                        }
+                    } else {
+                        instance.add(lookup.unreflectGetter(field)
+                                .asType(GETTER_TYPE));
+                    }
+                } catch (IllegalAccessException | RuntimeException e) {
+                    log.warn("unable to read field {}", field.getName());
+                }
+            }
+            staticKeys = ImmutableMap.copyOf(keys);
+            Map<OptionKey, Class<?>> keyMap = new LinkedHashMap<>();
+            keys.values()
+                    .forEach(key -> keyMap.putIfAbsent(key, OptionKey.class));
+            staticKeyMap = ImmutableMap.copyOf(keyMap);
+            instanceGetters = instance.build();
+        }
+    }
+}
@@ -13,23 +13,18 @@
 
 package uk.q3c.krail.option.option;
 
-import org.reflections.ReflectionUtils;
-import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import uk.q3c.krail.i18n.I18NKey;
 import uk.q3c.krail.option.OptionContext;
 import uk.q3c.krail.option.OptionKey;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 /**
- * A utility class to find {@link OptionKey} instances by reflection
+ * A utility class to find {@link OptionKey} instances, answering from the {@link OptionKeyIndex}.  A context class missing from the index is found
+ * by {@link OptionKeyIndex#checkIndexed} when first used here
  * <p>
  * Created by David Sowerby on 07/08/15.
  */
@@ -38,38 +33,14 @@ public class OptionKeyLocator implements Serializable {
 
 
     /**
-     * Scans the entire application by reflection for instance of {@link OptionKey} and returns a Set of data types they use.  Only works with static fields,
+     * Returns the data types used by the {@link OptionKey}s of every {@link OptionContext} in the application.  Only works with static fields,
      * as {@link OptionContext} implementations are not instantiated (but there is no reason not to use static fields for Option keys
      *
      * @return Set of data types used by {@link OptionKey}
      */
     public Set<Class<?>> contextKeyTypes() {
-        Reflections reflections = new Reflections();
-        Set<Class<? extends OptionContext>> contexts = reflections.getSubTypesOf(OptionContext.class);
-        Set<Class<?>> keyTypes = new HashSet<>();
-
-        for (Class<? extends OptionContext> contextClass : contexts) {
-            Set<Field> contextFields = ReflectionUtils.getAllFields(contextClass, p -> p.getType()
-                    .equals(OptionKey.class));
-            for (Field contextField : contextFields) {
-                try {
-                    contextField.setAccessible(true);
-                    final OptionKey key = (OptionKey) contextField.get(null);
-                    Object defaultValue = key.getDefaultValue();
-                    if (defaultValue instanceof I18NKey) {
-                        keyTypes.add(I18NKey.class);
-                    } else if (defaultValue.getClass()
-                            .isEnum()) {
-                        keyTypes.add(Enum.class);
-                    } else {
-                        keyTypes.add(defaultValue.getClass());
-                    }
-                } catch (IllegalAccessException | NullPointerException e) {
-                    log.warn("unable to read field {}", contextField.getName());
-                }
-            }
-        }
-        return keyTypes;
+        return OptionKeyIndex.instance()
+                .keyTypes();
     }
 
 
@@ -77,24 +48,20 @@ public class OptionKeyLocator implements Serializable {
      * {@inheritDoc}
      */
     public Map<OptionKey, Class<?>> contextKeyMap(OptionContext context) {
-        Set<Field> contextFields = ReflectionUtils.getAllFields(context.getClass(), p -> p.getType()
-                .equals(OptionKey.class));
-        Map<OptionKey, Class<?>> keys = new HashMap<>();
-        for (Field field : contextFields) {
-            field.setAccessible(true);
+        OptionKeyIndex.checkIndexed(context.getClass());
+        return OptionKeyIndex.contextKeyMap(context);
+    }
 
-            try {
-                OptionKey key = (OptionKey) field.get(context);
-                if (key != null) {
-                    keys.put(key, field.getType());
-                }
-            } catch (IllegalAccessException e) {
-                log.error("Unable to access field {}", field.getName());
-            }
-        }
-        return keys;
+    /**
+     * Returns the {@link OptionKey}s held in the static fields of {@code contextClass}, mapped by {@link OptionKey#compositeKey()}.  Unlike {@link
+     * #contextKeyMap(OptionContext)}, this needs no instance of the context
+     *
+     * @param contextClass the context to scan
+     * @return the static keys of {@code contextClass}, mapped by composite key
+     */
+    public Map<String, OptionKey<?>> staticContextKeys(Class<? extends OptionContext> contextClass) {
+        OptionKeyIndex.checkIndexed(contextClass);
+        return OptionKeyIndex.staticKeys(contextClass);
     }
 
 }
-
-
@@ -0,0 +1,131 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.option;
+
+import uk.q3c.krail.option.OptionContext;
+import uk.q3c.krail.option.OptionKey;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Numbers each distinct {@link OptionKey} with a dense int ordinal, starting at 0, so that structures keyed by option key can use arrays, or pack the
+ * ordinal with other ids, rather than hashing and comparing the context, key and qualifiers of the {@link OptionKey} on every lookup.
+ * <p>
+ * A key is registered the first time it is asked for, together with the other static keys of its {@link OptionContext} (found by {@link
+ * OptionKeyIndex#staticKeys}), so that the keys of a context have adjacent ordinals.  Equal keys share an ordinal.  Ordinals are never reused, and are
+ * only meaningful within the running application: they must not be persisted, or sent to another instance.  A registered key is held for the life
+ * of the application, so ordinals suit the static keys of contexts, and structures which would hold the key anyway.
+ * <p>
+ * The first instance registered for each ordinal - usually the static field of its context - is found by identity, without calling {@link
+ * OptionKey#hashCode()} or {@link OptionKey#equals(Object)}, and without locking.  Other equal instances are found in a concurrent map.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@ThreadSafe
+public class OptionKeyOrdinals {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ConcurrentMap<OptionKey<?>, Integer> byKey = new ConcurrentHashMap<>();
+    private final IdentityTable<Integer> identities = new IdentityTable<>(INITIAL_CAPACITY);
+    private volatile OptionKey<?>[] keys = new OptionKey<?>[INITIAL_CAPACITY / 2];
+    private volatile int size;
+
+    OptionKeyOrdinals() {
+    }
+
+    /**
+     * @return the ordinals for the application
+     */
+    public static OptionKeyOrdinals instance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * The ordinal of {@code key}, registering it if it has not been seen before
+     *
+     * @param key the key
+     * @return the ordinal of {@code key}
+     */
+    public int ordinal(OptionKey<?> key) {
+        checkNotNull(key);
+        Integer ordinal = identities.get(key);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        Integer equal = byKey.get(key);
+        return equal != null ? equal : register(key);
+    }
+
+    /**
+     * @param ordinal an ordinal returned by {@link #ordinal}
+     * @return the key registered with {@code ordinal}
+     * @throws IndexOutOfBoundsException if {@code ordinal} has not been assigned
+     */
+    public OptionKey<?> key(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("No option key has ordinal " + ordinal);
+        }
+        return keys[ordinal];
+    }
+
+    /**
+     * @return the number of ordinals assigned, which is one more than the highest ordinal
+     */
+    public int size() {
+        return size;
+    }
+
+    private int register(OptionKey<?> key) {
+        Class<? extends OptionContext> context = key.getContext();
+        Collection<OptionKey<?>> siblings = (context == null) ? null : OptionKeyIndex.staticKeys(context)
+                .values();
+        synchronized (this) {
+            if (siblings != null) {
+                siblings.forEach(this::add);
+            }
+            return add(key);
+        }
+    }
+
+    /**
+     * Call holding the lock
+     */
+    private int add(OptionKey<?> key) {
+        Integer existing = byKey.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal = size;
+        OptionKey<?>[] current = keys;
+        if (ordinal == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[ordinal] = key;
+        keys = current;
+        identities.putIfAbsent(key, ordinal);
+        byKey.put(key, ordinal);
+        size = ordinal + 1;
+        return ordinal;
+    }
+
+    private static class Holder {
+        private static final OptionKeyOrdinals INSTANCE = new OptionKeyOrdinals();
+    }
+}
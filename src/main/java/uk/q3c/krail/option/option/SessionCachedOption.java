@@ -0,0 +1,170 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.option;
+
+import com.google.inject.Inject;
+import uk.q3c.krail.eventbus.MessageBus;
+import uk.q3c.krail.option.OptionChangeMessage;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.OptionPermissionVerifier;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.UserHierarchy;
+import uk.q3c.krail.option.UserHierarchyDefault;
+import uk.q3c.krail.option.bind.OptionModule;
+import uk.q3c.krail.option.persist.OptionCache;
+import uk.q3c.krail.option.persist.cache.ExtendedOptionCache;
+import uk.q3c.util.guice.SerializationSupport;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static uk.q3c.krail.option.RankOption.HIGHEST_RANK;
+import static uk.q3c.krail.option.RankOption.LOWEST_RANK;
+import static uk.q3c.krail.option.RankOption.SPECIFIC_RANK;
+
+/**
+ * A {@link DefaultOption} with a small cache of its own, in front of the shared {@link OptionCache}, so that an option read repeatedly through the
+ * same instance - typically by one user session - costs neither the hashing of a full cache key nor a lookup in the shared cache.  Selected with
+ * {@link OptionModule#sessionCache()}.
+ * <p>
+ * Values are held in a fixed array of {@link #SLOTS} entries, each selected by the identity of the {@link OptionKey} (option keys are almost always
+ * constants) and the rank requested.  A collision simply replaces the entry.  Each entry records the {@link ExtendedOptionCache#generation()} of the
+ * shared cache when it was read, and is used only while that is unchanged, so any change made through any {@link DefaultOption} - the same changes
+ * which publish an {@link OptionChangeMessage} - invalidates every instance's entries before the change is visible.  If the shared cache is not an
+ * {@link ExtendedOptionCache}, reads go straight to it.
+ * <p>
+ * Expiry, refresh and eviction in the shared cache do not change its generation, so each entry is also used for no longer than the maximum age
+ * given to the constructor ({@link OptionModule#configureSessionCacheMaxAge()}).  A value changed in the store by another application instance,
+ * and so seen here only when the shared cache expires or refreshes it, is therefore seen by this instance at most that much later.
+ * <p>
+ * The ranks of the {@link UserHierarchy} are taken to be fixed for the life of the instance.  Call {@link #clearSessionCache()} if they change, for
+ * example when the user logs in or out.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class SessionCachedOption extends DefaultOption {
+
+    public static final int SLOTS = 128;
+    public static final long DEFAULT_MAX_AGE_MILLIS = 1000;
+
+    private final long maxAgeNanos;
+
+    // entries are immutable, so are safe to publish without synchronisation
+    private transient volatile Entry[] entries = new Entry[SLOTS];
+
+    protected SessionCachedOption(OptionCache optionCache, UserHierarchy hierarchy, OptionPermissionVerifier permissionVerifier, MessageBus
+            messageBus, SerializationSupport serializationSupport) {
+        this(optionCache, hierarchy, permissionVerifier, messageBus, serializationSupport, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * @param maxAgeMillis the longest time, in milliseconds, for which a value is held without being read from the shared cache again
+     */
+    @Inject
+    protected SessionCachedOption(OptionCache optionCache, @UserHierarchyDefault UserHierarchy hierarchy, OptionPermissionVerifier
+            permissionVerifier, MessageBus messageBus, SerializationSupport serializationSupport, @SessionCacheMaxAge long maxAgeMillis) {
+        super(optionCache, hierarchy, permissionVerifier, messageBus, serializationSupport);
+        checkArgument(maxAgeMillis >= 0, "maxAgeMillis must not be negative");
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+    }
+
+    @Override
+    public <T> T get(OptionKey<T> optionKey) {
+        checkNotNull(optionKey);
+        return cachedValue(HIGHEST_RANK, 0, optionKey);
+    }
+
+    @Override
+    public <T> T getLowestRanked(OptionKey<T> optionKey) {
+        checkNotNull(optionKey);
+        return cachedValue(LOWEST_RANK, 0, optionKey);
+    }
+
+    @Override
+    public <T> T getSpecificRanked(int hierarchyRank, OptionKey<T> optionKey) {
+        checkNotNull(optionKey);
+        return cachedValue(SPECIFIC_RANK, hierarchyRank, optionKey);
+    }
+
+    /**
+     * Discards all the values held by this instance
+     */
+    public void clearSessionCache() {
+        entries = new Entry[SLOTS];
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cachedValue(RankOption rankOption, int rank, OptionKey<T> optionKey) {
+        OptionCache optionCache = cache();
+        if (!(optionCache instanceof ExtendedOptionCache)) {
+            return load(rankOption, rank, optionKey);
+        }
+        // read before the value, so that a change made while loading leaves the entry out of date
+        long generation = ((ExtendedOptionCache) optionCache).generation();
+        long now = System.nanoTime();
+        Entry[] current = entries;
+        int slot = slot(optionKey, rankOption, rank);
+        Entry entry = current[slot];
+        if (entry != null && entry.optionKey == optionKey && entry.rankOption == rankOption && entry.rank == rank && entry.generation ==
+                generation && now - entry.loadedAt < maxAgeNanos) {
+            return (T) entry.value;
+        }
+        T value = load(rankOption, rank, optionKey);
+        current[slot] = new Entry(optionKey, rankOption, rank, value, generation, now);
+        return value;
+    }
+
+    private <T> T load(RankOption rankOption, int rank, OptionKey<T> optionKey) {
+        switch (rankOption) {
+            case HIGHEST_RANK:
+                return super.get(optionKey);
+            case LOWEST_RANK:
+                return super.getLowestRanked(optionKey);
+            default:
+                return super.getSpecificRanked(rank, optionKey);
+        }
+    }
+
+    private int slot(OptionKey<?> optionKey, RankOption rankOption, int rank) {
+        int hash = System.identityHashCode(optionKey) ^ (rank * 0x9E3779B9) ^ rankOption.ordinal();
+        return (hash ^ (hash >>> 16)) & (SLOTS - 1);
+    }
+
+    private void readObject(ObjectInputStream inputStream) throws ClassNotFoundException, IOException {
+        inputStream.defaultReadObject();
+        entries = new Entry[SLOTS];
+    }
+
+    private static final class Entry {
+        private final OptionKey<?> optionKey;
+        private final RankOption rankOption;
+        private final int rank;
+        private final Object value;
+        private final long generation;
+        // System.nanoTime() before the value was read
+        private final long loadedAt;
+
+        private Entry(OptionKey<?> optionKey, RankOption rankOption, int rank, Object value, long generation, long loadedAt) {
+            this.optionKey = optionKey;
+            this.rankOption = rankOption;
+            this.rank = rank;
+            this.value = value;
+            this.generation = generation;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
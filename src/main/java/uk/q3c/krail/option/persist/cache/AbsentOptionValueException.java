@@ -0,0 +1,28 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+/**
+ * Thrown by {@link PresentValueCacheLoader} when there is no value for a key, so that the key is not cached with an empty value.  It is thrown for
+ * every option which has not been set, so a single instance without a stack trace is used
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+final class AbsentOptionValueException extends RuntimeException {
+
+    static final AbsentOptionValueException INSTANCE = new AbsentOptionValueException();
+
+    private AbsentOptionValueException() {
+        super("option has no value", null, false, false);
+    }
+}
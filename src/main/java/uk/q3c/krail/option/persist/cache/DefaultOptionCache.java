@@ -13,12 +13,19 @@
 
 package uk.q3c.krail.option.persist.cache;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.OptionKey;
 import uk.q3c.krail.option.RankOption;
 import uk.q3c.krail.option.UserHierarchy;
 import uk.q3c.krail.option.bind.OptionModule;
@@ -27,10 +34,23 @@ import uk.q3c.krail.option.persist.OptionCacheKey;
 import uk.q3c.krail.option.persist.OptionCacheProvider;
 import uk.q3c.krail.option.persist.OptionDao;
 import uk.q3c.krail.option.persist.OptionDaoDelegate;
+import uk.q3c.krail.option.persist.dao.BatchOptionDao;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -38,7 +58,35 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * Provides a cache implementation for {@link Option}.  The {@code get()} methods use the value of the {@link OptionCacheKey} to determine which {@link
  * UserHierarchy} to use, and whether to take the lowest, highest or specific ranked value.
  * <p>
- * Scope is set in {@link OptionModule} but it is assumed that this class needs to be thread safe.
+ * Scope is set in {@link OptionModule} but it is assumed that this class needs to be thread safe.  Reads take no lock at all, relying on the
+ * concurrency of the underlying {@link LoadingCache}.  Writes and deletes are sequenced per {@link OptionKey}, using a striped lock, so that the
+ * store and the cache cannot be left holding different values by two concurrent writes to the same option.  As a read takes no lock, it may load
+ * a value from the store just before a write, and complete after it; Guava does not cancel a load when its entry is invalidated, so each read
+ * compares the generation of the option's stripe before and after loading, and removes a value loaded across a change.
+ * <p>
+ * Options without a value, which make up most reads in a typical application, are not held in the main cache, where they would push out real
+ * values.  They are recorded instead in a separate tier of keys, with its own size and expiry (see {@link AbsentOptionCacheConfig}), so the hit rate
+ * for real values does not depend on how many unset options are read.  An entry in that tier is removed when a value is written for any rank of the
+ * option, and one recorded by a read which overlapped a write is discarded, as the read may have missed the value written.
+ * <p>
+ * The highest and lowest ranked entries are derived from the specific ranks of an option, and a write or delete of one rank updates them in place
+ * rather than removing them to be loaded again.  An index records, for each derived entry, the rank it was resolved from and the order of the ranks
+ * at that time.  A write to a rank which takes precedence over that source, or to the source itself, replaces the derived value with the value
+ * written; a change to a rank further down the order, or to a rank outside it, leaves it untouched.  Where the index has no record of a derived
+ * entry, the entry has been replaced since it was recorded, or its source rank has been deleted, the entry is resolved again from the store, with
+ * one call if the {@link OptionDao} is a {@link BatchOptionDao}.  Derived entries which are not cached are left alone.
+ * <p>
+ * A read which hits the cache returns the Optional held in it, and allocates nothing itself.  A Guava cache bounded by size or weight, or expiring
+ * after access, does allocate on each hit, as it queues a node recording the read for its eviction order; a Caffeine cache (see {@link
+ * CaffeineOptionCacheEngine}) records reads in a fixed buffer instead.  The same applies to reads of unset options, which hit the absent tier.
+ * <p>
+ * {@link #generation()} changes on every write, delete and flush, once before the cache is updated and once after, so that a copy of a value taken
+ * with the generation read beforehand can be trusted while the generation is unchanged.
+ * <p>
+ * Where several application instances share a store, each write and delete is published to the others by the {@link OptionCacheInvalidationBus},
+ * and invalidations received from them remove the key, and the highest and lowest ranked entries derived from it, as a local write does.  A read
+ * which loads a value while the same option is written, deleted or invalidated may have read the store before the change, so a value loaded then is
+ * not kept in the cache.
  * <p>
  * <b>NOTE:</b> All values to and from {@link Option} are natively typed.  All values to and from {@link OptionCache}, {@link DefaultOptionCacheLoader} and
  * {@link OptionDaoDelegate} are wrapped in Optional.
@@ -48,16 +96,52 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 
 @ThreadSafe
-public class DefaultOptionCache implements OptionCache {
+public class DefaultOptionCache implements ExtendedOptionCache {
 
+    private static final int WRITE_LOCK_STRIPES = 64;
+    private static final int DERIVATION_INDEX_SIZE = 10_000;
     private static Logger log = LoggerFactory.getLogger(DefaultOptionCache.class);
     private final LoadingCache<OptionCacheKey, Optional<?>> cache;
+    private final Cache<OptionCacheKey, Boolean> absent;
+    private final AtomicLong writeGeneration = new AtomicLong();
+    private final AtomicLongArray keyGenerations = new AtomicLongArray(WRITE_LOCK_STRIPES);
+    private final Cache<OptionCacheKey, Derivation> derivations = CacheBuilder.newBuilder()
+            .maximumSize(DERIVATION_INDEX_SIZE)
+            .build();
+    private final Striped<Lock> writeLocks = Striped.lock(WRITE_LOCK_STRIPES);
+    private final OptionCacheInvalidationBus invalidationBus;
     private OptionDao daoWrapper;
 
-    @Inject
     public DefaultOptionCache(OptionDao daoWrapper, OptionCacheProvider cacheProvider) {
+        this(daoWrapper, cacheProvider, defaultAbsentConfiguration());
+    }
+
+    public DefaultOptionCache(OptionDao daoWrapper, OptionCacheProvider cacheProvider, @AbsentOptionCacheConfig GuavaCacheConfiguration
+            absentConfiguration) {
+        this(daoWrapper, cacheProvider, absentConfiguration, new LocalOptionCacheInvalidationBus());
+    }
+
+    @Inject
+    public DefaultOptionCache(OptionDao daoWrapper, OptionCacheProvider cacheProvider, @AbsentOptionCacheConfig GuavaCacheConfiguration
+            absentConfiguration, OptionCacheInvalidationBus invalidationBus) {
         this.daoWrapper = daoWrapper;
+        this.invalidationBus = invalidationBus;
         cache = cacheProvider.get();
+        absent = absentConfiguration.builder()
+                .build();
+        invalidationBus.subscribe(this::invalidate);
+    }
+
+    /**
+     * The configuration of the absent tier used unless {@link AbsentOptionCacheConfig} is bound otherwise: up to 50,000 keys, each held for 10
+     * minutes
+     *
+     * @return a new GuavaCacheConfiguration instance
+     */
+    public static GuavaCacheConfiguration defaultAbsentConfiguration() {
+        return new GuavaCacheConfiguration().maximumSize(50_000)
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .recordStats();
     }
 
     /**
@@ -68,29 +152,43 @@ public class DefaultOptionCache implements OptionCache {
      * @param <T>      the type of the value
      */
     @Override
-    public synchronized <T> void write(OptionCacheKey<T> cacheKey, Optional<T> value) {
+    public <T> void write(OptionCacheKey<T> cacheKey, Optional<T> value) {
         checkNotNull(cacheKey);
         checkNotNull(value);
-        // write to store first just in case there's a problem
-        log.debug("writing value {} for cacheKey {} via option dao ", value, cacheKey);
-        daoWrapper.write(cacheKey, value);
+        Lock lock = writeLock(cacheKey);
+        lock.lock();
+        try {
+            // write to store first just in case there's a problem
+            log.debug("writing value {} for cacheKey {} via option dao ", value, cacheKey);
+            daoWrapper.write(cacheKey, value);
+            keyGenerations.incrementAndGet(stripe(cacheKey));
+            writeGeneration.incrementAndGet();
 
-        //invalidate highest / lowest first - cache does clean up as part of write
-        cache.invalidate(new OptionCacheKey<>(cacheKey, RankOption.HIGHEST_RANK));
-        cache.invalidate(new OptionCacheKey<>(cacheKey, RankOption.LOWEST_RANK));
-        cache.put(cacheKey, value);
+            updateDerived(cacheKey, value, RankOption.HIGHEST_RANK);
+            updateDerived(cacheKey, value, RankOption.LOWEST_RANK);
+            absent.invalidate(cacheKey);
+            if (value.isPresent()) {
+                cache.put(cacheKey, value);
+            } else {
+                cache.invalidate(cacheKey);
+            }
+            writeGeneration.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+        invalidationBus.publish(cacheKey);
     }
 
     @SuppressWarnings("unchecked")
     @Override
 
-    public synchronized <T> Optional<T> get(Optional<T> defaultValue, OptionCacheKey<T> optionCacheKey) {
+    public <T> Optional<T> get(Optional<T> defaultValue, OptionCacheKey<T> optionCacheKey) {
         checkNotNull(optionCacheKey);
         checkNotNull(defaultValue);
         //this will trigger the cacheLoader if not already in the cache
         Optional<T> optionalValue;
         try {
-            optionalValue = (Optional<T>) cache.getUnchecked(optionCacheKey);
+            optionalValue = (Optional<T>) lookup(optionCacheKey);
             if (!optionalValue.isPresent()) {
                 return defaultValue;
             }
@@ -98,10 +196,7 @@ public class DefaultOptionCache implements OptionCache {
             log.error("Returning default value of {}, exception or error was thrown during load. Exception was:  {}", defaultValue.get(), e);
             return defaultValue;
         }
-        if (optionalValue.get()
-                .getClass()
-                .isAssignableFrom(defaultValue.get()
-                        .getClass())) {
+        if (hasDefaultType(optionalValue.get(), defaultValue.get())) {
             return optionalValue;
         } else {
             log.error("Returning default, option value for {} is of type for {}, but should be of type {}", optionCacheKey, optionalValue.get()
@@ -112,27 +207,239 @@ public class DefaultOptionCache implements OptionCache {
     }
 
 
+    /**
+     * True if {@code value} is of a type which can hold {@code defaultValue}.  Values are almost always of exactly the type of the default, which is
+     * checked first, without the more general {@link Class#isAssignableFrom}
+     */
+    private static boolean hasDefaultType(Object value, Object defaultValue) {
+        Class<?> valueType = value.getClass();
+        Class<?> defaultType = defaultValue.getClass();
+        return valueType == defaultType || valueType.isAssignableFrom(defaultType);
+    }
+
+    /**
+     * Returns the cached value of {@code cacheKey}, loading it if necessary, or an empty Optional if it has no value, in which case the key is
+     * recorded in the absent tier
+     */
+    private Optional<?> lookup(OptionCacheKey<?> cacheKey) {
+        if (absent.getIfPresent(cacheKey) != null) {
+            return Optional.empty();
+        }
+        int stripe = stripe(cacheKey);
+        long keyGeneration = keyGenerations.get(stripe);
+        long generation = writeGeneration.get();
+        Optional<?> value;
+        try {
+            value = cache.getUnchecked(cacheKey);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof AbsentOptionValueException) {
+                recordAbsent(cacheKey, generation);
+                return Optional.empty();
+            }
+            throw e;
+        }
+        if (!value.isPresent()) {
+            // loaded by a cache which does not use PresentValueCacheLoader, or refreshed after the value was removed
+            cache.asMap()
+                    .remove(cacheKey, value);
+            recordAbsent(cacheKey, generation);
+        } else if (keyGenerations.get(stripe) != keyGeneration) {
+            // the option changed while this was read, and a value loaded before the change may have been stored after the invalidation
+            cache.asMap()
+                    .remove(cacheKey, value);
+        }
+        return value;
+    }
+
+    /**
+     * Records {@code cacheKey} as having no value, unless a write has happened since {@code generation} was read, as the value written might then
+     * have been missed
+     */
+    private void recordAbsent(OptionCacheKey<?> cacheKey, long generation) {
+        absent.put(cacheKey, Boolean.TRUE);
+        if (writeGeneration.get() != generation) {
+            absent.invalidate(cacheKey);
+        }
+    }
+
+    /**
+     * Uses {@link LoadingCache#getAll} to load any of {@code cacheKeys} not already cached, which {@link DefaultOptionCacheLoader#loadAll} retrieves
+     * with one DAO call.  Keys which are not in the cache once the batch has loaded have no value, and are recorded in the absent tier.
+     *
+     * @param cacheKeys the keys to load
+     */
     @Override
+    public void preload(Collection<? extends OptionCacheKey<?>> cacheKeys) {
+        checkNotNull(cacheKeys);
+        List<OptionCacheKey<?>> toLoad = new ArrayList<>();
+        for (OptionCacheKey<?> cacheKey : cacheKeys) {
+            if (absent.getIfPresent(cacheKey) == null) {
+                toLoad.add(cacheKey);
+            }
+        }
+        long generation = writeGeneration.get();
+        try {
+            cache.getAll(toLoad);
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            // expected when some keys have no value, which PresentValueCacheLoader leaves out of the result
+        } catch (Exception e) {
+            log.warn("Unable to preload {} option values, they will be loaded when used. Exception was: {}", cacheKeys.size(), e);
+            return;
+        }
+        Set<OptionCacheKey<?>> missing = new HashSet<>(toLoad);
+        missing.removeAll(cache.asMap()
+                .keySet());
+        for (OptionCacheKey<?> cacheKey : missing) {
+            recordAbsent(cacheKey, generation);
+        }
+    }
 
-    public synchronized Optional<?> delete(OptionCacheKey<?> optionCacheKey) {
-        checkNotNull(optionCacheKey);
-        // delete from store first just in case there's a problem
-        Optional<?> result = daoWrapper.deleteValue(optionCacheKey);
 
-        //invalidate highest / lowest & specific as these are all now invalid
-        cache.invalidate(new OptionCacheKey(optionCacheKey, RankOption.HIGHEST_RANK));
-        cache.invalidate(new OptionCacheKey(optionCacheKey, RankOption.LOWEST_RANK));
-        cache.invalidate(optionCacheKey);
+    @Override
 
-        // explicit call, there is no write called to trigger clean up
-        cache.cleanUp();
+    public Optional<?> delete(OptionCacheKey<?> optionCacheKey) {
+        checkNotNull(optionCacheKey);
+        Optional<?> result;
+        Lock lock = writeLock(optionCacheKey);
+        lock.lock();
+        try {
+            // delete from store first just in case there's a problem
+            result = daoWrapper.deleteValue(optionCacheKey);
+            keyGenerations.incrementAndGet(stripe(optionCacheKey));
+            writeGeneration.incrementAndGet();
 
+            updateDerived(optionCacheKey, Optional.empty(), RankOption.HIGHEST_RANK);
+            updateDerived(optionCacheKey, Optional.empty(), RankOption.LOWEST_RANK);
+            cache.invalidate(optionCacheKey);
+            writeGeneration.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+        invalidationBus.publish(optionCacheKey);
         return result;
     }
 
+    /**
+     * Removes {@code cacheKey}, and the highest and lowest ranked entries derived from it, after another application instance has written or
+     * deleted its value
+     */
+    private void invalidate(OptionCacheKey<?> cacheKey) {
+        Lock lock = writeLock(cacheKey);
+        lock.lock();
+        try {
+            keyGenerations.incrementAndGet(stripe(cacheKey));
+            writeGeneration.incrementAndGet();
+            OptionCacheKey<?> highest = new OptionCacheKey<>(cacheKey, RankOption.HIGHEST_RANK);
+            OptionCacheKey<?> lowest = new OptionCacheKey<>(cacheKey, RankOption.LOWEST_RANK);
+            absent.invalidate(highest);
+            absent.invalidate(lowest);
+            absent.invalidate(cacheKey);
+            cache.invalidate(highest);
+            cache.invalidate(lowest);
+            cache.invalidate(cacheKey);
+            derivations.invalidate(highest);
+            derivations.invalidate(lowest);
+            writeGeneration.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Brings the {@code rankOption} entry derived from {@code cacheKey} up to date with {@code value}, which has just been written to (or, if empty,
+     * deleted from) the rank of {@code cacheKey}.  Must be called while holding the write lock for {@code cacheKey}
+     */
+    private void updateDerived(OptionCacheKey<?> cacheKey, Optional<?> value, RankOption rankOption) {
+        OptionCacheKey<?> derived = new OptionCacheKey<>(cacheKey, rankOption);
+        Optional<?> cached = cache.asMap()
+                .get(derived);
+        if (cached == null && absent.getIfPresent(derived) == null) {
+            derivations.invalidate(derived);
+            return;
+        }
+        Derivation derivation = derivations.getIfPresent(derived);
+        if (derivation != null && derivation.describes(cached)) {
+            int written = derivation.ranks.indexOf(cacheKey.getRequestedRankName());
+            int source = derivation.source == null ? derivation.ranks.size() : derivation.ranks.indexOf(derivation.source);
+            if (written < 0 || written > source || (written < source && !value.isPresent())) {
+                return;
+            }
+            if (value.isPresent()) {
+                storeDerived(derived, new Derivation(derivation.ranks, cacheKey.getRequestedRankName(), value));
+                return;
+            }
+        }
+        try {
+            storeDerived(derived, resolveDerived(derived));
+        } catch (RuntimeException e) {
+            log.warn("Unable to resolve {} after a write, it will be loaded when next used. Exception was: {}", derived, e);
+            derivations.invalidate(derived);
+            absent.invalidate(derived);
+            cache.invalidate(derived);
+        }
+    }
+
+    /**
+     * Reads each rank of the option from the store, and takes the first with a value, in the order given by the rank option of {@code derived}
+     */
+    private Derivation resolveDerived(OptionCacheKey<?> derived) {
+        ImmutableList<String> ranks = derived.getHierarchy()
+                .ranksForCurrentUser();
+        if (derived.getRankOption() == RankOption.LOWEST_RANK) {
+            ranks = ranks.reverse();
+        }
+        List<OptionCacheKey<?>> rankKeys = new ArrayList<>(ranks.size());
+        for (String rank : ranks) {
+            rankKeys.add(new OptionCacheKey<>(derived, rank, RankOption.SPECIFIC_RANK));
+        }
+        Map<OptionCacheKey<?>, Optional<?>> values;
+        if (daoWrapper instanceof BatchOptionDao) {
+            values = ((BatchOptionDao) daoWrapper).getValues(rankKeys);
+        } else {
+            values = new HashMap<>();
+            for (OptionCacheKey<?> rankKey : rankKeys) {
+                values.put(rankKey, daoWrapper.getValue(rankKey));
+            }
+        }
+        for (OptionCacheKey<?> rankKey : rankKeys) {
+            Optional<?> value = values.get(rankKey);
+            if (value != null && value.isPresent()) {
+                return new Derivation(ranks, rankKey.getRequestedRankName(), value);
+            }
+        }
+        return new Derivation(ranks, null, Optional.empty());
+    }
+
+    private void storeDerived(OptionCacheKey<?> derived, Derivation derivation) {
+        if (derivation.value.isPresent()) {
+            absent.invalidate(derived);
+            cache.put(derived, derivation.value);
+        } else {
+            cache.invalidate(derived);
+            absent.put(derived, Boolean.TRUE);
+        }
+        derivations.put(derived, derivation);
+    }
+
+    /**
+     * All ranks and hierarchies of an {@link OptionKey} share a lock, as a write to any one rank invalidates the highest and lowest ranked entries
+     * derived from it
+     */
+    private Lock writeLock(OptionCacheKey<?> cacheKey) {
+        return writeLocks.getAt(stripe(cacheKey));
+    }
+
+    /**
+     * The index into {@link #writeLocks} and {@link #keyGenerations} for {@code cacheKey}, shared by all ranks and hierarchies of its {@link OptionKey}
+     */
+    private static int stripe(OptionCacheKey<?> cacheKey) {
+        return Math.floorMod(cacheKey.getOptionKey()
+                .hashCode(), WRITE_LOCK_STRIPES);
+    }
+
 
     @Override
-    public synchronized Optional<?> getIfPresent(OptionCacheKey<?> optionCacheKey) {
+    public Optional<?> getIfPresent(OptionCacheKey<?> optionCacheKey) {
         checkNotNull(optionCacheKey);
         Optional<?> cachedValue = cache.getIfPresent(optionCacheKey);
         if (cachedValue == null || (!cachedValue.isPresent())) {
@@ -145,7 +452,7 @@ public class DefaultOptionCache implements OptionCache {
     }
 
     @Override
-    public synchronized CacheStats stats() {
+    public CacheStats stats() {
         return cache.stats();
     }
 
@@ -154,29 +461,90 @@ public class DefaultOptionCache implements OptionCache {
         return cache.size();
     }
 
+    /**
+     * @return statistics for the tier of options without a value
+     */
+    public CacheStats absentStats() {
+        return absent.stats();
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void clear() {
+    public void clear() {
         flush();
         cleanup();
     }
 
     @Override
-    public synchronized void flush() {
+    public void flush() {
+        writeGeneration.incrementAndGet();
         cache.invalidateAll();
+        absent.invalidateAll();
+        derivations.invalidateAll();
+        writeGeneration.incrementAndGet();
     }
 
     @Override
-    public synchronized void cleanup() {
+    public void cleanup() {
         cache.cleanUp();
+        absent.cleanUp();
+        derivations.cleanUp();
     }
 
+    @Override
     public ConcurrentMap<OptionCacheKey, Optional<?>> asMap() {
         return cache.asMap();
     }
 
+    @Override
+    public long generation() {
+        return writeGeneration.get();
+    }
 
-}
+    @Override
+    public Set<OptionCacheKey> absentKeys() {
+        return absent.asMap()
+                .keySet();
+    }
 
+    @Override
+    public void seed(OptionCacheKey<?> cacheKey, Optional<?> value) {
+        checkNotNull(cacheKey);
+        checkNotNull(value);
+        if (value.isPresent()) {
+            if (absent.getIfPresent(cacheKey) == null) {
+                cache.asMap()
+                        .putIfAbsent(cacheKey, value);
+            }
+        } else if (!cache.asMap()
+                .containsKey(cacheKey)) {
+            recordAbsent(cacheKey, writeGeneration.get());
+        }
+    }
+
+    /**
+     * How a highest or lowest ranked entry was resolved: the ranks in order of precedence, the rank the value was taken from, or null if no rank has
+     * a value, and the value itself.  The value is compared by identity with the cached value, so that an entry replaced by any other means, a
+     * reload for example, is not mistaken for the one described
+     */
+    private static class Derivation {
+        private final ImmutableList<String> ranks;
+        private final String source;
+        private final Optional<?> value;
+
+        private Derivation(ImmutableList<String> ranks, String source, Optional<?> value) {
+            this.ranks = ranks;
+            this.source = source;
+            this.value = value;
+        }
+
+        /**
+         * @param cached the cached value of the derived entry, or null if the entry is in the absent tier
+         */
+        private boolean describes(Optional<?> cached) {
+            return cached == null ? !value.isPresent() : cached == value;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * An {@link OptionCacheInvalidationBus} which sends invalidations to the other application instances through an {@link
+ * OptionCacheInvalidationTransport}.
+ * <p>
+ * Invalidations are coalesced: keys published within the configured delay of the first are gathered into a set, so that a key written repeatedly is
+ * sent once, and the set is sent as one message, or several if it exceeds the configured batch size.  Only the key written or deleted is sent, as the
+ * receiver derives the highest and lowest ranked keys from it.  Keys are sent by name, and re-created by the receiver with {@link
+ * OptionCacheKeyResolver}; a key whose hierarchy, context or key does not exist in the receiver cannot be cached there, and is ignored.
+ * <p>
+ * A failure to send is logged rather than thrown, as the value has already been written to the store.  Other instances then read the old value until
+ * their cache entries expire, so the option cache should still be configured with an expiry when instances share a store.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@ThreadSafe
+public class DefaultOptionCacheInvalidationBus implements OptionCacheInvalidationBus {
+
+    private static final int MAGIC = 0x4B4F4349;
+    private static final int VERSION = 1;
+    private static Logger log = LoggerFactory.getLogger(DefaultOptionCacheInvalidationBus.class);
+
+    private final OptionCacheInvalidationTransport transport;
+    private final OptionCacheKeyResolver keyResolver;
+    private final OptionCacheInvalidationConfiguration configuration;
+    private final Set<OptionCacheKey<?>> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final List<Consumer<OptionCacheKey<?>>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    @Inject
+    public DefaultOptionCacheInvalidationBus(OptionCacheInvalidationTransport transport, OptionCacheKeyResolver keyResolver,
+                                             OptionCacheInvalidationConfiguration configuration) {
+        this.transport = transport;
+        this.keyResolver = keyResolver;
+        this.configuration = configuration;
+        scheduler = configuration.getDelayMillis() == 0 ? null : Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("option-cache-invalidation-%d")
+                .build());
+        transport.connect(this::receive);
+    }
+
+    @Override
+    public void publish(OptionCacheKey<?> cacheKey) {
+        checkNotNull(cacheKey);
+        pending.add(cacheKey);
+        if (scheduler == null) {
+            flush();
+        } else if (scheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                scheduled.set(false);
+                flush();
+            }, configuration.getDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<OptionCacheKey<?>> listener) {
+        listeners.add(checkNotNull(listener));
+    }
+
+    @Override
+    public void flush() {
+        List<OptionCacheKey<?>> batch = new ArrayList<>();
+        for (OptionCacheKey<?> cacheKey : pending) {
+            if (pending.remove(cacheKey)) {
+                batch.add(cacheKey);
+                if (batch.size() == configuration.getMaxBatchSize()) {
+                    send(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void send(List<OptionCacheKey<?>> batch) {
+        try {
+            transport.send(encode(batch));
+            log.debug("Sent invalidation of {} option cache keys", batch.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to send invalidation of {} option cache keys, other instances will read old values until they expire. Exception was: {}",
+                    batch.size(), e);
+        }
+    }
+
+    private byte[] encode(List<OptionCacheKey<?>> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + batch.size() * 96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(configuration.getNodeId());
+            out.writeInt(batch.size());
+            for (OptionCacheKey<?> cacheKey : batch) {
+                OptionKey<?> optionKey = cacheKey.getOptionKey();
+                out.writeUTF(cacheKey.getHierarchy()
+                        .persistenceName());
+                out.writeByte(cacheKey.getRankOption()
+                        .ordinal());
+                out.writeBoolean(cacheKey.getRequestedRankName() != null);
+                if (cacheKey.getRequestedRankName() != null) {
+                    out.writeUTF(cacheKey.getRequestedRankName());
+                }
+                out.writeUTF(optionKey.getContext()
+                        .getName());
+                out.writeUTF(optionKey.compositeKey());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private void receive(byte[] message) {
+        List<OptionCacheKey<?>> cacheKeys = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Ignoring a message which is not an option cache invalidation");
+                return;
+            }
+            if (configuration.getNodeId()
+                    .equals(in.readUTF())) {
+                return;
+            }
+            RankOption[] rankOptions = RankOption.values();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String hierarchy = in.readUTF();
+                RankOption rankOption = rankOptions[in.readByte()];
+                String rankName = in.readBoolean() ? in.readUTF() : null;
+                Optional<OptionCacheKey<?>> cacheKey = keyResolver.resolve(hierarchy, rankOption, rankName, in.readUTF(), in.readUTF());
+                cacheKey.ifPresent(cacheKeys::add);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring an option cache invalidation which cannot be read. Exception was: {}", e);
+            return;
+        }
+        log.debug("Received invalidation of {} option cache keys", cacheKeys.size());
+        for (OptionCacheKey<?> cacheKey : cacheKeys) {
+            for (Consumer<OptionCacheKey<?>> listener : listeners) {
+                listener.accept(cacheKey);
+            }
+        }
+    }
+}
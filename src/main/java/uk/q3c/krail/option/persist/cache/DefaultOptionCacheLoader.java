@@ -14,16 +14,29 @@
 package uk.q3c.krail.option.persist.cache;
 
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.q3c.krail.option.UserHierarchy;
 import uk.q3c.krail.option.persist.OptionCacheKey;
 import uk.q3c.krail.option.persist.OptionDao;
+import uk.q3c.krail.option.persist.dao.BatchOptionDao;
 import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -38,15 +51,45 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * This implementation calls for all assigned values in a hierarchy for the current user, before selecting the one
  * with the highest or lowest rank.  This is because it is usually more efficient for I/O to load this way
  * <p>
+ * If the DAO is a {@link BatchOptionDao}, {@link #loadAll} retrieves all the keys requested by {@link LoadingCache#getAll} in one call
+ * <p>
+ * {@link #reload} runs on the executor bound with {@link OptionCacheReloadExecutor}, so that when the cache is configured with refreshAfterWrite, a
+ * stale value is returned while its replacement is loaded in the background
+ * <p>
  * Created by David Sowerby on 19/02/15.
  */
 public class DefaultOptionCacheLoader extends CacheLoader<OptionCacheKey, Optional<?>> implements Serializable {
+    public static final int RELOAD_THREADS = 2;
     private static Logger log = LoggerFactory.getLogger(DefaultOptionCacheLoader.class);
     private final OptionDao daoWrapper;
+    private final Executor reloadExecutor;
 
-    @Inject
+    /**
+     * Reloads on an executor shared by all the loaders constructed this way, as {@link #newReloadExecutor()}
+     */
     public DefaultOptionCacheLoader(OptionDao daoWrapper) {
+        this(daoWrapper, SharedReloadExecutor.INSTANCE);
+    }
+
+    @Inject
+    public DefaultOptionCacheLoader(OptionDao daoWrapper, @OptionCacheReloadExecutor Executor reloadExecutor) {
         this.daoWrapper = daoWrapper;
+        this.reloadExecutor = reloadExecutor;
+    }
+
+    /**
+     * A small executor for {@link #reload}, of {@link #RELOAD_THREADS} daemon threads which end when idle, so that reloads neither compete with
+     * other work on a common pool nor keep the JVM running
+     *
+     * @return a new executor
+     */
+    public static Executor newReloadExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(RELOAD_THREADS, RELOAD_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new
+                ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("option-cache-reload-%d")
+                .build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     /**
@@ -55,8 +98,8 @@ public class DefaultOptionCacheLoader extends CacheLoader<OptionCacheKey, Option
      * @param cacheKey the key whose value should be loaded.  Loading takes account of the setting of RankOption in the {@code cacheKey}
      * @return the value associated with {@code key}; The interface requires that this <b>must not be null</b> so this
      * implementation uses an Optional to return the value - which may be empty, as it is legitimate for there to be no
-     * value in persistence - this also has the advantage that the cache then knows that there is no value for this key
-     * and won't need to load again to find out.
+     * value in persistence - {@link DefaultOptionCache} then records that there is no value for this key, in a tier apart from
+     * the main cache, and won't need to load again to find out.
      * @throws Exception            if unable to load the result
      * @throws InterruptedException if this method is interrupted. {@code InterruptedException} is treated like any
      *                              other {@code Exception} in all respects except that, when it is caught, the thread's interrupt status is set
@@ -69,4 +112,47 @@ public class DefaultOptionCacheLoader extends CacheLoader<OptionCacheKey, Option
         return daoWrapper.getValue(cacheKey);
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Loads the values for all of {@code cacheKeys} with a single call to a {@link BatchOptionDao}.  If the DAO does not support batch loading,
+     * the call is passed to the super class, which throws an {@link UnsupportedLoadingOperationException} so that the cache loads each key in turn
+     *
+     * @param cacheKeys the keys whose values should be loaded.  Loading takes account of the setting of RankOption in each key
+     * @return a map containing an entry for every one of {@code cacheKeys}, with an empty Optional where there is no value in persistence
+     * @throws Exception if unable to load the result
+     */
+    @Override
+    public Map<OptionCacheKey, Optional<?>> loadAll(Iterable<? extends OptionCacheKey> cacheKeys) throws Exception {
+        checkNotNull(cacheKeys);
+        if (!(daoWrapper instanceof BatchOptionDao)) {
+            return super.loadAll(cacheKeys);
+        }
+        List<OptionCacheKey<?>> keys = new ArrayList<>();
+        for (OptionCacheKey cacheKey : cacheKeys) {
+            keys.add(cacheKey);
+        }
+        log.debug("retrieving values for {} keys", keys.size());
+        return new HashMap<>(((BatchOptionDao) daoWrapper).getValues(keys));
+    }
+
+    /**
+     * Reloads a value asynchronously, using the executor bound with {@link OptionCacheReloadExecutor}.  The cache continues to return {@code
+     * oldValue} until the reload completes
+     *
+     * @param cacheKey the key whose value should be reloaded
+     * @param oldValue the value currently cached
+     * @return a future which completes with the new value
+     */
+    @Override
+    public ListenableFuture<Optional<?>> reload(OptionCacheKey cacheKey, Optional<?> oldValue) {
+        checkNotNull(cacheKey);
+        log.debug("reloading value for {}", cacheKey);
+        ListenableFutureTask<Optional<?>> task = ListenableFutureTask.create(() -> load(cacheKey));
+        reloadExecutor.execute(task);
+        return task;
+    }
+
+    private static final class SharedReloadExecutor {
+        private static final Executor INSTANCE = newReloadExecutor();
+    }
+}
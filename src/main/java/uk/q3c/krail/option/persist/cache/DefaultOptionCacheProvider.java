@@ -17,6 +17,7 @@ import com.google.common.cache.LoadingCache;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.q3c.krail.option.bind.OptionModule;
 import uk.q3c.krail.option.persist.OptionCacheConfig;
 import uk.q3c.krail.option.persist.OptionCacheKey;
 import uk.q3c.krail.option.persist.OptionCacheProvider;
@@ -25,29 +26,38 @@ import uk.q3c.util.guava.GuavaCacheConfiguration;
 import java.util.Optional;
 
 /**
- * Provider for a {@link LoadingCache} with a {@link DefaultOptionCacheLoader}
+ * Provider for a {@link LoadingCache} with a {@link DefaultOptionCacheLoader}.  The loader is wrapped by a {@link PresentValueCacheLoader}, so that
+ * options without a value are held by the absent tier of {@link DefaultOptionCache} rather than taking space in this cache
+ * <p>
+ * The cache itself is built by the {@link OptionCacheEngine} selected in {@link OptionModule}, which applies the {@link OptionValueWeigher} if the
+ * cache is bounded by weight
  * <p>
  * Created by David Sowerby on 21/02/15.
  */
 public class DefaultOptionCacheProvider implements OptionCacheProvider {
     private static Logger log = LoggerFactory.getLogger(DefaultOptionCacheProvider.class);
-    private final GuavaCacheConfiguration cacheConfiguration;
+    private final OptionCacheEngine cacheEngine;
     private final DefaultOptionCacheLoader cacheLoader;
+    private final OptionValueWeigher weigher;
 
-    @Inject
     protected DefaultOptionCacheProvider(DefaultOptionCacheLoader cacheLoader, @OptionCacheConfig GuavaCacheConfiguration
             cacheConfiguration) {
+        this(cacheLoader, new GuavaOptionCacheEngine(cacheConfiguration), new DefaultOptionValueWeigher());
+    }
+
+    @Inject
+    protected DefaultOptionCacheProvider(DefaultOptionCacheLoader cacheLoader, OptionCacheEngine cacheEngine, OptionValueWeigher weigher) {
         this.cacheLoader = cacheLoader;
-        this.cacheConfiguration = cacheConfiguration;
+        this.cacheEngine = cacheEngine;
+        this.weigher = weigher;
     }
 
     @Override
 
     public LoadingCache<OptionCacheKey, Optional<?>> get() {
-        //noinspection unchecked
-        log.debug("returning new instance of cache");
-        return cacheConfiguration.builder()
-                .build(cacheLoader);
+        log.debug("returning new instance of cache from {}", cacheEngine.getClass()
+                .getSimpleName());
+        return cacheEngine.build(new PresentValueCacheLoader(cacheLoader), weigher);
     }
 
 
@@ -0,0 +1,223 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.persist.OptionCache;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionDao;
+import uk.q3c.krail.option.persist.dao.BatchOptionDao;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Saves the keys held by an {@link ExtendedOptionCache}, including the keys known to have no value, to a binary file, and restores them by loading
+ * their current values with {@link ExtendedOptionCache#preload}.  The file holds a header with the time it was saved, a table of the distinct
+ * hierarchy, rank, context and key names, then one record per key referring to that table.  Keys for hierarchies, contexts or keys which no longer
+ * exist are skipped on restore, as found by {@link OptionCacheKeyResolver}.
+ * <p>
+ * Values are not saved, so a restored cache holds only what the store holds now, however the store has changed since the snapshot was taken.  What
+ * the snapshot saves is the work of finding the keys the application uses: they are loaded in bulk during startup, before the application takes
+ * traffic, rather than one at a time as each is first read.  If the {@link OptionDao} is a {@link BatchOptionDao} the load takes a single call;
+ * otherwise each key is read in turn.  A snapshot older than the configured maximum age is not restored.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@ThreadSafe
+public class DefaultOptionCacheSnapshot implements OptionCacheSnapshot {
+
+    private static final int MAGIC = 0x4B4F4353;
+    private static final int VERSION = 2;
+    private static final int NONE = -1;
+    private static Logger log = LoggerFactory.getLogger(DefaultOptionCacheSnapshot.class);
+
+    private final OptionCache optionCache;
+    private final OptionCacheSnapshotConfiguration configuration;
+    private final OptionCacheKeyResolver keyResolver;
+    private volatile OptionCacheRestore lastRestore;
+
+    @Inject
+    public DefaultOptionCacheSnapshot(OptionCache optionCache, Injector injector, OptionCacheSnapshotConfiguration configuration) {
+        this.optionCache = optionCache;
+        this.configuration = configuration;
+        this.keyResolver = new OptionCacheKeyResolver(injector);
+    }
+
+    @Override
+    public synchronized int save() {
+        File file = configuration.getFile();
+        File temp = new File(file.getPath() + ".tmp");
+        Map<String, Integer> names = new LinkedHashMap<>();
+        List<Record> records = new ArrayList<>();
+        Set<OptionCacheKey> cacheKeys = new HashSet<>(extendedCache().asMap()
+                .keySet());
+        cacheKeys.addAll(extendedCache().absentKeys());
+        for (OptionCacheKey<?> cacheKey : cacheKeys) {
+            OptionKey<?> optionKey = cacheKey.getOptionKey();
+            Record record = new Record();
+            record.hierarchy = name(names, cacheKey.getHierarchy()
+                    .persistenceName());
+            record.rankOption = cacheKey.getRankOption();
+            record.rankName = cacheKey.getRequestedRankName() == null ? NONE : name(names, cacheKey.getRequestedRankName());
+            record.context = name(names, optionKey.getContext()
+                    .getName());
+            record.optionKey = name(names, optionKey.compositeKey());
+            records.add(record);
+        }
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(names.size());
+                for (String name : names.keySet()) {
+                    writeString(out, name);
+                }
+                out.writeInt(records.size());
+                for (Record record : records) {
+                    out.writeInt(record.hierarchy);
+                    out.writeByte(record.rankOption.ordinal());
+                    out.writeInt(record.rankName);
+                    out.writeInt(record.context);
+                    out.writeInt(record.optionKey);
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Unable to save option cache snapshot to {}. Exception was: {}", file, e);
+            return 0;
+        }
+        log.info("Saved {} option cache keys to {}", records.size(), file);
+        return records.size();
+    }
+
+    @Override
+    public synchronized OptionCacheRestore restore() {
+        long start = System.nanoTime();
+        OptionCacheRestore result;
+        try {
+            result = read(start);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to restore option cache snapshot from {}. Exception was: {}", configuration.getFile(), e);
+            result = new OptionCacheRestore(OptionCacheRestore.Outcome.FAILED, 0, 0, System.nanoTime() - start);
+        }
+        lastRestore = result;
+        log.info("Option cache restore from {}: {}", configuration.getFile(), result);
+        return result;
+    }
+
+    @Override
+    public Optional<OptionCacheRestore> lastRestore() {
+        return Optional.ofNullable(lastRestore);
+    }
+
+    private OptionCacheRestore read(long start) throws IOException {
+        File file = configuration.getFile();
+        if (!file.exists()) {
+            return new OptionCacheRestore(OptionCacheRestore.Outcome.MISSING, 0, 0, System.nanoTime() - start);
+        }
+        List<OptionCacheKey<?>> cacheKeys = new ArrayList<>();
+        int skipped = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not an option cache snapshot");
+            }
+            if (System.currentTimeMillis() - in.readLong() > configuration.getMaxAgeMillis()) {
+                return new OptionCacheRestore(OptionCacheRestore.Outcome.EXPIRED, 0, 0, System.nanoTime() - start);
+            }
+            String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = readString(in);
+            }
+            RankOption[] rankOptions = RankOption.values();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String hierarchy = names[in.readInt()];
+                RankOption rankOption = rankOptions[in.readByte()];
+                int rankName = in.readInt();
+                Optional<OptionCacheKey<?>> cacheKey = keyResolver.resolve(hierarchy, rankOption, rankName == NONE ? null : names[rankName],
+                        names[in.readInt()], names[in.readInt()]);
+                if (cacheKey.isPresent()) {
+                    cacheKeys.add(cacheKey.get());
+                } else {
+                    skipped++;
+                }
+            }
+        }
+        extendedCache().preload(cacheKeys);
+        return new OptionCacheRestore(OptionCacheRestore.Outcome.RESTORED, cacheKeys.size(), skipped, System.nanoTime() - start);
+    }
+
+    private ExtendedOptionCache extendedCache() {
+        checkState(optionCache instanceof ExtendedOptionCache, "A snapshot requires the OptionCache to be an ExtendedOptionCache");
+        return (ExtendedOptionCache) optionCache;
+    }
+
+    private static int name(Map<String, Integer> names, String name) {
+        Integer index = names.get(name);
+        if (index == null) {
+            index = names.size();
+            names.put(name, index);
+        }
+        return index;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * One cache key, with its names as indexes into the name table
+     */
+    private static class Record {
+        private int hierarchy;
+        private RankOption rankOption;
+        private int rankName;
+        private int context;
+        private int optionKey;
+    }
+}
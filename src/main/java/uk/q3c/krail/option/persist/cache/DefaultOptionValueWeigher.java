@@ -0,0 +1,89 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.cache;
+
+import uk.q3c.krail.option.persist.OptionCacheKey;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Default implementation for {@link OptionValueWeigher}.  Sizes are estimated for a 64 bit JVM with compressed references, and walk the decoded
+ * value: strings by length, lists (including DataList) and maps by their elements, with a fixed size for types it does not recognise.  Booleans and
+ * enum constants are shared, and weigh nothing beyond the entry itself.  Override {@link #weighValue(Object)} to estimate your own types more
+ * closely.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultOptionValueWeigher implements OptionValueWeigher {
+
+    /**
+     * The cache entry, its key and the Optional wrapping the value
+     */
+    public static final int ENTRY_BYTES = 96;
+    static final int REFERENCE_BYTES = 8;
+    static final int BOXED_BYTES = 16;
+    static final int STRING_BYTES = 40;
+    static final int COLLECTION_BYTES = 40;
+    static final int MAP_ENTRY_BYTES = 32;
+    static final int UNKNOWN_BYTES = 64;
+
+    @Override
+    public int weigh(OptionCacheKey key, Optional<?> value) {
+        long weight = ENTRY_BYTES + (value.isPresent() ? weighValue(value.get()) : 0);
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Estimates the bytes retained by {@code value}
+     *
+     * @param value the value to weigh, may be null for elements of a collection
+     * @return the estimated size of {@code value} in bytes
+     */
+    protected long weighValue(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Enum) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return STRING_BYTES + 2L * ((String) value).length();
+        }
+        if (value instanceof BigInteger || value instanceof BigDecimal) {
+            return STRING_BYTES + value.toString()
+                    .length();
+        }
+        if (value instanceof Number || value instanceof Character) {
+            return BOXED_BYTES;
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            long weight = COLLECTION_BYTES + (long) REFERENCE_BYTES * collection.size();
+            for (Object element : collection) {
+                weight += weighValue(element);
+            }
+            return weight;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            long weight = COLLECTION_BYTES + (long) MAP_ENTRY_BYTES * map.size();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                weight += weighValue(entry.getKey()) + weighValue(entry.getValue());
+            }
+            return weight;
+        }
+        return UNKNOWN_BYTES;
+    }
+}
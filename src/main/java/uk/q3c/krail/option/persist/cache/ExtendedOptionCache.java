@@ -0,0 +1,69 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.cache;
+
+import uk.q3c.krail.option.persist.OptionCache;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An {@link OptionCache} which can be filled with many entries at once, and whose entries can be read and written directly, for example by {@link
+ * OptionCacheSnapshot}
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public interface ExtendedOptionCache extends OptionCache {
+
+    /**
+     * Loads the values for any of {@code cacheKeys} which are not already cached, in bulk where the cache loader supports it.  A failure to load is
+     * logged rather than thrown, as the values will be loaded individually when next read.
+     *
+     * @param cacheKeys the keys to load
+     */
+    void preload(Collection<? extends OptionCacheKey<?>> cacheKeys);
+
+    /**
+     * A live view of the cached entries which have a value
+     *
+     * @return a live view of the cached entries with a value
+     */
+    ConcurrentMap<OptionCacheKey, Optional<?>> asMap();
+
+    /**
+     * A live view of the keys known to have no value
+     *
+     * @return a live view of the keys known to have no value
+     */
+    Set<OptionCacheKey> absentKeys();
+
+    /**
+     * Caches {@code value} for {@code cacheKey} without loading it or writing it to the store, unless {@code cacheKey} is already cached
+     *
+     * @param cacheKey the key to cache
+     * @param value    its value, or empty if it has none
+     */
+    void seed(OptionCacheKey<?> cacheKey, Optional<?> value);
+
+    /**
+     * A number which changes whenever a value held by this cache may have changed, so that copies of values held elsewhere can be checked cheaply.
+     * A copy taken after reading the generation remains valid for as long as the generation is unchanged
+     *
+     * @return the current generation
+     */
+    long generation();
+}
@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.inject.Inject;
+import uk.q3c.krail.option.persist.OptionCacheConfig;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+
+import java.util.Optional;
+
+/**
+ * The default {@link OptionCacheEngine}, a Guava cache built from the {@link GuavaCacheConfiguration} bound with {@link OptionCacheConfig}.  If a
+ * maximum weight above zero is bound with {@link OptionCacheMaximumWeight}, the cache is bounded by it, and entries are weighed by the {@link
+ * OptionValueWeigher}.  The configuration must not then set a maximum size or weight of its own, which Guava rejects when the cache is built
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class GuavaOptionCacheEngine implements OptionCacheEngine {
+
+    private final GuavaCacheConfiguration cacheConfiguration;
+    private final long maximumWeight;
+
+    /**
+     * An engine for a cache which is not bounded by weight
+     */
+    public GuavaOptionCacheEngine(GuavaCacheConfiguration cacheConfiguration) {
+        this(cacheConfiguration, 0);
+    }
+
+    @Inject
+    public GuavaOptionCacheEngine(@OptionCacheConfig GuavaCacheConfiguration cacheConfiguration, @OptionCacheMaximumWeight long maximumWeight) {
+        this.cacheConfiguration = cacheConfiguration;
+        this.maximumWeight = maximumWeight;
+    }
+
+    @Override
+    public LoadingCache<OptionCacheKey, Optional<?>> build(CacheLoader<OptionCacheKey, Optional<?>> loader, OptionValueWeigher weigher) {
+        CacheBuilder<Object, Object> builder = cacheConfiguration.builder();
+        if (maximumWeight > 0) {
+            return builder.maximumWeight(maximumWeight)
+                    .weigher(weigher)
+                    .build(loader);
+        }
+        return builder.build(loader);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import uk.q3c.krail.option.persist.OptionCacheKey;
+
+import java.util.function.Consumer;
+
+/**
+ * The {@link OptionCacheInvalidationBus} for an application which runs as a single instance, or does not need other instances to see its changes
+ * until their cache entries expire.  It sends and receives nothing.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class LocalOptionCacheInvalidationBus implements OptionCacheInvalidationBus {
+
+    @Override
+    public void publish(OptionCacheKey<?> cacheKey) {
+    }
+
+    @Override
+    public void subscribe(Consumer<OptionCacheKey<?>> listener) {
+    }
+
+    @Override
+    public void flush() {
+    }
+}
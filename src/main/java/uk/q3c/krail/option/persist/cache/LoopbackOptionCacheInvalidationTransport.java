@@ -0,0 +1,71 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.inject.Inject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * An {@link OptionCacheInvalidationTransport} which connects the instances on the same channel within one JVM, delivering each message directly
+ * to the others from the sending thread.  Intended for tests, and for applications which run several injectors over one store.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@ThreadSafe
+public class LoopbackOptionCacheInvalidationTransport implements OptionCacheInvalidationTransport {
+
+    private static final Map<String, Set<LoopbackOptionCacheInvalidationTransport>> channels = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private volatile Consumer<byte[]> receiver;
+
+    @Inject
+    public LoopbackOptionCacheInvalidationTransport(OptionCacheInvalidationConfiguration configuration) {
+        this.channel = configuration.getChannel();
+    }
+
+    @Override
+    public void connect(Consumer<byte[]> receiver) {
+        checkState(this.receiver == null, "already connected");
+        this.receiver = checkNotNull(receiver);
+        channels.computeIfAbsent(channel, name -> new CopyOnWriteArraySet<>())
+                .add(this);
+    }
+
+    @Override
+    public void send(byte[] message) {
+        for (LoopbackOptionCacheInvalidationTransport member : channels.getOrDefault(channel, new CopyOnWriteArraySet<>())) {
+            if (member != this) {
+                member.receiver.accept(message.clone());
+            }
+        }
+    }
+
+    /**
+     * Stops receiving messages
+     */
+    public void disconnect() {
+        Set<LoopbackOptionCacheInvalidationTransport> members = channels.get(channel);
+        if (members != null) {
+            members.remove(this);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import uk.q3c.krail.option.bind.OptionModule;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+
+import java.util.Optional;
+
+/**
+ * Builds the cache used by {@link DefaultOptionCacheProvider}.  {@link DefaultOptionCache} is written against Guava's {@link LoadingCache}, so an
+ * engine based on another cache library presents it through that interface.  The engine is selected with {@link OptionModule#cacheEngine(Class)}
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public interface OptionCacheEngine {
+
+    /**
+     * Builds a new cache
+     *
+     * @param loader  the loader for values not in the cache
+     * @param weigher the weigher to use if the engine's configuration bounds the cache by weight
+     * @return a new cache
+     */
+    LoadingCache<OptionCacheKey, Optional<?>> build(CacheLoader<OptionCacheKey, Optional<?>> loader, OptionValueWeigher weigher);
+}
@@ -0,0 +1,46 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+
+import java.util.function.Consumer;
+
+/**
+ * Tells the other application instances sharing an option store when a value has been written or deleted, so that each can remove the value from
+ * its own cache.  {@link DefaultOptionCache} publishes the key of each write and delete, and subscribes to invalidations from elsewhere, removing the
+ * key together with the {@link RankOption#HIGHEST_RANK} and {@link RankOption#LOWEST_RANK} entries derived from it.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public interface OptionCacheInvalidationBus {
+
+    /**
+     * Tells the other instances that the value for {@code cacheKey} has changed in the store.  Invalidations may be gathered and sent together,
+     * and repeats of the same key sent once
+     *
+     * @param cacheKey the key written or deleted
+     */
+    void publish(OptionCacheKey<?> cacheKey);
+
+    /**
+     * @param listener called with each key invalidated by another instance
+     */
+    void subscribe(Consumer<OptionCacheKey<?>> listener);
+
+    /**
+     * Sends any invalidations waiting to be sent, before returning
+     */
+    void flush();
+}
@@ -0,0 +1,91 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import uk.q3c.krail.option.bind.OptionModule;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Configures {@link DefaultOptionCacheInvalidationBus}.  Override {@link OptionModule#configureCacheInvalidation()} to change it.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OptionCacheInvalidationConfiguration {
+
+    private String nodeId = UUID.randomUUID()
+            .toString();
+    private String channel = "krail-option";
+    private long delayMillis = 5;
+    private int maxBatchSize = 500;
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @param nodeId identifies this application instance, so that it ignores its own invalidations.  It must differ between instances, and is
+     *               random by default
+     * @return this for fluency
+     */
+    public OptionCacheInvalidationConfiguration nodeId(String nodeId) {
+        this.nodeId = checkNotNull(nodeId);
+        return this;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * @param channel the name shared by the application instances which invalidate each other's caches, used by the transport to find them
+     * @return this for fluency
+     */
+    public OptionCacheInvalidationConfiguration channel(String channel) {
+        this.channel = checkNotNull(channel);
+        return this;
+    }
+
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    /**
+     * @param delay how long invalidations are gathered before they are sent, so that a burst of writes is sent as one message.  Other instances
+     *              may read the old value for this long after a write.  0 sends each invalidation as it is made
+     * @param unit  the unit of {@code delay}
+     * @return this for fluency
+     */
+    public OptionCacheInvalidationConfiguration delay(long delay, TimeUnit unit) {
+        checkArgument(delay >= 0, "delay cannot be negative");
+        this.delayMillis = unit.toMillis(delay);
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize the most keys sent in one message; more are split between several
+     * @return this for fluency
+     */
+    public OptionCacheInvalidationConfiguration maxBatchSize(int maxBatchSize) {
+        checkArgument(maxBatchSize > 0, "batch size must be positive");
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries the messages of {@link DefaultOptionCacheInvalidationBus} between the application instances which share an option store, using whatever
+ * messaging the deployment has available.  A message should reach every other instance connected to the same channel; it does not matter whether
+ * it also reaches the sender, or whether messages arrive in the order sent.  {@link LoopbackOptionCacheInvalidationTransport} connects instances
+ * within one JVM.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public interface OptionCacheInvalidationTransport {
+
+    /**
+     * Starts receiving messages.  Called once, before the first call to {@link #send}
+     *
+     * @param receiver called with each message received.  It may be called from any thread
+     */
+    void connect(Consumer<byte[]> receiver);
+
+    /**
+     * Sends {@code message} to the other instances
+     *
+     * @param message the message to send
+     */
+    void send(byte[] message);
+}
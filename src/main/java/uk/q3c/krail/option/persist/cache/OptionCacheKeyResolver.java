@@ -0,0 +1,106 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.inject.Binding;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.q3c.krail.option.OptionContext;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.UserHierarchy;
+import uk.q3c.krail.option.option.OptionKeyLocator;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Re-creates an {@link OptionCacheKey} from the names which identify it outside this application, as held by {@link DefaultOptionCacheSnapshot} or
+ * sent by {@link DefaultOptionCacheInvalidationBus}.  Keys are found in the static fields of their context by {@link
+ * OptionKeyLocator#staticContextKeys}, and hierarchies among the {@link UserHierarchy} bindings.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@ThreadSafe
+public class OptionCacheKeyResolver {
+
+    private static Logger log = LoggerFactory.getLogger(OptionCacheKeyResolver.class);
+
+    private final Injector injector;
+    private final OptionKeyLocator keyLocator = new OptionKeyLocator();
+    private final Map<String, Map<String, OptionKey<?>>> contexts = new ConcurrentHashMap<>();
+    private volatile Map<String, UserHierarchy> hierarchies;
+
+    @Inject
+    public OptionCacheKeyResolver(Injector injector) {
+        this.injector = injector;
+    }
+
+    /**
+     * @param hierarchyName the {@link UserHierarchy#persistenceName()} of the hierarchy
+     * @param rankOption    the rank option
+     * @param rankName      the requested rank name, or null if there is none
+     * @param contextName   the class name of the {@link OptionContext} declaring the key
+     * @param compositeKey  the {@link OptionKey#compositeKey()} of the key
+     * @return the cache key, or empty if its hierarchy, context or key no longer exists
+     */
+    public Optional<OptionCacheKey<?>> resolve(String hierarchyName, RankOption rankOption, String rankName, String contextName, String
+            compositeKey) {
+        UserHierarchy hierarchy = hierarchies().get(hierarchyName);
+        OptionKey<?> optionKey = optionKey(contextName, compositeKey);
+        if (hierarchy == null || optionKey == null) {
+            return Optional.empty();
+        }
+        return Optional.of(cacheKey(hierarchy, rankOption, rankName, optionKey));
+    }
+
+    private OptionKey<?> optionKey(String contextName, String compositeKey) {
+        return contexts.computeIfAbsent(contextName, name -> {
+            try {
+                Class<?> contextClass = Class.forName(name);
+                if (OptionContext.class.isAssignableFrom(contextClass)) {
+                    return keyLocator.staticContextKeys(contextClass.asSubclass(OptionContext.class));
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.debug("Option context {} no longer exists", name);
+            }
+            return new HashMap<>();
+        })
+                .get(compositeKey);
+    }
+
+    private Map<String, UserHierarchy> hierarchies() {
+        Map<String, UserHierarchy> result = hierarchies;
+        if (result == null) {
+            result = new HashMap<>();
+            for (Binding<UserHierarchy> binding : injector.findBindingsByType(TypeLiteral.get(UserHierarchy.class))) {
+                UserHierarchy hierarchy = binding.getProvider()
+                        .get();
+                result.putIfAbsent(hierarchy.persistenceName(), hierarchy);
+            }
+            hierarchies = result;
+        }
+        return result;
+    }
+
+    private static <T> OptionCacheKey<T> cacheKey(UserHierarchy hierarchy, RankOption rankOption, String rankName, OptionKey<T> optionKey) {
+        return new OptionCacheKey<>(new OptionCacheKey<>(hierarchy, RankOption.HIGHEST_RANK, optionKey), rankName, rankOption);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of {@link OptionCacheSnapshot#restore()}, including how long it took
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OptionCacheRestore {
+
+    private final Outcome outcome;
+    private final int entries;
+    private final int skipped;
+    private final long elapsedNanos;
+
+    public OptionCacheRestore(Outcome outcome, int entries, int skipped, long elapsedNanos) {
+        this.outcome = outcome;
+        this.entries = entries;
+        this.skipped = skipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return the number of keys from the snapshot whose values were loaded into the cache
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the number of keys in the snapshot which could not be restored, because their hierarchy, context or key no longer exists
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return outcome + ", " + entries + " entries, " + skipped + " skipped, in " + getElapsed(TimeUnit.MILLISECONDS) + "ms";
+    }
+
+    public enum Outcome {
+        /**
+         * The current values of the keys in the snapshot were loaded into the cache
+         */
+        RESTORED,
+        /**
+         * The snapshot was older than the configured maximum age, and was ignored
+         */
+        EXPIRED,
+        /**
+         * There was no snapshot
+         */
+        MISSING,
+        /**
+         * The snapshot could not be read
+         */
+        FAILED
+    }
+}
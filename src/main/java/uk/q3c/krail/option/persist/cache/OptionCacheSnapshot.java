@@ -0,0 +1,47 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import java.util.Optional;
+
+/**
+ * Saves the keys held by the option cache when an application stops, and loads their values again when it starts, so that a newly started
+ * application has its working set of options cached before it takes traffic, loaded in bulk rather than one at a time as each is first used.  Only
+ * keys are saved, so the values restored are those in the store at the time of the restore.  Call {@link #save()} during shutdown and {@link
+ * #restore()} during startup, before the application takes traffic.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public interface OptionCacheSnapshot {
+
+    /**
+     * Writes the keys currently cached to the snapshot, replacing any previous one.  A failure is logged rather than thrown, as it should not prevent
+     * shutdown
+     *
+     * @return the number of keys written
+     */
+    int save();
+
+    /**
+     * Loads the current values of the keys held by the snapshot, if it is present and recent enough, with {@link ExtendedOptionCache#preload}.
+     * Entries already in the cache are not replaced.  A failure is logged rather than thrown, as the values will be loaded when used
+     *
+     * @return the outcome
+     */
+    OptionCacheRestore restore();
+
+    /**
+     * @return the outcome of the most recent call to {@link #restore()}, or empty if there has been none
+     */
+    Optional<OptionCacheRestore> lastRestore();
+}
@@ -0,0 +1,59 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import uk.q3c.krail.option.bind.OptionModule;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Configures {@link DefaultOptionCacheSnapshot}.  Override {@link OptionModule#configureCacheSnapshot()} to change it.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OptionCacheSnapshotConfiguration {
+
+    private File file = new File("krail-option-cache.snapshot");
+    private long maxAgeMillis = TimeUnit.DAYS.toMillis(1);
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @param file the snapshot file, replaced by each save
+     * @return this for fluency
+     */
+    public OptionCacheSnapshotConfiguration file(File file) {
+        this.file = checkNotNull(file);
+        return this;
+    }
+
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * @param duration the age beyond which a snapshot is not restored at all
+     * @param unit     the unit of {@code duration}
+     * @return this for fluency
+     */
+    public OptionCacheSnapshotConfiguration maxAge(long duration, TimeUnit unit) {
+        checkArgument(duration >= 0, "max age cannot be negative");
+        this.maxAgeMillis = unit.toMillis(duration);
+        return this;
+    }
+}
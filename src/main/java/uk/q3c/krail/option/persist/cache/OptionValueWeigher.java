@@ -0,0 +1,28 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.cache.Weigher;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+
+import java.util.Optional;
+
+/**
+ * Estimates the heap retained by an entry of the option cache, in bytes.  Used by {@link DefaultOptionCacheProvider} when the cache is bounded
+ * by a weight bound with {@link OptionCacheMaximumWeight}, so that a large list counts for more than a single Boolean
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public interface OptionValueWeigher extends Weigher<OptionCacheKey, Optional<?>> {
+}
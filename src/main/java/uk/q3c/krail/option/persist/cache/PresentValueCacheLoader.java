@@ -0,0 +1,74 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.util.concurrent.ListenableFuture;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Wraps a {@link CacheLoader} so that only keys with a value are cached.  {@link #load} throws {@link AbsentOptionValueException} where the
+ * delegate returns an empty Optional, and {@link #loadAll} leaves such keys out of its result.  {@link DefaultOptionCache} finds the keys left
+ * out by comparing those it asked for with those cached.  A reload which finds no value is returned as it is, and removed when next read.
+ * <p>
+ * If the delegate cannot load in bulk, {@link #loadAll} loads each key in turn, so that cache engines which treat that differently behave alike
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+class PresentValueCacheLoader extends CacheLoader<OptionCacheKey, Optional<?>> {
+
+    private final CacheLoader<OptionCacheKey, Optional<?>> delegate;
+
+    PresentValueCacheLoader(CacheLoader<OptionCacheKey, Optional<?>> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Optional<?> load(OptionCacheKey cacheKey) throws Exception {
+        Optional<?> value = delegate.load(cacheKey);
+        if (!value.isPresent()) {
+            throw AbsentOptionValueException.INSTANCE;
+        }
+        return value;
+    }
+
+    @Override
+    public Map<OptionCacheKey, Optional<?>> loadAll(Iterable<? extends OptionCacheKey> cacheKeys) throws Exception {
+        Map<OptionCacheKey, Optional<?>> loaded;
+        try {
+            loaded = delegate.loadAll(cacheKeys);
+        } catch (UnsupportedLoadingOperationException e) {
+            loaded = new HashMap<>();
+            for (OptionCacheKey cacheKey : cacheKeys) {
+                loaded.put(cacheKey, delegate.load(cacheKey));
+            }
+        }
+        Map<OptionCacheKey, Optional<?>> present = new HashMap<>();
+        for (Map.Entry<OptionCacheKey, Optional<?>> entry : loaded.entrySet()) {
+            if (entry.getValue()
+                    .isPresent()) {
+                present.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return present;
+    }
+
+    @Override
+    public ListenableFuture<Optional<?>> reload(OptionCacheKey cacheKey, Optional<?> oldValue) throws Exception {
+        return delegate.reload(cacheKey, oldValue);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.codec;
+
+import uk.q3c.util.data.DataConverter;
+import uk.q3c.util.data.collection.DataList;
+
+/**
+ * An {@link OptionValueCodec} for {@link DataList} values, with the element class resolved in advance, but with the list split and converted by the
+ * {@link DataConverter}.  Used where a {@link DataListOptionValueCodec} cannot be shown to match the {@link DataConverter} format
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ *
+ * @param <E> the element type
+ */
+public class ConverterDataListOptionValueCodec<E> implements OptionValueCodec<DataList<E>> {
+
+    private static final String SEPARATOR = ",";
+    private final DataConverter dataConverter;
+    private final Class<E> elementClass;
+
+    public ConverterDataListOptionValueCodec(DataConverter dataConverter, Class<E> elementClass) {
+        this.dataConverter = dataConverter;
+        this.elementClass = elementClass;
+    }
+
+    @Override
+    public DataList<E> decode(String value) {
+        return dataConverter.convertStringToCollection(DataList.class, elementClass, value, SEPARATOR);
+    }
+
+    @Override
+    public String encode(DataList<E> value) {
+        return dataConverter.convertValueToString(value);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.codec;
+
+import uk.q3c.util.data.DataConverter;
+
+/**
+ * An {@link OptionValueCodec} which passes values to a {@link DataConverter}, with the value class resolved in advance.  Used for any type which does
+ * not have a more specific codec
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ *
+ * @param <V> the value type
+ */
+public class ConverterOptionValueCodec<V> implements OptionValueCodec<V> {
+
+    private final DataConverter dataConverter;
+    private final Class<V> valueClass;
+
+    public ConverterOptionValueCodec(DataConverter dataConverter, Class<V> valueClass) {
+        this.dataConverter = dataConverter;
+        this.valueClass = valueClass;
+    }
+
+    @Override
+    public V decode(String value) {
+        return dataConverter.convertStringToValue(valueClass, value);
+    }
+
+    @Override
+    public String encode(V value) {
+        return dataConverter.convertValueToString(value);
+    }
+}
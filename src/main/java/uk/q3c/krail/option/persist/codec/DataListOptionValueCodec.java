@@ -0,0 +1,66 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.codec;
+
+import uk.q3c.util.data.collection.DataList;
+
+/**
+ * An {@link OptionValueCodec} for {@link DataList} values, which splits the persisted form at each separator and decodes each element with the codec
+ * for the element type
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ *
+ * @param <E> the element type
+ */
+public class DataListOptionValueCodec<E> implements OptionValueCodec<DataList<E>> {
+
+    private static final char SEPARATOR = ',';
+    private final Class<E> elementClass;
+    private final OptionValueCodec<E> elementCodec;
+
+    public DataListOptionValueCodec(Class<E> elementClass, OptionValueCodec<E> elementCodec) {
+        this.elementClass = elementClass;
+        this.elementCodec = elementCodec;
+    }
+
+    @Override
+    public DataList<E> decode(String value) {
+        DataList<E> list = new DataList<>(elementClass);
+        int start = 0;
+        int length = value.length();
+        while (start < length) {
+            int end = value.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                list.add(elementCodec.decode(value.substring(start, end)));
+            }
+            start = end + 1;
+        }
+        return list;
+    }
+
+    @Override
+    public String encode(DataList<E> value) {
+        StringBuilder buf = new StringBuilder();
+        for (E element : value) {
+            if (buf.length() > 0) {
+                buf.append(SEPARATOR);
+            }
+            buf.append(elementCodec.encode(element));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.codec;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.util.data.DataConverter;
+import uk.q3c.util.data.collection.DataList;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Default implementation for {@link OptionCodecRegistry}.  The codec for a key is chosen from the type of its default value:
+ * <ol>
+ * <li>enum values (which includes most I18NKeys) use an {@link EnumOptionValueCodec}</li>
+ * <li>String, Integer, Long, Double and Boolean values use a {@link ScalarOptionValueCodec}, provided that it produces the same results as the {@link
+ * DataConverter} for the default value - otherwise, as for all other types, a {@link ConverterOptionValueCodec} is used</li>
+ * <li>{@link DataList} values use a {@link DataListOptionValueCodec}, with one of the above for the elements, provided that it produces the same
+ * results as the {@link DataConverter} for the default value, and decodes stored lists with empty elements, a trailing separator or spaces in the
+ * same way - otherwise a {@link ConverterDataListOptionValueCodec} is used</li>
+ * </ol>
+ * Codecs are held for the life of the registry, so it should be bound as a Singleton
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultOptionCodecRegistry implements OptionCodecRegistry {
+    private static Logger log = LoggerFactory.getLogger(DefaultOptionCodecRegistry.class);
+    private final DataConverter dataConverter;
+    private final ImmutableMap<Class<?>, ScalarOptionValueCodec<?>> scalarCodecs;
+    private static final int RECENT_SLOTS = 256;
+    private final ConcurrentMap<OptionKey<?>, OptionValueCodec<?>> codecs = new ConcurrentHashMap<>();
+    // OptionKey.hashCode() and equals() are relatively expensive, and keys are almost always constants, so the most recently used codecs are held
+    // in slots selected by identity.  A collision simply replaces the slot, so this never holds more than RECENT_SLOTS keys
+    private final RecentCodec[] recentCodecs = new RecentCodec[RECENT_SLOTS];
+
+    @Inject
+    public DefaultOptionCodecRegistry(DataConverter dataConverter) {
+        this.dataConverter = dataConverter;
+        scalarCodecs = ImmutableMap.<Class<?>, ScalarOptionValueCodec<?>>builder()
+                .put(String.class, new ScalarOptionValueCodec<>(Function.identity()))
+                .put(Integer.class, new ScalarOptionValueCodec<>(Integer::valueOf))
+                .put(Long.class, new ScalarOptionValueCodec<>(Long::valueOf))
+                .put(Double.class, new ScalarOptionValueCodec<>(Double::valueOf))
+                .put(Boolean.class, new ScalarOptionValueCodec<>(Boolean::valueOf))
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <V> OptionValueCodec<V> codecFor(OptionKey<V> optionKey) {
+        checkNotNull(optionKey);
+        int slot = System.identityHashCode(optionKey) & (RECENT_SLOTS - 1);
+        RecentCodec recent = recentCodecs[slot];
+        if (recent != null && recent.optionKey == optionKey) {
+            return (OptionValueCodec<V>) recent.codec;
+        }
+        OptionValueCodec<?> codec = codecs.computeIfAbsent(optionKey, this::createCodec);
+        // RecentCodec is immutable, so it is safe to publish without synchronisation
+        recentCodecs[slot] = new RecentCodec(optionKey, codec);
+        return (OptionValueCodec<V>) codec;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected OptionValueCodec<?> createCodec(OptionKey<?> optionKey) {
+        Object defaultValue = optionKey.getDefaultValue();
+        if (defaultValue instanceof DataList) {
+            return dataListCodec((DataList<Object>) defaultValue);
+        }
+        OptionValueCodec<Object> codec = valueCodec(defaultValue);
+        return (codec != null) ? codec : new ConverterOptionValueCodec<>(dataConverter, defaultValue.getClass());
+    }
+
+    /**
+     * Returns an enum or scalar codec for the type of {@code value}, or null if there is none which matches the {@link DataConverter}
+     */
+    @SuppressWarnings("unchecked")
+    private OptionValueCodec<Object> valueCodec(Object value) {
+        if (value instanceof Enum) {
+            return new EnumOptionValueCodec(dataConverter, ((Enum<?>) value).getDeclaringClass());
+        }
+        ScalarOptionValueCodec<Object> scalarCodec = (ScalarOptionValueCodec<Object>) scalarCodecs.get(value.getClass());
+        return (scalarCodec != null && matchesConverter(scalarCodec, value)) ? scalarCodec : null;
+    }
+
+    /**
+     * A {@link DataListOptionValueCodec} can only be checked against the {@link DataConverter} if the default list has an element to check with, and
+     * is only used for plain DataList instances, as it does not create sub-classes
+     */
+    @SuppressWarnings("unchecked")
+    private OptionValueCodec<?> dataListCodec(DataList<Object> defaultValue) {
+        Class<Object> elementClass = (Class<Object>) defaultValue.getEntryClass();
+        if (defaultValue.getClass() == DataList.class && !defaultValue.isEmpty()) {
+            OptionValueCodec<Object> elementCodec = valueCodec(defaultValue.get(0));
+            if (elementCodec != null) {
+                OptionValueCodec<Object> listCodec = (OptionValueCodec) new DataListOptionValueCodec<>(elementClass, elementCodec);
+                if (matchesConverter(listCodec, defaultValue) && decodesAsConverter(listCodec, elementClass, elementCodec.encode(defaultValue.get(0)))) {
+                    return listCodec;
+                }
+            }
+        }
+        return new ConverterDataListOptionValueCodec<>(dataConverter, elementClass);
+    }
+
+    /**
+     * Checks that {@code codec} encodes and decodes {@code value} in the same way as the {@link DataConverter}, so that values already in
+     * persistence can still be read
+     */
+    private boolean matchesConverter(OptionValueCodec<Object> codec, Object value) {
+        try {
+            String converted = dataConverter.convertValueToString(value);
+            if (converted.equals(codec.encode(value)) && value.equals(codec.decode(converted))) {
+                return true;
+            }
+        } catch (RuntimeException e) {
+            log.debug("Codec check failed for {}", value, e);
+        }
+        log.debug("DataConverter uses a different format for {}, values of type {} will be converted by the DataConverter", value, value.getClass());
+        return false;
+    }
+
+    /**
+     * Checks that {@code listCodec} decodes stored lists in the same way as the {@link DataConverter}, where a list written by hand or by another
+     * version may differ from the encoded default: empty, with an empty element, with leading or trailing separators, and with a space after a
+     * separator.  Failing to decode counts as the same result if both fail
+     */
+    private boolean decodesAsConverter(OptionValueCodec<Object> listCodec, Class<Object> elementClass, String element) {
+        String[] storedValues = {"", element + ",," + element, element + ",", "," + element, element + ", " + element};
+        for (String stored : storedValues) {
+            Object expected = decoded(value -> dataConverter.convertStringToCollection(DataList.class, elementClass, value, ","), stored);
+            if (!Objects.equals(expected, decoded(listCodec::decode, stored))) {
+                log.debug("DataConverter decodes '{}' differently, lists of {} will be converted by the DataConverter", stored, elementClass);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object decoded(Function<String, ?> decoder, String stored) {
+        try {
+            return decoder.apply(stored);
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private static final class RecentCodec {
+        private final OptionKey<?> optionKey;
+        private final OptionValueCodec<?> codec;
+
+        private RecentCodec(OptionKey<?> optionKey, OptionValueCodec<?> codec) {
+            this.optionKey = optionKey;
+            this.codec = codec;
+        }
+    }
+}
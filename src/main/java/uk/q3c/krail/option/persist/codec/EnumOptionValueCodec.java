@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.codec;
+
+import com.google.common.collect.ImmutableMap;
+import uk.q3c.util.data.DataConverter;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * An {@link OptionValueCodec} for enum values, including enum based I18NKeys.  The persisted form of every constant is obtained from the {@link
+ * DataConverter} when the codec is created, so decoding is a single map lookup.  A value which does not match any constant (for example, one written
+ * in an older format) is passed to the {@link DataConverter}
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ *
+ * @param <E> the enum type
+ */
+public class EnumOptionValueCodec<E extends Enum<E>> implements OptionValueCodec<E> {
+
+    private final DataConverter dataConverter;
+    private final Class<E> enumClass;
+    private final ImmutableMap<String, E> constants;
+    private final Map<E, String> encoded;
+
+    public EnumOptionValueCodec(DataConverter dataConverter, Class<E> enumClass) {
+        this.dataConverter = dataConverter;
+        this.enumClass = enumClass;
+        ImmutableMap.Builder<String, E> constantsBuilder = ImmutableMap.builder();
+        encoded = new EnumMap<>(enumClass);
+        for (E constant : enumClass.getEnumConstants()) {
+            String value = dataConverter.convertValueToString(constant);
+            constantsBuilder.put(value, constant);
+            encoded.put(constant, value);
+        }
+        constants = constantsBuilder.build();
+    }
+
+    @Override
+    public E decode(String value) {
+        E constant = constants.get(value);
+        return (constant != null) ? constant : dataConverter.convertStringToValue(enumClass, value);
+    }
+
+    @Override
+    public String encode(E value) {
+        return encoded.get(value);
+    }
+}
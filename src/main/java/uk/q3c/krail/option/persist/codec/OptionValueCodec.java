@@ -0,0 +1,39 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.codec;
+
+import uk.q3c.krail.option.OptionKey;
+
+/**
+ * Converts the values of one {@link OptionKey} to and from the String form held in persistence.  Instances are created once per key by an {@link
+ * OptionCodecRegistry}, so that the conversion strategy does not need to be worked out again for every value
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ *
+ * @param <V> the value type
+ */
+public interface OptionValueCodec<V> {
+
+    /**
+     * @param value the persisted form of a value, never null
+     * @return the decoded value
+     */
+    V decode(String value);
+
+    /**
+     * @param value the value to encode, never null
+     * @return the persisted form of {@code value}
+     */
+    String encode(V value);
+}
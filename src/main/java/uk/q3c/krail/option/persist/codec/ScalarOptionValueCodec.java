@@ -0,0 +1,43 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.codec;
+
+import java.util.function.Function;
+
+/**
+ * An {@link OptionValueCodec} for simple types such as Integer, which can be converted by a parse method and toString(), without reference to a
+ * {@link uk.q3c.util.data.DataConverter}
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ *
+ * @param <V> the value type
+ */
+public class ScalarOptionValueCodec<V> implements OptionValueCodec<V> {
+
+    private final Function<String, V> parser;
+
+    public ScalarOptionValueCodec(Function<String, V> parser) {
+        this.parser = parser;
+    }
+
+    @Override
+    public V decode(String value) {
+        return parser.apply(value);
+    }
+
+    @Override
+    public String encode(V value) {
+        return value.toString();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.dao;
+
+import com.google.common.collect.ImmutableMap;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionDao;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCacheLoader;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An {@link OptionDao} which can load values for many {@link OptionCacheKey}s in one call.  Used by {@link DefaultOptionCacheLoader#loadAll} to fill
+ * the cache in bulk.
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public interface BatchOptionDao extends OptionDao {
+
+    /**
+     * Returns the values for all of {@code cacheKeys}, taking account of the RankOption of each.  This default implementation calls {@link
+     * #getValue(OptionCacheKey)} for each key in turn - implementations should override it if they can do better.
+     *
+     * @param cacheKeys the keys to look up
+     * @return a map containing an entry for every one of {@code cacheKeys}, with an empty Optional where there is no value
+     */
+    default ImmutableMap<OptionCacheKey<?>, Optional<?>> getValues(Collection<? extends OptionCacheKey<?>> cacheKeys) {
+        Map<OptionCacheKey<?>, Optional<?>> values = new HashMap<>();
+        for (OptionCacheKey<?> cacheKey : cacheKeys) {
+            values.put(cacheKey, getValue(cacheKey));
+        }
+        return ImmutableMap.copyOf(values);
+    }
+}
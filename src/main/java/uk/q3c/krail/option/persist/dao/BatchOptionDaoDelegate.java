@@ -0,0 +1,76 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.option.persist.dao;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.UserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionDaoDelegate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An {@link OptionDaoDelegate} which can return the values for several ranks, and several options, in one call.  {@link DefaultOptionDao} uses this
+ * to resolve {@link RankOption#HIGHEST_RANK} and {@link RankOption#LOWEST_RANK} values with a single store access, instead of one access per rank, and
+ * to load a whole batch of options at once
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public interface BatchOptionDaoDelegate extends OptionDaoDelegate {
+
+    /**
+     * Returns the values held for the {@link UserHierarchy} and option key of {@code cacheKey}, at each of {@code rankNames}.  The rank set in {@code
+     * cacheKey} is ignored.  This default implementation just calls {@link #getValue(OptionCacheKey)} for each rank in turn - implementations should
+     * override it if their store can do better.
+     *
+     * @param cacheKey  identifies the hierarchy and option key
+     * @param rankNames the ranks to look up
+     * @param <V>       the value type
+     * @return a map of rank name to value, for those ranks which have a value.  Ranks without a value are not included
+     */
+    default <V> ImmutableMap<String, String> getValues(OptionCacheKey<V> cacheKey, List<String> rankNames) {
+        ImmutableMap.Builder<String, String> values = ImmutableMap.builder();
+        for (String rankName : rankNames) {
+            Optional<String> value = getValue(new OptionCacheKey<>(cacheKey, rankName, RankOption.SPECIFIC_RANK));
+            value.ifPresent(v -> values.put(rankName, v));
+        }
+        return values.build();
+    }
+
+    /**
+     * Returns the values held for each of {@code optionKeys} in {@code hierarchy}, at each of {@code rankNames}.  This default implementation calls
+     * {@link #getValues(OptionCacheKey, List)} for each option key in turn - implementations should override it if their store can do better.
+     *
+     * @param hierarchy  the hierarchy to look up values for
+     * @param optionKeys the options to look up
+     * @param rankNames  the ranks to look up
+     * @return a table of option key (row) and rank name (column) to value, containing only those combinations which have a value
+     */
+    default ImmutableTable<OptionKey<?>, String, String> getValues(UserHierarchy hierarchy, Collection<? extends OptionKey<?>> optionKeys, List<String>
+            rankNames) {
+        Table<OptionKey<?>, String, String> values = HashBasedTable.create();
+        for (OptionKey<?> optionKey : optionKeys) {
+            ImmutableMap<String, String> rankValues = getValues(new OptionCacheKey<>(hierarchy, RankOption.HIGHEST_RANK, optionKey), rankNames);
+            rankValues.forEach((rankName, value) -> values.put(optionKey, rankName, value));
+        }
+        return ImmutableTable.copyOf(values);
+    }
+}
@@ -13,23 +13,36 @@
 
 package uk.q3c.krail.option.persist.dao;
 
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Table;
 import com.google.inject.Inject;
 import uk.q3c.krail.option.Option;
 import uk.q3c.krail.option.OptionException;
+import uk.q3c.krail.option.OptionKey;
 import uk.q3c.krail.option.OptionKeyException;
 import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.UserHierarchy;
 import uk.q3c.krail.option.persist.OptionCache;
 import uk.q3c.krail.option.persist.OptionCacheKey;
 import uk.q3c.krail.option.persist.OptionDao;
 import uk.q3c.krail.option.persist.OptionDaoDelegate;
 import uk.q3c.krail.option.persist.OptionSource;
 import uk.q3c.krail.option.persist.cache.DefaultOptionCacheLoader;
+import uk.q3c.krail.option.persist.codec.OptionCodecRegistry;
 import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
-import uk.q3c.util.data.DataConverter;
-import uk.q3c.util.data.collection.DataList;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -40,16 +53,18 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * <b>NOTE:</b> All values to and from {@link Option} are natively typed.  All values to and from {@link OptionCache}, {@link DefaultOptionCacheLoader} and
  * {@link OptionDao} are wrapped in Optional.
  * <br>
+ * Values are converted to and from their persisted String form by the {@link OptionCodecRegistry}
+ * <br>
  * Created by David Sowerby on 20/02/15.
  */
-public class DefaultOptionDao implements OptionDao {
+public class DefaultOptionDao implements BatchOptionDao {
 
-    private DataConverter dataConverter;
+    private OptionCodecRegistry codecRegistry;
     private OptionDaoDelegate delegate;
 
     @Inject
-    public DefaultOptionDao(DataConverter dataConverter, OptionSource delegateSource) {
-        this.dataConverter = dataConverter;
+    public DefaultOptionDao(OptionCodecRegistry codecRegistry, OptionSource delegateSource) {
+        this.codecRegistry = codecRegistry;
         this.delegate = delegateSource.getActiveDao();
     }
 
@@ -65,7 +80,8 @@ public class DefaultOptionDao implements OptionDao {
         checkRankOption(cacheKey, RankOption.SPECIFIC_RANK);
         checkArgument(value.isPresent(), "Value cannot be empty");
         checkNotNull(value);
-        String stringValue = dataConverter.convertValueToString(value.get());
+        String stringValue = codecRegistry.codecFor(cacheKey.getOptionKey())
+                .encode(value.get());
         delegate.write(cacheKey, stringValue);
     }
 
@@ -77,8 +93,6 @@ public class DefaultOptionDao implements OptionDao {
     }
 
 
-    @SuppressWarnings("unchecked")
-
     @Override
     public <V> Optional<V> getValue(OptionCacheKey<V> cacheKey) {
         Optional<String> optionalStringValue;
@@ -96,23 +110,64 @@ public class DefaultOptionDao implements OptionDao {
             default:
                 throw new OptionException("Unrecognised rankOption");
         }
+        return convertValue(cacheKey, optionalStringValue);
+    }
+
+    /**
+     * Returns the values for all of {@code cacheKeys}.  Keys are grouped by hierarchy name, and the values for every option in a group are retrieved
+     * together - with one call if the delegate is a {@link BatchOptionDaoDelegate} - before selecting the value each key asks for.  Only the ranks
+     * needed are retrieved - all of the current user's ranks if any key in the group is for the highest or lowest rank, otherwise just the
+     * specific ranks requested.
+     *
+     * @param cacheKeys the keys to look up
+     * @return a map containing an entry for every one of {@code cacheKeys}, with an empty Optional where there is no value
+     */
+    @Override
+    public ImmutableMap<OptionCacheKey<?>, Optional<?>> getValues(Collection<? extends OptionCacheKey<?>> cacheKeys) {
+        checkNotNull(cacheKeys);
+        Map<OptionCacheKey<?>, Optional<?>> values = new HashMap<>();
+        // hierarchies are identified in persistence by name, so instances with the same name share a group
+        ImmutableListMultimap<String, OptionCacheKey<?>> keysByHierarchy = Multimaps.index(ImmutableList.<OptionCacheKey<?>>copyOf(cacheKeys),
+                cacheKey -> cacheKey.getHierarchy()
+                        .persistenceName());
+        for (String hierarchyName : keysByHierarchy.keySet()) {
+            List<OptionCacheKey<?>> hierarchyKeys = keysByHierarchy.get(hierarchyName);
+            UserHierarchy hierarchy = hierarchyKeys.get(0)
+                    .getHierarchy();
+            ImmutableList<String> ranks = hierarchy.ranksForCurrentUser();
+            Set<OptionKey<?>> optionKeys = new LinkedHashSet<>();
+            hierarchyKeys.forEach(cacheKey -> optionKeys.add(cacheKey.getOptionKey()));
+            Table<OptionKey<?>, String, String> storedValues = getStringValues(hierarchy, optionKeys, ranksToRetrieve(hierarchyKeys, ranks));
 
-        if (optionalStringValue.isPresent()) {
-            // use the default value to establish data type
-            V defaultValue = cacheKey.getOptionKey()
-                    .getDefaultValue();
-            if (defaultValue instanceof DataList) {
-                Class<?> collectionClass = DataList.class;
-                Class<?> elementClass = ((DataList) defaultValue).getEntryClass();
-                DataList convertedValue = dataConverter.convertStringToCollection(collectionClass, elementClass, optionalStringValue.get(), ",");
-                return Optional.of((V) convertedValue);
-            } else {
-                Class<V> elementClass = (Class<V>) defaultValue.getClass();
-                return Optional.of(dataConverter.convertStringToValue(elementClass, optionalStringValue.get()));
+            for (OptionCacheKey<?> cacheKey : hierarchyKeys) {
+                Map<String, String> rankValues = storedValues.row(cacheKey.getOptionKey());
+                Optional<String> optionalStringValue;
+                switch (cacheKey.getRankOption()) {
+                    case HIGHEST_RANK:
+                        optionalStringValue = selectRankedValue(rankValues, ranks);
+                        break;
+                    case LOWEST_RANK:
+                        optionalStringValue = selectRankedValue(rankValues, ranks.reverse());
+                        break;
+                    case SPECIFIC_RANK:
+                        // a rank outside the current user's ranks has not been retrieved with the others
+                        optionalStringValue = ranks.contains(cacheKey.getRequestedRankName()) ? Optional.ofNullable(rankValues.get(cacheKey
+                                .getRequestedRankName())) : getStringValue(cacheKey);
+                        break;
+                    default:
+                        throw new OptionException("Unrecognised rankOption");
+                }
+                values.put(cacheKey, convertValue(cacheKey, optionalStringValue));
             }
-        } else {
-            return Optional.empty();
         }
+        return ImmutableMap.copyOf(values);
+    }
+
+    /**
+     * Decodes a persisted value with the codec for the key's {@link OptionKey}, which is resolved from the type of the key's default value
+     */
+    protected <V> Optional<V> convertValue(OptionCacheKey<V> cacheKey, Optional<String> optionalStringValue) {
+        return optionalStringValue.map(codecRegistry.codecFor(cacheKey.getOptionKey())::decode);
     }
 
     protected Optional<String> getStringValue(OptionCacheKey cacheKey) {
@@ -120,10 +175,17 @@ public class DefaultOptionDao implements OptionDao {
     }
 
 
+    /**
+     * Returns the value from the highest (or lowest) rank which has a value.  If the delegate is a {@link BatchOptionDaoDelegate}, the values for all
+     * ranks are retrieved with one call, otherwise each rank is tried in turn until a value is found
+     */
     protected <V> Optional<String> getRankedValue(OptionCacheKey<V> cacheKey, boolean lowest) {
         ImmutableList<String> ranks = cacheKey.getHierarchy()
                 .ranksForCurrentUser();
         ImmutableList<String> ranksToUse = (lowest) ? ranks.reverse() : ranks;
+        if (delegate instanceof BatchOptionDaoDelegate) {
+            return selectRankedValue(((BatchOptionDaoDelegate) delegate).getValues(cacheKey, ranksToUse), ranksToUse);
+        }
         for (String rank : ranksToUse) {
             OptionCacheKey<V> specificKey = new OptionCacheKey<>(cacheKey, rank, RankOption.SPECIFIC_RANK);
             Optional<String> stringValue = getStringValue(specificKey);
@@ -132,6 +194,46 @@ public class DefaultOptionDao implements OptionDao {
         return Optional.empty();
     }
 
+    /**
+     * Returns the stored values for each of {@code optionKeys} at each of {@code ranks}, using a single call if the delegate is a {@link
+     * BatchOptionDaoDelegate}
+     */
+    protected Table<OptionKey<?>, String, String> getStringValues(UserHierarchy hierarchy, Collection<OptionKey<?>> optionKeys, List<String> ranks) {
+        if (delegate instanceof BatchOptionDaoDelegate) {
+            return ((BatchOptionDaoDelegate) delegate).getValues(hierarchy, optionKeys, ranks);
+        }
+        Table<OptionKey<?>, String, String> values = HashBasedTable.create();
+        for (OptionKey<?> optionKey : optionKeys) {
+            OptionCacheKey<?> cacheKey = new OptionCacheKey<>(hierarchy, RankOption.HIGHEST_RANK, optionKey);
+            for (String rank : ranks) {
+                getStringValue(new OptionCacheKey<>(cacheKey, rank, RankOption.SPECIFIC_RANK)).ifPresent(value -> values.put(optionKey, rank, value));
+            }
+        }
+        return values;
+    }
+
+    private List<String> ranksToRetrieve(List<OptionCacheKey<?>> hierarchyKeys, ImmutableList<String> ranks) {
+        Set<String> requestedRanks = new LinkedHashSet<>();
+        for (OptionCacheKey<?> cacheKey : hierarchyKeys) {
+            if (cacheKey.getRankOption() != RankOption.SPECIFIC_RANK) {
+                return ranks;
+            }
+            requestedRanks.add(cacheKey.getRequestedRankName());
+        }
+        // keep the hierarchy's order, a rank outside it is retrieved separately
+        List<String> ranksToRetrieve = new ArrayList<>(ranks);
+        ranksToRetrieve.retainAll(requestedRanks);
+        return ranksToRetrieve;
+    }
+
+    private Optional<String> selectRankedValue(Map<String, String> rankValues, List<String> ranksToUse) {
+        for (String rank : ranksToUse) {
+            String value = rankValues.get(rank);
+            if (value != null) return Optional.of(value);
+        }
+        return Optional.empty();
+    }
+
 
     @Override
     public String connectionUrl() {
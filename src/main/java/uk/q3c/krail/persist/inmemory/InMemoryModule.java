@@ -28,6 +28,7 @@ import uk.q3c.krail.persist.DefaultPersistenceInfo;
 import uk.q3c.krail.persist.InMemory;
 import uk.q3c.krail.persist.PersistenceInfo;
 import uk.q3c.krail.persist.inmemory.dao.InMemoryOptionDaoDelegate;
+import uk.q3c.krail.persist.inmemory.store.CompactInMemoryOptionStore;
 import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
 import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryPatternStore;
 import uk.q3c.krail.persist.inmemory.store.InMemoryDescriptionKey;
@@ -46,6 +47,7 @@ public class InMemoryModule extends AbstractModule implements I18NPersistenceEna
     private I18NKey name = InMemoryLabelKey.In_Memory;
     private MapBinder<Class<? extends Annotation>, PersistenceInfo<?>> optionDaoProviders;
     private MapBinder<Class<? extends Annotation>, PersistenceInfo<?>> patternDaoProviders;
+    private boolean compactOptionStore = false;
     private boolean provideOptionDao = false;
     private boolean providePatternDao;
     private boolean volatilePersistence = true;
@@ -92,7 +94,11 @@ public class InMemoryModule extends AbstractModule implements I18NPersistenceEna
 
 
     protected void bindOptionStore() {
-        bind(InMemoryOptionStore.class).to(DefaultInMemoryOptionStore.class);
+        if (compactOptionStore) {
+            bind(InMemoryOptionStore.class).to(CompactInMemoryOptionStore.class);
+        } else {
+            bind(InMemoryOptionStore.class).to(DefaultInMemoryOptionStore.class);
+        }
     }
 
     protected void bindPatternStore() {
@@ -147,6 +153,19 @@ public class InMemoryModule extends AbstractModule implements I18NPersistenceEna
         return this;
     }
 
+    /**
+     * Use {@link CompactInMemoryOptionStore} instead of {@link DefaultInMemoryOptionStore}, for a much smaller footprint when there are millions of
+     * option values
+     */
+    public InMemoryModule compactOptionStore() {
+        compactOptionStore = true;
+        return this;
+    }
+
+    public boolean isCompactOptionStore() {
+        return compactOptionStore;
+    }
+
     @Override
     public I18NKey getName() {
         return name;
@@ -14,11 +14,18 @@
 package uk.q3c.krail.persist.inmemory;
 
 
+import uk.q3c.krail.option.persist.OptionCacheKey;
 import uk.q3c.krail.option.persist.OptionId;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Stores and loads option values from a (usually) persistent store.  This simple, in memory, version is provided
@@ -73,6 +80,17 @@ public interface InMemoryOptionStore extends Serializable {
      */
     void add(OptionId optionId, String value);
 
+    /**
+     * Adds (puts) the value for {@code cacheKey}, which must be for a specific rank.  By default the same as {@link #add(OptionId, String)} with the
+     * {@link OptionId} of {@code cacheKey}, but implementations may keep the key, for example to rebuild {@link OptionId}s from interned parts
+     *
+     * @param cacheKey identifies the Option
+     * @param value    the value to store
+     */
+    default void add(OptionCacheKey<?> cacheKey, String value) {
+        add(new OptionId(cacheKey), value);
+    }
+
     /**
      * Gets the string value associated with optionId, or an empty Optional if none found
      *
@@ -81,5 +99,79 @@ public interface InMemoryOptionStore extends Serializable {
      */
     Optional<String> getValue(OptionId optionId);
 
+    /**
+     * Gets the string value for {@code cacheKey}, which must be for a specific rank.  By default the same as {@link #getValue(OptionId)} with the {@link
+     * OptionId} of {@code cacheKey}, but implementations may look the value up without building the {@link OptionId}
+     *
+     * @param cacheKey identifies the Option
+     * @return the string value for {@code cacheKey}, or an empty Optional if none found
+     */
+    default Optional<String> getValue(OptionCacheKey<?> cacheKey) {
+        return getValue(new OptionId(cacheKey));
+    }
+
+    /**
+     * Gets the string values associated with each of {@code optionIds}, in one call.  By default calls {@link #getValue(OptionId)} for each, but
+     * implementations should read them together where the store allows
+     *
+     * @param optionIds the {@link OptionId}s to look up
+     * @return a map of {@link OptionId} to value, containing only those of {@code optionIds} which have a value
+     */
+    default Map<OptionId, String> getValues(Collection<OptionId> optionIds) {
+        checkNotNull(optionIds);
+        Map<OptionId, String> values = new HashMap<>();
+        for (OptionId optionId : optionIds) {
+            getValue(optionId).ifPresent(value -> values.put(optionId, value));
+        }
+        return values;
+    }
+
+    /**
+     * Returns the entities whose {@link OptionId} matches all of the given criteria, where a null criterion matches anything.  By default filters
+     * {@link #asEntities()}, but implementations should avoid comparing strings across the whole store, for example by indexing the context, user
+     * hierarchy name and rank name
+     *
+     * @param context           the context name, or null for any
+     * @param userHierarchyName the user hierarchy persistence name, or null for any
+     * @param rankName          the rank name, or null for any
+     * @param optionKey         the composite option key, or null for any
+     * @return the matching entities, in no particular order
+     */
+    default List<OptionEntity> find(String context, String userHierarchyName, String rankName, String optionKey) {
+        return asEntities().stream()
+                .filter(entity -> (context == null || context.equals(entity.getContext())) && (userHierarchyName == null || userHierarchyName
+                        .equals(entity.getUserHierarchyName())) && (rankName == null || rankName.equals(entity.getRankName())) && (optionKey ==
+                        null || optionKey.equals(entity.getOptionKey())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * All the entities for options in {@code context}
+     */
+    default List<OptionEntity> findByContext(String context) {
+        return find(checkNotNull(context), null, null, null);
+    }
+
+    /**
+     * All the entities for {@code userHierarchyName}, at every rank
+     */
+    default List<OptionEntity> findByUserHierarchy(String userHierarchyName) {
+        return find(null, checkNotNull(userHierarchyName), null, null);
+    }
+
+    /**
+     * All the entities held at {@code rankName} of {@code userHierarchyName}
+     */
+    default List<OptionEntity> findByRank(String userHierarchyName, String rankName) {
+        return find(null, checkNotNull(userHierarchyName), checkNotNull(rankName), null);
+    }
+
+    /**
+     * The entities for one option, one for each rank at which it has a value
+     */
+    default List<OptionEntity> findAllRanks(String context, String userHierarchyName, String optionKey) {
+        return find(checkNotNull(context), checkNotNull(userHierarchyName), null, checkNotNull(optionKey));
+    }
+
 }
 
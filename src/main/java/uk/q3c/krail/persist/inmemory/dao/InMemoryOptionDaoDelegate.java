@@ -13,17 +13,27 @@
 
 package uk.q3c.krail.persist.inmemory.dao;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableTable;
 import com.google.inject.Inject;
 import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.OptionKey;
 import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.UserHierarchy;
 import uk.q3c.krail.option.persist.OptionCache;
 import uk.q3c.krail.option.persist.OptionCacheKey;
 import uk.q3c.krail.option.persist.OptionDaoDelegate;
 import uk.q3c.krail.option.persist.OptionId;
 import uk.q3c.krail.option.persist.cache.DefaultOptionCacheLoader;
+import uk.q3c.krail.option.persist.dao.BatchOptionDaoDelegate;
 import uk.q3c.krail.persist.inmemory.InMemoryOptionStore;
 import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static com.google.common.base.Preconditions.*;
@@ -36,7 +46,7 @@ import static com.google.common.base.Preconditions.*;
  * <br>
  * Created by David Sowerby on 20/02/15.
  */
-public class InMemoryOptionDaoDelegate implements OptionDaoDelegate {
+public class InMemoryOptionDaoDelegate implements BatchOptionDaoDelegate {
 
     private InMemoryOptionStore optionStore;
 
@@ -56,7 +66,7 @@ public class InMemoryOptionDaoDelegate implements OptionDaoDelegate {
     public <V> void write(OptionCacheKey<V> cacheKey, String value) {
         checkRankOption(cacheKey, RankOption.SPECIFIC_RANK);
         checkNotNull(value);
-        optionStore.add(new OptionId(cacheKey), value);
+        optionStore.add(cacheKey, value);
     }
 
 
@@ -69,12 +79,66 @@ public class InMemoryOptionDaoDelegate implements OptionDaoDelegate {
 
     @Override
     public <V> Optional<String> getValue(OptionCacheKey<V> cacheKey) {
-        return optionStore.getValue(new OptionId(cacheKey));
+        return optionStore.getValue(cacheKey);
+    }
+
+
+    /**
+     * Retrieves the values for all of {@code rankNames} with a single call to the store
+     */
+    @Override
+    public <V> ImmutableMap<String, String> getValues(OptionCacheKey<V> cacheKey, List<String> rankNames) {
+        checkNotNull(cacheKey);
+        checkNotNull(rankNames);
+        List<OptionId> optionIds = new ArrayList<>(rankNames.size());
+        for (String rankName : rankNames) {
+            optionIds.add(new OptionId(new OptionCacheKey<>(cacheKey, rankName, RankOption.SPECIFIC_RANK)));
+        }
+        Map<OptionId, String> storedValues = optionStore.getValues(optionIds);
+        ImmutableMap.Builder<String, String> values = ImmutableMap.builder();
+        for (int i = 0; i < rankNames.size(); i++) {
+            String value = storedValues.get(optionIds.get(i));
+            if (value != null) {
+                values.put(rankNames.get(i), value);
+            }
+        }
+        return values.build();
+    }
+
+    /**
+     * Retrieves the values for all of {@code optionKeys} at all of {@code rankNames} with a single call to the store
+     */
+    @Override
+    public ImmutableTable<OptionKey<?>, String, String> getValues(UserHierarchy hierarchy, Collection<? extends OptionKey<?>> optionKeys,
+                                                                  List<String> rankNames) {
+        checkNotNull(hierarchy);
+        checkNotNull(optionKeys);
+        checkNotNull(rankNames);
+        List<OptionKey<?>> keys = new ArrayList<>(new LinkedHashSet<>(optionKeys));
+        List<OptionId> optionIds = new ArrayList<>(keys.size() * rankNames.size());
+        for (OptionKey<?> optionKey : keys) {
+            OptionCacheKey<?> cacheKey = new OptionCacheKey<>(hierarchy, RankOption.HIGHEST_RANK, optionKey);
+            for (String rankName : rankNames) {
+                optionIds.add(new OptionId(new OptionCacheKey<>(cacheKey, rankName, RankOption.SPECIFIC_RANK)));
+            }
+        }
+        Map<OptionId, String> storedValues = optionStore.getValues(optionIds);
+        ImmutableTable.Builder<OptionKey<?>, String, String> values = ImmutableTable.builder();
+        int i = 0;
+        for (OptionKey<?> optionKey : keys) {
+            for (String rankName : rankNames) {
+                String value = storedValues.get(optionIds.get(i++));
+                if (value != null) {
+                    values.put(optionKey, rankName, value);
+                }
+            }
+        }
+        return values.build();
     }
 
 
     protected Optional<String> getStringValue(OptionCacheKey<?> cacheKey) {
-        return optionStore.getValue(new OptionId(cacheKey));
+        return optionStore.getValue(cacheKey);
     }
 
 
@@ -0,0 +1,498 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.persist.inmemory.store;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.inject.Singleton;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.option.OptionKeyOrdinals;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.persist.inmemory.InMemoryModule;
+import uk.q3c.krail.persist.inmemory.InMemoryOptionStore;
+import uk.q3c.krail.persist.inmemory.OptionEntity;
+import uk.q3c.krail.persist.inmemory.dao.InMemoryOptionDaoDelegate;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * An in-memory store for user options which trades some speed for a much smaller footprint than {@link DefaultInMemoryOptionStore}, for stores with
+ * millions of entries.  Select it with {@link InMemoryModule#compactOptionStore()}.
+ * <p>
+ * The context, user hierarchy name, rank name and option key of each {@link OptionId} are interned into int dictionaries, which hold each distinct
+ * string once however many entries use it.  The (context, option key) and (user hierarchy, rank) pairs are interned in turn, and the two resulting ids
+ * packed into a long, which keys an open-addressed table of values.  Values themselves are interned, so that the many entries with the same value share
+ * one string.  No {@link OptionId} is held per entry: entities are rebuilt from an {@link OptionCacheKey} held for each option and user hierarchy, which
+ * is captured when values are added with {@link #add(OptionCacheKey, String)}.  An entry added only by {@link OptionId}, before any such key is
+ * available, keeps its {@link OptionId}.
+ * <p>
+ * Point reads are optimistic (see {@link StampedLock}) and so take no lock unless they race with a write.  Writes, {@link #asEntities()} and {@link
+ * #find} take the lock, so a snapshot is consistent but holds up writers while it is taken.  {@link #find} scans the packed keys comparing interned ids
+ * rather than keeping secondary indexes, which would cost more memory than the entries themselves.
+ * <p>
+ * Reads by {@link OptionCacheKey}, as {@link InMemoryOptionDaoDelegate} makes them, find the option id from the {@link OptionKeyOrdinals ordinal} of the
+ * option key, recorded when a value is first added for it with {@link #add(OptionCacheKey, String)}, so that neither an {@link OptionId} nor the
+ * composite key string is built for the read.  Ordinals are not serialized, but are recorded again from the held keys on deserialization.
+ * <p>
+ * Dictionary entries are not removed when options are deleted, only by {@link #clear()}
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@Singleton
+@ThreadSafe
+public class CompactInMemoryOptionStore implements InMemoryOptionStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StringDictionary contexts = new StringDictionary();
+    private final StringDictionary optionKeys = new StringDictionary();
+    private final StringDictionary hierarchies = new StringDictionary();
+    private final StringDictionary ranks = new StringDictionary();
+    // (context id, option key id) -> option id
+    private final LongDictionary options = new LongDictionary();
+    // (hierarchy id, rank id) -> user rank id
+    private final LongDictionary userRanks = new LongDictionary();
+    // (option id, hierarchy id) -> key from which to rebuild OptionIds
+    private final Map<Long, OptionCacheKey<?>> templates = new HashMap<>();
+    private final Map<Long, OptionId> detachedIds = new HashMap<>();
+    // OptionKey ordinal -> option id + 1, or 0 if not recorded
+    private transient int[] optionsByOrdinal = new int[INITIAL_CAPACITY];
+    private transient StampedLock lock = new StampedLock();
+    private transient Interner<String> values = Interners.newWeakInterner();
+    private EntryTable entries = new EntryTable(INITIAL_CAPACITY);
+    private volatile int size;
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private static int high(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    private static int low(long packed) {
+        return (int) packed;
+    }
+
+    @Override
+    public Optional<OptionEntity> getEntity(OptionId optionId) {
+        return getValue(optionId).map(value -> new OptionEntity(optionId, value));
+    }
+
+    @Override
+    public Optional<String> delete(OptionId optionId) {
+        checkNotNull(optionId);
+        long stamp = lock.writeLock();
+        try {
+            long key = keyOf(optionId);
+            if (key < 0) {
+                return Optional.empty();
+            }
+            String removed = entries.remove(key);
+            if (removed == null) {
+                return Optional.empty();
+            }
+            detachedIds.remove(key);
+            size--;
+            return Optional.of(removed);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            contexts.clear();
+            optionKeys.clear();
+            hierarchies.clear();
+            ranks.clear();
+            options.clear();
+            userRanks.clear();
+            templates.clear();
+            detachedIds.clear();
+            optionsByOrdinal = new int[INITIAL_CAPACITY];
+            entries = new EntryTable(INITIAL_CAPACITY);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<OptionEntity> asEntities() {
+        return find(null, null, null, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Scans every entry, but compares only interned ids
+     */
+    @Override
+    public List<OptionEntity> find(String context, String userHierarchyName, String rankName, String optionKey) {
+        long stamp = lock.readLock();
+        try {
+            int contextId = (context == null) ? -1 : contexts.idOf(context);
+            int hierarchyId = (userHierarchyName == null) ? -1 : hierarchies.idOf(userHierarchyName);
+            int rankId = (rankName == null) ? -1 : ranks.idOf(rankName);
+            int optionKeyId = (optionKey == null) ? -1 : optionKeys.idOf(optionKey);
+            if ((context != null && contextId < 0) || (userHierarchyName != null && hierarchyId < 0) || (rankName != null && rankId < 0) || (optionKey
+                    != null && optionKeyId < 0)) {
+                return new ArrayList<>();
+            }
+            List<OptionEntity> entities = new ArrayList<>();
+            long[] keys = entries.keys;
+            String[] entryValues = entries.values;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (entryValues[slot] != null) {
+                    long key = keys[slot];
+                    long option = options.get(low(key));
+                    long userRank = userRanks.get(high(key));
+                    if ((contextId < 0 || high(option) == contextId) && (optionKeyId < 0 || low(option) == optionKeyId) && (hierarchyId < 0 || high
+                            (userRank) == hierarchyId) && (rankId < 0 || low(userRank) == rankId)) {
+                        entities.add(new OptionEntity(optionIdOf(key, userRank), entryValues[slot]));
+                    }
+                }
+            }
+            return entities;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Rebuilds the {@link OptionId} for an entry, which is not held as such.  Call with the lock held
+     */
+    private OptionId optionIdOf(long key, long userRank) {
+        OptionCacheKey<?> template = templates.get(pack(low(key), high(userRank)));
+        if (template == null) {
+            return detachedIds.get(key);
+        }
+        return new OptionId(new OptionCacheKey<>(template, ranks.get(low(userRank)), RankOption.SPECIFIC_RANK));
+    }
+
+    @Override
+    public void add(OptionId optionId, String value) {
+        checkNotNull(optionId);
+        checkNotNull(value);
+        long stamp = lock.writeLock();
+        try {
+            long key = internKey(optionId);
+            put(key, value);
+            if (!templates.containsKey(templateKey(key))) {
+                detachedIds.put(key, optionId);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * As {@link #add(OptionId, String)}, but also keeps {@code cacheKey}, if it is the first for its option and user hierarchy, so that {@link
+     * OptionId}s need not be held for each entry
+     */
+    @Override
+    public void add(OptionCacheKey<?> cacheKey, String value) {
+        checkNotNull(cacheKey);
+        checkNotNull(value);
+        OptionId optionId = new OptionId(cacheKey);
+        long stamp = lock.writeLock();
+        try {
+            long key = internKey(optionId);
+            put(key, value);
+            templates.putIfAbsent(templateKey(key), cacheKey);
+            detachedIds.remove(key);
+            recordOrdinal(cacheKey.getOptionKey(), low(key));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Call with the write lock held
+     */
+    private void put(long key, String value) {
+        if ((size + 1) * 2 > entries.keys.length) {
+            entries = entries.resized();
+        }
+        if (entries.put(key, values.intern(value)) == null) {
+            size++;
+        }
+    }
+
+    /**
+     * Call with the write lock held
+     */
+    private void recordOrdinal(OptionKey<?> optionKey, int option) {
+        int ordinal = OptionKeyOrdinals.instance()
+                .ordinal(optionKey);
+        int[] byOrdinal = optionsByOrdinal;
+        if (ordinal >= byOrdinal.length) {
+            byOrdinal = Arrays.copyOf(byOrdinal, Math.max(ordinal + 1, byOrdinal.length * 2));
+        }
+        byOrdinal[ordinal] = option + 1;
+        optionsByOrdinal = byOrdinal;
+    }
+
+    /**
+     * (option id, hierarchy id) for an entry key.  Call with the lock held
+     */
+    private long templateKey(long key) {
+        return pack(low(key), high(userRanks.get(high(key))));
+    }
+
+    @Override
+    public Optional<String> getValue(OptionId optionId) {
+        checkNotNull(optionId);
+        long stamp = lock.tryOptimisticRead();
+        String value = read(optionId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = read(optionId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return Optional.ofNullable(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Where the option key has been recorded, finds the entry from its ordinal and interned ids, without building an {@link OptionId}
+     */
+    @Override
+    public Optional<String> getValue(OptionCacheKey<?> cacheKey) {
+        checkNotNull(cacheKey);
+        long stamp = lock.tryOptimisticRead();
+        String value = read(cacheKey);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = read(cacheKey);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return Optional.ofNullable(value);
+    }
+
+    @Override
+    public ImmutableMap<OptionId, String> getValues(Collection<OptionId> optionIds) {
+        checkNotNull(optionIds);
+        long stamp = lock.tryOptimisticRead();
+        Map<OptionId, String> found = read(optionIds);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = read(optionIds);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return ImmutableMap.copyOf(found);
+    }
+
+    private Map<OptionId, String> read(Collection<OptionId> optionIds) {
+        Map<OptionId, String> found = new HashMap<>();
+        for (OptionId optionId : optionIds) {
+            String value = read(optionId);
+            if (value != null) {
+                found.put(optionId, value);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * May be called without the lock, as the first attempt of an optimistic read, so must not fail however it races with a write
+     */
+    private String read(OptionId optionId) {
+        long key = keyOf(optionId);
+        return key < 0 ? null : entries.get(key);
+    }
+
+    /**
+     * As {@link #read(OptionId)}, which it falls back to if the option key has not been recorded (as for an entry added only by {@link OptionId})
+     */
+    private String read(OptionCacheKey<?> cacheKey) {
+        int ordinal = OptionKeyOrdinals.instance()
+                .ordinal(cacheKey.getOptionKey());
+        int[] byOrdinal = optionsByOrdinal;
+        int option = (ordinal < byOrdinal.length) ? byOrdinal[ordinal] - 1 : -1;
+        if (option < 0) {
+            return read(new OptionId(cacheKey));
+        }
+        int hierarchy = hierarchies.idOf(cacheKey.getHierarchy()
+                .persistenceName());
+        int rank = ranks.idOf(cacheKey.getRequestedRankName());
+        if (hierarchy < 0 || rank < 0) {
+            return null;
+        }
+        int userRank = userRanks.idOf(pack(hierarchy, rank));
+        return userRank < 0 ? null : entries.get(pack(userRank, option));
+    }
+
+    /**
+     * The packed key for {@code optionId}, or -1 if any part of it is not in the dictionaries (in which case it cannot be in the store)
+     */
+    private long keyOf(OptionId optionId) {
+        int context = contexts.idOf(optionId.getContext());
+        int optionKey = optionKeys.idOf(optionId.getOptionKey());
+        int hierarchy = hierarchies.idOf(optionId.getUserHierarchyName());
+        int rank = ranks.idOf(optionId.getRankName());
+        if (context < 0 || optionKey < 0 || hierarchy < 0 || rank < 0) {
+            return -1;
+        }
+        int option = options.idOf(pack(context, optionKey));
+        int userRank = userRanks.idOf(pack(hierarchy, rank));
+        if (option < 0 || userRank < 0) {
+            return -1;
+        }
+        return pack(userRank, option);
+    }
+
+    /**
+     * Call with the write lock held
+     */
+    private long internKey(OptionId optionId) {
+        int option = options.intern(pack(contexts.intern(optionId.getContext()), optionKeys.intern(optionId.getOptionKey())));
+        int userRank = userRanks.intern(pack(hierarchies.intern(optionId.getUserHierarchyName()), ranks.intern(optionId.getRankName())));
+        return pack(userRank, option);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new StampedLock();
+        values = Interners.newWeakInterner();
+        optionsByOrdinal = new int[INITIAL_CAPACITY];
+        templates.forEach((templateKey, cacheKey) -> recordOrdinal(cacheKey.getOptionKey(), high(templateKey)));
+    }
+
+    /**
+     * Open-addressed table, with linear probing, from packed key to value.  A null value marks an empty slot.  Never more than half full, so a probe
+     * always ends at an empty slot
+     */
+    private static final class EntryTable implements Serializable {
+
+        private final long[] keys;
+        private final String[] values;
+
+        private EntryTable(int capacity) {
+            keys = new long[capacity];
+            values = new String[capacity];
+        }
+
+        private static int firstSlot(long key, int mask) {
+            int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        private int slotOf(long key) {
+            int mask = keys.length - 1;
+            int slot = firstSlot(key, mask);
+            for (int probes = 0; probes <= mask; probes++) {
+                if (values[slot] == null) {
+                    return -1;
+                }
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private String get(long key) {
+            int slot = slotOf(key);
+            return slot < 0 ? null : values[slot];
+        }
+
+        /**
+         * @return the previous value, or null if there was none
+         */
+        private String put(long key, String value) {
+            int mask = keys.length - 1;
+            int slot = firstSlot(key, mask);
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    String previous = values[slot];
+                    values[slot] = value;
+                    return previous;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            return null;
+        }
+
+        /**
+         * Removes {@code key}, then shifts back any following entries whose probe sequence passed through its slot, so that no probe stops short
+         */
+        private String remove(long key) {
+            int slot = slotOf(key);
+            if (slot < 0) {
+                return null;
+            }
+            String previous = values[slot];
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int ideal = firstSlot(keys[next], mask);
+                if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+            values[hole] = null;
+            keys[hole] = 0;
+            return previous;
+        }
+
+        private EntryTable resized() {
+            EntryTable bigger = new EntryTable(keys.length * 2);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (values[slot] != null) {
+                    bigger.put(keys[slot], values[slot]);
+                }
+            }
+            return bigger;
+        }
+    }
+}
@@ -12,48 +12,75 @@
  */
 package uk.q3c.krail.persist.inmemory.store;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Singleton;
 import uk.q3c.krail.option.persist.OptionId;
 import uk.q3c.krail.persist.inmemory.InMemoryOptionStore;
 import uk.q3c.krail.persist.inmemory.OptionEntity;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import static com.google.common.base.Preconditions.*;
 
 /**
- * A volatile, in-memory store for user options
+ * A volatile, in-memory store for user options.
+ * <p>
+ * Each {@link OptionId} maps, in a {@link ConcurrentHashMap}, to the latest {@link Version} of its value, which links to the versions before it.  A write
+ * replaces only the entry for its own {@link OptionId}, so costs the same however large the store is, and point reads take no lock.
+ * <p>
+ * {@link #asEntities()}, {@link #find} and {@link #getValues(Collection)} see the store as it was at one point in time, without blocking writers.  Each
+ * version is numbered from a clock once it is in the map, and a point-in-time read takes the clock when it starts, then reads the newest version of each
+ * entry numbered no later than that.  A version not yet numbered when a reader meets it is numbered by the reader, so nobody waits for the writer which
+ * made it.  Older versions are only kept while a point-in-time read which may need them is running, and are dropped when it finishes.  Deleting an entry
+ * writes a version without a value, and the entry is removed from the map once no running read can need it.
+ * <p>
+ * {@link #find} uses secondary indexes by context, user hierarchy name and rank name.  An {@link OptionId} is added to the indexes before its entry is put
+ * in the map, and removed with the entry, so the indexes may briefly hold more than the store, but never less, and query results are checked against the
+ * store.
+ * <p>
+ * {@link #clear()} replaces the whole content at once
  */
 @Singleton
 @ThreadSafe
 public class DefaultInMemoryOptionStore implements InMemoryOptionStore {
 
-    private ConcurrentMap<OptionId, String> map = new ConcurrentHashMap<>();
+    private volatile Contents contents = new Contents();
 
 
     @Override
-    public synchronized Optional<OptionEntity> getEntity(OptionId id) {
+    public Optional<OptionEntity> getEntity(OptionId id) {
         checkNotNull(id);
-        String result = map.get(id);
+        String result = contents.get(id);
         return result == null ? Optional.empty() : Optional.of(new OptionEntity(id, result));
     }
 
 
     @Override
-    public synchronized Optional<String> delete(OptionId id) {
+    public Optional<String> delete(OptionId id) {
         checkNotNull(id);
-        String removed = map.remove(id);
-        return removed == null ? Optional.empty() : Optional.of(removed);
+        return Optional.ofNullable(contents.delete(id));
     }
 
 
     public void clear() {
-        map.clear();
+        contents = new Contents();
     }
 
     /**
@@ -61,36 +88,391 @@ public class DefaultInMemoryOptionStore implements InMemoryOptionStore {
      */
     @Override
     public int size() {
-        return map.size();
+        return contents.size.get();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The list is a point-in-time copy, taken without blocking writers
+     */
     @Override
+    public List<OptionEntity> asEntities() {
+        return contents.scan(null, null, null, null);
+    }
 
-    public synchronized List<OptionEntity> asEntities() {
-        return map.keySet()
-                .stream()
-                .map(this::newEntity)
-                .collect(Collectors.toList());
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The result is taken at a single point in time, using the most selective of the indexes for the criteria given.  Only a query with none of context,
+     * user hierarchy name and rank name scans the whole store
+     */
+    @Override
+    public List<OptionEntity> find(String context, String userHierarchyName, String rankName, String optionKey) {
+        Contents current = contents;
+        Set<OptionId> candidates = current.indexes.candidates(context, userHierarchyName, rankName);
+        if (candidates == null) {
+            return current.scan(context, userHierarchyName, rankName, optionKey);
+        }
+        List<OptionEntity> entities = new ArrayList<>();
+        Reader reader = current.open();
+        try {
+            for (OptionId id : candidates) {
+                if (matches(id, context, userHierarchyName, rankName, optionKey)) {
+                    String value = current.valueAt(id, reader.at);
+                    if (value != null) {
+                        entities.add(new OptionEntity(id, value));
+                    }
+                }
+            }
+        } finally {
+            current.close(reader);
+        }
+        return entities;
     }
 
-    private OptionEntity newEntity(OptionId id) {
-        checkNotNull(id);
-        return new OptionEntity(id, map.get(id));
+    private static boolean matches(OptionId id, String context, String userHierarchyName, String rankName, String optionKey) {
+        return (context == null || context.equals(id.getContext())) && (userHierarchyName == null || userHierarchyName.equals(id.getUserHierarchyName()))
+                && (rankName == null || rankName.equals(id.getRankName())) && (optionKey == null || optionKey.equals(id.getOptionKey()));
     }
 
     @Override
     public void add(OptionId id, String value) {
         checkNotNull(id);
         checkNotNull(value);
-        map.put(id, value);
+        contents.add(id, value);
     }
 
     @Override
     public Optional<String> getValue(OptionId optionId) {
         checkNotNull(optionId);
-        String result = map.get(optionId);
-        return result == null ? Optional.empty() : Optional.of(result);
+        return Optional.ofNullable(contents.get(optionId));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The values are taken at a single point in time
+     */
+    @Override
+    public ImmutableMap<OptionId, String> getValues(Collection<OptionId> optionIds) {
+        checkNotNull(optionIds);
+        Contents current = contents;
+        Map<OptionId, String> values = new HashMap<>();
+        Reader reader = current.open();
+        try {
+            for (OptionId optionId : optionIds) {
+                String value = current.valueAt(optionId, reader.at);
+                if (value != null) {
+                    values.put(optionId, value);
+                }
+            }
+        } finally {
+            current.close(reader);
+        }
+        return ImmutableMap.copyOf(values);
     }
 
 
+    /**
+     * The whole content of the store, with the clock which numbers its versions and the point-in-time reads running against it
+     */
+    private static final class Contents implements Serializable {
+
+        private final ConcurrentMap<OptionId, Version> versions = new ConcurrentHashMap<>();
+        private final AtomicLong clock = new AtomicLong();
+        private final AtomicLong tickets = new AtomicLong();
+        private final ConcurrentSkipListSet<Reader> readers = new ConcurrentSkipListSet<>();
+        private final Queue<Retained> retained = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final Indexes indexes = new Indexes();
+
+        /**
+         * Numbers {@code version} if it has not been already, and returns its number
+         */
+        private long commit(Version version) {
+            if (version.number == Version.PENDING) {
+                Version.NUMBER.compareAndSet(version, Version.PENDING, clock.incrementAndGet());
+            }
+            return version.number;
+        }
+
+        private String get(OptionId id) {
+            Version latest = versions.get(id);
+            if (latest == null) {
+                return null;
+            }
+            // numbered before it is returned, so that no point-in-time read which starts later can miss it
+            commit(latest);
+            return latest.value;
+        }
+
+        /**
+         * Starts a point-in-time read.  The reader is registered with a clock no later than the one it reads at, so that a writer which cannot see it
+         * yet knows that it will read at a clock no earlier than the writer's own version.  Must be followed by {@link #close(Reader)}
+         */
+        private Reader open() {
+            Reader reader = new Reader(clock.get(), tickets.incrementAndGet());
+            readers.add(reader);
+            reader.at = clock.get();
+            return reader;
+        }
+
+        private void close(Reader reader) {
+            readers.remove(reader);
+            release();
+        }
+
+        /**
+         * The earliest clock any running point-in-time read may read at, or {@link Long#MAX_VALUE} if none is running.  No read, running or to come, needs
+         * a version older than the newest one numbered no later than this
+         */
+        private long horizon() {
+            Reader oldest = readers.ceiling(Reader.EARLIEST);
+            return oldest == null ? Long.MAX_VALUE : oldest.registeredAt;
+        }
+
+        private String valueAt(OptionId id, long at) {
+            return valueAt(versions.get(id), at);
+        }
+
+        private String valueAt(Version latest, long at) {
+            for (Version version = latest; version != null; version = version.previous) {
+                if (commit(version) <= at) {
+                    return version.value;
+                }
+            }
+            return null;
+        }
+
+        private void add(OptionId id, String value) {
+            Version[] written = new Version[1];
+            versions.compute(id, (k, latest) -> {
+                if (latest != null) {
+                    commit(latest);
+                    if (value.equals(latest.value)) {
+                        return latest;
+                    }
+                }
+                if (latest == null || latest.value == null) {
+                    indexes.add(id);
+                    size.incrementAndGet();
+                }
+                written[0] = new Version(value, latest);
+                return written[0];
+            });
+            if (written[0] != null) {
+                commit(written[0]);
+                retire(id, written[0]);
+            }
+        }
+
+        private String delete(OptionId id) {
+            String[] removed = new String[1];
+            Version[] written = new Version[1];
+            versions.computeIfPresent(id, (k, latest) -> {
+                commit(latest);
+                if (latest.value == null) {
+                    return latest;
+                }
+                removed[0] = latest.value;
+                size.decrementAndGet();
+                written[0] = new Version(null, latest);
+                return written[0];
+            });
+            if (written[0] != null) {
+                commit(written[0]);
+                retire(id, written[0]);
+            }
+            return removed[0];
+        }
+
+        /**
+         * Drops the versions before {@code version} which no point-in-time read can need, keeping it for {@link #release()} if a running read may still
+         * need some of them
+         */
+        private void retire(OptionId id, Version version) {
+            if (!trim(id, version, horizon())) {
+                retained.add(new Retained(id, version));
+            }
+            release();
+        }
+
+        /**
+         * Trims the versions kept by {@link #retire} which the reads still running no longer need.  Retained versions are queued in roughly the order they
+         * were numbered, so this stops at the first which cannot be trimmed yet
+         */
+        private void release() {
+            Retained next;
+            while ((next = retained.peek()) != null && next.version.number <= horizon()) {
+                next = retained.poll();
+                if (next != null && !trim(next.id, next.version, horizon())) {
+                    retained.add(next);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Drops the versions below the newest of {@code version} and its predecessors which is numbered no later than {@code horizon}.  If that is
+         * {@code version} itself, and it is a delete, its entry is removed as well
+         *
+         * @return true if nothing is left to trim, that is {@code version} is numbered no later than {@code horizon}
+         */
+        private boolean trim(OptionId id, Version version, long horizon) {
+            for (Version kept = version; kept != null; kept = kept.previous) {
+                if (kept.number <= horizon) {
+                    kept.previous = null;
+                    break;
+                }
+            }
+            if (version.number > horizon) {
+                return false;
+            }
+            if (version.value == null) {
+                remove(id, version);
+            }
+            return true;
+        }
+
+        /**
+         * Removes the entry and index entries for {@code id}, provided {@code deleted} is still its latest version
+         */
+        private void remove(OptionId id, Version deleted) {
+            versions.computeIfPresent(id, (k, latest) -> {
+                if (latest != deleted) {
+                    return latest;
+                }
+                indexes.remove(id);
+                return null;
+            });
+        }
+
+        /**
+         * A point-in-time read of the whole store
+         */
+        private List<OptionEntity> scan(String context, String userHierarchyName, String rankName, String optionKey) {
+            List<OptionEntity> entities = new ArrayList<>(size.get());
+            Reader reader = open();
+            try {
+                for (Map.Entry<OptionId, Version> entry : versions.entrySet()) {
+                    OptionId id = entry.getKey();
+                    if (matches(id, context, userHierarchyName, rankName, optionKey)) {
+                        String value = valueAt(entry.getValue(), reader.at);
+                        if (value != null) {
+                            entities.add(new OptionEntity(id, value));
+                        }
+                    }
+                }
+            } finally {
+                close(reader);
+            }
+            return entities;
+        }
+    }
+
+    /**
+     * One value of an entry, or its deletion if {@link #value} is null.  {@link #number} is {@link #PENDING} until the version is numbered from the clock,
+     * which happens only after it is in the map.  Only the latest version of an entry can be pending
+     */
+    private static final class Version implements Serializable {
+
+        private static final long PENDING = Long.MAX_VALUE;
+        private static final AtomicLongFieldUpdater<Version> NUMBER = AtomicLongFieldUpdater.newUpdater(Version.class, "number");
+
+        private final String value;
+        private volatile long number = PENDING;
+        private volatile Version previous;
+
+        private Version(String value, Version previous) {
+            this.value = value;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * A running point-in-time read, ordered by the clock it registered with
+     */
+    private static final class Reader implements Comparable<Reader>, Serializable {
+
+        private static final Reader EARLIEST = new Reader(Long.MIN_VALUE, Long.MIN_VALUE);
+
+        private final long registeredAt;
+        private final long ticket;
+        private long at;
+
+        private Reader(long registeredAt, long ticket) {
+            this.registeredAt = registeredAt;
+            this.ticket = ticket;
+        }
+
+        @Override
+        public int compareTo(Reader other) {
+            int byClock = Long.compare(registeredAt, other.registeredAt);
+            return byClock != 0 ? byClock : Long.compare(ticket, other.ticket);
+        }
+    }
+
+    /**
+     * A version whose predecessors could not all be dropped when it was written
+     */
+    private static final class Retained implements Serializable {
+
+        private final OptionId id;
+        private final Version version;
+
+        private Retained(OptionId id, Version version) {
+            this.id = id;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Secondary indexes from each context, user hierarchy name and rank name to the {@link OptionId}s which have it
+     */
+    private static final class Indexes implements Serializable {
+
+        private final ConcurrentMap<String, Set<OptionId>> byContext = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Set<OptionId>> byUserHierarchyName = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Set<OptionId>> byRankName = new ConcurrentHashMap<>();
+
+        private static void add(ConcurrentMap<String, Set<OptionId>> index, String attribute, OptionId id) {
+            index.computeIfAbsent(attribute, k -> ConcurrentHashMap.newKeySet())
+                    .add(id);
+        }
+
+        private static void remove(ConcurrentMap<String, Set<OptionId>> index, String attribute, OptionId id) {
+            index.getOrDefault(attribute, Collections.emptySet())
+                    .remove(id);
+        }
+
+        private void add(OptionId id) {
+            add(byContext, id.getContext(), id);
+            add(byUserHierarchyName, id.getUserHierarchyName(), id);
+            add(byRankName, id.getRankName(), id);
+        }
+
+        private void remove(OptionId id) {
+            remove(byContext, id.getContext(), id);
+            remove(byUserHierarchyName, id.getUserHierarchyName(), id);
+            remove(byRankName, id.getRankName(), id);
+        }
+
+        /**
+         * The smallest set of ids which covers the criteria given, or null if none of them is indexed
+         */
+        private Set<OptionId> candidates(String context, String userHierarchyName, String rankName) {
+            Set<OptionId> candidates = smaller(null, byContext, context);
+            candidates = smaller(candidates, byUserHierarchyName, userHierarchyName);
+            return smaller(candidates, byRankName, rankName);
+        }
+
+        private static Set<OptionId> smaller(Set<OptionId> candidates, ConcurrentMap<String, Set<OptionId>> index, String attribute) {
+            if (attribute == null) {
+                return candidates;
+            }
+            Set<OptionId> indexed = index.getOrDefault(attribute, Collections.emptySet());
+            return (candidates == null || indexed.size() < candidates.size()) ? indexed : candidates;
+        }
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.persist.inmemory.store;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Serializable;
+
+/**
+ * Interns long values to dense int ids, starting at 0, in an open-addressed table.  Ids are never removed, so the dictionary grows with the number of
+ * distinct values, not the number of times they are used.
+ * <p>
+ * Not thread safe: the owner guards all calls to {@link #intern} and {@link #clear}.  {@link #idOf} and {@link #get} never fail, even if they race with
+ * a write, but may then return a wrong answer, so a racing reader must validate (see {@link CompactInMemoryOptionStore})
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@NotThreadSafe
+class LongDictionary implements Serializable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Table table = new Table(INITIAL_CAPACITY);
+    private int size;
+
+    /**
+     * The id of {@code value}, or -1 if it has not been interned
+     */
+    int idOf(long value) {
+        Table current = table;
+        int[] slots = current.slots;
+        int mask = slots.length - 1;
+        int slot = hash(value) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (id < current.values.length && current.values[id] == value) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * The id of {@code value}, adding it if it is not already present
+     */
+    int intern(long value) {
+        int id = idOf(value);
+        if (id >= 0) {
+            return id;
+        }
+        if ((size + 1) * 2 > table.slots.length) {
+            table = table.resized(size);
+        }
+        id = size;
+        table.values[id] = value;
+        table.place(value, id);
+        size++;
+        return id;
+    }
+
+    long get(int id) {
+        Table current = table;
+        return id < current.values.length ? current.values[id] : -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    private static int hash(long value) {
+        int hash = (int) (value ^ (value >>> 32)) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Slots hold id + 1, so that 0 marks an empty slot.  Values are held by id, with room for as many ids as the slots allow
+     */
+    private static final class Table implements Serializable {
+
+        private final int[] slots;
+        private final long[] values;
+
+        private Table(int capacity) {
+            slots = new int[capacity];
+            values = new long[capacity / 2];
+        }
+
+        private void place(long value, int id) {
+            int mask = slots.length - 1;
+            int slot = hash(value) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+
+        private Table resized(int size) {
+            Table bigger = new Table(slots.length * 2);
+            System.arraycopy(values, 0, bigger.values, 0, size);
+            for (int id = 0; id < size; id++) {
+                bigger.place(values[id], id);
+            }
+            return bigger;
+        }
+    }
+}
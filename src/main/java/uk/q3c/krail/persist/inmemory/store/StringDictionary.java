@@ -0,0 +1,124 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.persist.inmemory.store;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Serializable;
+
+/**
+ * Interns strings to dense int ids, starting at 0, in an open-addressed table.  Ids are never removed, so the dictionary grows with the number of
+ * distinct strings, not the number of times they are used.
+ * <p>
+ * Not thread safe: the owner guards all calls to {@link #intern} and {@link #clear}.  {@link #idOf} and {@link #get} never fail, even if they race with
+ * a write, but may then return a wrong answer, so a racing reader must validate (see {@link CompactInMemoryOptionStore})
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@NotThreadSafe
+class StringDictionary implements Serializable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Table table = new Table(INITIAL_CAPACITY);
+    private int size;
+
+    /**
+     * The id of {@code value}, or -1 if it has not been interned
+     */
+    int idOf(String value) {
+        Table current = table;
+        int[] slots = current.slots;
+        int mask = slots.length - 1;
+        int slot = spread(value.hashCode()) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (id < current.strings.length && value.equals(current.strings[id])) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * The id of {@code value}, adding it if it is not already present
+     */
+    int intern(String value) {
+        int id = idOf(value);
+        if (id >= 0) {
+            return id;
+        }
+        if ((size + 1) * 2 > table.slots.length) {
+            table = table.resized(size);
+        }
+        id = size;
+        table.strings[id] = value;
+        table.place(value.hashCode(), id);
+        size++;
+        return id;
+    }
+
+    String get(int id) {
+        Table current = table;
+        return id < current.strings.length ? current.strings[id] : null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Slots hold id + 1, so that 0 marks an empty slot.  Strings are held by id, with room for as many ids as the slots allow
+     */
+    private static final class Table implements Serializable {
+
+        private final int[] slots;
+        private final String[] strings;
+
+        private Table(int capacity) {
+            slots = new int[capacity];
+            strings = new String[capacity / 2];
+        }
+
+        private void place(int hash, int id) {
+            int mask = slots.length - 1;
+            int slot = spread(hash) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+
+        private Table resized(int size) {
+            Table bigger = new Table(slots.length * 2);
+            System.arraycopy(strings, 0, bigger.strings, 0, size);
+            for (int id = 0; id < size; id++) {
+                bigger.place(strings[id].hashCode(), id);
+            }
+            return bigger;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.persist.mapped;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.MapBinder;
+import uk.q3c.krail.i18n.I18NKey;
+import uk.q3c.krail.option.persist.OptionDaoDelegate;
+import uk.q3c.krail.option.persist.OptionDaoProviders;
+import uk.q3c.krail.option.persist.OptionPersistenceEnabler;
+import uk.q3c.krail.persist.DefaultPersistenceInfo;
+import uk.q3c.krail.persist.PersistenceInfo;
+import uk.q3c.krail.persist.mapped.dao.MappedFileOptionDaoDelegate;
+import uk.q3c.krail.persist.mapped.store.MappedFileDescriptionKey;
+import uk.q3c.krail.persist.mapped.store.MappedFileOptionStore;
+
+import java.io.File;
+import java.lang.annotation.Annotation;
+
+/**
+ * A persistence module which holds option values in a memory-mapped file (see {@link MappedFileOptionStore}), so that, unlike {@link
+ * uk.q3c.krail.persist.inmemory.InMemoryModule}, values survive a restart.  Set the file with {@link #file(File)}, which defaults to {@link
+ * #DEFAULT_FILE} in the working directory, and select it with {@code new OptionModule().activeSource(MappedFile.class)}
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class MappedFileModule extends AbstractModule implements OptionPersistenceEnabler<MappedFileModule> {
+
+    public static final String DEFAULT_FILE = "krail-options.dat";
+
+    private String connectionUrl;
+    private I18NKey description = MappedFileDescriptionKey.Data_is_held_in_a_memory_mapped_file;
+    private I18NKey name = MappedFileLabelKey.Mapped_File;
+    private MapBinder<Class<? extends Annotation>, PersistenceInfo<?>> optionDaoProviders;
+    private boolean provideOptionDao = false;
+    private File file = new File(DEFAULT_FILE);
+    private boolean volatilePersistence = false;
+
+    public boolean isProvideOptionDao() {
+        return provideOptionDao;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void configure() {
+
+        TypeLiteral<Class<? extends Annotation>> annotationClassLiteral = new TypeLiteral<Class<? extends Annotation>>() {
+        };
+        TypeLiteral<PersistenceInfo<?>> persistenceInfoClassLiteral = new TypeLiteral<PersistenceInfo<?>>() {
+        };
+
+        optionDaoProviders = MapBinder.newMapBinder(binder(), annotationClassLiteral, persistenceInfoClassLiteral, OptionDaoProviders.class);
+
+        bindOptionDao();
+    }
+
+    /**
+     * binds {@link OptionDaoDelegate} annotated with {@link MappedFile} but only if {@link #provideOptionDao} has been set by a previous call to {@link
+     * #provideOptionDao()}
+     */
+    protected void bindOptionDao() {
+
+        if (provideOptionDao) {
+            bind(File.class).annotatedWith(MappedFileLocation.class)
+                    .toInstance(file);
+            bind(OptionDaoDelegate.class).annotatedWith(MappedFile.class)
+                    .to(MappedFileOptionDaoDelegate.class);
+            optionDaoProviders.addBinding(MappedFile.class)
+                    .toInstance(new DefaultPersistenceInfo(this));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MappedFileModule provideOptionDao() {
+        provideOptionDao = true;
+        return this;
+    }
+
+    @Override
+    public I18NKey getName() {
+        return name;
+    }
+
+    @Override
+    public String getConnectionUrl() {
+        return connectionUrl != null ? connectionUrl : file.getAbsoluteFile()
+                .toURI()
+                .toString();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Sets the file used by {@link MappedFileOptionStore}, which is created if it does not exist
+     */
+    public MappedFileModule file(final File file) {
+        this.file = file;
+        return this;
+    }
+
+    @Override
+    public I18NKey getDescription() {
+        return description;
+    }
+
+    @Override
+    public boolean isVolatilePersistence() {
+        return volatilePersistence;
+    }
+
+    @Override
+    public MappedFileModule name(final I18NKey name) {
+        this.name = name;
+        return this;
+    }
+
+    @Override
+    public MappedFileModule description(final I18NKey description) {
+        this.description = description;
+        return this;
+    }
+
+    @Override
+    public MappedFileModule connectionUrl(final String connectionUrl) {
+        this.connectionUrl = connectionUrl;
+        return this;
+    }
+
+    @Override
+    public MappedFileModule volatilePersistence(final boolean volatilePersistence) {
+        this.volatilePersistence = volatilePersistence;
+        return this;
+    }
+}
@@ -0,0 +1,739 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.persist.mapped.store;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.persist.inmemory.InMemoryOptionStore;
+import uk.q3c.krail.persist.inmemory.OptionEntity;
+import uk.q3c.krail.persist.mapped.MappedFileLocation;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.zip.CRC32;
+
+import static com.google.common.base.Preconditions.*;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A durable {@link InMemoryOptionStore}, which keeps its entries in an append-only log in a memory-mapped file.  Every change, including a delete,
+ * appends a record:
+ * <pre>
+ *     int crc, int keyLength, int valueLength (-1 for a delete), int idLength, key, value (UTF-8), serialised {@link OptionId}
+ * </pre>
+ * where the key holds the context, user hierarchy name, rank name and option key of the {@link OptionId}, each as an int length and UTF-8 bytes, and
+ * the CRC covers everything after it.  The file starts with a 16 byte header identifying the format.
+ * <p>
+ * Only an index of record positions is held on the heap.  Opening a store scans the record headers to rebuild it, without deserialising any keys or
+ * values, so startup takes little more than reading the file.  The scan stops at the first record which is incomplete or fails its CRC, which is
+ * what a process killed part way through an append leaves behind; that tail is discarded and overwritten by the next append.
+ * <p>
+ * Replaced and deleted records are reclaimed by compaction, which copies the live records to a new file and renames it over the old one, so that a
+ * crash leaves either the old file or the new one.  Compaction runs when the dead records take more space than the live ones, and more than the
+ * compaction threshold, or when {@link #compact()} is called.  {@link #clear()} uses the same mechanism to replace the file with an empty one.
+ * <p>
+ * Changes are in the operating system's page cache as soon as a method returns, and survive the process ending.  Call {@link #flush()} for them to
+ * survive the machine failing as well.  The file is locked while the store is open, so only one process, and one store in a process, can use it.
+ * Because the log holds serialised {@link OptionId}s, a change to the serial form of that class makes older files unreadable.  The mapped buffer
+ * limits a file to 2GB.
+ * <p>
+ * Reads take a shared lock, and writes an exclusive one
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@Singleton
+@ThreadSafe
+public class MappedFileOptionStore implements InMemoryOptionStore, Closeable {
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 1 << 20;
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1 << 20;
+
+    private static final long MAGIC = 0x4B5241494C4F5054L;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int DELETED = -1;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final ConcurrentMap<String, MappedFileOptionStore> openStores = new ConcurrentHashMap<>();
+    private static Logger log = LoggerFactory.getLogger(MappedFileOptionStore.class);
+
+    private final File file;
+    private final int initialCapacity;
+    private final int compactionThreshold;
+    private transient StampedLock lock;
+    private transient FileChannel lockChannel;
+    private transient FileLock fileLock;
+    private transient FileChannel channel;
+    private transient MappedByteBuffer buffer;
+    private transient int[] positions;
+    private transient int[] hashes;
+    private transient int writePosition;
+    private transient long liveBytes;
+    private transient long deadBytes;
+    private transient volatile int size;
+    private transient volatile boolean closed;
+
+    @Inject
+    public MappedFileOptionStore(@MappedFileLocation File file) {
+        this(file, DEFAULT_INITIAL_CAPACITY, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Opens {@code file}, creating it if it does not exist
+     *
+     * @param file                the log file
+     * @param initialCapacity     the size a new file is mapped at, doubled whenever it fills
+     * @param compactionThreshold the space which dead records may take before compaction is considered
+     */
+    public MappedFileOptionStore(File file, int initialCapacity, int compactionThreshold) {
+        checkNotNull(file);
+        checkArgument(initialCapacity >= 1024, "initial capacity must be at least 1024");
+        checkArgument(compactionThreshold >= 0, "compaction threshold cannot be negative");
+        this.file = file.getAbsoluteFile();
+        this.initialCapacity = initialCapacity;
+        this.compactionThreshold = compactionThreshold;
+        open();
+    }
+
+    private void open() {
+        if (openStores.putIfAbsent(registryKey(), this) != null) {
+            throw new IllegalStateException(file + " is already open");
+        }
+        lock = new StampedLock();
+        try {
+            File parent = file.getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+            lockChannel = FileChannel.open(sibling(".lock").toPath(), CREATE, WRITE);
+            fileLock = lockChannel.tryLock();
+            if (fileLock == null) {
+                throw new IllegalStateException(file + " is in use by another process");
+            }
+            Files.deleteIfExists(sibling(".compacting").toPath());
+            channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE);
+            checkState(channel.size() <= Integer.MAX_VALUE, "%s is too large to map", file);
+            buffer = channel.map(READ_WRITE, 0, Math.max(channel.size(), initialCapacity));
+            if (buffer.getLong(0) == 0 && buffer.getInt(FILE_HEADER_SIZE + 4) == 0) {
+                buffer.putLong(0, MAGIC);
+                buffer.putInt(8, VERSION);
+            }
+            checkState(buffer.getLong(0) == MAGIC && buffer.getInt(8) == VERSION, "%s is not an option store file", file);
+            recover();
+        } catch (IOException e) {
+            release();
+            throw new UncheckedIOException("Unable to open " + file, e);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    /**
+     * Rebuilds the index from the log, stopping at the first record which is not complete and intact.  Anything after that is zeroed, so that a later
+     * scan cannot mistake its remains for a record
+     */
+    private void recover() {
+        positions = new int[INITIAL_SLOTS];
+        hashes = new int[INITIAL_SLOTS];
+        size = 0;
+        liveBytes = 0;
+        deadBytes = 0;
+        int position = FILE_HEADER_SIZE;
+        int length;
+        while ((length = intactRecordLength(position)) > 0) {
+            replay(position);
+            position += length;
+        }
+        writePosition = position;
+        if (position + RECORD_HEADER_SIZE <= buffer.capacity() && (buffer.getLong(position) != 0 || buffer.getLong(position + 8) != 0)) {
+            log.warn("Discarding incomplete record at {} in {}", position, file);
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private void replay(int position) {
+        int keyLength = buffer.getInt(position + 4);
+        byte[] key = copy(buffer, position + RECORD_HEADER_SIZE, keyLength);
+        int hash = hash(key);
+        int slot = findSlot(key, hash);
+        boolean deleted = buffer.getInt(position + 8) == DELETED;
+        if (slot >= 0) {
+            retire(positions[slot]);
+            if (deleted) {
+                removeSlot(slot);
+                size--;
+            } else {
+                positions[slot] = position;
+            }
+        } else if (!deleted) {
+            ensureIndexCapacity();
+            setSlot(freeSlot(hash), position, hash);
+            size++;
+        }
+        if (deleted) {
+            deadBytes += recordLength(position);
+        } else {
+            liveBytes += recordLength(position);
+        }
+    }
+
+    /**
+     * The length of the record at {@code position}, or 0 if there is no complete record there with a matching CRC
+     */
+    private int intactRecordLength(int position) {
+        if (position > buffer.capacity() - RECORD_HEADER_SIZE) {
+            return 0;
+        }
+        int keyLength = buffer.getInt(position + 4);
+        int valueLength = buffer.getInt(position + 8);
+        int idLength = buffer.getInt(position + 12);
+        if (keyLength <= 0 || valueLength < DELETED || idLength < 0) {
+            return 0;
+        }
+        long length = (long) RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0) + idLength;
+        if (position + length > buffer.capacity()) {
+            return 0;
+        }
+        return buffer.getInt(position) == checksum(buffer, position, (int) length) ? (int) length : 0;
+    }
+
+    private static int checksum(ByteBuffer target, int position, int length) {
+        ByteBuffer covered = target.duplicate();
+        covered.limit(position + length);
+        covered.position(position + 4);
+        CRC32 crc = new CRC32();
+        crc.update(covered);
+        return (int) crc.getValue();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void add(OptionId optionId, String value) {
+        checkNotNull(optionId);
+        checkNotNull(value);
+        byte[] key = keyBytes(optionId);
+        byte[] valueBytes = value.getBytes(UTF_8);
+        int hash = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            checkOpen();
+            int slot = findSlot(key, hash);
+            if (slot >= 0) {
+                int previous = positions[slot];
+                if (valueEquals(previous, valueBytes)) {
+                    return;
+                }
+                positions[slot] = append(key, valueBytes, idBytes(previous));
+                retire(previous);
+            } else {
+                ensureIndexCapacity();
+                setSlot(freeSlot(hash), append(key, valueBytes, serialise(optionId)), hash);
+                size++;
+            }
+            compactIfWasteful();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Optional<String> delete(OptionId optionId) {
+        checkNotNull(optionId);
+        byte[] key = keyBytes(optionId);
+        int hash = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            checkOpen();
+            int slot = findSlot(key, hash);
+            if (slot < 0) {
+                return Optional.empty();
+            }
+            int position = positions[slot];
+            String removed = value(position);
+            deadBytes += recordLength(append(key, null, new byte[0]));
+            retire(position);
+            removeSlot(slot);
+            size--;
+            compactIfWasteful();
+            return Optional.of(removed);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the file with an empty one
+     */
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            checkOpen();
+            rewrite(false);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies the live records to a new file, which then replaces the current one
+     */
+    public void compact() {
+        long stamp = lock.writeLock();
+        try {
+            checkOpen();
+            rewrite(true);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Forces all changes to the storage device
+     */
+    public void flush() {
+        long stamp = lock.readLock();
+        try {
+            checkOpen();
+            buffer.force();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Flushes and closes the file.  The store cannot be used afterwards, but the file can be opened again by a new instance
+     */
+    @Override
+    public void close() {
+        long stamp = lock.writeLock();
+        try {
+            if (!closed) {
+                buffer.force();
+                release();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void release() {
+        closed = true;
+        closeQuietly(channel);
+        closeQuietly(lockChannel);
+        openStores.remove(registryKey(), this);
+    }
+
+    private void closeQuietly(FileChannel target) {
+        if (target == null) {
+            return;
+        }
+        try {
+            target.close();
+        } catch (IOException e) {
+            log.warn("Unable to close " + file, e);
+        }
+    }
+
+    private void checkOpen() {
+        checkState(!closed, "%s has been closed", file);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Optional<OptionEntity> getEntity(OptionId optionId) {
+        return getValue(optionId).map(value -> new OptionEntity(optionId, value));
+    }
+
+    @Override
+    public Optional<String> getValue(OptionId optionId) {
+        checkNotNull(optionId);
+        byte[] key = keyBytes(optionId);
+        int hash = hash(key);
+        long stamp = lock.readLock();
+        try {
+            checkOpen();
+            int slot = findSlot(key, hash);
+            return slot < 0 ? Optional.empty() : Optional.of(value(positions[slot]));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public ImmutableMap<OptionId, String> getValues(Collection<OptionId> optionIds) {
+        checkNotNull(optionIds);
+        Map<OptionId, String> values = new HashMap<>();
+        long stamp = lock.readLock();
+        try {
+            checkOpen();
+            for (OptionId optionId : optionIds) {
+                byte[] key = keyBytes(optionId);
+                int slot = findSlot(key, hash(key));
+                if (slot >= 0) {
+                    values.put(optionId, value(positions[slot]));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return ImmutableMap.copyOf(values);
+    }
+
+    @Override
+    public List<OptionEntity> asEntities() {
+        return find(null, null, null, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Scans the live records, comparing the encoded criteria with the encoded keys, and deserialises only the matching {@link OptionId}s
+     */
+    @Override
+    public List<OptionEntity> find(String context, String userHierarchyName, String rankName, String optionKey) {
+        byte[][] criteria = {utf8OrNull(context), utf8OrNull(userHierarchyName), utf8OrNull(rankName), utf8OrNull(optionKey)};
+        long stamp = lock.readLock();
+        try {
+            checkOpen();
+            List<OptionEntity> entities = new ArrayList<>();
+            for (int position : positions) {
+                if (position != 0 && matches(position, criteria)) {
+                    entities.add(new OptionEntity(deserialise(idBytes(position)), value(position)));
+                }
+            }
+            return entities;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean matches(int position, byte[][] criteria) {
+        int offset = position + RECORD_HEADER_SIZE;
+        for (byte[] criterion : criteria) {
+            int length = buffer.getInt(offset);
+            offset += 4;
+            if (criterion != null && !bytesEqual(buffer, offset, length, criterion)) {
+                return false;
+            }
+            offset += length;
+        }
+        return true;
+    }
+
+    /**
+     * Appends a record, or a delete record if {@code value} is null, and returns its position.  The CRC is written last, so that a record cut short
+     * fails its check
+     */
+    private int append(byte[] key, byte[] value, byte[] id) {
+        int length = RECORD_HEADER_SIZE + key.length + (value == null ? 0 : value.length) + id.length;
+        ensureFileCapacity(length);
+        int position = writePosition;
+        ByteBuffer target = buffer.duplicate();
+        target.position(position + 4);
+        target.putInt(key.length)
+                .putInt(value == null ? DELETED : value.length)
+                .putInt(id.length)
+                .put(key);
+        if (value != null) {
+            target.put(value);
+            liveBytes += length;
+        }
+        target.put(id);
+        buffer.putInt(position, checksum(buffer, position, length));
+        writePosition += length;
+        return position;
+    }
+
+    private void ensureFileCapacity(int length) {
+        long required = (long) writePosition + length;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        capacity = Math.min(capacity, Integer.MAX_VALUE);
+        checkState(required <= capacity, "%s has reached the 2GB limit of a mapped file", file);
+        try {
+            buffer = channel.map(READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to extend " + file, e);
+        }
+    }
+
+    private void retire(int position) {
+        int length = recordLength(position);
+        liveBytes -= length;
+        deadBytes += length;
+    }
+
+    private void compactIfWasteful() {
+        if (deadBytes > liveBytes && deadBytes >= compactionThreshold) {
+            rewrite(true);
+        }
+    }
+
+    /**
+     * Writes a new file holding the live records, or none if {@code keepRecords} is false, then renames it over the current file and maps it in
+     * place of the current one
+     */
+    private void rewrite(boolean keepRecords) {
+        File replacement = sibling(".compacting");
+        long needed = FILE_HEADER_SIZE + (keepRecords ? liveBytes : 0);
+        int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(initialCapacity, needed + needed / 2));
+        int[] newPositions = new int[keepRecords ? positions.length : INITIAL_SLOTS];
+        int position = FILE_HEADER_SIZE;
+        try {
+            try (FileChannel out = FileChannel.open(replacement.toPath(), CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+                MappedByteBuffer copy = out.map(READ_WRITE, 0, capacity);
+                copy.putLong(0, MAGIC);
+                copy.putInt(8, VERSION);
+                for (int slot = 0; keepRecords && slot < positions.length; slot++) {
+                    if (positions[slot] != 0) {
+                        int length = recordLength(positions[slot]);
+                        ByteBuffer source = buffer.duplicate();
+                        source.limit(positions[slot] + length);
+                        source.position(positions[slot]);
+                        copy.position(position);
+                        copy.put(source);
+                        newPositions[slot] = position;
+                        position += length;
+                    }
+                }
+                copy.force();
+            }
+            Files.move(replacement.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+            channel.close();
+            channel = FileChannel.open(file.toPath(), READ, WRITE);
+            buffer = channel.map(READ_WRITE, 0, channel.size());
+        } catch (IOException e) {
+            release();
+            throw new UncheckedIOException("Unable to compact " + file + ", it has been closed and will be recovered when next opened", e);
+        }
+        positions = newPositions;
+        if (!keepRecords) {
+            hashes = new int[INITIAL_SLOTS];
+            size = 0;
+        }
+        writePosition = position;
+        liveBytes = position - FILE_HEADER_SIZE;
+        deadBytes = 0;
+    }
+
+    private int recordLength(int position) {
+        return RECORD_HEADER_SIZE + buffer.getInt(position + 4) + Math.max(buffer.getInt(position + 8), 0) + buffer.getInt(position + 12);
+    }
+
+    private String value(int position) {
+        return new String(copy(buffer, position + RECORD_HEADER_SIZE + buffer.getInt(position + 4), buffer.getInt(position + 8)), UTF_8);
+    }
+
+    private boolean valueEquals(int position, byte[] value) {
+        return bytesEqual(buffer, position + RECORD_HEADER_SIZE + buffer.getInt(position + 4), buffer.getInt(position + 8), value);
+    }
+
+    private byte[] idBytes(int position) {
+        return copy(buffer, position + RECORD_HEADER_SIZE + buffer.getInt(position + 4) + buffer.getInt(position + 8), buffer.getInt(position + 12));
+    }
+
+    private void ensureIndexCapacity() {
+        if ((size + 1) * 2 <= positions.length) {
+            return;
+        }
+        int[] oldPositions = positions;
+        int[] oldHashes = hashes;
+        positions = new int[oldPositions.length * 2];
+        hashes = new int[oldPositions.length * 2];
+        for (int slot = 0; slot < oldPositions.length; slot++) {
+            if (oldPositions[slot] != 0) {
+                setSlot(freeSlot(oldHashes[slot]), oldPositions[slot], oldHashes[slot]);
+            }
+        }
+    }
+
+    private void setSlot(int slot, int position, int hash) {
+        positions[slot] = position;
+        hashes[slot] = hash;
+    }
+
+    /**
+     * Positions are never 0, as the file header is there, so 0 marks an empty slot
+     */
+    private int findSlot(byte[] key, int hash) {
+        int mask = positions.length - 1;
+        for (int slot = hash & mask; positions[slot] != 0; slot = (slot + 1) & mask) {
+            int position = positions[slot];
+            if (hashes[slot] == hash && bytesEqual(buffer, position + RECORD_HEADER_SIZE, buffer.getInt(position + 4), key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int freeSlot(int hash) {
+        int mask = positions.length - 1;
+        int slot = hash & mask;
+        while (positions[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties {@code slot}, then shifts back any following entries whose probe sequence passed through it, so that no probe stops short
+     */
+    private void removeSlot(int slot) {
+        int mask = positions.length - 1;
+        int hole = slot;
+        for (int next = (slot + 1) & mask; positions[next] != 0; next = (next + 1) & mask) {
+            int ideal = hashes[next] & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                setSlot(hole, positions[next], hashes[next]);
+                hole = next;
+            }
+        }
+        setSlot(hole, 0, 0);
+    }
+
+    private File sibling(String suffix) {
+        return new File(file.getPath() + suffix);
+    }
+
+    private String registryKey() {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getPath();
+        }
+    }
+
+    /**
+     * A deserialised store is the open store for the same file, or a newly opened one
+     */
+    private Object readResolve() {
+        MappedFileOptionStore open = openStores.get(registryKey());
+        return open != null ? open : new MappedFileOptionStore(file, initialCapacity, compactionThreshold);
+    }
+
+    private static byte[] keyBytes(OptionId optionId) {
+        byte[][] parts = {utf8OrNull(optionId.getContext()), utf8OrNull(optionId.getUserHierarchyName()), utf8OrNull(optionId.getRankName()),
+                utf8OrNull(optionId.getOptionKey())};
+        int length = 0;
+        for (byte[] part : parts) {
+            length += 4 + part.length;
+        }
+        ByteBuffer key = ByteBuffer.allocate(length);
+        for (byte[] part : parts) {
+            key.putInt(part.length)
+                    .put(part);
+        }
+        return key.array();
+    }
+
+    private static byte[] utf8OrNull(String value) {
+        return value == null ? null : value.getBytes(UTF_8);
+    }
+
+    private static int hash(byte[] key) {
+        int hash = 1;
+        for (byte b : key) {
+            hash = 31 * hash + b;
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static byte[] copy(ByteBuffer source, int position, int length) {
+        ByteBuffer region = source.duplicate();
+        region.position(position);
+        byte[] bytes = new byte[length];
+        region.get(bytes);
+        return bytes;
+    }
+
+    private static boolean bytesEqual(ByteBuffer source, int position, int length, byte[] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (source.get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] serialise(OptionId optionId) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(optionId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to serialise " + optionId, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static OptionId deserialise(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (OptionId) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read OptionId", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Unable to read OptionId", e);
+        }
+    }
+}
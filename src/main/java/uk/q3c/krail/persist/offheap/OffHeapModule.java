@@ -0,0 +1,133 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.persist.offheap;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.MapBinder;
+import uk.q3c.krail.i18n.I18NKey;
+import uk.q3c.krail.option.persist.OptionDaoDelegate;
+import uk.q3c.krail.option.persist.OptionDaoProviders;
+import uk.q3c.krail.option.persist.OptionPersistenceEnabler;
+import uk.q3c.krail.persist.DefaultPersistenceInfo;
+import uk.q3c.krail.persist.PersistenceInfo;
+import uk.q3c.krail.persist.offheap.dao.OffHeapOptionDaoDelegate;
+import uk.q3c.krail.persist.offheap.store.OffHeapDescriptionKey;
+import uk.q3c.krail.persist.offheap.store.OffHeapOptionStore;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * A persistence module which holds option values in memory, but outside the Java heap (see {@link OffHeapOptionStore}), so that large numbers of
+ * values do not add to garbage collection pauses.  Like {@link uk.q3c.krail.persist.inmemory.InMemoryModule}, values are lost when the application
+ * stops.  Select it with {@code new OptionModule().activeSource(OffHeap.class)}
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OffHeapModule extends AbstractModule implements OptionPersistenceEnabler<OffHeapModule> {
+
+    private String connectionUrl = "off heap";
+    private I18NKey description = OffHeapDescriptionKey.Data_is_held_off_heap;
+    private I18NKey name = OffHeapLabelKey.Off_Heap;
+    private MapBinder<Class<? extends Annotation>, PersistenceInfo<?>> optionDaoProviders;
+    private boolean provideOptionDao = false;
+    private boolean volatilePersistence = true;
+
+    public boolean isProvideOptionDao() {
+        return provideOptionDao;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void configure() {
+
+        TypeLiteral<Class<? extends Annotation>> annotationClassLiteral = new TypeLiteral<Class<? extends Annotation>>() {
+        };
+        TypeLiteral<PersistenceInfo<?>> persistenceInfoClassLiteral = new TypeLiteral<PersistenceInfo<?>>() {
+        };
+
+        optionDaoProviders = MapBinder.newMapBinder(binder(), annotationClassLiteral, persistenceInfoClassLiteral, OptionDaoProviders.class);
+
+        bindOptionDao();
+    }
+
+    /**
+     * binds {@link OptionDaoDelegate} annotated with {@link OffHeap} but only if {@link #provideOptionDao} has been set by a previous call to {@link
+     * #provideOptionDao()}
+     */
+    protected void bindOptionDao() {
+
+        if (provideOptionDao) {
+            bind(OptionDaoDelegate.class).annotatedWith(OffHeap.class)
+                    .to(OffHeapOptionDaoDelegate.class);
+            optionDaoProviders.addBinding(OffHeap.class)
+                    .toInstance(new DefaultPersistenceInfo(this));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OffHeapModule provideOptionDao() {
+        provideOptionDao = true;
+        return this;
+    }
+
+    @Override
+    public I18NKey getName() {
+        return name;
+    }
+
+    @Override
+    public String getConnectionUrl() {
+        return connectionUrl;
+    }
+
+    @Override
+    public I18NKey getDescription() {
+        return description;
+    }
+
+    @Override
+    public boolean isVolatilePersistence() {
+        return volatilePersistence;
+    }
+
+    @Override
+    public OffHeapModule name(final I18NKey name) {
+        this.name = name;
+        return this;
+    }
+
+    @Override
+    public OffHeapModule description(final I18NKey description) {
+        this.description = description;
+        return this;
+    }
+
+    @Override
+    public OffHeapModule connectionUrl(final String connectionUrl) {
+        this.connectionUrl = connectionUrl;
+        return this;
+    }
+
+    @Override
+    public OffHeapModule volatilePersistence(final boolean volatilePersistence) {
+        this.volatilePersistence = volatilePersistence;
+        return this;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package uk.q3c.krail.persist.offheap.dao;
+
+import com.google.inject.Inject;
+import uk.q3c.krail.persist.inmemory.dao.InMemoryOptionDaoDelegate;
+import uk.q3c.krail.persist.offheap.store.OffHeapOptionStore;
+
+/**
+ * Data Access Object for {@link OffHeapOptionStore}.  The store implements the same interface as the in-memory stores, so only the connection differs
+ * from {@link InMemoryOptionDaoDelegate}
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OffHeapOptionDaoDelegate extends InMemoryOptionDaoDelegate {
+
+    @Inject
+    public OffHeapOptionDaoDelegate(OffHeapOptionStore optionStore) {
+        super(optionStore);
+    }
+
+    @Override
+    public String connectionUrl() {
+        return "Off Heap Store";
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ *
+ *  * Copyright (c) 2016. David Sowerby
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ *  * the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ *  * specific language governing permissions and limitations under the License.
+ *
+ */
+package uk.q3c.krail.persist.offheap.store;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.persist.inmemory.InMemoryOptionStore;
+import uk.q3c.krail.persist.inmemory.OptionEntity;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+
+import static com.google.common.base.Preconditions.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An {@link InMemoryOptionStore} which keeps its entries, and the index to them, in direct {@link ByteBuffer}s outside the Java heap.  The heap holds
+ * only a handful of objects however many entries there are, so a large store adds nothing to the work of the garbage collector.
+ * <p>
+ * Each entry is a record appended to a slab (a direct buffer of {@link #DEFAULT_SLAB_SIZE} unless configured otherwise):
+ * <pre>
+ *     int keyLength, int valueLength, int idLength, key, value (UTF-8), serialised {@link OptionId}
+ * </pre>
+ * where the key holds the context, user hierarchy name, rank name and option key of the {@link OptionId}, each as an int length and UTF-8 bytes.  Two
+ * {@link OptionId}s are equal exactly when their keys are, so lookups compare bytes, and the serialised form is only read to rebuild entities.
+ * <p>
+ * The index is an open-addressed table in its own direct buffer, each slot holding a record address (slab and offset) and the hash of the key.  A
+ * changed value of the same encoded length is overwritten in place, otherwise the record is copied with the new value.  Space left by replaced and
+ * deleted records is reclaimed by compacting the live records into new slabs once it exceeds the live data.  Released slabs are freed when the
+ * garbage collector clears their buffers, as with any direct buffer.
+ * <p>
+ * Reads take a shared lock, and writes an exclusive one
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+@Singleton
+@ThreadSafe
+public class OffHeapOptionStore implements InMemoryOptionStore {
+
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_SLOTS = 1024;
+
+    private final int slabSize;
+    private transient StampedLock lock;
+    private transient List<ByteBuffer> slabs;
+    private transient ByteBuffer index;
+    private transient int slotCount;
+    private transient int writeOffset;
+    private transient long liveBytes;
+    private transient long deadBytes;
+    private transient volatile int size;
+
+    @Inject
+    public OffHeapOptionStore() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    public OffHeapOptionStore(int slabSize) {
+        checkArgument(slabSize >= 1024, "slab size must be at least 1024");
+        this.slabSize = slabSize;
+        initialise();
+    }
+
+    private void initialise() {
+        lock = new StampedLock();
+        slabs = new ArrayList<>();
+        slotCount = INITIAL_SLOTS;
+        index = ByteBuffer.allocateDirect(slotCount * SLOT_SIZE);
+        writeOffset = 0;
+        liveBytes = 0;
+        deadBytes = 0;
+        size = 0;
+    }
+
+    private static byte[] keyBytes(OptionId optionId) {
+        byte[][] parts = {utf8(optionId.getContext()), utf8(optionId.getUserHierarchyName()), utf8(optionId.getRankName()), utf8(optionId
+                .getOptionKey())};
+        int length = 0;
+        for (byte[] part : parts) {
+            length += 4 + part.length;
+        }
+        ByteBuffer key = ByteBuffer.allocate(length);
+        for (byte[] part : parts) {
+            key.putInt(part.length)
+                    .put(part);
+        }
+        return key.array();
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+    private static int hash(byte[] key) {
+        int hash = 1;
+        for (byte b : key) {
+            hash = 31 * hash + b;
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static byte[] serialise(OptionId optionId) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(optionId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to serialise " + optionId, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static OptionId deserialise(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (OptionId) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read OptionId", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Unable to read OptionId", e);
+        }
+    }
+
+    @Override
+    public Optional<OptionEntity> getEntity(OptionId optionId) {
+        return getValue(optionId).map(value -> new OptionEntity(optionId, value));
+    }
+
+    @Override
+    public Optional<String> delete(OptionId optionId) {
+        checkNotNull(optionId);
+        byte[] key = keyBytes(optionId);
+        int hash = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(key, hash);
+            if (slot < 0) {
+                return Optional.empty();
+            }
+            long address = addressAt(slot);
+            String removed = value(address);
+            retire(address);
+            removeSlot(slot);
+            size--;
+            compactIfWasteful();
+            return Optional.of(removed);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            slabs = new ArrayList<>();
+            slotCount = INITIAL_SLOTS;
+            index = ByteBuffer.allocateDirect(slotCount * SLOT_SIZE);
+            writeOffset = 0;
+            liveBytes = 0;
+            deadBytes = 0;
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<OptionEntity> asEntities() {
+        return find(null, null, null, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Scans every record, comparing the encoded criteria with the encoded keys, and deserialises only the matching {@link OptionId}s
+     */
+    @Override
+    public List<OptionEntity> find(String context, String userHierarchyName, String rankName, String optionKey) {
+        byte[][] criteria = {context == null ? null : utf8(context), userHierarchyName == null ? null : utf8(userHierarchyName), rankName == null ? null
+                : utf8(rankName), optionKey == null ? null : utf8(optionKey)};
+        long stamp = lock.readLock();
+        try {
+            List<OptionEntity> entities = new ArrayList<>();
+            for (int slot = 0; slot < slotCount; slot++) {
+                long address = addressAt(slot);
+                if (address >= 0 && matches(address, criteria)) {
+                    entities.add(new OptionEntity(optionId(address), value(address)));
+                }
+            }
+            return entities;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean matches(long address, byte[][] criteria) {
+        ByteBuffer slab = slab(address);
+        int position = offset(address) + HEADER_SIZE;
+        for (byte[] criterion : criteria) {
+            int length = slab.getInt(position);
+            position += 4;
+            if (criterion != null && !bytesEqual(slab, position, length, criterion)) {
+                return false;
+            }
+            position += length;
+        }
+        return true;
+    }
+
+    @Override
+    public void add(OptionId optionId, String value) {
+        checkNotNull(optionId);
+        checkNotNull(value);
+        byte[] key = keyBytes(optionId);
+        byte[] valueBytes = utf8(value);
+        int hash = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(key, hash);
+            if (slot >= 0) {
+                replaceValue(slot, valueBytes);
+                return;
+            }
+            if ((size + 1) * 2 > slotCount) {
+                resizeIndex();
+            }
+            long address = append(key, valueBytes, serialise(optionId));
+            setSlot(freeSlot(hash), address, hash);
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Optional<String> getValue(OptionId optionId) {
+        checkNotNull(optionId);
+        byte[] key = keyBytes(optionId);
+        int hash = hash(key);
+        long stamp = lock.readLock();
+        try {
+            int slot = findSlot(key, hash);
+            return slot < 0 ? Optional.empty() : Optional.of(value(addressAt(slot)));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public ImmutableMap<OptionId, String> getValues(Collection<OptionId> optionIds) {
+        checkNotNull(optionIds);
+        Map<OptionId, String> values = new HashMap<>();
+        long stamp = lock.readLock();
+        try {
+            for (OptionId optionId : optionIds) {
+                byte[] key = keyBytes(optionId);
+                int slot = findSlot(key, hash(key));
+                if (slot >= 0) {
+                    values.put(optionId, value(addressAt(slot)));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return ImmutableMap.copyOf(values);
+    }
+
+    /**
+     * The bytes allocated to slabs, including space not yet reclaimed from replaced or deleted records
+     */
+    public long offHeapBytes() {
+        long stamp = lock.readLock();
+        try {
+            long bytes = index.capacity();
+            for (ByteBuffer slab : slabs) {
+                bytes += slab.capacity();
+            }
+            return bytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+
+    private ByteBuffer slab(long address) {
+        return slabs.get((int) (address >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private int recordLength(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        return HEADER_SIZE + slab.getInt(offset) + slab.getInt(offset + 4) + slab.getInt(offset + 8);
+    }
+
+    private String value(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        return new String(copy(slab, offset + HEADER_SIZE + slab.getInt(offset), slab.getInt(offset + 4)), UTF_8);
+    }
+
+    private OptionId optionId(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        return deserialise(copy(slab, offset + HEADER_SIZE + slab.getInt(offset) + slab.getInt(offset + 4), slab.getInt(offset + 8)));
+    }
+
+    private static byte[] copy(ByteBuffer slab, int position, int length) {
+        ByteBuffer source = slab.duplicate();
+        source.position(position);
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return bytes;
+    }
+
+    private static boolean bytesEqual(ByteBuffer slab, int position, int length, byte[] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (slab.get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long append(byte[] key, byte[] value, byte[] id) {
+        int length = HEADER_SIZE + key.length + value.length + id.length;
+        if (slabs.isEmpty() || writeOffset + length > slabs.get(slabs.size() - 1)
+                .capacity()) {
+            slabs.add(ByteBuffer.allocateDirect(Math.max(slabSize, length)));
+            writeOffset = 0;
+        }
+        ByteBuffer target = slabs.get(slabs.size() - 1)
+                .duplicate();
+        target.position(writeOffset);
+        target.putInt(key.length)
+                .putInt(value.length)
+                .putInt(id.length)
+                .put(key)
+                .put(value)
+                .put(id);
+        long address = ((long) (slabs.size() - 1) << 32) | writeOffset;
+        writeOffset += length;
+        liveBytes += length;
+        return address;
+    }
+
+    private void retire(long address) {
+        int length = recordLength(address);
+        liveBytes -= length;
+        deadBytes += length;
+    }
+
+    /**
+     * Overwrites the value in place if it encodes to the same length, otherwise appends a copy of the record with the new value
+     */
+    private void replaceValue(int slot, byte[] valueBytes) {
+        long address = addressAt(slot);
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        int keyLength = slab.getInt(offset);
+        int valueLength = slab.getInt(offset + 4);
+        int valuePosition = offset + HEADER_SIZE + keyLength;
+        if (valueLength == valueBytes.length) {
+            ByteBuffer target = slab.duplicate();
+            target.position(valuePosition);
+            target.put(valueBytes);
+            return;
+        }
+        byte[] key = copy(slab, offset + HEADER_SIZE, keyLength);
+        byte[] id = copy(slab, valuePosition + valueLength, slab.getInt(offset + 8));
+        retire(address);
+        setSlot(slot, append(key, valueBytes, id), hashAt(slot));
+        compactIfWasteful();
+    }
+
+    /**
+     * Copies the live records into new slabs once the space held by dead records exceeds both the live data and one slab
+     */
+    private void compactIfWasteful() {
+        if (deadBytes <= liveBytes || deadBytes < slabSize) {
+            return;
+        }
+        List<ByteBuffer> oldSlabs = slabs;
+        slabs = new ArrayList<>();
+        writeOffset = 0;
+        liveBytes = 0;
+        deadBytes = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            long address = addressAt(slot);
+            if (address >= 0) {
+                ByteBuffer slab = oldSlabs.get((int) (address >>> 32));
+                int offset = offset(address);
+                int keyLength = slab.getInt(offset);
+                int valueLength = slab.getInt(offset + 4);
+                int idLength = slab.getInt(offset + 8);
+                int position = offset + HEADER_SIZE;
+                byte[] key = copy(slab, position, keyLength);
+                byte[] value = copy(slab, position + keyLength, valueLength);
+                byte[] id = copy(slab, position + keyLength + valueLength, idLength);
+                setSlot(slot, append(key, value, id), hashAt(slot));
+            }
+        }
+    }
+
+
+    /**
+     * The address in {@code slot}, or -1 if it is empty.  Slots hold address + 1, so that 0 marks an empty slot
+     */
+    private long addressAt(int slot) {
+        return index.getLong(slot * SLOT_SIZE) - 1;
+    }
+
+    private int hashAt(int slot) {
+        return index.getInt(slot * SLOT_SIZE + 8);
+    }
+
+    private void setSlot(int slot, long address, int hash) {
+        index.putLong(slot * SLOT_SIZE, address + 1);
+        index.putInt(slot * SLOT_SIZE + 8, hash);
+    }
+
+    private void clearSlot(int slot) {
+        index.putLong(slot * SLOT_SIZE, 0);
+        index.putInt(slot * SLOT_SIZE + 8, 0);
+    }
+
+    private int findSlot(byte[] key, int hash) {
+        int mask = slotCount - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long address = addressAt(slot);
+            if (address < 0) {
+                return -1;
+            }
+            if (hashAt(slot) == hash) {
+                ByteBuffer slab = slab(address);
+                int offset = offset(address);
+                if (bytesEqual(slab, offset + HEADER_SIZE, slab.getInt(offset), key)) {
+                    return slot;
+                }
+            }
+        }
+    }
+
+    private int freeSlot(int hash) {
+        int mask = slotCount - 1;
+        int slot = hash & mask;
+        while (addressAt(slot) >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties {@code slot}, then shifts back any following entries whose probe sequence passed through it, so that no probe stops short
+     */
+    private void removeSlot(int slot) {
+        int mask = slotCount - 1;
+        int hole = slot;
+        for (int next = (slot + 1) & mask; addressAt(next) >= 0; next = (next + 1) & mask) {
+            int ideal = hashAt(next) & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                setSlot(hole, addressAt(next), hashAt(next));
+                hole = next;
+            }
+        }
+        clearSlot(hole);
+    }
+
+    private void resizeIndex() {
+        ByteBuffer oldIndex = index;
+        int oldSlotCount = slotCount;
+        slotCount = oldSlotCount * 2;
+        index = ByteBuffer.allocateDirect(slotCount * SLOT_SIZE);
+        for (int slot = 0; slot < oldSlotCount; slot++) {
+            long stored = oldIndex.getLong(slot * SLOT_SIZE);
+            if (stored != 0) {
+                int hash = oldIndex.getInt(slot * SLOT_SIZE + 8);
+                setSlot(freeSlot(hash), stored - 1, hash);
+            }
+        }
+    }
+
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            out.defaultWriteObject();
+            out.writeInt(size);
+            for (int slot = 0; slot < slotCount; slot++) {
+                long address = addressAt(slot);
+                if (address >= 0) {
+                    out.writeObject(optionId(address));
+                    out.writeObject(value(address));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initialise();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            add((OptionId) in.readObject(), (String) in.readObject());
+        }
+    }
+}
@@ -33,13 +33,17 @@ import uk.q3c.krail.option.mock.MockOptionContext;
 import uk.q3c.krail.option.mock.MockOptionPermissionVerifier;
 import uk.q3c.krail.option.persist.OptionCache;
 import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.cache.ExtendedOptionCache;
 import uk.q3c.util.guice.SerializationSupport;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.q3c.krail.option.RankOption.HIGHEST_RANK;
@@ -124,6 +128,53 @@ public class DefaultOptionTest {
         //then
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void rankedReadsReuseCacheKeyAndDefault() {
+        //given
+        OptionKey<Integer> equalKey = new OptionKey<>(7, context, TestLabelKey.key1, "q");
+        when(optionCache.get(any(Optional.class), any(OptionCacheKey.class))).thenReturn(Optional.empty());
+        ArgumentCaptor<Optional> defaultCaptor = ArgumentCaptor.forClass(Optional.class);
+        ArgumentCaptor<OptionCacheKey> keyCaptor = ArgumentCaptor.forClass(OptionCacheKey.class);
+        //when
+        option.get(optionKey1);
+        option.get(optionKey1);
+        option.getLowestRanked(optionKey1);
+        Integer actual = option.get(equalKey);
+        //then
+        verify(optionCache, times(4)).get(defaultCaptor.capture(), keyCaptor.capture());
+        List<OptionCacheKey> keys = keyCaptor.getAllValues();
+        List<Optional> defaults = defaultCaptor.getAllValues();
+        assertThat(keys.get(1)).isSameAs(keys.get(0));
+        assertThat(defaults.get(1)).isSameAs(defaults.get(0))
+                .isEqualTo(Optional.of(5));
+        assertThat(keys.get(2)
+                .getRankOption()).isEqualTo(LOWEST_RANK);
+        // an equal key with a different default is not given the default of the first
+        assertThat(keys.get(3)).isEqualTo(keys.get(0));
+        assertThat(defaults.get(3)).isEqualTo(Optional.of(7));
+        assertThat(actual).isEqualTo(7);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void heldReadsLimitedToKeysRead() {
+        //given
+        when(optionCache.get(any(Optional.class), any(OptionCacheKey.class))).thenReturn(Optional.empty());
+        //when
+        option.get(optionKey1);
+        option.getLowestRanked(optionKey1);
+        option.get(optionKey2);
+        //then
+        assertThat(option.heldReads()).isEqualTo(2);
+        //when keys are created for each read
+        for (int i = 0; i < DefaultOption.MAX_HELD_READS * 2; i++) {
+            assertThat(option.get(new OptionKey<>(i, context, TestLabelKey.key1, "q" + i))).isEqualTo(i);
+        }
+        //then
+        assertThat(option.heldReads()).isEqualTo(DefaultOption.MAX_HELD_READS);
+    }
+
     @Test
     public void get_highest() {
         //given
@@ -239,6 +290,33 @@ public class DefaultOptionTest {
         //then
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void preload_batch() {
+        //given
+        ExtendedOptionCache extendedCache = mock(ExtendedOptionCache.class);
+        option = new DefaultOption(extendedCache, defaultHierarchy, permissionVerifier, globalBus, serializationSupport);
+        MockContext2 context = new MockContext2();
+        ArgumentCaptor<Collection> keysCaptor = ArgumentCaptor.forClass(Collection.class);
+        //when
+        option.preload(context);
+        //then
+        verify(extendedCache).preload(keysCaptor.capture());
+        Collection<OptionCacheKey<?>> cacheKeys = keysCaptor.getValue();
+        assertThat(cacheKeys).extracting(cacheKey -> (Object) cacheKey.getOptionKey())
+                .containsOnly(MockContext2.key3, MockContext2.key4, context.key2, context.key1);
+        assertThat(cacheKeys).extracting(OptionCacheKey::getRankOption)
+                .containsOnly(HIGHEST_RANK);
+    }
+
+    @Test
+    public void preload_not_batch() {
+        //when
+        option.preload(new MockContext2());
+        //then
+        verify(optionCache, times(4)).get(any(), any());
+    }
+
 
     enum TestLabelKey implements I18NKey {
         key1, Blank, Large, Private_Static, Static, key2
@@ -65,4 +65,15 @@ class OptionKeyLocatorTest extends Specification {
         map.containsKey(AContext.key1)
         map.containsKey(AContext.key2)
     }
+
+    def "static context keys by composite key"() {
+
+        when:
+        Map<String, OptionKey<?>> map = locator.staticContextKeys(AContext)
+
+        then:
+        map.size() == 2
+        map.get(AContext.key1.compositeKey()) == AContext.key1
+        map.get(AContext.key2.compositeKey()) == AContext.key2
+    }
 }
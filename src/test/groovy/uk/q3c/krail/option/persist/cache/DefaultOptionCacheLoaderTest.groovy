@@ -13,9 +13,16 @@
 
 package uk.q3c.krail.option.persist.cache
 
+import com.google.common.cache.CacheLoader
+import com.google.common.collect.ImmutableMap
+import com.google.common.util.concurrent.ListenableFuture
 import spock.lang.Specification
 import uk.q3c.krail.option.persist.OptionCacheKey
 import uk.q3c.krail.option.persist.OptionDao
+import uk.q3c.krail.option.persist.dao.BatchOptionDao
+
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
 
 /**
  * Created by David Sowerby on 30 Jan 2016
@@ -26,9 +33,11 @@ class DefaultOptionCacheLoaderTest extends Specification {
 
     OptionDao optionDaoWrapper = Mock()
     OptionCacheKey cacheKey = Mock()
+    List<Runnable> reloadTasks = []
+    Executor reloadExecutor = { Runnable task -> reloadTasks.add(task) } as Executor
 
     def setup() {
-        loader = new DefaultOptionCacheLoader(optionDaoWrapper)
+        loader = new DefaultOptionCacheLoader(optionDaoWrapper, reloadExecutor)
     }
 
     def "load with null cacheKey NPE"() {
@@ -49,4 +58,60 @@ class DefaultOptionCacheLoaderTest extends Specification {
         1 * optionDaoWrapper.getValue(cacheKey) >> Optional.of(3)
         result.get() == 3
     }
+
+    def "loadAll calls batch dao once"() {
+        given:
+        BatchOptionDao batchDao = Mock()
+        OptionCacheKey cacheKey2 = Mock()
+        loader = new DefaultOptionCacheLoader(batchDao, reloadExecutor)
+
+        when:
+        Map<OptionCacheKey, Optional<?>> result = loader.loadAll([cacheKey, cacheKey2])
+
+        then:
+        1 * batchDao.getValues([cacheKey, cacheKey2]) >> ImmutableMap.of(cacheKey, Optional.of(3), cacheKey2, Optional.empty())
+        0 * batchDao.getValue(_)
+        result.get(cacheKey).get() == 3
+        !result.get(cacheKey2).isPresent()
+    }
+
+    def "loadAll unsupported if dao is not a batch dao"() {
+        when:
+        loader.loadAll([cacheKey])
+
+        then:
+        thrown(CacheLoader.UnsupportedLoadingOperationException)
+    }
+
+    def "reload runs on the reload executor"() {
+        when:
+        ListenableFuture<Optional<?>> future = loader.reload(cacheKey, Optional.of(2))
+
+        then:
+        0 * optionDaoWrapper.getValue(_)
+        reloadTasks.size() == 1
+        !future.isDone()
+
+        when:
+        reloadTasks.get(0).run()
+
+        then:
+        1 * optionDaoWrapper.getValue(cacheKey) >> Optional.of(3)
+        future.get().get() == 3
+    }
+
+    def "reload without an executor runs on a daemon reload thread"() {
+        given:
+        Thread reloadThread = null
+        optionDaoWrapper.getValue(cacheKey) >> { reloadThread = Thread.currentThread(); Optional.of(3) }
+        loader = new DefaultOptionCacheLoader(optionDaoWrapper)
+
+        when:
+        Optional<?> result = loader.reload(cacheKey, Optional.of(2)).get(5, TimeUnit.SECONDS)
+
+        then:
+        result.get() == 3
+        reloadThread.isDaemon()
+        reloadThread.getName().startsWith("option-cache-reload-")
+    }
 }
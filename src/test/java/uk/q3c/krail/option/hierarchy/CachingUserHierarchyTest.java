@@ -0,0 +1,97 @@
+package uk.q3c.krail.option.hierarchy;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class CachingUserHierarchyTest {
+
+    private TestHierarchy hierarchy;
+
+    @Before
+    public void setup() {
+        hierarchy = new TestHierarchy();
+        hierarchy.groups.put("ann", ImmutableList.of("ann", "sales", "system"));
+        hierarchy.groups.put("bob", ImmutableList.of("bob", "system"));
+    }
+
+    @Test
+    public void ranksResolvedOncePerUser() throws Exception {
+        // when
+        hierarchy.user = "ann";
+        for (int i = 0; i < 10; i++) {
+            assertThat(hierarchy.rankName(1)).isEqualTo("sales");
+            assertThat(hierarchy.highestRankName()).isEqualTo("ann");
+            assertThat(hierarchy.lowestRankName()).isEqualTo("system");
+            assertThat(hierarchy.lowestRank()).isEqualTo(2);
+        }
+        hierarchy.user = "bob";
+        assertThat(hierarchy.ranksForCurrentUser()).containsExactly("bob", "system");
+
+        // then
+        assertThat(hierarchy.resolved.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidateResolvesAgain() throws Exception {
+        // given
+        hierarchy.user = "bob";
+        hierarchy.ranksForCurrentUser();
+        hierarchy.groups.put("bob", ImmutableList.of("bob", "sales", "system"));
+
+        // when
+        hierarchy.invalidate("ann");
+
+        // then
+        assertThat(hierarchy.lowestRank()).isEqualTo(1);
+
+        // when
+        hierarchy.invalidate("bob");
+
+        // then
+        assertThat(hierarchy.lowestRank()).isEqualTo(2);
+        assertThat(hierarchy.rankName(1)).isEqualTo("sales");
+        assertThat(hierarchy.resolved.get()).isEqualTo(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rankTooHigh() throws Exception {
+        // given
+        hierarchy.user = "bob";
+
+        // when
+        hierarchy.rankName(2);
+    }
+
+    private static class TestHierarchy extends CachingUserHierarchy {
+
+        private final Map<String, ImmutableList<String>> groups = new ConcurrentHashMap<>();
+        private final AtomicInteger resolved = new AtomicInteger();
+        private volatile String user;
+
+        @Override
+        protected String currentUserId() {
+            return user;
+        }
+
+        @Override
+        protected ImmutableList<String> resolveRanks(String userId) {
+            resolved.incrementAndGet();
+            return groups.get(userId);
+        }
+
+        @Override
+        public String displayName() {
+            return "Test";
+        }
+    }
+}
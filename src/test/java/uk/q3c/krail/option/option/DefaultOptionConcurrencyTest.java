@@ -0,0 +1,154 @@
+package uk.q3c.krail.option.option;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.eventbus.MessageBus;
+import uk.q3c.krail.option.OptionChangeMessage;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultOptionPermissionVerifier;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.option.persist.OptionSource;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCache;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCacheLoader;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCacheProvider;
+import uk.q3c.krail.option.persist.codec.DefaultOptionCodecRegistry;
+import uk.q3c.krail.option.persist.dao.DefaultOptionDao;
+import uk.q3c.krail.persist.inmemory.dao.InMemoryOptionDaoDelegate;
+import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
+import uk.q3c.util.clazz.DefaultClassNameUtils;
+import uk.q3c.util.data.DefaultDataConverter;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+import uk.q3c.util.guice.SerializationSupport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stress test for {@link DefaultOption}, with several instances (as if from different sessions) sharing one cache
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultOptionConcurrencyTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int WRITES_PER_WRITER = 250;
+
+    private List<DefaultOption> options;
+    private List<OptionChangeMessage<?>> published;
+    private DefaultInMemoryOptionStore store;
+
+    @Before
+    public void setup() {
+        store = new DefaultInMemoryOptionStore();
+        OptionSource optionSource = mock(OptionSource.class);
+        when(optionSource.getActiveDao()).thenReturn(new InMemoryOptionDaoDelegate(store));
+        DefaultOptionDao dao = new DefaultOptionDao(new DefaultOptionCodecRegistry(new DefaultDataConverter(Collections.emptyMap(), new DefaultClassNameUtils())),
+                optionSource);
+        GuavaCacheConfiguration configuration = new GuavaCacheConfiguration();
+        configuration.maximumSize(5000);
+        DefaultOptionCache cache = new DefaultOptionCache(dao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(dao, MoreExecutors.directExecutor()), configuration) {
+        });
+
+        published = Collections.synchronizedList(new ArrayList<>());
+        MessageBus messageBus = mock(MessageBus.class);
+        doAnswer(invocation -> {
+            published.add((OptionChangeMessage<?>) invocation.getArguments()[0]);
+            return null;
+        }).when(messageBus)
+                .publishASync(any());
+
+        options = new ArrayList<>();
+        for (int i = 0; i < WRITERS + READERS; i++) {
+            options.add(new DefaultOption(cache, new DefaultUserHierarchy(), new DefaultOptionPermissionVerifier(), messageBus, mock(SerializationSupport.class)));
+        }
+    }
+
+    @Test
+    public void concurrentSetAndGet() throws Exception {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<Set<Integer>>> readers = new ArrayList<>();
+
+        try {
+            // when
+            for (int w = 0; w < WRITERS; w++) {
+                DefaultOption option = options.get(w);
+                int base = (w + 1) * 100_000;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                        option.set(AContext.key1, base + i);
+                    }
+                    return null;
+                }));
+            }
+            for (int r = 0; r < READERS; r++) {
+                DefaultOption option = options.get(WRITERS + r);
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    Set<Integer> seen = new HashSet<>();
+                    while (writing.get()) {
+                        seen.add(option.get(AContext.key1));
+                        seen.add(option.getLowestRanked(AContext.key1));
+                        seen.add(option.getSpecificRanked(0, AContext.key1));
+                    }
+                    return seen;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+
+            // then readers only ever saw the default or a written value
+            for (Future<Set<Integer>> reader : readers) {
+                for (Integer value : reader.get(30, TimeUnit.SECONDS)) {
+                    assertThat(value == 125 || (value >= 100_000 && value % 100_000 < WRITES_PER_WRITER)).as("read value %s", value)
+                            .isTrue();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // then each message follows on from the one published before it
+        assertThat(published).hasSize(WRITERS * WRITES_PER_WRITER);
+        Object previous = AContext.key1.getDefaultValue();
+        for (OptionChangeMessage<?> message : published) {
+            assertThat(message.getOldValue()).isEqualTo(previous);
+            previous = message.getNewValue();
+        }
+
+        // and the last message, the cache and the store all agree
+        DefaultUserHierarchy hierarchy = new DefaultUserHierarchy();
+        for (DefaultOption option : options) {
+            assertThat(option.get(AContext.key1)).isEqualTo(previous);
+        }
+        assertThat(store.getValue(new OptionId(new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, AContext.key1)))
+                .get()).isEqualTo(previous.toString());
+    }
+}
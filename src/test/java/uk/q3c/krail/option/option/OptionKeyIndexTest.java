@@ -0,0 +1,218 @@
+package uk.q3c.krail.option.option;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.OptionContext;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.persist.cache.AContext;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OptionKeyIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void processorIndexesContexts() throws Exception {
+        // given
+        File sources = temporaryFolder.newFolder("src");
+        File classes = temporaryFolder.newFolder("classes");
+        File contextSource = source(sources, "OrderContext", "package com.example;\n" +
+                "import uk.q3c.krail.i18n.test.TestLabelKey;\n" +
+                "import uk.q3c.krail.option.*;\n" +
+                "public class OrderContext implements OptionContext {\n" +
+                "    public static final OptionKey<Integer> pageSize = new OptionKey<>(20, OrderContext.class, TestLabelKey.Static, TestLabelKey.Large);\n" +
+                "    public Option optionInstance() { return null; }\n" +
+                "    public static class Nested implements OptionContext {\n" +
+                "        public Option optionInstance() { return null; }\n" +
+                "    }\n" +
+                "}\n");
+        File otherSource = source(sources, "NotAContext", "package com.example;\npublic class NotAContext {}\n");
+
+        // when
+        compile(classes, contextSource, otherSource);
+
+        // then
+        List<String> index = Files.readAllLines(new File(classes, OptionKeyIndex.RESOURCE).toPath(), UTF_8);
+        assertThat(index).containsExactly("com.example.OrderContext", "com.example.OrderContext$Nested");
+
+        // when
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI()
+                .toURL()}, getClass().getClassLoader())) {
+            Optional<OptionKeyIndex> optionKeyIndex = OptionKeyIndex.fromIndex(classLoader);
+
+            // then
+            assertThat(optionKeyIndex).isPresent();
+            List<String> contexts = optionKeyIndex.get()
+                    .contexts()
+                    .stream()
+                    .map(Class::getName)
+                    .collect(Collectors.toList());
+            assertThat(contexts).containsOnly("com.example.OrderContext", "com.example.OrderContext$Nested");
+            assertThat(optionKeyIndex.get()
+                    .keyTypes()).containsOnly(Integer.class);
+            Class<?> orderContext = classLoader.loadClass("com.example.OrderContext");
+            assertThat(OptionKeyIndex.staticKeys(orderContext)).hasSize(1);
+        }
+    }
+
+    @Test
+    public void recompileKeepsEarlierEntries() throws Exception {
+        // given
+        File sources = temporaryFolder.newFolder("src");
+        File classes = temporaryFolder.newFolder("classes");
+        File first = source(sources, "FirstContext", "package com.example;\n" +
+                "public class FirstContext implements uk.q3c.krail.option.OptionContext {\n" +
+                "    public uk.q3c.krail.option.Option optionInstance() { return null; }\n" +
+                "}\n");
+        File second = source(sources, "SecondContext", "package com.example;\n" +
+                "public class SecondContext extends FirstContext {}\n");
+        compile(classes, first, second);
+
+        // when only one is recompiled
+        compile(classes, second);
+
+        // then
+        assertThat(Files.readAllLines(new File(classes, OptionKeyIndex.RESOURCE).toPath(), UTF_8)).containsExactly("com.example.FirstContext",
+                "com.example.SecondContext");
+    }
+
+    @Test
+    public void contextMissingFromIndexFoundByScan() throws Exception {
+        // given
+        File sources = temporaryFolder.newFolder("src");
+        File classes = temporaryFolder.newFolder("classes");
+        compile(classes, source(sources, "IndexedContext", "package com.example;\n" +
+                "public class IndexedContext implements uk.q3c.krail.option.OptionContext {\n" +
+                "    public uk.q3c.krail.option.Option optionInstance() { return null; }\n" +
+                "}\n"));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI()
+                .toURL()}, getClass().getClassLoader())) {
+            OptionKeyIndex optionKeyIndex = OptionKeyIndex.fromIndex(classLoader)
+                    .get();
+            Class<? extends OptionContext> indexedContext = classLoader.loadClass("com.example.IndexedContext")
+                    .asSubclass(OptionContext.class);
+
+            // then
+            assertThat(optionKeyIndex.contexts()).doesNotContain(AContext.class);
+            assertThat(optionKeyIndex.completeFor(indexedContext, classLoader)).isSameAs(optionKeyIndex);
+
+            // when
+            OptionKeyIndex completed = optionKeyIndex.completeFor(AContext.class, classLoader);
+
+            // then
+            assertThat(completed.contexts()).contains(AContext.class, indexedContext);
+            assertThat(completed.completeFor(InstanceKeyContext.class, classLoader)).isSameAs(completed);
+        }
+    }
+
+    @Test
+    public void noIndex() throws Exception {
+        // given
+        File empty = temporaryFolder.newFolder("empty");
+
+        // when
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{empty.toURI()
+                .toURL()}, null)) {
+
+            // then
+            assertThat(OptionKeyIndex.fromIndex(classLoader)).isEmpty();
+        }
+    }
+
+    @Test
+    public void keysHeldPerClass() throws Exception {
+        // when
+        ImmutableMap<String, OptionKey<?>> keys = OptionKeyIndex.staticKeys(AContext.class);
+
+        // then
+        assertThat(OptionKeyIndex.staticKeys(AContext.class)).isSameAs(keys)
+                .containsValues(AContext.key1, AContext.key2);
+    }
+
+    @Test
+    public void contextKeyMapSharedWhereOnlyStaticKeys() throws Exception {
+        // when
+        ImmutableMap<OptionKey, Class<?>> keys = OptionKeyIndex.contextKeyMap(new AContext(null));
+
+        // then
+        assertThat(OptionKeyIndex.contextKeyMap(new AContext(null))).isSameAs(keys)
+                .containsOnlyKeys(AContext.key1, AContext.key2);
+        assertThat(keys.values()).containsOnly(OptionKey.class);
+    }
+
+    @Test
+    public void contextKeyMapReadsInstanceFields() throws Exception {
+        // given
+        InstanceKeyContext context1 = new InstanceKeyContext(1);
+        InstanceKeyContext context2 = new InstanceKeyContext(2);
+
+        // when
+        ImmutableMap<OptionKey, Class<?>> keys1 = OptionKeyIndex.contextKeyMap(context1);
+        ImmutableMap<OptionKey, Class<?>> keys2 = OptionKeyIndex.contextKeyMap(context2);
+
+        // then
+        assertThat(keys1).containsOnlyKeys(AContext.key1, context1.instanceKey);
+        assertThat(keys2).containsOnlyKeys(AContext.key1, context2.instanceKey);
+        assertThat(keys1).doesNotContainKey(context2.instanceKey);
+        assertThat(new OptionKeyLocator().contextKeyMap(context1)).isEqualTo(keys1);
+    }
+
+    @SuppressWarnings("unused")
+    private static class InstanceKeyContext implements OptionContext {
+        private static final OptionKey<Integer> sharedKey = AContext.key1;
+        private final OptionKey<Integer> instanceKey;
+        private final OptionKey<Integer> unsetKey = null;
+
+        InstanceKeyContext(int qualifier) {
+            instanceKey = new OptionKey<>(5, this, TestLabelKey.Static, TestLabelKey.Large, String.valueOf(qualifier));
+        }
+
+        @Override
+        public Option optionInstance() {
+            return null;
+        }
+    }
+
+    private File source(File directory, String className, String content) throws Exception {
+        File file = new File(directory, className + ".java");
+        Files.write(file.toPath(), content.getBytes(UTF_8));
+        return file;
+    }
+
+    private void compile(File classes, File... sources) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8)) {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(Arrays.asList(sources));
+            List<String> options = ImmutableList.of("-d", classes.getPath(), "-classpath", classes.getPath() + File.pathSeparator + System
+                    .getProperty("java.class.path"));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, units);
+            task.setProcessors(ImmutableList.of(new OptionContextIndexProcessor()));
+            assertThat(task.call()).isTrue();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package uk.q3c.krail.option.option;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.persist.cache.AContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OptionKeyOrdinalsTest {
+
+    private OptionKeyOrdinals ordinals;
+
+    @Before
+    public void setup() {
+        ordinals = new OptionKeyOrdinals();
+    }
+
+    @Test
+    public void contextKeysRegisteredTogether() throws Exception {
+        // when
+        int ordinal2 = ordinals.ordinal(AContext.key2);
+
+        // then
+        assertThat(ordinals.size()).isEqualTo(2);
+        int ordinal1 = ordinals.ordinal(AContext.key1);
+        assertThat(ordinal1).isNotEqualTo(ordinal2)
+                .isBetween(0, 1);
+        assertThat(ordinals.key(ordinal1)).isSameAs(AContext.key1);
+        assertThat(ordinals.key(ordinal2)).isSameAs(AContext.key2);
+        assertThat(ordinals.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void equalKeysShareOrdinal() throws Exception {
+        // given
+        OptionKey<Integer> dynamic = new OptionKey<>(0, AContext.class, TestLabelKey.Static, "q");
+        OptionKey<Integer> equal = new OptionKey<>(1, AContext.class, TestLabelKey.Static, "q");
+
+        // when
+        int ordinal = ordinals.ordinal(dynamic);
+
+        // then
+        assertThat(ordinal).isEqualTo(2);
+        assertThat(ordinals.ordinal(equal)).isEqualTo(ordinal);
+        assertThat(ordinals.key(ordinal)).isSameAs(dynamic);
+        assertThat(ordinals.size()).isEqualTo(3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void unassignedOrdinal() throws Exception {
+        // when
+        ordinals.key(0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullKey() throws Exception {
+        // when
+        ordinals.ordinal(null);
+    }
+
+    /**
+     * Each key is added to the table in place, so registering many keys takes time in proportion to their number
+     */
+    @Test(timeout = 20_000)
+    public void registerManyKeys() throws Exception {
+        // given
+        List<OptionKey<Integer>> keys = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            keys.add(new OptionKey<>(i, AContext.class, TestLabelKey.Large, "key-" + i));
+        }
+
+        // when
+        for (OptionKey<Integer> key : keys) {
+            ordinals.ordinal(key);
+        }
+
+        // then
+        assertThat(ordinals.size()).isEqualTo(200_002);
+        for (int i = 0; i < keys.size(); i += 1000) {
+            assertThat(ordinals.key(ordinals.ordinal(keys.get(i)))).isSameAs(keys.get(i));
+        }
+    }
+
+    @Test
+    public void denseWhenRegisteredConcurrently() throws Exception {
+        // given
+        List<OptionKey<Integer>> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            keys.add(new OptionKey<>(i, AContext.class, TestLabelKey.Large, "key-" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Set<Integer>>> results = new ArrayList<>();
+
+        try {
+            // when
+            for (int thread = 0; thread < 4; thread++) {
+                results.add(executor.submit(() -> {
+                    Set<Integer> seen = new HashSet<>();
+                    for (OptionKey<Integer> key : keys) {
+                        seen.add(ordinals.ordinal(key));
+                    }
+                    return seen;
+                }));
+            }
+
+            // then
+            for (Future<Set<Integer>> result : results) {
+                assertThat(result.get(30, TimeUnit.SECONDS)).hasSize(500);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(ordinals.size()).isEqualTo(502);
+        for (OptionKey<Integer> key : keys) {
+            assertThat(ordinals.key(ordinals.ordinal(key))).isEqualTo(key);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package uk.q3c.krail.option.option;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.eventbus.MessageBus;
+import uk.q3c.krail.eventbus.mbassador.EventBusModule;
+import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.bind.OptionModule;
+import uk.q3c.krail.option.hierarchy.DefaultOptionPermissionVerifier;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionSource;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCache;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCacheLoader;
+import uk.q3c.krail.option.persist.cache.DefaultOptionCacheProvider;
+import uk.q3c.krail.option.persist.codec.DefaultOptionCodecRegistry;
+import uk.q3c.krail.option.persist.dao.DefaultOptionDao;
+import uk.q3c.krail.persist.InMemory;
+import uk.q3c.krail.persist.inmemory.InMemoryModule;
+import uk.q3c.krail.persist.inmemory.dao.InMemoryOptionDaoDelegate;
+import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
+import uk.q3c.util.UtilModule;
+import uk.q3c.util.clazz.DefaultClassNameUtils;
+import uk.q3c.util.data.DefaultDataConverter;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+import uk.q3c.util.guice.SerializationSupport;
+import uk.q3c.util.guice.SerializationSupportModule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class SessionCachedOptionTest {
+
+    private DefaultOptionCache cache;
+    private DefaultOptionDao dao;
+    private SessionCachedOption session1;
+    private SessionCachedOption session2;
+
+    @Before
+    public void setup() {
+        DefaultInMemoryOptionStore store = new DefaultInMemoryOptionStore();
+        OptionSource optionSource = mock(OptionSource.class);
+        when(optionSource.getActiveDao()).thenReturn(new InMemoryOptionDaoDelegate(store));
+        dao = new DefaultOptionDao(new DefaultOptionCodecRegistry(new DefaultDataConverter(Collections.emptyMap(), new
+                DefaultClassNameUtils())), optionSource);
+        GuavaCacheConfiguration configuration = new GuavaCacheConfiguration().maximumSize(5000)
+                .recordStats();
+        cache = new DefaultOptionCache(dao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(dao, MoreExecutors.directExecutor()),
+                configuration) {
+        });
+        session1 = session();
+        session2 = session();
+    }
+
+    @Test
+    public void repeatedReadsServedBySessionCache() throws Exception {
+        // given
+        session1.set(AContext.key1, 5);
+        long requestsBefore = cache.stats()
+                .requestCount();
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            assertThat(session1.get(AContext.key1)).isEqualTo(5);
+            assertThat(session1.getSpecificRanked(0, AContext.key1)).isEqualTo(5);
+        }
+
+        // then
+        assertThat(cache.stats()
+                .requestCount() - requestsBefore).isEqualTo(2);
+    }
+
+    @Test
+    public void changeThroughAnotherInstanceSeenAtOnce() throws Exception {
+        // given
+        assertThat(session1.get(AContext.key1)).isEqualTo(125);
+
+        // when
+        session2.set(AContext.key1, 6);
+
+        // then
+        assertThat(session1.get(AContext.key1)).isEqualTo(6);
+        assertThat(session1.getLowestRanked(AContext.key1)).isEqualTo(6);
+
+        // when
+        session2.delete(AContext.key1, 0);
+
+        // then
+        assertThat(session1.get(AContext.key1)).isEqualTo(125);
+    }
+
+    @Test
+    public void ranksHeldSeparately() throws Exception {
+        // given
+        session1.set(AContext.key1, 1, 7);
+
+        // then
+        assertThat(session1.getSpecificRanked(0, AContext.key1)).isEqualTo(125);
+        assertThat(session1.getSpecificRanked(1, AContext.key1)).isEqualTo(7);
+        assertThat(session1.get(AContext.key1)).isEqualTo(7);
+        assertThat(session1.get(AContext.key2)).isEqualTo(AContext.key2.getDefaultValue());
+    }
+
+    @Test
+    public void clearSessionCache() throws Exception {
+        // given
+        session1.set(AContext.key1, 5);
+        session1.get(AContext.key1);
+        long requestsBefore = cache.stats()
+                .requestCount();
+
+        // when
+        session1.clearSessionCache();
+        session1.get(AContext.key1);
+
+        // then
+        assertThat(cache.stats()
+                .requestCount() - requestsBefore).isEqualTo(1);
+    }
+
+    @Test
+    public void readersSeeOnlyWrittenValuesAndFinishOnTheLast() throws Exception {
+        // given
+        List<SessionCachedOption> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            readers.add(session());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(readers.size() + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        try {
+            // when
+            Future<?> writer = executor.submit(() -> {
+                start.await();
+                for (int i = 1; i <= 500; i++) {
+                    session1.set(AContext.key1, 100_000 + i);
+                }
+                return null;
+            });
+            for (SessionCachedOption reader : readers) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    boolean valid = true;
+                    int last = 0;
+                    while (writing.get()) {
+                        int value = reader.get(AContext.key1);
+                        if (value == 125) {
+                            valid &= last == 0;
+                        } else {
+                            valid &= value > 100_000 && value >= last;
+                            last = value;
+                        }
+                    }
+                    return valid;
+                }));
+            }
+            start.countDown();
+            writer.get(30, TimeUnit.SECONDS);
+            writing.set(false);
+
+            // then values never went backwards
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(30, TimeUnit.SECONDS)).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // then every session sees the last value
+        for (SessionCachedOption reader : readers) {
+            assertThat(reader.get(AContext.key1)).isEqualTo(100_500);
+        }
+    }
+
+    @Test
+    public void valueExpiredInSharedCacheReadAgainAfterMaxAge() throws Exception {
+        // given
+        GuavaCacheConfiguration configuration = new GuavaCacheConfiguration().maximumSize(5000)
+                .expireAfterWrite(50, TimeUnit.MILLISECONDS);
+        cache = new DefaultOptionCache(dao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(dao, MoreExecutors.directExecutor()),
+                configuration) {
+        }, configuration);
+        SessionCachedOption session = new SessionCachedOption(cache, new DefaultUserHierarchy(), new DefaultOptionPermissionVerifier(), mock
+                (MessageBus.class), mock(SerializationSupport.class), 100);
+        assertThat(session.get(AContext.key1)).isEqualTo(125);
+        long generation = cache.generation();
+
+        // when changed in the store, as by another application instance
+        dao.write(new OptionCacheKey<>(new DefaultUserHierarchy(), RankOption.SPECIFIC_RANK, 0, AContext.key1), Optional.of(8));
+        Thread.sleep(200);
+
+        // then
+        assertThat(session.get(AContext.key1)).isEqualTo(8);
+        assertThat(cache.generation()).isEqualTo(generation);
+    }
+
+    @Test
+    public void selectedInModule() throws Exception {
+        // given
+        Injector injector = Guice.createInjector(new OptionModule().activeSource(InMemory.class)
+                .sessionCache(), new InMemoryModule().provideOptionDao(), new UtilModule(), new EventBusModule(), new SerializationSupportModule());
+
+        // then
+        assertThat(injector.getInstance(Option.class)).isInstanceOf(SessionCachedOption.class);
+        assertThat(injector.getInstance(ExtendedOption.class)).isInstanceOf(SessionCachedOption.class);
+    }
+
+    private SessionCachedOption session() {
+        return new SessionCachedOption(cache, new DefaultUserHierarchy(), new DefaultOptionPermissionVerifier(), mock(MessageBus.class), mock
+                (SerializationSupport.class));
+    }
+}
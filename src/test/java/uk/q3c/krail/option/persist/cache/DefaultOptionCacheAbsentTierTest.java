@@ -0,0 +1,216 @@
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionDao;
+import uk.q3c.krail.option.persist.dao.BatchOptionDao;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that options without a value are held by {@link DefaultOptionCache} apart from those with one
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultOptionCacheAbsentTierTest {
+
+    private DefaultOptionCache cache;
+    private OptionDao dao;
+    private DefaultUserHierarchy hierarchy;
+    private List<OptionCacheKey<Integer>> setKeys;
+    private List<OptionCacheKey<Integer>> unsetKeys;
+
+    @Before
+    public void setup() {
+        dao = mock(OptionDao.class);
+        hierarchy = new DefaultUserHierarchy();
+        setKeys = cacheKeys("set-", 10);
+        unsetKeys = cacheKeys("unset-", 1000);
+        when(dao.getValue(any(OptionCacheKey.class))).thenAnswer(invocation -> value((OptionCacheKey<?>) invocation.getArguments()[0]));
+        cache = createCache(dao, DefaultOptionCache.defaultAbsentConfiguration());
+    }
+
+    @Test
+    public void unsetOptionsDoNotDisplaceValues() throws Exception {
+        // given
+        for (OptionCacheKey<Integer> cacheKey : setKeys) {
+            cache.get(Optional.of(0), cacheKey);
+        }
+
+        // when
+        for (OptionCacheKey<Integer> cacheKey : unsetKeys) {
+            assertThat(cache.get(Optional.of(-1), cacheKey)).contains(-1);
+        }
+        long loadsBefore = cache.stats()
+                .loadCount();
+        for (OptionCacheKey<Integer> cacheKey : setKeys) {
+            assertThat(cache.get(Optional.of(0), cacheKey)).contains(1);
+        }
+
+        // then
+        assertThat(cache.stats()
+                .loadCount()).isEqualTo(loadsBefore);
+        assertThat(cache.cacheSize()).isEqualTo(10);
+        assertThat(cache.absentKeys()).hasSize(1000);
+    }
+
+    @Test
+    public void unsetOptionReadFromStoreOnce() throws Exception {
+        // given
+        OptionCacheKey<Integer> unset = unsetKeys.get(0);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            assertThat(cache.get(Optional.of(-1), unset)).contains(-1);
+        }
+
+        // then
+        verify(dao, times(1)).getValue(unset);
+        assertThat(cache.absentStats()
+                .hitCount()).isEqualTo(4);
+        assertThat(cache.asMap()).doesNotContainKey(unset);
+    }
+
+    @Test
+    public void writeRemovesAbsentEntry() throws Exception {
+        // given
+        OptionCacheKey<Integer> unset = unsetKeys.get(0);
+        OptionCacheKey<Integer> highest = new OptionCacheKey<>(unset, RankOption.HIGHEST_RANK);
+        cache.get(Optional.of(-1), unset);
+        cache.get(Optional.of(-1), highest);
+        when(dao.getValue(unset)).thenReturn(Optional.of(7));
+
+        // when
+        cache.write(unset, Optional.of(7));
+
+        // then
+        assertThat(cache.absentKeys()).doesNotContain(unset, highest);
+        assertThat(cache.get(Optional.of(-1), unset)).contains(7);
+        assertThat(cache.get(Optional.of(-1), highest)).contains(7);
+
+        // when
+        when(dao.getValue(unset)).thenReturn(Optional.empty());
+        cache.write(unset, Optional.empty());
+
+        // then
+        assertThat(cache.asMap()).doesNotContainKey(unset);
+        assertThat(cache.get(Optional.of(-1), unset)).contains(-1);
+    }
+
+    @Test
+    public void batchPreloadRecordsMissingKeys() throws Exception {
+        // given
+        BatchOptionDao batchDao = mock(BatchOptionDao.class);
+        when(batchDao.getValues(anyCollection())).thenAnswer(invocation -> {
+            Map<OptionCacheKey<?>, Optional<?>> values = new HashMap<>();
+            for (Object cacheKey : (Collection<?>) invocation.getArguments()[0]) {
+                values.put((OptionCacheKey<?>) cacheKey, value((OptionCacheKey<?>) cacheKey));
+            }
+            return ImmutableMap.copyOf(values);
+        });
+        cache = createCache(batchDao, DefaultOptionCache.defaultAbsentConfiguration());
+        List<OptionCacheKey<?>> keys = new ArrayList<>(setKeys);
+        keys.addAll(unsetKeys);
+
+        // when
+        cache.preload(keys);
+
+        // then
+        verify(batchDao, times(1)).getValues(anyCollection());
+        assertThat(cache.cacheSize()).isEqualTo(10);
+        assertThat(cache.absentKeys()).hasSize(1000);
+        assertThat(cache.get(Optional.of(-1), unsetKeys.get(0))).contains(-1);
+        verify(batchDao, never()).getValue(any(OptionCacheKey.class));
+    }
+
+    @Test
+    public void failedPreloadRecordsNothingAbsent() throws Exception {
+        // given
+        BatchOptionDao batchDao = mock(BatchOptionDao.class);
+        when(batchDao.getValues(anyCollection())).thenThrow(new IllegalStateException("store unavailable"));
+        cache = createCache(batchDao, DefaultOptionCache.defaultAbsentConfiguration());
+
+        // when
+        cache.preload(unsetKeys.subList(0, 5));
+
+        // then
+        assertThat(cache.cacheSize()).isEqualTo(0);
+        assertThat(cache.absentKeys()).isEmpty();
+    }
+
+    @Test
+    public void preloadWithoutBatchLoadsEachKey() throws Exception {
+        // given
+        List<OptionCacheKey<?>> keys = new ArrayList<>(unsetKeys.subList(0, 5));
+        keys.addAll(setKeys);
+
+        // when
+        cache.preload(keys);
+
+        // then
+        assertThat(cache.cacheSize()).isEqualTo(10);
+        assertThat(cache.absentKeys()).hasSize(5);
+        verify(dao, times(15)).getValue(any(OptionCacheKey.class));
+    }
+
+    @Test
+    public void absentEntryExpires() throws Exception {
+        // given
+        GuavaCacheConfiguration absentConfiguration = new GuavaCacheConfiguration().maximumSize(100)
+                .expireAfterWrite(100, TimeUnit.MILLISECONDS);
+        cache = createCache(dao, absentConfiguration);
+        OptionCacheKey<Integer> unset = unsetKeys.get(0);
+        cache.get(Optional.of(-1), unset);
+
+        // when
+        Thread.sleep(200);
+        cache.get(Optional.of(-1), unset);
+
+        // then
+        verify(dao, times(2)).getValue(unset);
+    }
+
+    private DefaultOptionCache createCache(OptionDao optionDao, GuavaCacheConfiguration absentConfiguration) {
+        GuavaCacheConfiguration configuration = new GuavaCacheConfiguration().maximumSize(10)
+                .recordStats();
+        return new DefaultOptionCache(optionDao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(optionDao, MoreExecutors
+                .directExecutor()), configuration) {
+        }, absentConfiguration);
+    }
+
+    private Optional<?> value(OptionCacheKey<?> cacheKey) {
+        return setKeys.contains(cacheKey) ? Optional.of(1) : Optional.empty();
+    }
+
+    private List<OptionCacheKey<Integer>> cacheKeys(String prefix, int count) {
+        List<OptionCacheKey<Integer>> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            OptionKey<Integer> optionKey = new OptionKey<>(0, AContext.class, TestLabelKey.Static, prefix + i);
+            keys.add(new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, optionKey));
+        }
+        return keys;
+    }
+}
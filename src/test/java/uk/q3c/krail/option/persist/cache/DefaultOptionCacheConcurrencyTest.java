@@ -0,0 +1,186 @@
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionDao;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that reads from {@link DefaultOptionCache} do not share a monitor, either with each other or with writes, and that a read which overlaps
+ * a write does not leave the value it loaded in the cache
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultOptionCacheConcurrencyTest {
+
+    private static final long RUN_MILLIS = 500;
+
+    private DefaultOptionCache cache;
+    private OptionDao dao;
+    private OptionCacheKey<Integer> cacheKey1;
+    private OptionCacheKey<Integer> cacheKey2;
+
+    @Before
+    public void setup() {
+        dao = mock(OptionDao.class);
+        when(dao.getValue(any(OptionCacheKey.class))).thenReturn(Optional.of(3));
+        GuavaCacheConfiguration configuration = new GuavaCacheConfiguration();
+        configuration.maximumSize(5000)
+                .recordStats();
+        cache = new DefaultOptionCache(dao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(dao, MoreExecutors.directExecutor()), configuration));
+        cacheKey1 = new OptionCacheKey<>(new DefaultUserHierarchy(), RankOption.SPECIFIC_RANK, 0, AContext.key1);
+        cacheKey2 = new OptionCacheKey<>(new DefaultUserHierarchy(), RankOption.SPECIFIC_RANK, 0, AContext.key2);
+    }
+
+    @Test
+    public void readNotBlockedByWriteInProgress() throws Exception {
+        // given
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch releaseWrite = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writeStarted.countDown();
+            releaseWrite.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(dao)
+                .write(any(OptionCacheKey.class), any(Optional.class));
+        cache.get(Optional.of(0), cacheKey1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // when
+            Future<?> write = executor.submit(() -> cache.write(cacheKey1, Optional.of(5)));
+            assertThat(writeStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // then reads of the same and other options complete while the writer holds its lock
+            assertThat(cache.get(Optional.of(0), cacheKey1)).contains(3);
+            assertThat(cache.get(Optional.of(0), cacheKey2)).contains(3);
+            assertThat(cache.getIfPresent(cacheKey1)).isEqualTo(Optional.of(3));
+            assertThat(cache.stats()
+                    .hitCount()).isGreaterThan(0);
+
+            // when
+            releaseWrite.countDown();
+            write.get(5, TimeUnit.SECONDS);
+
+            // then
+            assertThat(cache.get(Optional.of(0), cacheKey1)).contains(5);
+        } finally {
+            releaseWrite.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A load which reads the store before a write, but completes after it, must not leave the value it read in the cache.  Guava does not cancel a
+     * load when its entry is invalidated, so the cache has to discard the value itself
+     */
+    @Test
+    public void valueLoadedDuringWriteNotKept() throws Exception {
+        // when
+        Optional<Integer> read = readOverlapping(cacheKey1, () -> cache.write(cacheKey1, Optional.of(5)));
+
+        // then
+        assertThat(read).contains(6);
+        assertThat(cache.get(Optional.of(0), cacheKey1)).contains(5);
+
+        // when
+        read = readOverlapping(cacheKey2, () -> cache.write(cacheKey2, Optional.empty()));
+
+        // then
+        assertThat(read).contains(6);
+        assertThat(cache.getIfPresent(cacheKey2)).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    public void hitThroughputScalesWithReaders() throws Exception {
+        int readers = Math.min(4, Runtime.getRuntime()
+                .availableProcessors());
+        assumeTrue("needs several processors to show scaling", readers >= 4);
+
+        // given
+        cache.get(Optional.of(0), cacheKey1);
+        cache.get(Optional.of(0), cacheKey2);
+
+        // when
+        long single = readHits(1);
+        long multiple = readHits(readers);
+
+        // then
+        assertThat(multiple).isGreaterThan(single * 3 / 2);
+    }
+
+    /**
+     * Reads {@code cacheKey} while {@code change} runs, after the read has begun loading from the store, and before the load returns 6
+     */
+    private Optional<Integer> readOverlapping(OptionCacheKey<Integer> cacheKey, Runnable change) throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        when(dao.getValue(any(OptionCacheKey.class))).thenAnswer(invocation -> {
+            loading.countDown();
+            changed.await(10, TimeUnit.SECONDS);
+            return Optional.of(6);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<Integer>> read = executor.submit(() -> cache.get(Optional.of(0), cacheKey));
+            assertThat(loading.await(10, TimeUnit.SECONDS)).isTrue();
+            change.run();
+            changed.countDown();
+            return read.get(10, TimeUnit.SECONDS);
+        } finally {
+            changed.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private long readHits(int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long count = 0;
+                    while (running.get()) {
+                        cache.get(Optional.of(0), (count & 1) == 0 ? cacheKey1 : cacheKey2);
+                        count++;
+                    }
+                    return count;
+                }));
+            }
+            start.countDown();
+            Thread.sleep(RUN_MILLIS);
+            running.set(false);
+            long total = 0;
+            for (Future<Long> result : results) {
+                total += result.get(5, TimeUnit.SECONDS);
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
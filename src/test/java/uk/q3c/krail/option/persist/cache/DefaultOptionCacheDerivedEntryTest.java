@@ -0,0 +1,152 @@
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionSource;
+import uk.q3c.krail.option.persist.codec.DefaultOptionCodecRegistry;
+import uk.q3c.krail.option.persist.dao.DefaultOptionDao;
+import uk.q3c.krail.persist.inmemory.dao.InMemoryOptionDaoDelegate;
+import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
+import uk.q3c.util.clazz.DefaultClassNameUtils;
+import uk.q3c.util.data.DefaultDataConverter;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that writes update the highest and lowest ranked entries of {@link DefaultOptionCache} in place.  {@link DefaultUserHierarchy} has the
+ * ranks "me", then "system"
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultOptionCacheDerivedEntryTest {
+
+    private DefaultOptionCache cache;
+    private DefaultOptionDao dao;
+    private OptionCacheKey<Integer> me;
+    private OptionCacheKey<Integer> system;
+    private OptionCacheKey<Integer> highest;
+    private OptionCacheKey<Integer> lowest;
+
+    @Before
+    public void setup() {
+        DefaultInMemoryOptionStore store = new DefaultInMemoryOptionStore();
+        OptionSource optionSource = mock(OptionSource.class);
+        when(optionSource.getActiveDao()).thenReturn(new InMemoryOptionDaoDelegate(store));
+        dao = spy(new DefaultOptionDao(new DefaultOptionCodecRegistry(new DefaultDataConverter(Collections.emptyMap(), new DefaultClassNameUtils())),
+                optionSource));
+        cache = new DefaultOptionCache(dao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(dao, MoreExecutors.directExecutor()), new
+                GuavaCacheConfiguration().maximumSize(1000)
+                .recordStats()));
+        me = new OptionCacheKey<>(new DefaultUserHierarchy(), RankOption.SPECIFIC_RANK, 0, AContext.key1);
+        system = new OptionCacheKey<>(me, 1, RankOption.SPECIFIC_RANK);
+        highest = new OptionCacheKey<>(me, RankOption.HIGHEST_RANK);
+        lowest = new OptionCacheKey<>(me, RankOption.LOWEST_RANK);
+    }
+
+    @Test
+    public void writesAndDeletesUpdateDerivedEntriesInPlace() throws Exception {
+        // given
+        cache.write(system, Optional.of(5));
+        assertThat(cache.get(Optional.of(0), highest)).contains(5);
+        assertThat(cache.get(Optional.of(0), lowest)).contains(5);
+        long loads = cache.stats()
+                .loadCount();
+
+        // when
+        cache.write(me, Optional.of(7));
+
+        // then
+        assertThat(cache.get(Optional.of(0), highest)).contains(7);
+        assertThat(cache.get(Optional.of(0), lowest)).contains(5);
+
+        // when
+        cache.write(me, Optional.of(8));
+        cache.write(system, Optional.of(6));
+
+        // then
+        assertThat(cache.get(Optional.of(0), highest)).contains(8);
+        assertThat(cache.get(Optional.of(0), lowest)).contains(6);
+
+        // when the source of the highest is deleted
+        cache.delete(me);
+
+        // then
+        assertThat(cache.get(Optional.of(0), highest)).contains(6);
+        assertThat(cache.get(Optional.of(0), lowest)).contains(6);
+
+        // when
+        cache.delete(system);
+
+        // then
+        assertThat(cache.get(Optional.of(0), highest)).contains(0);
+        assertThat(cache.get(Optional.of(0), lowest)).contains(0);
+        assertThat(cache.absentKeys()).contains(highest, lowest);
+        assertThat(cache.stats()
+                .loadCount()).isEqualTo(loads);
+    }
+
+    @Test
+    public void indexedEntryUpdatedWithoutReadingStore() throws Exception {
+        // given
+        cache.write(system, Optional.of(5));
+        cache.get(Optional.of(0), highest);
+        cache.write(me, Optional.of(7));
+        reset(dao);
+
+        // when
+        cache.write(me, Optional.of(8));
+        cache.write(system, Optional.of(9));
+
+        // then
+        verify(dao, never()).getValues(anyCollection());
+        verify(dao, never()).getValue(any(OptionCacheKey.class));
+        assertThat(cache.get(Optional.of(0), highest)).contains(8);
+    }
+
+    @Test
+    public void uncachedDerivedEntriesLeftAlone() throws Exception {
+        // when
+        cache.write(me, Optional.of(7));
+        cache.delete(me);
+
+        // then
+        verify(dao, never()).getValues(anyCollection());
+        assertThat(cache.asMap()).doesNotContainKeys(highest, lowest);
+        assertThat(cache.absentKeys()).doesNotContain(highest, lowest);
+    }
+
+    @Test
+    public void entryReplacedSinceIndexedResolvedFromStore() throws Exception {
+        // given
+        cache.write(system, Optional.of(5));
+        cache.get(Optional.of(0), highest);
+        cache.write(me, Optional.of(7));
+        cache.asMap()
+                .put(highest, Optional.of(99));
+        reset(dao);
+
+        // when
+        cache.write(system, Optional.of(6));
+
+        // then
+        verify(dao, times(1)).getValues(anyCollection());
+        assertThat(cache.get(Optional.of(0), highest)).contains(7);
+    }
+}
@@ -0,0 +1,258 @@
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.eventbus.mbassador.EventBusModule;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.UserHierarchy;
+import uk.q3c.krail.option.UserHierarchyDefault;
+import uk.q3c.krail.option.bind.OptionModule;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionDao;
+import uk.q3c.krail.option.persist.OptionSource;
+import uk.q3c.krail.option.persist.codec.DefaultOptionCodecRegistry;
+import uk.q3c.krail.option.persist.dao.DefaultOptionDao;
+import uk.q3c.krail.persist.InMemory;
+import uk.q3c.krail.persist.inmemory.InMemoryModule;
+import uk.q3c.krail.persist.inmemory.dao.InMemoryOptionDaoDelegate;
+import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
+import uk.q3c.util.UtilModule;
+import uk.q3c.util.clazz.DefaultClassNameUtils;
+import uk.q3c.util.data.DefaultDataConverter;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+import uk.q3c.util.guice.SerializationSupportModule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs several nodes, each with its own {@link DefaultOptionCache}, over one store, connected by {@link LoopbackOptionCacheInvalidationTransport}
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultOptionCacheInvalidationBusTest {
+
+    private OptionDao dao;
+    private Injector injector;
+    private String channel;
+    private List<LoopbackOptionCacheInvalidationTransport> transports = new ArrayList<>();
+    private OptionCacheKey<Integer> specific;
+    private OptionCacheKey<Integer> highest;
+    private OptionCacheKey<Integer> lowest;
+
+    @Before
+    public void setup() {
+        DefaultInMemoryOptionStore store = new DefaultInMemoryOptionStore();
+        OptionSource optionSource = mock(OptionSource.class);
+        when(optionSource.getActiveDao()).thenReturn(new InMemoryOptionDaoDelegate(store));
+        dao = new DefaultOptionDao(new DefaultOptionCodecRegistry(new DefaultDataConverter(Collections.emptyMap(), new DefaultClassNameUtils())),
+                optionSource);
+        injector = Guice.createInjector(binder -> binder.bind(UserHierarchy.class)
+                .annotatedWith(UserHierarchyDefault.class)
+                .to(DefaultUserHierarchy.class));
+        channel = UUID.randomUUID()
+                .toString();
+        DefaultUserHierarchy hierarchy = new DefaultUserHierarchy();
+        specific = new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, AContext.key1);
+        highest = new OptionCacheKey<>(specific, RankOption.HIGHEST_RANK);
+        lowest = new OptionCacheKey<>(specific, RankOption.LOWEST_RANK);
+    }
+
+    @After
+    public void tearDown() {
+        transports.forEach(LoopbackOptionCacheInvalidationTransport::disconnect);
+    }
+
+    @Test
+    public void writeAndDeleteSeenByOtherNodes() throws Exception {
+        // given
+        DefaultOptionCache node1 = node(0);
+        DefaultOptionCache node2 = node(0);
+        DefaultOptionCache node3 = node(0);
+        for (DefaultOptionCache node : new DefaultOptionCache[]{node2, node3}) {
+            assertThat(node.get(Optional.of(0), highest)).contains(0);
+            assertThat(node.get(Optional.of(0), lowest)).contains(0);
+        }
+        long generationBefore = node2.generation();
+
+        // when
+        node1.write(specific, Optional.of(6));
+
+        // then
+        for (DefaultOptionCache node : new DefaultOptionCache[]{node2, node3}) {
+            assertThat(node.get(Optional.of(0), specific)).contains(6);
+            assertThat(node.get(Optional.of(0), highest)).contains(6);
+            assertThat(node.get(Optional.of(0), lowest)).contains(6);
+        }
+        assertThat(node2.generation()).isGreaterThan(generationBefore);
+
+        // when
+        node3.delete(specific);
+
+        // then
+        for (DefaultOptionCache node : new DefaultOptionCache[]{node1, node2}) {
+            assertThat(node.get(Optional.of(0), specific)).contains(0);
+            assertThat(node.get(Optional.of(0), highest)).contains(0);
+        }
+    }
+
+    @Test
+    public void invalidationsCoalesced() throws Exception {
+        // given
+        OptionCacheInvalidationConfiguration configuration = new OptionCacheInvalidationConfiguration().channel(channel)
+                .delay(1, TimeUnit.HOURS)
+                .maxBatchSize(2);
+        List<byte[]> sent = new ArrayList<>();
+        LoopbackOptionCacheInvalidationTransport transport = new LoopbackOptionCacheInvalidationTransport(configuration) {
+            @Override
+            public void send(byte[] message) {
+                sent.add(message);
+                super.send(message);
+            }
+        };
+        transports.add(transport);
+        DefaultOptionCacheInvalidationBus bus = new DefaultOptionCacheInvalidationBus(transport, new OptionCacheKeyResolver(injector),
+                configuration);
+        List<OptionCacheKey<?>> received = new ArrayList<>();
+        DefaultOptionCacheInvalidationBus receiver = bus(new OptionCacheInvalidationConfiguration().channel(channel));
+        receiver.subscribe(received::add);
+        OptionCacheKey<Integer> rank1 = new OptionCacheKey<>(specific, "1", RankOption.SPECIFIC_RANK);
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            bus.publish(specific);
+            bus.publish(highest);
+        }
+        bus.publish(rank1);
+
+        // then
+        assertThat(sent).isEmpty();
+
+        // when
+        bus.flush();
+
+        // then
+        assertThat(sent).hasSize(2);
+        assertThat(received).containsOnly(specific, highest, rank1)
+                .hasSize(3);
+    }
+
+    @Test
+    public void delayedInvalidationSent() throws Exception {
+        // given
+        DefaultOptionCache node1 = node(20);
+        DefaultOptionCache node2 = node(20);
+        node2.get(Optional.of(0), highest);
+
+        // when
+        node1.write(specific, Optional.of(6));
+
+        // then
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (node2.absentKeys()
+                .contains(highest) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(node2.get(Optional.of(0), highest)).contains(6);
+    }
+
+    @Test
+    public void unknownKeyIgnored() throws Exception {
+        // given
+        List<OptionCacheKey<?>> received = new ArrayList<>();
+        bus(new OptionCacheInvalidationConfiguration().channel(channel)).subscribe(received::add);
+        UserHierarchy unknownHierarchy = mock(UserHierarchy.class);
+        when(unknownHierarchy.persistenceName()).thenReturn("unknown");
+        OptionCacheKey<Integer> unknown = new OptionCacheKey<>(unknownHierarchy, RankOption.HIGHEST_RANK, AContext.key1);
+        DefaultOptionCacheInvalidationBus sender = bus(new OptionCacheInvalidationConfiguration().channel(channel)
+                .delay(0, TimeUnit.MILLISECONDS));
+
+        // when
+        sender.publish(unknown);
+        sender.publish(specific);
+
+        // then
+        assertThat(received).containsExactly(specific);
+    }
+
+    /**
+     * A load which reads the store before a delete, but completes after it, must not leave the deleted value in the cache
+     */
+    @Test
+    public void valueLoadedDuringDeleteNotKept() throws Exception {
+        // given
+        OptionDao slowDao = mock(OptionDao.class);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch deleted = new CountDownLatch(1);
+        when(slowDao.getValue(any(OptionCacheKey.class))).thenAnswer(invocation -> {
+            loading.countDown();
+            deleted.await(10, TimeUnit.SECONDS);
+            return Optional.of(6);
+        });
+        when(slowDao.deleteValue(any(OptionCacheKey.class))).thenReturn(Optional.of(6));
+        DefaultOptionCache cache = new DefaultOptionCache(slowDao, provider(slowDao));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // when
+            Future<Optional<Integer>> read = executor.submit(() -> cache.get(Optional.of(0), specific));
+            loading.await(10, TimeUnit.SECONDS);
+            cache.delete(specific);
+            deleted.countDown();
+
+            // then
+            assertThat(read.get(10, TimeUnit.SECONDS)).contains(6);
+            assertThat(cache.asMap()).doesNotContainKey(specific);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void selectedInModule() throws Exception {
+        // given
+        Injector injector = Guice.createInjector(new OptionModule().activeSource(InMemory.class)
+                .invalidationTransport(LoopbackOptionCacheInvalidationTransport.class), new InMemoryModule().provideOptionDao(), new UtilModule(), new
+                EventBusModule(), new SerializationSupportModule());
+
+        // then
+        assertThat(injector.getInstance(OptionCacheInvalidationBus.class)).isInstanceOf(DefaultOptionCacheInvalidationBus.class);
+        transports.add((LoopbackOptionCacheInvalidationTransport) injector.getInstance(OptionCacheInvalidationTransport.class));
+    }
+
+    private DefaultOptionCache node(long delayMillis) {
+        OptionCacheInvalidationBus bus = bus(new OptionCacheInvalidationConfiguration().channel(channel)
+                .delay(delayMillis, TimeUnit.MILLISECONDS));
+        return new DefaultOptionCache(dao, provider(dao), DefaultOptionCache.defaultAbsentConfiguration(), bus);
+    }
+
+    private DefaultOptionCacheInvalidationBus bus(OptionCacheInvalidationConfiguration configuration) {
+        LoopbackOptionCacheInvalidationTransport transport = new LoopbackOptionCacheInvalidationTransport(configuration);
+        transports.add(transport);
+        return new DefaultOptionCacheInvalidationBus(transport, new OptionCacheKeyResolver(injector), configuration);
+    }
+
+    private DefaultOptionCacheProvider provider(OptionDao optionDao) {
+        return new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(optionDao, MoreExecutors.directExecutor()), new GuavaCacheConfiguration()
+                .maximumSize(1000)
+                .recordStats());
+    }
+}
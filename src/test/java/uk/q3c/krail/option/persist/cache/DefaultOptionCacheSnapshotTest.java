@@ -0,0 +1,231 @@
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.q3c.krail.eventbus.mbassador.EventBusModule;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.OptionContext;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.bind.OptionModule;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.persist.InMemory;
+import uk.q3c.krail.persist.inmemory.InMemoryModule;
+import uk.q3c.krail.persist.inmemory.InMemoryOptionStore;
+import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
+import uk.q3c.util.UtilModule;
+import uk.q3c.util.guice.InjectorLocator;
+import uk.q3c.util.guice.SerializationSupportModule;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.q3c.krail.option.persist.cache.AContext.key1;
+import static uk.q3c.krail.option.persist.cache.AContext.key2;
+import static uk.q3c.krail.option.persist.cache.OptionCacheRestore.Outcome.*;
+
+/**
+ * Each "application" is a new injector sharing one store, as a restarted application would
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultOptionCacheSnapshotTest {
+
+    static Injector injector;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private CountingStore store;
+    private OptionCacheSnapshotConfiguration configuration;
+
+    @Before
+    public void setup() throws Exception {
+        store = new CountingStore();
+        configuration = new OptionCacheSnapshotConfiguration().file(new File(temp.getRoot(), "cache.snapshot"));
+    }
+
+    @Test
+    public void restoredKeysAreLoadedInOneRead() throws Exception {
+        // given
+        int saved = runAndSave();
+
+        // when
+        start();
+        store.reads.set(0);
+        OptionCacheRestore restore = injector.getInstance(OptionCacheSnapshot.class)
+                .restore();
+
+        // then every key is loaded, with one read of the store
+        assertThat(restore.getOutcome()).isEqualTo(RESTORED);
+        assertThat(restore.getEntries()).isEqualTo(saved);
+        assertThat(restore.getSkipped()).isEqualTo(0);
+        assertThat(store.reads.get()).isEqualTo(1);
+        assertThat(injector.getInstance(OptionCacheSnapshot.class)
+                .lastRestore()).contains(restore);
+
+        // when
+        store.reads.set(0);
+        readAll();
+
+        // then nothing more is read from the store, including the options without a value
+        assertThat(store.reads.get()).isEqualTo(0);
+
+        // when started without a restore
+        start();
+        readAll();
+
+        // then
+        assertThat(cache().stats()
+                .loadCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void restoreLoadsCurrentValues() throws Exception {
+        // given
+        runAndSave();
+        injector.getInstance(Option.class)
+                .set(key1, 8);
+
+        // when
+        start();
+        store.reads.set(0);
+        injector.getInstance(OptionCacheSnapshot.class)
+                .restore();
+        readAll(8);
+
+        // then
+        assertThat(store.reads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void expiredOrMissingSnapshotIsNotRestored() throws Exception {
+        // given
+        configuration.maxAge(0, TimeUnit.MILLISECONDS);
+        start();
+
+        // when
+        OptionCacheRestore missing = injector.getInstance(OptionCacheSnapshot.class)
+                .restore();
+
+        // then
+        assertThat(missing.getOutcome()).isEqualTo(MISSING);
+
+        // when
+        runAndSave();
+        Thread.sleep(5);
+        start();
+        OptionCacheRestore expired = injector.getInstance(OptionCacheSnapshot.class)
+                .restore();
+
+        // then
+        assertThat(expired.getOutcome()).isEqualTo(EXPIRED);
+        assertThat(cache().cacheSize()).isEqualTo(0);
+    }
+
+    /**
+     * Sets two values, reads four, of which two are unset, and saves the cached keys
+     */
+    private int runAndSave() {
+        start();
+        Option option = injector.getInstance(Option.class);
+        option.set(key1, 7);
+        option.set(SnapshotContext.name, "saved");
+        readAll();
+        return injector.getInstance(OptionCacheSnapshot.class)
+                .save();
+    }
+
+    private void readAll() {
+        readAll(7);
+    }
+
+    private void readAll(int expectedKey1) {
+        Option option = injector.getInstance(Option.class);
+        assertThat(option.get(key1)).isEqualTo(expectedKey1);
+        assertThat(option.get(key2)).isEqualTo(18);
+        assertThat(option.get(SnapshotContext.name)).isEqualTo("saved");
+        assertThat(option.get(SnapshotContext.enabled)).isTrue();
+    }
+
+    private ExtendedOptionCache cache() {
+        return (ExtendedOptionCache) injector.getInstance(Option.class)
+                .cache();
+    }
+
+    private void start() {
+        injector = Guice.createInjector(new OptionModule() {
+            @Override
+            protected OptionCacheSnapshotConfiguration configureCacheSnapshot() {
+                return configuration;
+            }
+        }.activeSource(InMemory.class), new InMemoryModule() {
+            @Override
+            protected void bindOptionStore() {
+                bind(InMemoryOptionStore.class).toInstance(store);
+            }
+        }.provideOptionDao(), new UtilModule(), new EventBusModule(), new SerializationSupportModule(), new LocatorModule());
+    }
+
+    public static class SnapshotContext implements OptionContext {
+
+        public static final OptionKey<String> name = new OptionKey<>("default", SnapshotContext.class, TestLabelKey.Yes);
+        public static final OptionKey<Boolean> enabled = new OptionKey<>(true, SnapshotContext.class, TestLabelKey.Ok);
+
+        @Override
+        public Option optionInstance() {
+            return null;
+        }
+    }
+
+    /**
+     * Counts the reads of the store
+     */
+    static class CountingStore extends DefaultInMemoryOptionStore {
+
+        private final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public Optional<String> getValue(OptionId optionId) {
+            reads.incrementAndGet();
+            return super.getValue(optionId);
+        }
+
+        @Override
+        public ImmutableMap<OptionId, String> getValues(Collection<OptionId> optionIds) {
+            reads.incrementAndGet();
+            return super.getValues(optionIds);
+        }
+    }
+
+    static class LocatorModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            bind(InjectorLocator.class).toInstance(new InjectorLocator() {
+
+                @NotNull
+                @Override
+                public Injector get() {
+                    return DefaultOptionCacheSnapshotTest.injector;
+                }
+
+                @Override
+                public void put(Injector injector) {
+                    DefaultOptionCacheSnapshotTest.injector = injector;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionDao;
+import uk.q3c.util.data.collection.DataList;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultOptionValueWeigherTest {
+
+    private DefaultOptionValueWeigher weigher;
+    private OptionCacheKey<Integer> cacheKey;
+
+    @Before
+    public void setup() {
+        weigher = new DefaultOptionValueWeigher();
+        cacheKey = new OptionCacheKey<>(new DefaultUserHierarchy(), RankOption.SPECIFIC_RANK, 0, AContext.key1);
+    }
+
+    @Test
+    public void weightGrowsWithValue() throws Exception {
+        // given
+        DataList<Integer> small = list(10);
+        DataList<Integer> large = list(10_000);
+
+        // when
+        int booleanWeight = weigher.weigh(cacheKey, Optional.of(true));
+        int smallWeight = weigher.weigh(cacheKey, Optional.of(small));
+        int largeWeight = weigher.weigh(cacheKey, Optional.of(large));
+
+        // then
+        assertThat(booleanWeight).isEqualTo(DefaultOptionValueWeigher.ENTRY_BYTES);
+        assertThat(weigher.weigh(cacheKey, Optional.of(TestLabelKey.Yes))).isEqualTo(booleanWeight);
+        assertThat(weigher.weigh(cacheKey, Optional.of("abcd"))).isLessThan(weigher.weigh(cacheKey, Optional.of("abcdefgh")));
+        assertThat(smallWeight).isGreaterThan(booleanWeight);
+        assertThat(largeWeight).isGreaterThan(smallWeight * 500)
+                .isGreaterThan(10_000 * (DefaultOptionValueWeigher.REFERENCE_BYTES + DefaultOptionValueWeigher.BOXED_BYTES));
+    }
+
+    /**
+     * 200 Integer values fit within the bound, but adding large lists evicts entries to keep the total weight within it
+     */
+    @Test
+    public void cacheBoundedByWeight() throws Exception {
+        // given
+        long maximumWeight = 1_000_000;
+        OptionDao dao = mock(OptionDao.class);
+        when(dao.getValue(any(OptionCacheKey.class))).thenAnswer(invocation -> {
+            OptionCacheKey<?> key = (OptionCacheKey<?>) invocation.getArguments()[0];
+            return key.getOptionKey()
+                    .compositeKey()
+                    .contains("list-") ? Optional.of(list(2_000)) : Optional.of(1);
+        });
+        GuavaOptionCacheEngine engine = new GuavaOptionCacheEngine(new GuavaCacheConfiguration().recordStats(), maximumWeight);
+        DefaultOptionCache cache = new DefaultOptionCache(dao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(dao, MoreExecutors
+                .directExecutor()), engine, weigher));
+
+        // when
+        for (int i = 0; i < 200; i++) {
+            cache.get(Optional.of(0), cacheKey("int-" + i, 0));
+        }
+
+        // then
+        assertThat(cache.cacheSize()).isEqualTo(200);
+
+        // when
+        for (int i = 0; i < 30; i++) {
+            cache.get(Optional.of(new DataList<>(Integer.class)), cacheKey("list-" + i, new DataList<>(Integer.class)));
+        }
+
+        // then
+        assertThat(cache.cacheSize()).isLessThan(230);
+        assertThat(cache.stats()
+                .evictionCount()).isGreaterThan(0);
+        assertThat(totalWeight(cache)).isLessThanOrEqualTo(maximumWeight);
+    }
+
+    private long totalWeight(DefaultOptionCache cache) {
+        long total = 0;
+        for (Map.Entry<OptionCacheKey, Optional<?>> entry : cache.asMap()
+                .entrySet()) {
+            total += weigher.weigh(entry.getKey(), entry.getValue());
+        }
+        return total;
+    }
+
+    private <T> OptionCacheKey<T> cacheKey(String name, T defaultValue) {
+        OptionKey<T> optionKey = new OptionKey<>(defaultValue, AContext.class, TestLabelKey.Static, name);
+        return new OptionCacheKey<>(new DefaultUserHierarchy(), RankOption.SPECIFIC_RANK, 0, optionKey);
+    }
+
+    private DataList<Integer> list(int size) {
+        DataList<Integer> list = new DataList<>(Integer.class);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,211 @@
+package uk.q3c.krail.option.persist.cache;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.eventbus.mbassador.EventBusModule;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.bind.OptionModule;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionDao;
+import uk.q3c.krail.persist.InMemory;
+import uk.q3c.krail.persist.inmemory.InMemoryModule;
+import uk.q3c.util.UtilModule;
+import uk.q3c.util.data.collection.DataList;
+import uk.q3c.util.guava.GuavaCacheConfiguration;
+import uk.q3c.util.guice.SerializationSupportModule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that {@link DefaultOptionCache} behaves the same with each {@link OptionCacheEngine}
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OptionCacheEngineTest {
+
+    private OptionDao dao;
+    private List<OptionCacheKey<Integer>> setKeys;
+    private List<OptionCacheKey<Integer>> unsetKeys;
+
+    @Before
+    public void setup() {
+        dao = mock(OptionDao.class);
+        setKeys = cacheKeys("set-", 5);
+        unsetKeys = cacheKeys("unset-", 5);
+        when(dao.getValue(any(OptionCacheKey.class))).thenAnswer(invocation -> setKeys.contains(invocation.getArguments()[0]) ? Optional.of(1) :
+                Optional.empty());
+    }
+
+    @Test
+    public void guavaEngine() throws Exception {
+        readsAndPreloads(new GuavaOptionCacheEngine(new GuavaCacheConfiguration().maximumSize(100)
+                .recordStats()));
+    }
+
+    @Test
+    public void caffeineEngine() throws Exception {
+        readsAndPreloads(new CaffeineOptionCacheEngine("maximumSize=100,recordStats", MoreExecutors.directExecutor()));
+    }
+
+    @Test
+    public void caffeineEngineBoundedByWeight() throws Exception {
+        // given
+        OptionValueWeigher weigher = new DefaultOptionValueWeigher();
+        CaffeineOptionCacheEngine engine = new CaffeineOptionCacheEngine("maximumWeight=100000,recordStats", MoreExecutors.directExecutor());
+        when(dao.getValue(any(OptionCacheKey.class))).thenAnswer(invocation -> Optional.of(list(2_000)));
+        DefaultOptionCache cache = new DefaultOptionCache(dao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(dao, MoreExecutors
+                .directExecutor()), engine, weigher) {
+        });
+
+        // when
+        for (OptionCacheKey<Integer> cacheKey : setKeys) {
+            cache.get(Optional.of(0), cacheKey);
+        }
+        cache.cleanup();
+
+        // then
+        assertThat(cache.cacheSize()).isLessThan(setKeys.size());
+        assertThat(cache.stats()
+                .evictionCount()).isGreaterThan(0);
+    }
+
+    @Test
+    public void guavaEngineBoundedByWeightFromModule() throws Exception {
+        // given
+        Injector injector = Guice.createInjector(new OptionModule() {
+            @Override
+            protected GuavaCacheConfiguration configureCache() {
+                return new GuavaCacheConfiguration().recordStats();
+            }
+
+            @Override
+            protected long configureCacheWeight() {
+                return 100_000;
+            }
+        }.activeSource(InMemory.class), new InMemoryModule().provideOptionDao(), new UtilModule(), new EventBusModule(), new
+                SerializationSupportModule(), new OptionCacheTest.LocatorModule());
+        OptionCacheEngine engine = injector.getInstance(OptionCacheEngine.class);
+        when(dao.getValue(any(OptionCacheKey.class))).thenAnswer(invocation -> Optional.of(list(2_000)));
+        DefaultOptionCache cache = new DefaultOptionCache(dao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(dao, MoreExecutors
+                .directExecutor()), engine, new DefaultOptionValueWeigher()) {
+        });
+
+        // when
+        for (OptionCacheKey<Integer> cacheKey : setKeys) {
+            cache.get(Optional.of(0), cacheKey);
+        }
+
+        // then
+        assertThat(engine).isInstanceOf(GuavaOptionCacheEngine.class);
+        assertThat(cache.cacheSize()).isLessThan(setKeys.size());
+        assertThat(cache.stats()
+                .evictionCount()).isGreaterThan(0);
+    }
+
+    /**
+     * Modules which bound the cache by size, as the default configuration once did, are still accepted
+     */
+    @Test
+    public void guavaEngineBoundedBySizeFromModule() throws Exception {
+        // given
+        Injector injector = Guice.createInjector(new OptionModule() {
+            @Override
+            protected GuavaCacheConfiguration configureCache() {
+                return new GuavaCacheConfiguration().maximumSize(5000)
+                        .recordStats();
+            }
+        }.activeSource(InMemory.class), new InMemoryModule().provideOptionDao(), new UtilModule(), new EventBusModule(), new
+                SerializationSupportModule(), new OptionCacheTest.LocatorModule());
+        OptionCacheTest.injector = injector;
+        Option option = injector.getInstance(Option.class);
+
+        // when
+        option.set(AContext.key1, 999);
+
+        // then
+        assertThat(option.get(AContext.key1)).isEqualTo(999);
+        assertThat(option.cache()
+                .cacheSize()).isGreaterThan(0);
+    }
+
+    @Test
+    public void engineSelectedInModule() throws Exception {
+        // given
+        Injector injector = Guice.createInjector(new OptionModule().activeSource(InMemory.class)
+                .cacheEngine(CaffeineOptionCacheEngine.class), new InMemoryModule().provideOptionDao(), new UtilModule(), new EventBusModule(), new
+                SerializationSupportModule(), new OptionCacheTest.LocatorModule());
+        OptionCacheTest.injector = injector;
+        Option option = injector.getInstance(Option.class);
+
+        // when
+        option.set(AContext.key1, 999);
+
+        // then
+        assertThat(injector.getInstance(OptionCacheEngine.class)).isInstanceOf(CaffeineOptionCacheEngine.class);
+        assertThat(option.get(AContext.key1)).isEqualTo(999);
+        assertThat(option.cache()
+                .cacheSize()).isGreaterThan(0);
+    }
+
+    private void readsAndPreloads(OptionCacheEngine engine) {
+        // given
+        DefaultOptionCache cache = new DefaultOptionCache(dao, new DefaultOptionCacheProvider(new DefaultOptionCacheLoader(dao, MoreExecutors
+                .directExecutor()), engine, new DefaultOptionValueWeigher()) {
+        });
+        List<OptionCacheKey<?>> keys = new ArrayList<>(setKeys);
+        keys.addAll(unsetKeys);
+
+        // when
+        cache.preload(keys);
+
+        // then
+        assertThat(cache.cacheSize()).isEqualTo(5);
+        assertThat(cache.absentKeys()).hasSize(5);
+
+        // when
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.get(Optional.of(0), setKeys.get(0))).contains(1);
+            assertThat(cache.get(Optional.of(-1), unsetKeys.get(0))).contains(-1);
+        }
+        cache.write(unsetKeys.get(1), Optional.of(3));
+
+        // then
+        verify(dao, times(1)).getValue(setKeys.get(0));
+        verify(dao, times(1)).getValue(unsetKeys.get(0));
+        assertThat(cache.get(Optional.of(-1), unsetKeys.get(1))).contains(3);
+        assertThat(cache.absentKeys()).hasSize(4);
+    }
+
+    private List<OptionCacheKey<Integer>> cacheKeys(String prefix, int count) {
+        List<OptionCacheKey<Integer>> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            OptionKey<Integer> optionKey = new OptionKey<>(0, AContext.class, TestLabelKey.Static, prefix + i);
+            keys.add(new OptionCacheKey<>(new DefaultUserHierarchy(), RankOption.SPECIFIC_RANK, 0, optionKey));
+        }
+        return keys;
+    }
+
+    private DataList<Integer> list(int size) {
+        DataList<Integer> list = new DataList<>(Integer.class);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+}
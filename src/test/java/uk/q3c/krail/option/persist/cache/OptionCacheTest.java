@@ -9,6 +9,7 @@ import org.junit.Test;
 import uk.q3c.krail.eventbus.mbassador.EventBusModule;
 import uk.q3c.krail.option.Option;
 import uk.q3c.krail.option.bind.OptionModule;
+import uk.q3c.krail.option.option.ExtendedOption;
 import uk.q3c.krail.persist.InMemory;
 import uk.q3c.krail.persist.inmemory.InMemoryModule;
 import uk.q3c.util.UtilModule;
@@ -17,6 +18,7 @@ import uk.q3c.util.guice.SerializationSupportModule;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static uk.q3c.krail.option.persist.cache.AContext.key1;
+import static uk.q3c.krail.option.persist.cache.AContext.key2;
 
 /**
  * Created by David Sowerby on 19 Oct 2017
@@ -59,6 +61,35 @@ public class OptionCacheTest {
         assertThat(optionContext.optionValue).isEqualTo(999);
     }
 
+    /**
+     * All the keys of a context are loaded with one call to the cache loader.  Neither has a value, so both are held in the absent tier
+     */
+    @Test
+    public void preload() throws Exception {
+        // given
+        ExtendedOption extendedOption = injector.getInstance(ExtendedOption.class);
+
+        // when
+        extendedOption.preload(optionContext);
+
+        // then
+        assertThat(extendedOption.cache()
+                .cacheSize()).isEqualTo(0);
+        assertThat(((ExtendedOptionCache) extendedOption.cache()).absentKeys()).hasSize(2);
+        assertThat(extendedOption.cache()
+                .stats()
+                .loadCount()).isEqualTo(1);
+
+        // when
+        extendedOption.get(key1);
+        extendedOption.get(key2);
+
+        // then
+        assertThat(extendedOption.cache()
+                .stats()
+                .loadCount()).isEqualTo(1);
+    }
+
     static class LocalInjectorLocator implements InjectorLocator {
 
         @NotNull
@@ -0,0 +1,192 @@
+package uk.q3c.krail.option.persist.codec;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.util.clazz.DefaultClassNameUtils;
+import uk.q3c.util.data.DataConverter;
+import uk.q3c.util.data.DefaultDataConverter;
+import uk.q3c.util.data.collection.DataList;
+
+import java.util.HashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultOptionCodecRegistryTest {
+
+    private DataConverter dataConverter;
+    private DefaultOptionCodecRegistry registry;
+    private OptionKey<Integer> intKey;
+    private OptionKey<Boolean> booleanKey;
+    private OptionKey<TestLabelKey> enumKey;
+    private OptionKey<DataList<Integer>> listKey;
+
+    @Before
+    public void setup() {
+        dataConverter = new DefaultDataConverter(new HashMap<>(), new DefaultClassNameUtils());
+        registry = new DefaultOptionCodecRegistry(dataConverter);
+        intKey = new OptionKey<>(5, AContext.class, TestLabelKey.Static);
+        booleanKey = new OptionKey<>(true, AContext.class, TestLabelKey.Large);
+        enumKey = new OptionKey<>(TestLabelKey.Blank, AContext.class, TestLabelKey.Blank);
+        DataList<Integer> defaultList = new DataList<>(Integer.class);
+        defaultList.add(1);
+        defaultList.add(2);
+        listKey = new OptionKey<>(defaultList, AContext.class, TestLabelKey.Ok);
+    }
+
+    @Test
+    public void scalar() {
+        // when
+        OptionValueCodec<Integer> codec = registry.codecFor(intKey);
+
+        // then
+        assertThat(codec).isInstanceOf(ScalarOptionValueCodec.class);
+        assertThat(codec.decode("33")).isEqualTo(33);
+        assertThat(codec.encode(33)).isEqualTo(dataConverter.convertValueToString(33));
+        assertThat(registry.codecFor(booleanKey)
+                .decode("false")).isFalse();
+    }
+
+    @Test
+    public void codecResolvedOnce() {
+        // when
+        OptionValueCodec<Integer> codec = registry.codecFor(intKey);
+
+        // then
+        assertThat(registry.codecFor(intKey)).isSameAs(codec);
+        assertThat(registry.codecFor(new OptionKey<>(5, AContext.class, TestLabelKey.Static))).isSameAs(codec);
+    }
+
+    @Test
+    public void enumConstants() {
+        // when
+        OptionValueCodec<TestLabelKey> codec = registry.codecFor(enumKey);
+
+        // then
+        assertThat(codec).isInstanceOf(EnumOptionValueCodec.class);
+        for (TestLabelKey constant : TestLabelKey.values()) {
+            String encoded = codec.encode(constant);
+            assertThat(encoded).isEqualTo(dataConverter.convertValueToString(constant));
+            assertThat(codec.decode(encoded)).isEqualTo(constant);
+        }
+    }
+
+    @Test
+    public void dataList() {
+        // when
+        OptionValueCodec<DataList<Integer>> codec = registry.codecFor(listKey);
+        DataList<Integer> decoded = codec.decode("3,4");
+
+        // then
+        assertThat(codec).isInstanceOf(DataListOptionValueCodec.class);
+        assertThat(decoded).containsExactly(3, 4);
+        assertThat(decoded.getEntryClass()).isEqualTo(Integer.class);
+        assertThat(codec.decode(codec.encode(decoded))).containsExactly(3, 4);
+    }
+
+    @Test
+    public void dataListDecodesStoredValuesAsConverter() {
+        // given
+        DataList<String> defaultList = new DataList<>(String.class);
+        defaultList.add("a");
+        OptionKey<DataList<String>> stringListKey = new OptionKey<>(defaultList, AContext.class, TestLabelKey.Large);
+        ConverterDataListOptionValueCodec<Integer> intConverterCodec = new ConverterDataListOptionValueCodec<>(dataConverter, Integer.class);
+        ConverterDataListOptionValueCodec<String> stringConverterCodec = new ConverterDataListOptionValueCodec<>(dataConverter, String.class);
+
+        // when
+        OptionValueCodec<DataList<Integer>> intCodec = registry.codecFor(listKey);
+        OptionValueCodec<DataList<String>> stringCodec = registry.codecFor(stringListKey);
+
+        // then
+        assertThat(intCodec).isInstanceOf(DataListOptionValueCodec.class);
+        assertThat(stringCodec).isInstanceOf(DataListOptionValueCodec.class);
+        for (String stored : new String[]{"", ",", "3", "3,,4", "3,4,", ",3,4", "3,4,,"}) {
+            assertThat(intCodec.decode(stored)).isEqualTo(intConverterCodec.decode(stored));
+        }
+        for (String stored : new String[]{"", ",", "x", "x,,y", "x,y,", ",x", "x, y", " x ,y"}) {
+            assertThat(stringCodec.decode(stored)).isEqualTo(stringConverterCodec.decode(stored));
+        }
+    }
+
+    @Test
+    public void converterUsedForDataListWhenEmptyElementsDecodeDifferently() {
+        // given
+        DataConverter keepsEmptyElements = spy(dataConverter);
+        doAnswer(invocation -> {
+            DataList<Integer> list = new DataList<>(Integer.class);
+            for (String element : ((String) invocation.getArguments()[2]).split(",", -1)) {
+                list.add(element.isEmpty() ? 0 : Integer.valueOf(element));
+            }
+            return list;
+        }).when(keepsEmptyElements)
+                .convertStringToCollection(eq(DataList.class), eq(Integer.class), anyString(), eq(","));
+        registry = new DefaultOptionCodecRegistry(keepsEmptyElements);
+
+        // when
+        OptionValueCodec<DataList<Integer>> codec = registry.codecFor(listKey);
+
+        // then
+        assertThat(codec).isInstanceOf(ConverterDataListOptionValueCodec.class);
+        assertThat(codec.decode("3,,4")).containsExactly(3, 0, 4);
+    }
+
+    @Test
+    public void dataListOfEnum() {
+        // given
+        DataList<TestLabelKey> defaultList = new DataList<>(TestLabelKey.class);
+        defaultList.add(TestLabelKey.Yes);
+        OptionKey<DataList<TestLabelKey>> enumListKey = new OptionKey<>(defaultList, AContext.class, TestLabelKey.Yes);
+        DataList<TestLabelKey> value = new DataList<>(TestLabelKey.class);
+        value.add(TestLabelKey.Static);
+        value.add(TestLabelKey.Ok);
+
+        // when
+        OptionValueCodec<DataList<TestLabelKey>> codec = registry.codecFor(enumListKey);
+
+        // then
+        assertThat(codec).isInstanceOf(DataListOptionValueCodec.class);
+        assertThat(codec.decode(dataConverter.convertValueToString(value))).containsExactly(TestLabelKey.Static, TestLabelKey.Ok);
+    }
+
+    @Test
+    public void emptyDefaultDataListUsesConverter() {
+        // given
+        OptionKey<DataList<Integer>> emptyListKey = new OptionKey<>(new DataList<>(Integer.class), AContext.class, TestLabelKey.Yes);
+
+        // when
+        OptionValueCodec<DataList<Integer>> codec = registry.codecFor(emptyListKey);
+
+        // then
+        assertThat(codec).isInstanceOf(ConverterDataListOptionValueCodec.class);
+        assertThat(codec.decode("3,4")).containsExactly(3, 4);
+    }
+
+    @Test
+    public void converterUsedWhenFormatDiffers() {
+        // given
+        DataConverter customConverter = mock(DataConverter.class);
+        when(customConverter.convertValueToString(true)).thenReturn("yes");
+        when(customConverter.convertStringToValue(Boolean.class, "no")).thenReturn(false);
+        registry = new DefaultOptionCodecRegistry(customConverter);
+
+        // when
+        OptionValueCodec<Boolean> codec = registry.codecFor(booleanKey);
+
+        // then
+        assertThat(codec).isInstanceOf(ConverterOptionValueCodec.class);
+        assertThat(codec.decode("no")).isFalse();
+        verify(customConverter).convertStringToValue(Boolean.class, "no");
+    }
+}
@@ -1,15 +1,22 @@
 package uk.q3c.krail.option.persist.dao;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableTable;
 import org.junit.Before;
 import org.junit.Test;
 import uk.q3c.krail.option.OptionKeyException;
 import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.UserHierarchy;
 import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
 import uk.q3c.krail.option.persist.OptionCacheKey;
 import uk.q3c.krail.option.persist.OptionDao;
 import uk.q3c.krail.option.persist.OptionDaoDelegate;
+import uk.q3c.krail.option.persist.OptionId;
 import uk.q3c.krail.option.persist.OptionSource;
 import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.option.persist.codec.DefaultOptionCodecRegistry;
+import uk.q3c.krail.option.persist.codec.OptionCodecRegistry;
 import uk.q3c.krail.persist.inmemory.InMemoryOptionStore;
 import uk.q3c.krail.persist.inmemory.dao.InMemoryOptionDaoDelegate;
 import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
@@ -18,12 +25,22 @@ import uk.q3c.util.data.DataConverter;
 import uk.q3c.util.data.DataItemConverter;
 import uk.q3c.util.data.DefaultDataConverter;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -42,6 +59,7 @@ public class DefaultOptionDaoTest {
     private OptionCacheKey<Integer> cacheKeyNonLow;
     private OptionCacheKey<Integer> cacheKeyNonSpecific;
     private DataConverter dataConverter;
+    private OptionCodecRegistry codecRegistry;
     private OptionSource optionSource;
     private Map<Class<?>, DataItemConverter> customConverters;
     private DefaultClassNameUtils classNameUtils;
@@ -66,8 +84,9 @@ public class DefaultOptionDaoTest {
         customConverters = new HashMap<>();
         classNameUtils = new DefaultClassNameUtils();
         dataConverter = new DefaultDataConverter(customConverters, classNameUtils);
+        codecRegistry = new DefaultOptionCodecRegistry(dataConverter);
 
-        dao = new DefaultOptionDao(dataConverter, optionSource);
+        dao = new DefaultOptionDao(codecRegistry, optionSource);
 
 
     }
@@ -117,4 +136,115 @@ public class DefaultOptionDaoTest {
     public void connectionUrl() throws Exception {
         assertThat(dao.connectionUrl()).isEqualTo("In Memory Store");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void rankedValuesFromBatchDelegateInOneCall() throws Exception {
+        // given
+        BatchOptionDaoDelegate batchDelegate = mock(BatchOptionDaoDelegate.class);
+        when(optionSource.getActiveDao()).thenReturn(batchDelegate);
+        when(batchDelegate.getValues(any(OptionCacheKey.class), anyList())).thenReturn(ImmutableMap.of("system", "4"));
+        dao = new DefaultOptionDao(codecRegistry, optionSource);
+
+        // when
+        Optional<Integer> highest = dao.getValue(cacheKeyHigh);
+
+        // then
+        assertThat(highest).contains(4);
+        verify(batchDelegate, times(1)).getValues(cacheKeyHigh, ImmutableList.of("me", "system"));
+        verify(batchDelegate, never()).getValue(any(OptionCacheKey.class));
+
+        // when
+        Optional<Integer> lowest = dao.getValue(cacheKeyLow);
+
+        // then
+        assertThat(lowest).contains(4);
+        verify(batchDelegate, times(1)).getValues(cacheKeyLow, ImmutableList.of("system", "me"));
+    }
+
+    @Test
+    public void rankedValuesFromNonBatchDelegate() throws Exception {
+        // given
+        OptionDaoDelegate plainDelegate = mock(OptionDaoDelegate.class);
+        when(optionSource.getActiveDao()).thenReturn(plainDelegate);
+        when(plainDelegate.getValue(any(OptionCacheKey.class))).thenReturn(Optional.empty(), Optional.of("6"));
+        dao = new DefaultOptionDao(codecRegistry, optionSource);
+
+        // when
+        Optional<Integer> highest = dao.getValue(cacheKeyHigh);
+
+        // then
+        assertThat(highest).contains(6);
+        verify(plainDelegate, times(2)).getValue(any(OptionCacheKey.class));
+    }
+
+    @Test
+    public void batchValuesFromInMemoryStore() throws Exception {
+        // given
+        dao.write(cacheKey1, Optional.of(1));
+
+        // when
+        ImmutableMap<String, String> values = ((BatchOptionDaoDelegate) delegate).getValues(cacheKeyHigh, ImmutableList.of("me", "system"));
+
+        // then
+        assertThat(values).containsOnly(entry("system", "1"));
+    }
+
+    @Test
+    public void batchGetValuesInOneStoreCall() throws Exception {
+        // given
+        InMemoryOptionStore spyStore = spy(new DefaultInMemoryOptionStore());
+        when(optionSource.getActiveDao()).thenReturn(new InMemoryOptionDaoDelegate(spyStore));
+        BatchOptionDao batchDao = new DefaultOptionDao(codecRegistry, optionSource);
+        batchDao.write(cacheKey0, Optional.of(3));
+        batchDao.write(cacheKey1, Optional.of(1));
+
+        // when
+        ImmutableMap<OptionCacheKey<?>, Optional<?>> values = batchDao.getValues(Arrays.asList(cacheKeyHigh, cacheKeyLow, cacheKey1, cacheKeyNonLow));
+
+        // then
+        assertThat(values).containsOnly(entry(cacheKeyHigh, Optional.of(3)), entry(cacheKeyLow, Optional.of(1)), entry(cacheKey1, Optional.of(1)),
+                entry(cacheKeyNonLow, Optional.empty()));
+        verify(spyStore, times(1)).getValues(anyCollection());
+        verify(spyStore, never()).getValue(any(OptionId.class));
+        verify(spyStore, never()).getValue(any(OptionCacheKey.class));
+    }
+
+    @Test
+    public void batchGetValuesFromNonBatchDelegate() throws Exception {
+        // given
+        OptionDaoDelegate plainDelegate = mock(OptionDaoDelegate.class);
+        when(optionSource.getActiveDao()).thenReturn(plainDelegate);
+        when(plainDelegate.getValue(any(OptionCacheKey.class))).thenReturn(Optional.of("6"));
+        BatchOptionDao batchDao = new DefaultOptionDao(codecRegistry, optionSource);
+
+        // when
+        ImmutableMap<OptionCacheKey<?>, Optional<?>> values = batchDao.getValues(Arrays.asList(cacheKeyHigh, cacheKeyNonLow));
+
+        // then each rank of each option is read once
+        assertThat(values).containsOnly(entry(cacheKeyHigh, Optional.of(6)), entry(cacheKeyNonLow, Optional.of(6)));
+        verify(plainDelegate, times(4)).getValue(any(OptionCacheKey.class));
+    }
+
+    @Test
+    public void batchGetValuesSpecificRanksOnly() throws Exception {
+        // given
+        BatchOptionDaoDelegate batchDelegate = mock(BatchOptionDaoDelegate.class);
+        when(optionSource.getActiveDao()).thenReturn(batchDelegate);
+        when(batchDelegate.getValues(any(UserHierarchy.class), anyCollection(), anyList())).thenReturn(ImmutableTable.of(AContext.key1, "system",
+                "2"));
+        BatchOptionDao batchDao = new DefaultOptionDao(codecRegistry, optionSource);
+
+        // when
+        ImmutableMap<OptionCacheKey<?>, Optional<?>> values = batchDao.getValues(Arrays.asList(cacheKey1, cacheKeyNonSpecific));
+
+        // then only the requested ranks are retrieved
+        assertThat(values).containsOnly(entry(cacheKey1, Optional.of(2)), entry(cacheKeyNonSpecific, Optional.empty()));
+        verify(batchDelegate).getValues(any(UserHierarchy.class), anyCollection(), eq(ImmutableList.of("me", "system")));
+
+        // when
+        batchDao.getValues(Arrays.asList(cacheKey1));
+
+        // then
+        verify(batchDelegate).getValues(any(UserHierarchy.class), anyCollection(), eq(ImmutableList.of("system")));
+    }
+}
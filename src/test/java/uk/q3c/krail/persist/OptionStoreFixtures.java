@@ -0,0 +1,107 @@
+package uk.q3c.krail.persist;
+
+import org.openjdk.jol.info.GraphStats;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.UserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.persist.inmemory.InMemoryOptionStore;
+import uk.q3c.krail.persist.inmemory.OptionEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test data and measurements shared by the tests of the {@link InMemoryOptionStore} implementations
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public final class OptionStoreFixtures {
+
+    private OptionStoreFixtures() {
+    }
+
+    /**
+     * Cache keys for {@code options} integer options in {@link AContext}, each at {@code ranks} ranks named "rank-0", "rank-1" and so on
+     */
+    public static List<OptionCacheKey<Integer>> cacheKeys(UserHierarchy userHierarchy, int options, int ranks) {
+        List<OptionCacheKey<Integer>> keys = new ArrayList<>();
+        for (int option = 0; option < options; option++) {
+            OptionKey<Integer> optionKey = new OptionKey<>(0, AContext.class, TestLabelKey.Static, "key-" + option);
+            OptionCacheKey<Integer> base = new OptionCacheKey<>(userHierarchy, RankOption.SPECIFIC_RANK, 0, optionKey);
+            for (int rank = 0; rank < ranks; rank++) {
+                keys.add(new OptionCacheKey<>(base, "rank-" + rank, RankOption.SPECIFIC_RANK));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Rank names "user-0" to "user-(count - 1)", to be shared by stores which are compared
+     */
+    public static String[] users(int count) {
+        String[] users = new String[count];
+        for (int i = 0; i < count; i++) {
+            users[i] = "user-" + i;
+        }
+        return users;
+    }
+
+    /**
+     * Adds a value for each of {@code bases} at the ranks {@code users[fromUser]} up to, but not including, {@code users[toUser]}.  There are ten
+     * distinct values
+     */
+    public static void fill(InMemoryOptionStore target, List<OptionCacheKey<Integer>> bases, String[] users, int fromUser, int toUser) {
+        for (int user = fromUser; user < toUser; user++) {
+            for (OptionCacheKey<Integer> base : bases) {
+                target.add(new OptionCacheKey<>(base, users[user], RankOption.SPECIFIC_RANK), Integer.toString(user % 10));
+            }
+        }
+    }
+
+    /**
+     * The heap retained by {@code root}, found by walking its object graph rather than by sampling the heap, so the result does not depend on when
+     * garbage is collected
+     */
+    public static long retainedSize(Object root) {
+        return GraphStats.parseInstance(root)
+                .totalSize();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Serializable> T roundTrip(T original) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(original);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+
+    public static Map<OptionId, String> asMap(List<OptionEntity> entities) {
+        Map<OptionId, String> map = new HashMap<>();
+        for (OptionEntity entity : entities) {
+            map.put(entity.getOptionId(), entity.getValue());
+        }
+        return map;
+    }
+
+    public static List<OptionId> ids(List<OptionEntity> entities) {
+        List<OptionId> ids = new ArrayList<>();
+        for (OptionEntity entity : entities) {
+            ids.add(entity.getOptionId());
+        }
+        return ids;
+    }
+}
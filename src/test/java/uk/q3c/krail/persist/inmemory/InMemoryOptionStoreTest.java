@@ -0,0 +1,104 @@
+package uk.q3c.krail.persist.inmemory;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.persist.inmemory.store.DefaultInMemoryOptionStore;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Checks the default methods of {@link InMemoryOptionStore}, with a store which implements only the abstract ones
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class InMemoryOptionStoreTest {
+
+    private InMemoryOptionStore store;
+    private OptionId id1;
+    private OptionId id2;
+    private OptionId id3;
+
+    @Before
+    public void setup() {
+        DefaultUserHierarchy hierarchy = new DefaultUserHierarchy();
+        id1 = new OptionId(new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, AContext.key1));
+        id2 = new OptionId(new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 1, AContext.key1));
+        id3 = new OptionId(new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, AContext.key2));
+        store = new MinimalOptionStore();
+        store.add(id1, "a");
+        store.add(id2, "b");
+    }
+
+    @Test
+    public void getValuesReadsEachValue() throws Exception {
+        // then
+        assertThat(store.getValues(ImmutableList.of(id1, id2, id3))).containsOnly(entry(id1, "a"), entry(id2, "b"));
+        assertThat(store.getValues(ImmutableList.of())).isEmpty();
+    }
+
+    @Test
+    public void findFiltersEntities() throws Exception {
+        // given
+        store.add(id3, "c");
+
+        // then
+        assertThat(store.find(null, null, null, null)).hasSize(3);
+        assertThat(store.findAllRanks(id1.getContext(), id1.getUserHierarchyName(), id1.getOptionKey())).containsOnly(new OptionEntity(id1, "a"),
+                new OptionEntity(id2, "b"));
+        assertThat(store.findByRank(id2.getUserHierarchyName(), id2.getRankName())).containsOnly(new OptionEntity(id2, "b"));
+        assertThat(store.find(null, null, id1.getRankName(), id3.getOptionKey())).containsOnly(new OptionEntity(id3, "c"));
+        assertThat(store.findByUserHierarchy("unknown")).isEmpty();
+    }
+
+    /**
+     * Implements only the abstract methods, by delegation
+     */
+    private static class MinimalOptionStore implements InMemoryOptionStore {
+        private final DefaultInMemoryOptionStore delegate = new DefaultInMemoryOptionStore();
+
+        @Override
+        public Optional<OptionEntity> getEntity(OptionId optionId) {
+            return delegate.getEntity(optionId);
+        }
+
+        @Override
+        public Optional<String> delete(OptionId optionId) {
+            return delegate.delete(optionId);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public List<OptionEntity> asEntities() {
+            return delegate.asEntities();
+        }
+
+        @Override
+        public void add(OptionId optionId, String value) {
+            delegate.add(optionId, value);
+        }
+
+        @Override
+        public Optional<String> getValue(OptionId optionId) {
+            return delegate.getValue(optionId);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package uk.q3c.krail.persist.inmemory.store;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.persist.inmemory.OptionEntity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.q3c.krail.persist.OptionStoreFixtures.asMap;
+import static uk.q3c.krail.persist.OptionStoreFixtures.cacheKeys;
+import static uk.q3c.krail.persist.OptionStoreFixtures.fill;
+import static uk.q3c.krail.persist.OptionStoreFixtures.ids;
+import static uk.q3c.krail.persist.OptionStoreFixtures.retainedSize;
+import static uk.q3c.krail.persist.OptionStoreFixtures.roundTrip;
+import static uk.q3c.krail.persist.OptionStoreFixtures.users;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class CompactInMemoryOptionStoreTest {
+
+    private CompactInMemoryOptionStore store;
+    private DefaultUserHierarchy hierarchy;
+    private OptionCacheKey<Integer> key1Rank0;
+    private OptionCacheKey<Integer> key1Rank1;
+    private OptionCacheKey<Integer> key2Rank0;
+    private OptionCacheKey<Integer> otherHierarchy;
+
+    @Before
+    public void setup() {
+        store = new CompactInMemoryOptionStore();
+        hierarchy = new DefaultUserHierarchy();
+        key1Rank0 = new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, AContext.key1);
+        key1Rank1 = new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 1, AContext.key1);
+        key2Rank0 = new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, AContext.key2);
+        otherHierarchy = new OptionCacheKey<>(new OtherHierarchy(), RankOption.SPECIFIC_RANK, 0, AContext.key1);
+    }
+
+    @Test
+    public void addAndRetrieve() throws Exception {
+        // given
+        OptionId id1 = new OptionId(key1Rank0);
+        OptionId id2 = new OptionId(key2Rank0);
+
+        // when
+        store.add(key1Rank0, "a");
+        store.add(id2, "c");
+
+        // then
+        assertThat(store.getValue(id1)).contains("a");
+        assertThat(store.getEntity(id2)).contains(new OptionEntity(id2, "c"));
+        assertThat(store.getValue(new OptionId(key1Rank1))).isNotPresent();
+        assertThat(store.size()).isEqualTo(2);
+
+        // when
+        store.add(id1, "b");
+
+        // then
+        assertThat(store.getValue(id1)).contains("b");
+        assertThat(store.getValues(Arrays.asList(id1, id2, new OptionId(key1Rank1)))).containsOnlyKeys(id1, id2);
+        assertThat(store.size()).isEqualTo(2);
+
+        // when
+        assertThat(store.delete(id1)).contains("b");
+
+        // then
+        assertThat(store.delete(id1)).isNotPresent();
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.getValue(id1)).isNotPresent();
+
+        // when
+        store.clear();
+
+        // then
+        assertThat(store.size()).isEqualTo(0);
+        assertThat(store.getValue(id2)).isNotPresent();
+    }
+
+    @Test
+    public void readByCacheKey() throws Exception {
+        // given
+        store.add(key1Rank0, "a");
+        store.add(otherHierarchy, "b");
+        store.add(new OptionId(key2Rank0), "c");
+
+        // then
+        assertThat(store.getValue(key1Rank0)).contains("a");
+        assertThat(store.getValue(otherHierarchy)).contains("b");
+        assertThat(store.getValue(key2Rank0)).contains("c");
+        assertThat(store.getValue(key1Rank1)).isNotPresent();
+
+        // when
+        CompactInMemoryOptionStore copy = roundTrip(store);
+        store.clear();
+
+        // then
+        assertThat(store.getValue(key1Rank0)).isNotPresent();
+        assertThat(copy.getValue(key1Rank0)).contains("a");
+        assertThat(copy.getValue(key2Rank0)).contains("c");
+    }
+
+    @Test
+    public void entitiesRebuiltWithEqualOptionIds() throws Exception {
+        // given
+        OptionId direct = new OptionId(key2Rank0);
+
+        // when
+        store.add(key1Rank0, "a");
+        store.add(key1Rank1, "b");
+        store.add(otherHierarchy, "c");
+        store.add(direct, "d");
+
+        // then
+        assertThat(store.asEntities()).containsOnly(new OptionEntity(key1Rank0, "a"), new OptionEntity(key1Rank1, "b"), new OptionEntity
+                (otherHierarchy, "c"), new OptionEntity(direct, "d"));
+    }
+
+    @Test
+    public void findByInternedIds() throws Exception {
+        // given
+        OptionId id1Rank0 = new OptionId(key1Rank0);
+        OptionId id1Rank1 = new OptionId(key1Rank1);
+        OptionId idOther = new OptionId(otherHierarchy);
+        store.add(key1Rank0, "a");
+        store.add(key1Rank1, "b");
+        store.add(key2Rank0, "c");
+        store.add(otherHierarchy, "e");
+
+        // then
+        assertThat(store.findByContext(id1Rank0.getContext())).hasSize(4);
+        assertThat(ids(store.findByUserHierarchy(idOther.getUserHierarchyName()))).containsOnly(idOther);
+        assertThat(ids(store.findByRank(id1Rank1.getUserHierarchyName(), id1Rank1.getRankName()))).containsOnly(id1Rank1);
+        assertThat(ids(store.findAllRanks(id1Rank0.getContext(), id1Rank0.getUserHierarchyName(), id1Rank0.getOptionKey()))).containsOnly(id1Rank0,
+                id1Rank1);
+        assertThat(store.findByContext("unknown")).isEmpty();
+    }
+
+    @Test
+    public void matchesModelThroughAddsAndDeletes() throws Exception {
+        // given
+        Random random = new Random(7);
+        List<OptionCacheKey<Integer>> keys = cacheKeys(hierarchy, 25, 20);
+        Map<OptionId, String> model = new HashMap<>();
+
+        // when
+        for (int i = 0; i < 20_000; i++) {
+            OptionCacheKey<Integer> cacheKey = keys.get(random.nextInt(keys.size()));
+            OptionId id = new OptionId(cacheKey);
+            if (random.nextInt(3) == 0) {
+                assertThat(store.delete(id).orElse(null)).isEqualTo(model.remove(id));
+            } else {
+                String value = Integer.toString(random.nextInt(10));
+                store.add(cacheKey, value);
+                model.put(id, value);
+            }
+        }
+
+        // then
+        assertThat(store.size()).isEqualTo(model.size());
+        for (OptionCacheKey<Integer> cacheKey : keys) {
+            OptionId id = new OptionId(cacheKey);
+            assertThat(store.getValue(id).orElse(null)).isEqualTo(model.get(id));
+            assertThat(store.getValue(cacheKey).orElse(null)).isEqualTo(model.get(id));
+        }
+        assertThat(asMap(store.asEntities())).isEqualTo(model);
+    }
+
+    /**
+     * A million entries: 20 options for 50,000 users, with ten distinct values, in each store.  The size retained by each store is measured by walking
+     * its object graph, which includes the key and value strings it holds, but not garbage
+     */
+    @Test
+    public void heapFootprintOfOneMillionEntries() throws Exception {
+        // given
+        int options = 20;
+        List<OptionCacheKey<Integer>> bases = cacheKeys(hierarchy, options, 1);
+        String[] users = users(50_000);
+
+        // when
+        CompactInMemoryOptionStore compact = new CompactInMemoryOptionStore();
+        fill(compact, bases, users, 0, users.length);
+        int compactSize = compact.size();
+        long compactPerEntry = retainedSize(compact) / compactSize;
+
+        DefaultInMemoryOptionStore standard = new DefaultInMemoryOptionStore();
+        fill(standard, bases, users, 0, users.length);
+        int standardSize = standard.size();
+        long defaultPerEntry = retainedSize(standard) / standardSize;
+
+        // then
+        assertThat(compactSize).isEqualTo(1_000_000);
+        assertThat(standardSize).isEqualTo(1_000_000);
+        assertThat(compactPerEntry).as("compact %s bytes per entry, default %s", compactPerEntry, defaultPerEntry)
+                .isLessThan(48)
+                .isLessThan(defaultPerEntry / 4);
+    }
+
+    private static class OtherHierarchy extends DefaultUserHierarchy {
+    }
+}
@@ -0,0 +1,276 @@
+package uk.q3c.krail.persist.inmemory.store;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.persist.inmemory.OptionEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Linearizability checks for {@link DefaultInMemoryOptionStore}: each read, and each snapshot, must be explainable as having happened at a single point
+ * between the writes running alongside it
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class DefaultInMemoryOptionStoreConcurrencyTest {
+
+    private static final int THREADS = 4;
+    private static final int KEY_COUNT = 2000;
+
+    private DefaultInMemoryOptionStore store;
+    private OptionId[] ids;
+
+    @Before
+    public void setup() {
+        store = new DefaultInMemoryOptionStore();
+        DefaultUserHierarchy hierarchy = new DefaultUserHierarchy();
+        ids = new OptionId[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            OptionKey<Integer> optionKey = new OptionKey<>(0, AContext.class, TestLabelKey.Static, "key-" + i);
+            ids[i] = new OptionId(new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, optionKey));
+        }
+    }
+
+    @Test
+    public void snapshotsContainAPrefixOfOrderedWrites() throws Exception {
+        // given
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Callable<Void> writer = () -> {
+            for (int i = 0; i < KEY_COUNT; i++) {
+                store.add(ids[i], Integer.toString(i));
+            }
+            writing.set(false);
+            return null;
+        };
+        Callable<Void> reader = () -> {
+            int previous = 0;
+            while (writing.get()) {
+                // then each snapshot is exactly the first n writes, and n never goes backwards
+                int entities = prefixLength(store.asEntities());
+                int indexed = prefixLength(store.findByContext(ids[0].getContext()));
+                int values = prefixLength(store.getValues(Arrays.asList(ids)));
+                assertThat(entities).isGreaterThanOrEqualTo(previous);
+                assertThat(indexed).isGreaterThanOrEqualTo(entities);
+                assertThat(values).isGreaterThanOrEqualTo(indexed);
+                previous = values;
+            }
+            return null;
+        };
+
+        // when
+        runTogether(writer, reader, reader, reader);
+
+        // then
+        assertThat(store.size()).isEqualTo(KEY_COUNT);
+    }
+
+    @Test
+    public void snapshotsSeeASlidingWindowOfAddsAndDeletes() throws Exception {
+        // given
+        int window = 10;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Callable<Void> writer = () -> {
+            for (int i = 0; i < KEY_COUNT; i++) {
+                store.add(ids[i], Integer.toString(i));
+                if (i >= window) {
+                    store.delete(ids[i - window]);
+                }
+            }
+            writing.set(false);
+            return null;
+        };
+        Callable<Void> reader = () -> {
+            int previousFirst = 0;
+            while (writing.get()) {
+                // then each snapshot is a run of consecutive keys, no longer than the window plus the add before each delete
+                List<Integer> present = new ArrayList<>();
+                for (OptionEntity entity : store.asEntities()) {
+                    present.add(Integer.parseInt(entity.getValue()));
+                }
+                if (!present.isEmpty()) {
+                    int first = Collections.min(present);
+                    assertThat(Collections.max(present) - first + 1).isEqualTo(present.size());
+                    assertThat(present.size()).isLessThanOrEqualTo(window + 1);
+                    assertThat(first).isGreaterThanOrEqualTo(previousFirst);
+                    previousFirst = first;
+                }
+            }
+            return null;
+        };
+
+        // when
+        runTogether(writer, reader, reader, reader);
+
+        // then
+        assertThat(store.size()).isEqualTo(window);
+        assertThat(store.asEntities()).hasSize(window);
+    }
+
+    @Test
+    public void valuesOfAKeyNeverGoBackwards() throws Exception {
+        // given
+        int writes = 2000;
+        AtomicInteger writersRunning = new AtomicInteger(THREADS);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int w = 0; w < THREADS; w++) {
+            OptionId id = ids[w];
+            tasks.add(() -> {
+                for (int i = 1; i <= writes; i++) {
+                    store.add(id, Integer.toString(i));
+                }
+                writersRunning.decrementAndGet();
+                return null;
+            });
+        }
+        for (int r = 0; r < THREADS; r++) {
+            tasks.add(() -> {
+                Map<OptionId, Integer> lastSeen = new HashMap<>();
+                while (writersRunning.get() > 0) {
+                    // then whether read singly or in a snapshot, each key only ever moves forward
+                    for (OptionEntity entity : store.asEntities()) {
+                        checkForward(lastSeen, entity.getOptionId(), entity.getValue());
+                    }
+                    for (int w = 0; w < THREADS; w++) {
+                        OptionId id = ids[w];
+                        store.getValue(id)
+                                .ifPresent(value -> checkForward(lastSeen, id, value));
+                    }
+                }
+                return null;
+            });
+        }
+
+        // when
+        runTogether(tasks.toArray(new Callable[tasks.size()]));
+
+        // then
+        for (int w = 0; w < THREADS; w++) {
+            assertThat(store.getValue(ids[w])).contains(Integer.toString(writes));
+        }
+    }
+
+    @Test
+    public void concurrentAddsAreNotLost() throws Exception {
+        // given
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int first = t;
+            tasks.add(() -> {
+                for (int i = first; i < KEY_COUNT; i += THREADS) {
+                    store.add(ids[i], Integer.toString(i));
+                }
+                return null;
+            });
+        }
+
+        // when
+        runTogether(tasks.toArray(new Callable[tasks.size()]));
+
+        // then
+        assertThat(store.size()).isEqualTo(KEY_COUNT);
+        assertThat(store.asEntities()).hasSize(KEY_COUNT);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertThat(store.getValue(ids[i])).contains(Integer.toString(i));
+        }
+    }
+
+    @Test
+    public void concurrentDeleteRemovesOnce() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            // given
+            store.add(ids[0], "a");
+            AtomicInteger removed = new AtomicInteger();
+            Callable<Void> deleter = () -> {
+                if (store.delete(ids[0])
+                        .isPresent()) {
+                    removed.incrementAndGet();
+                }
+                return null;
+            };
+
+            // when
+            runTogether(deleter, deleter, deleter, deleter);
+
+            // then
+            assertThat(removed.get()).isEqualTo(1);
+            assertThat(store.size()).isEqualTo(0);
+        }
+    }
+
+    private void checkForward(Map<OptionId, Integer> lastSeen, OptionId id, String value) {
+        int current = Integer.parseInt(value);
+        Integer previous = lastSeen.put(id, current);
+        if (previous != null) {
+            assertThat(current).as("value of %s", id)
+                    .isGreaterThanOrEqualTo(previous);
+        }
+    }
+
+    private int prefixLength(List<OptionEntity> entities) {
+        Set<OptionId> present = new HashSet<>();
+        for (OptionEntity entity : entities) {
+            present.add(entity.getOptionId());
+        }
+        return prefixLength(present);
+    }
+
+    private int prefixLength(Map<OptionId, String> values) {
+        return prefixLength(values.keySet());
+    }
+
+    private int prefixLength(Set<OptionId> present) {
+        int length = present.size();
+        for (int i = 0; i < length; i++) {
+            if (!present.contains(ids[i])) {
+                fail("snapshot of " + length + " entries does not contain write " + i);
+            }
+        }
+        return length;
+    }
+
+    @SafeVarargs
+    private final void runTogether(Callable<Void>... tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.length);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -2,13 +2,24 @@ package uk.q3c.krail.persist.inmemory.store;
 
 import org.junit.Before;
 import org.junit.Test;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.OptionContext;
+import uk.q3c.krail.option.OptionKey;
 import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.UserHierarchy;
 import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
 import uk.q3c.krail.option.persist.OptionCacheKey;
 import uk.q3c.krail.option.persist.OptionId;
 import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.persist.inmemory.OptionEntity;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static uk.q3c.krail.persist.OptionStoreFixtures.cacheKeys;
+import static uk.q3c.krail.persist.OptionStoreFixtures.ids;
+import static uk.q3c.krail.persist.OptionStoreFixtures.users;
 
 /**
  * Created by David Sowerby on 21 Oct 2017
@@ -73,4 +84,118 @@ public class DefaultInMemoryOptionStoreTest {
         assertThat(store.size()).isEqualTo(0);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void findUsesIndexedAttributes() throws Exception {
+        // given
+        DefaultUserHierarchy hierarchy = new DefaultUserHierarchy();
+        OptionId key1Rank0 = id(hierarchy, 0, AContext.key1);
+        OptionId key1Rank1 = id(hierarchy, 1, AContext.key1);
+        OptionId key2Rank0 = id(hierarchy, 0, AContext.key2);
+        OptionId otherContext = id(hierarchy, 0, new OptionKey<>(1, OptionContext.class, TestLabelKey.Static));
+        OptionId otherHierarchy = id(new OtherHierarchy(), 0, AContext.key1);
+
+        // when
+        store.add(key1Rank0, "a");
+        store.add(key1Rank1, "b");
+        store.add(key2Rank0, "c");
+        store.add(otherContext, "d");
+        store.add(otherHierarchy, "e");
+
+        // then
+        assertThat(ids(store.findByContext(key1Rank0.getContext()))).containsOnly(key1Rank0, key1Rank1, key2Rank0, otherHierarchy);
+        assertThat(ids(store.findByUserHierarchy(otherHierarchy.getUserHierarchyName()))).containsOnly(otherHierarchy);
+        assertThat(ids(store.findByRank(key1Rank1.getUserHierarchyName(), key1Rank1.getRankName()))).containsOnly(key1Rank1);
+        assertThat(store.findAllRanks(key1Rank0.getContext(), key1Rank0.getUserHierarchyName(), key1Rank0.getOptionKey())).containsOnly(new
+                OptionEntity(key1Rank0, "a"), new OptionEntity(key1Rank1, "b"));
+        assertThat(store.find(null, null, null, null)).hasSize(5);
+        assertThat(store.find(null, null, null, key2Rank0.getOptionKey())).containsOnly(new OptionEntity(key2Rank0, "c"));
+        assertThat(store.findByContext("unknown")).isEmpty();
+
+        // when
+        store.delete(key1Rank1);
+
+        // then
+        assertThat(ids(store.findAllRanks(key1Rank0.getContext(), key1Rank0.getUserHierarchyName(), key1Rank0.getOptionKey()))).containsOnly(key1Rank0);
+
+        // when
+        store.clear();
+
+        // then
+        assertThat(store.findByContext(key1Rank0.getContext())).isEmpty();
+    }
+
+    @Test
+    public void findCorrectAfterManyDeletes() throws Exception {
+        // given
+        DefaultUserHierarchy hierarchy = new DefaultUserHierarchy();
+        List<OptionId> ids = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            OptionId id = id(hierarchy, 0, new OptionKey<>(0, AContext.class, TestLabelKey.Static, "key-" + i));
+            ids.add(id);
+            store.add(id, Integer.toString(i));
+        }
+
+        // when
+        for (int i = 0; i < 2900; i++) {
+            store.delete(ids.get(i));
+        }
+
+        // then
+        assertThat(ids(store.findByContext(ids.get(0)
+                .getContext()))).containsOnlyElementsOf(ids.subList(2900, 3000))
+                .hasSize(100);
+
+        // when
+        for (int i = 0; i < 2900; i++) {
+            store.add(ids.get(i), "again");
+        }
+
+        // then
+        assertThat(store.findByRank(ids.get(0)
+                .getUserHierarchyName(), ids.get(0)
+                .getRankName())).hasSize(3000);
+    }
+
+    /**
+     * A million entries: 20 options for 50,000 users.  Each write replaces only its own entry, so this runs in a few seconds
+     */
+    @Test(timeout = 60_000)
+    public void writeOneMillionEntries() throws Exception {
+        // given
+        List<OptionCacheKey<Integer>> bases = cacheKeys(new DefaultUserHierarchy(), 20, 1);
+        List<OptionId> ids = new ArrayList<>();
+        for (String user : users(50_000)) {
+            for (OptionCacheKey<Integer> base : bases) {
+                ids.add(new OptionId(new OptionCacheKey<>(base, user, RankOption.SPECIFIC_RANK)));
+            }
+        }
+
+        // when
+        for (int i = 0; i < ids.size(); i++) {
+            store.add(ids.get(i), Integer.toString(i % 10));
+        }
+        for (int i = 0; i < ids.size(); i += 2) {
+            store.add(ids.get(i), "changed");
+        }
+        for (int i = 0; i < ids.size(); i += 4) {
+            store.delete(ids.get(i));
+        }
+
+        // then
+        assertThat(store.size()).isEqualTo(750_000);
+        assertThat(store.asEntities()).hasSize(750_000);
+        assertThat(store.getValue(ids.get(0))).isNotPresent();
+        assertThat(store.getValue(ids.get(2))).contains("changed");
+        assertThat(store.getValue(ids.get(999_999))).contains("9");
+        assertThat(store.findByRank(ids.get(5)
+                .getUserHierarchyName(), "user-7")).hasSize(15);
+    }
+
+    private OptionId id(UserHierarchy hierarchy, int rank, OptionKey<?> optionKey) {
+        return new OptionId(new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, rank, optionKey));
+    }
+
+    private static class OtherHierarchy extends DefaultUserHierarchy {
+    }
+}
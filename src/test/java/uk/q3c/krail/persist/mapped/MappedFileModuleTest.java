@@ -0,0 +1,81 @@
+package uk.q3c.krail.persist.mapped;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.q3c.krail.eventbus.mbassador.EventBusModule;
+import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.bind.OptionModule;
+import uk.q3c.krail.option.persist.OptionSource;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.persist.mapped.dao.MappedFileOptionDaoDelegate;
+import uk.q3c.krail.persist.mapped.store.MappedFileOptionStore;
+import uk.q3c.util.UtilModule;
+import uk.q3c.util.guice.InjectorLocator;
+import uk.q3c.util.guice.SerializationSupportModule;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class MappedFileModuleTest {
+
+    static Injector injector;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void valuesSurviveARestart() throws Exception {
+        // given
+        File file = new File(temp.getRoot(), "options.dat");
+        start(file);
+        Option option = injector.getInstance(Option.class);
+        MappedFileOptionStore store = injector.getInstance(MappedFileOptionStore.class);
+
+        // when
+        option.set(AContext.key1, 999);
+        store.close();
+        start(file);
+
+        // then
+        assertThat(injector.getInstance(OptionSource.class)
+                .getActiveDao()).isInstanceOf(MappedFileOptionDaoDelegate.class);
+        assertThat(injector.getInstance(Option.class)
+                .get(AContext.key1)).isEqualTo(999);
+        injector.getInstance(MappedFileOptionStore.class)
+                .close();
+    }
+
+    private void start(File file) {
+        injector = Guice.createInjector(new OptionModule().activeSource(MappedFile.class), new MappedFileModule().file(file)
+                .provideOptionDao(), new UtilModule(), new EventBusModule(), new SerializationSupportModule(), new LocatorModule());
+    }
+
+    static class LocatorModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            bind(InjectorLocator.class).toInstance(new InjectorLocator() {
+
+                @NotNull
+                @Override
+                public Injector get() {
+                    return MappedFileModuleTest.injector;
+                }
+
+                @Override
+                public void put(Injector injector) {
+                    MappedFileModuleTest.injector = injector;
+                }
+            });
+        }
+    }
+}
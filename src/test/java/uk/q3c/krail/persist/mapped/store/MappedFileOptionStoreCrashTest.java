@@ -0,0 +1,110 @@
+package uk.q3c.krail.persist.mapped.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.q3c.krail.i18n.test.TestLabelKey;
+import uk.q3c.krail.option.OptionKey;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.option.persist.cache.AContext;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Kills a process writing to a {@link MappedFileOptionStore} part way through its writes, then checks that reopening the file recovers every write
+ * the process completed, in order, and nothing else
+ * <p>
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class MappedFileOptionStoreCrashTest {
+
+    private static final int ROUNDS = 5;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void recoversCompletedWritesAfterTheWriterIsKilled() throws Exception {
+        File file = new File(temp.getRoot(), "options.dat");
+        int recovered = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            // given
+            Process writer = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(), "-cp", System.getProperty("java" +
+                    ".class.path"), Writer.class.getName(), file.getPath()).redirectErrorStream(true)
+                                                                                .start();
+            int acknowledged = awaitWrites(writer, recovered + 2000);
+
+            // when
+            writer.destroyForcibly();
+            assertThat(writer.waitFor(30, TimeUnit.SECONDS)).isTrue();
+
+            // then the writes form an unbroken sequence, at least as long as was acknowledged, of which only the last can be incomplete
+            try (MappedFileOptionStore store = new MappedFileOptionStore(file, 4096, Writer.COMPACTION_THRESHOLD)) {
+                recovered = store.size();
+                assertThat(recovered).isGreaterThanOrEqualTo(acknowledged);
+                for (int i = 0; i < recovered - 1; i++) {
+                    assertThat(store.getValue(Writer.id(i))).contains(Writer.value(i));
+                }
+                assertThat(store.getValue(Writer.id(recovered - 1)).get()).isIn(Writer.value(recovered - 1), Writer.PENDING);
+                assertThat(store.getValue(Writer.id(recovered))).isNotPresent();
+            }
+        }
+    }
+
+    /**
+     * Reads the counts reported by the writer until it has reported at least {@code target}
+     *
+     * @return the last count reported
+     */
+    private int awaitWrites(Process writer, int target) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(writer.getInputStream(), StandardCharsets.UTF_8));
+        int acknowledged = -1;
+        while (acknowledged < target) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new AssertionError("writer stopped after " + acknowledged + " writes");
+            }
+            acknowledged = Integer.parseInt(line.trim());
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Writes sequentially numbered entries, continuing from the last one already in the store, and reports the count after each one.  Each entry is
+     * written twice, first with a placeholder, so that the log also holds replaced records and is compacted as it grows
+     */
+    public static class Writer {
+
+        static final int COMPACTION_THRESHOLD = 16 * 1024;
+        static final String PENDING = "pending";
+
+        private static final DefaultUserHierarchy hierarchy = new DefaultUserHierarchy();
+
+        public static void main(String[] args) {
+            MappedFileOptionStore store = new MappedFileOptionStore(new File(args[0]), 4096, COMPACTION_THRESHOLD);
+            for (int i = Math.max(0, store.size() - 1); ; i++) {
+                store.add(id(i), PENDING);
+                store.add(id(i), value(i));
+                System.out.println(i + 1);
+            }
+        }
+
+        static OptionId id(int i) {
+            OptionKey<Integer> optionKey = new OptionKey<>(0, AContext.class, TestLabelKey.Static, "key-" + i);
+            return new OptionId(new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, optionKey));
+        }
+
+        static String value(int i) {
+            return "value-" + i;
+        }
+    }
+}
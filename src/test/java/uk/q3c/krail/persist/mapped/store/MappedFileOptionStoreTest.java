@@ -0,0 +1,232 @@
+package uk.q3c.krail.persist.mapped.store;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.persist.inmemory.OptionEntity;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.q3c.krail.persist.OptionStoreFixtures.asMap;
+import static uk.q3c.krail.persist.OptionStoreFixtures.cacheKeys;
+import static uk.q3c.krail.persist.OptionStoreFixtures.ids;
+import static uk.q3c.krail.persist.OptionStoreFixtures.roundTrip;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class MappedFileOptionStoreTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File file;
+    private MappedFileOptionStore store;
+    private OptionCacheKey<Integer> key1Rank0;
+    private OptionCacheKey<Integer> key1Rank1;
+    private OptionCacheKey<Integer> key2Rank0;
+
+    @Before
+    public void setup() throws Exception {
+        file = new File(temp.getRoot(), "options.dat");
+        store = new MappedFileOptionStore(file);
+        DefaultUserHierarchy hierarchy = new DefaultUserHierarchy();
+        key1Rank0 = new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, AContext.key1);
+        key1Rank1 = new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 1, AContext.key1);
+        key2Rank0 = new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, AContext.key2);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void addAndRetrieve() throws Exception {
+        // given
+        OptionId id1 = new OptionId(key1Rank0);
+        OptionId id2 = new OptionId(key2Rank0);
+
+        // when
+        store.add(id1, "a");
+        store.add(id2, "c");
+        store.add(id1, "b");
+
+        // then
+        assertThat(store.getValue(id1)).contains("b");
+        assertThat(store.getEntity(id2)).contains(new OptionEntity(id2, "c"));
+        assertThat(store.getValues(Arrays.asList(id1, id2, new OptionId(key1Rank1)))).containsOnlyKeys(id1, id2);
+        assertThat(ids(store.findAllRanks(id1.getContext(), id1.getUserHierarchyName(), id1.getOptionKey()))).containsOnly(id1);
+        assertThat(store.size()).isEqualTo(2);
+
+        // when
+        assertThat(store.delete(id1)).contains("b");
+
+        // then
+        assertThat(store.delete(id1)).isNotPresent();
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.asEntities()).containsOnly(new OptionEntity(id2, "c"));
+    }
+
+    @Test
+    public void survivesReopening() throws Exception {
+        // given
+        store.add(key1Rank0, "a");
+        store.add(key1Rank1, "b");
+        store.add(key2Rank0, "c");
+        store.add(key1Rank0, "a longer value");
+        store.delete(new OptionId(key1Rank1));
+
+        // when
+        store.close();
+        store = new MappedFileOptionStore(file);
+
+        // then
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.asEntities()).containsOnly(new OptionEntity(key1Rank0, "a longer value"), new OptionEntity(key2Rank0, "c"));
+    }
+
+    @Test
+    public void discardsARecordWhichFailsItsCheck() throws Exception {
+        // given
+        store.add(key1Rank0, "a");
+        store.add(key2Rank0, "torn");
+        store.close();
+        corrupt("torn");
+
+        // when
+        store = new MappedFileOptionStore(file);
+
+        // then
+        assertThat(store.asEntities()).containsOnly(new OptionEntity(key1Rank0, "a"));
+
+        // when the space is reused, nothing of the discarded record reappears
+        store.add(key1Rank1, "b");
+        store.close();
+        store = new MappedFileOptionStore(file);
+
+        // then
+        assertThat(store.asEntities()).containsOnly(new OptionEntity(key1Rank0, "a"), new OptionEntity(key1Rank1, "b"));
+    }
+
+    @Test
+    public void compactionKeepsTheFileSmall() throws Exception {
+        // given
+        store.close();
+        store = new MappedFileOptionStore(file, 4096, 0);
+
+        // when
+        for (int i = 0; i < 10_000; i++) {
+            store.add(key1Rank0, Integer.toString(i));
+        }
+        store.add(key2Rank0, "c");
+
+        // then
+        assertThat(file.length()).isLessThan(64 * 1024);
+        store.close();
+        store = new MappedFileOptionStore(file);
+        assertThat(store.asEntities()).containsOnly(new OptionEntity(key1Rank0, "9999"), new OptionEntity(key2Rank0, "c"));
+    }
+
+    @Test
+    public void matchesModelAcrossCompactionsAndReopening() throws Exception {
+        // given
+        store.close();
+        store = new MappedFileOptionStore(file, 4096, 2048);
+        Random random = new Random(7);
+        List<OptionCacheKey<Integer>> keys = cacheKeys(new DefaultUserHierarchy(), 25, 20);
+        Map<OptionId, String> model = new HashMap<>();
+
+        // when
+        for (int i = 0; i < 20_000; i++) {
+            OptionCacheKey<Integer> cacheKey = keys.get(random.nextInt(keys.size()));
+            OptionId id = new OptionId(cacheKey);
+            if (random.nextInt(3) == 0) {
+                assertThat(store.delete(id).orElse(null)).isEqualTo(model.remove(id));
+            } else {
+                String value = Integer.toString(random.nextInt(1000));
+                store.add(cacheKey, value);
+                model.put(id, value);
+            }
+            if (i % 5000 == 0) {
+                store.close();
+                store = new MappedFileOptionStore(file, 4096, 2048);
+            }
+        }
+
+        // then
+        assertThat(store.size()).isEqualTo(model.size());
+        assertThat(asMap(store.asEntities())).isEqualTo(model);
+        store.close();
+        store = new MappedFileOptionStore(file);
+        assertThat(asMap(store.asEntities())).isEqualTo(model);
+    }
+
+    @Test
+    public void clear() throws Exception {
+        // given
+        store.add(key1Rank0, "a");
+
+        // when
+        store.clear();
+        store.add(key2Rank0, "c");
+        store.close();
+        store = new MappedFileOptionStore(file);
+
+        // then
+        assertThat(store.asEntities()).containsOnly(new OptionEntity(key2Rank0, "c"));
+    }
+
+    @Test
+    public void fileCanOnlyBeOpenedOnce() throws Exception {
+        assertThatThrownBy(() -> new MappedFileOptionStore(file)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void deserialisesAsTheOpenStore() throws Exception {
+        // given
+        store.add(key1Rank0, "a");
+
+        // when
+        MappedFileOptionStore copy = roundTrip(store);
+
+        // then
+        assertThat(copy).isSameAs(store);
+    }
+
+    /**
+     * Overwrites the first byte of {@code value} in the file
+     */
+    private void corrupt(String value) throws Exception {
+        byte[] content = Files.readAllBytes(file.toPath());
+        byte[] target = value.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < content.length - target.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(content, i, i + target.length), target)) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.seek(i);
+                    raf.write('X');
+                }
+                return;
+            }
+        }
+        throw new AssertionError(value + " not found");
+    }
+
+}
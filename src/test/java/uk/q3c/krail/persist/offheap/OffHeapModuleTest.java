@@ -0,0 +1,70 @@
+package uk.q3c.krail.persist.offheap;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.eventbus.mbassador.EventBusModule;
+import uk.q3c.krail.option.Option;
+import uk.q3c.krail.option.bind.OptionModule;
+import uk.q3c.krail.option.persist.OptionSource;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.persist.offheap.dao.OffHeapOptionDaoDelegate;
+import uk.q3c.krail.persist.offheap.store.OffHeapOptionStore;
+import uk.q3c.util.UtilModule;
+import uk.q3c.util.guice.InjectorLocator;
+import uk.q3c.util.guice.SerializationSupportModule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OffHeapModuleTest {
+
+    static Injector injector;
+
+    @Before
+    public void setup() {
+        injector = Guice.createInjector(new OptionModule().activeSource(OffHeap.class), new OffHeapModule().provideOptionDao(), new UtilModule(), new
+                EventBusModule(), new SerializationSupportModule(), new LocatorModule());
+    }
+
+    @Test
+    public void activeSourceIsOffHeap() throws Exception {
+        // given
+        Option option = injector.getInstance(Option.class);
+
+        // when
+        option.set(AContext.key1, 999);
+
+        // then
+        assertThat(injector.getInstance(OptionSource.class)
+                .getActiveDao()).isInstanceOf(OffHeapOptionDaoDelegate.class);
+        assertThat(injector.getInstance(OffHeapOptionStore.class)
+                .size()).isEqualTo(1);
+        assertThat(option.get(AContext.key1)).isEqualTo(999);
+    }
+
+    static class LocatorModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            bind(InjectorLocator.class).toInstance(new InjectorLocator() {
+
+                @NotNull
+                @Override
+                public Injector get() {
+                    return OffHeapModuleTest.injector;
+                }
+
+                @Override
+                public void put(Injector injector) {
+                    OffHeapModuleTest.injector = injector;
+                }
+            });
+        }
+    }
+}
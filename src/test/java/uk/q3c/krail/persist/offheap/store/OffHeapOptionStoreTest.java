@@ -0,0 +1,189 @@
+package uk.q3c.krail.persist.offheap.store;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.q3c.krail.option.RankOption;
+import uk.q3c.krail.option.hierarchy.DefaultUserHierarchy;
+import uk.q3c.krail.option.persist.OptionCacheKey;
+import uk.q3c.krail.option.persist.OptionId;
+import uk.q3c.krail.option.persist.cache.AContext;
+import uk.q3c.krail.persist.inmemory.OptionEntity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.q3c.krail.persist.OptionStoreFixtures.asMap;
+import static uk.q3c.krail.persist.OptionStoreFixtures.cacheKeys;
+import static uk.q3c.krail.persist.OptionStoreFixtures.fill;
+import static uk.q3c.krail.persist.OptionStoreFixtures.ids;
+import static uk.q3c.krail.persist.OptionStoreFixtures.retainedSize;
+import static uk.q3c.krail.persist.OptionStoreFixtures.roundTrip;
+import static uk.q3c.krail.persist.OptionStoreFixtures.users;
+
+/**
+ * Created by David Sowerby on 18 Oct 2026
+ */
+public class OffHeapOptionStoreTest {
+
+    private OffHeapOptionStore store;
+    private DefaultUserHierarchy hierarchy;
+    private OptionCacheKey<Integer> key1Rank0;
+    private OptionCacheKey<Integer> key1Rank1;
+    private OptionCacheKey<Integer> key2Rank0;
+    private OptionCacheKey<Integer> otherHierarchy;
+
+    @Before
+    public void setup() {
+        store = new OffHeapOptionStore();
+        hierarchy = new DefaultUserHierarchy();
+        key1Rank0 = new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, AContext.key1);
+        key1Rank1 = new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 1, AContext.key1);
+        key2Rank0 = new OptionCacheKey<>(hierarchy, RankOption.SPECIFIC_RANK, 0, AContext.key2);
+        otherHierarchy = new OptionCacheKey<>(new OtherHierarchy(), RankOption.SPECIFIC_RANK, 0, AContext.key1);
+    }
+
+    @Test
+    public void addAndRetrieve() throws Exception {
+        // given
+        OptionId id1 = new OptionId(key1Rank0);
+        OptionId id2 = new OptionId(key2Rank0);
+
+        // when
+        store.add(id1, "a");
+        store.add(id2, "c");
+
+        // then
+        assertThat(store.getValue(id1)).contains("a");
+        assertThat(store.getEntity(id2)).contains(new OptionEntity(id2, "c"));
+        assertThat(store.getValue(new OptionId(key1Rank1))).isNotPresent();
+        assertThat(store.size()).isEqualTo(2);
+
+        // when
+        store.add(id1, "b");
+        store.add(id2, "a much longer value");
+
+        // then
+        assertThat(store.getValue(id1)).contains("b");
+        assertThat(store.getValue(id2)).contains("a much longer value");
+        assertThat(store.getValues(Arrays.asList(id1, id2, new OptionId(key1Rank1)))).containsOnlyKeys(id1, id2);
+        assertThat(store.size()).isEqualTo(2);
+
+        // when
+        assertThat(store.delete(id1)).contains("b");
+
+        // then
+        assertThat(store.delete(id1)).isNotPresent();
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.getValue(id1)).isNotPresent();
+
+        // when
+        store.clear();
+
+        // then
+        assertThat(store.size()).isEqualTo(0);
+        assertThat(store.getValue(id2)).isNotPresent();
+    }
+
+    @Test
+    public void findRebuildsEqualOptionIds() throws Exception {
+        // given
+        OptionId id1Rank0 = new OptionId(key1Rank0);
+        OptionId id1Rank1 = new OptionId(key1Rank1);
+        OptionId idOther = new OptionId(otherHierarchy);
+        store.add(key1Rank0, "a");
+        store.add(key1Rank1, "b");
+        store.add(key2Rank0, "c");
+        store.add(otherHierarchy, "e");
+
+        // then
+        assertThat(store.asEntities()).containsOnly(new OptionEntity(key1Rank0, "a"), new OptionEntity(key1Rank1, "b"), new OptionEntity
+                (key2Rank0, "c"), new OptionEntity(otherHierarchy, "e"));
+        assertThat(store.findByContext(id1Rank0.getContext())).hasSize(4);
+        assertThat(ids(store.findByUserHierarchy(idOther.getUserHierarchyName()))).containsOnly(idOther);
+        assertThat(ids(store.findByRank(id1Rank1.getUserHierarchyName(), id1Rank1.getRankName()))).containsOnly(id1Rank1);
+        assertThat(ids(store.findAllRanks(id1Rank0.getContext(), id1Rank0.getUserHierarchyName(), id1Rank0.getOptionKey()))).containsOnly(id1Rank0,
+                id1Rank1);
+        assertThat(store.findByContext("unknown")).isEmpty();
+    }
+
+    /**
+     * Small slabs, and values of varying length, so that records cross slab boundaries, are replaced in place and by copying, and are compacted
+     */
+    @Test
+    public void matchesModelThroughAddsAndDeletes() throws Exception {
+        // given
+        store = new OffHeapOptionStore(4096);
+        Random random = new Random(7);
+        List<OptionCacheKey<Integer>> keys = cacheKeys(hierarchy, 25, 20);
+        Map<OptionId, String> model = new HashMap<>();
+        long largest = 0;
+
+        // when
+        for (int i = 0; i < 20_000; i++) {
+            OptionCacheKey<Integer> cacheKey = keys.get(random.nextInt(keys.size()));
+            OptionId id = new OptionId(cacheKey);
+            if (random.nextInt(3) == 0) {
+                assertThat(store.delete(id).orElse(null)).isEqualTo(model.remove(id));
+            } else {
+                String value = Integer.toString(random.nextInt(1000));
+                store.add(cacheKey, value);
+                model.put(id, value);
+            }
+            largest = Math.max(largest, store.offHeapBytes());
+        }
+
+        // then
+        assertThat(store.size()).isEqualTo(model.size());
+        for (OptionCacheKey<Integer> cacheKey : keys) {
+            OptionId id = new OptionId(cacheKey);
+            assertThat(store.getValue(id).orElse(null)).isEqualTo(model.get(id));
+        }
+        assertThat(asMap(store.asEntities())).isEqualTo(model);
+        assertThat(largest).as("replaced records are reclaimed").isLessThan(keys.size() * 1024L);
+    }
+
+    @Test
+    public void serialisable() throws Exception {
+        // given
+        store.add(key1Rank0, "a");
+        store.add(key2Rank0, "c");
+
+        // when
+        OffHeapOptionStore copy = roundTrip(store);
+
+        // then
+        assertThat(asMap(copy.asEntities())).isEqualTo(asMap(store.asEntities()));
+        assertThat(copy.getValue(new OptionId(key2Rank0))).contains("c");
+    }
+
+    /**
+     * The heap retained by the store should stay flat while it grows from 20,000 to 120,000 entries, with the growth showing up in off-heap bytes
+     * instead
+     */
+    @Test
+    public void heapStaysFlatAsEntriesGrow() throws Exception {
+        // given
+        List<OptionCacheKey<Integer>> bases = cacheKeys(hierarchy, 20, 1);
+        String[] users = users(6_000);
+        fill(store, bases, users, 0, 1_000);
+        long heapBefore = retainedSize(store);
+        long offHeapBefore = store.offHeapBytes();
+
+        // when
+        fill(store, bases, users, 1_000, 6_000);
+        long heapGrowth = retainedSize(store) - heapBefore;
+
+        // then
+        assertThat(store.size()).isEqualTo(120_000);
+        assertThat(heapGrowth).as("%s heap bytes for 100,000 entries", heapGrowth)
+                .isLessThan(100_000L);
+        assertThat(store.offHeapBytes() - offHeapBefore).isGreaterThan(100_000L * 64);
+    }
+
+    private static class OtherHierarchy extends DefaultUserHierarchy {
+    }
+}